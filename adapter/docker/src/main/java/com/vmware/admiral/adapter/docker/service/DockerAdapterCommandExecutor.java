@@ -79,6 +79,9 @@ public interface DockerAdapterCommandExecutor {
     // Specifies the container image which is bundled with admiral and should be uploaded to the
     // host. Must be paired with DOCKER_CONTAINER_CREATE_USE_LOCAL_IMAGE_WITH_PRIORITY.
     String DOCKER_CONTAINER_CREATE_USE_BUNDLED_IMAGE = "UseBundledImage";
+    // Flag that forces the image to be pulled for every container, even if it was pulled on the
+    // host shortly before.
+    String DOCKER_CONTAINER_CREATE_ALWAYS_PULL_IMAGE = "AlwaysPullImage";
 
     String DOCKER_EXEC_ATTACH_STDIN_PROP_NAME = "AttachStdin";
     String DOCKER_EXEC_ATTACH_STDOUT_PROP_NAME = "AttachStdout";
@@ -13,6 +13,7 @@ package com.vmware.admiral.adapter.docker.service;
 
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_COMMAND_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_CONFIG_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_CREATE_ALWAYS_PULL_IMAGE;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_CREATE_USE_BUNDLED_IMAGE;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_CREATE_USE_LOCAL_IMAGE_WITH_PRIORITY;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_DOMAINNAME_PROP_NAME;
@@ -61,6 +62,7 @@ import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExec
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_COMMAND_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_DATA_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_FROM_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_REGISTRY_AUTH;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.SINCE;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.STD_ERR;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.STD_OUT;
@@ -213,8 +215,28 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
 
     public static final String RETRIED_AFTER_FAILURE = "failedAfterRetry";
 
+    /**
+     * name of the stat counting the image pulls which were skipped or shared with a concurrent
+     * pull of the same image on the same host
+     */
+    public static final String STAT_NAME_IMAGE_PULLS_SAVED = "imagePullsSaved";
+
+    /**
+     * time after a successful pull during which the same image is not pulled again on the same
+     * host
+     */
+    private static final long IMAGE_PULL_FRESHNESS_MICROS = Long.getLong(
+            "com.vmware.admiral.adapter.docker.image.pull.freshness.micros",
+            TimeUnit.SECONDS.toMicros(60));
+
+    private static final int IMAGE_INVENTORY_MAX_SIZE = Integer.getInteger(
+            "com.vmware.admiral.adapter.docker.image.inventory.size", 10000);
+
     private SystemImageRetrievalManager imageRetrievalManager;
 
+    private final DockerImageInventory imageInventory = new DockerImageInventory(
+            IMAGE_INVENTORY_MAX_SIZE);
+
     /**
      * Properties in an inspect response that we want to filter out
      *
@@ -247,6 +269,16 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
          * state after inspecting a container.
          */
         public boolean requestFailed;
+        /**
+         * Flags that the pull of the image was skipped, because it was recently pulled to the
+         * host.
+         */
+        public boolean imagePullSkipped;
+        /**
+         * Flags that the image has to be pulled, because it was missing on the host after a
+         * skipped pull.
+         */
+        public boolean forceImagePull;
     }
 
     public static class AuthConfig {
@@ -257,6 +289,11 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         public String auth;
     }
 
+    public DockerAdapterService() {
+        super();
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+    }
+
     @Override
     public void handleStart(Operation startPost) {
         imageRetrievalManager = new SystemImageRetrievalManager(getHost());
@@ -534,6 +571,14 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                 imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageData) -> {
                     processLoadImageData(context, imageData, ref, imageCompletionAction);
                 });
+            } else if (imageInventory.isKnownMissing(context.computeState.documentSelfLink,
+                    getFullImageName(context))) {
+                logInfo("Image %s is not available on host %s, will be fetched from a remote"
+                        + " location...", getFullImageName(context),
+                        context.computeState.documentSelfLink);
+                context.containerDescription.customProperties.put(
+                        DOCKER_CONTAINER_CREATE_USE_LOCAL_IMAGE_WITH_PRIORITY, "false");
+                processContainerDescription(context);
             } else {
                 // try to create the container from a local image first. Only if the image is not
                 // available it will be fetched according to the settings.
@@ -551,6 +596,20 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
             // use 'fromImage' - this will perform a docker pull
             createImageCommandInput.withProperty(DOCKER_IMAGE_FROM_PROP_NAME, fullImageName);
 
+            if (!context.forceImagePull
+                    && !shouldAlwaysPullImage(context.containerDescription)
+                    && imageInventory.isRecentlyPulled(context.computeState.documentSelfLink,
+                            fullImageName, getRegistryAuth(createImageCommandInput),
+                            IMAGE_PULL_FRESHNESS_MICROS)) {
+                logInfo("Image %s was recently pulled on host %s, skipping pull %s",
+                        fullImageName, context.computeState.documentSelfLink,
+                        context.request.getRequestTrackingLog());
+                adjustStat(STAT_NAME_IMAGE_PULLS_SAVED, 1);
+                context.imagePullSkipped = true;
+                imageCompletionAction.run();
+                return;
+            }
+
             logInfo("Pulling image: %s %s", fullImageName, context.request.getRequestTrackingLog());
             processPullImageFromRegistry(context, createImageCommandInput, imageCompletionAction);
         } else {
@@ -717,27 +776,36 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
             CommandInput createImageCommandInput, Runnable imageCompletionAction) {
 
         ensurePullRetriesPropertyExists((retryCountProperty) -> {
-            String fullImageName = DockerImage.fromImageName(context.containerDescription.image)
-                    .toString();
-            new RetriableTaskBuilder<Void>(
-                    String.format("pull-image-%s", fullImageName))
-                            .withMaximumRetries(retryCountProperty)
-                            .withRetryDelays(PULL_IMAGE_RETRY_AFTER_SECONDS)
-                            .withRetryDelaysTimeUnit(TimeUnit.SECONDS)
-                            .withServiceHost(getHost())
-                            .withTaskFunction(
-                                    preparePullImageFunction(context, createImageCommandInput))
-                            .execute()
-                            .whenComplete((ignore, ex) -> {
-                                if (ex != null) {
-                                    Throwable failureCause = ex instanceof CompletionException
-                                            ? ex.getCause() : ex;
-                                    fail(context.request, failureCause);
-                                    return;
-                                }
+            String fullImageName = getFullImageName(context);
+            String hostLink = context.computeState.documentSelfLink;
+            // concurrent creates on the same host wait for a single pull of the image
+            imageInventory.pull(hostLink, fullImageName,
+                    getRegistryAuth(createImageCommandInput),
+                    () -> new RetriableTaskBuilder<Void>(
+                            String.format("pull-image-%s", fullImageName))
+                                    .withMaximumRetries(retryCountProperty)
+                                    .withRetryDelays(PULL_IMAGE_RETRY_AFTER_SECONDS)
+                                    .withRetryDelaysTimeUnit(TimeUnit.SECONDS)
+                                    .withServiceHost(getHost())
+                                    .withTaskFunction(preparePullImageFunction(context,
+                                            createImageCommandInput))
+                                    .execute(),
+                    () -> {
+                        logInfo("Waiting for pull of image %s on host %s in progress %s",
+                                fullImageName, hostLink,
+                                context.request.getRequestTrackingLog());
+                        adjustStat(STAT_NAME_IMAGE_PULLS_SAVED, 1);
+                    })
+                    .whenComplete((ignore, ex) -> {
+                        if (ex != null) {
+                            Throwable failureCause = ex instanceof CompletionException
+                                    ? ex.getCause() : ex;
+                            fail(context.request, failureCause);
+                            return;
+                        }
 
-                                imageCompletionAction.run();
-                            });
+                        imageCompletionAction.run();
+                    });
         });
     }
 
@@ -920,7 +988,14 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                             .execute()
                             .whenComplete((createResponse, ex) -> {
                                 if (ex != null) {
-                                    if (shouldTryCreateFromLocalImage(
+                                    if (context.imagePullSkipped && context.forceImagePull) {
+                                        logInfo("Image %s is missing on host %s after a skipped"
+                                                + " pull. Will be pulled...",
+                                                getFullImageName(context),
+                                                context.computeState.documentSelfLink);
+                                        context.imagePullSkipped = false;
+                                        processContainerDescription(context);
+                                    } else if (shouldTryCreateFromLocalImage(
                                             context.containerDescription)) {
                                         logInfo("Unable to create container using local image. Will be fetched"
                                                 + " from a remote location...");
@@ -934,6 +1009,9 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                         fail(context.request, failureCause);
                                     }
                                 } else {
+                                    imageInventory.markPresent(
+                                            context.computeState.documentSelfLink,
+                                            getFullImageName(context));
                                     handleExceptions(context.request, context.operation, () -> {
                                         String id = (String) createResponse
                                                 .get(DOCKER_CONTAINER_ID_PROP_NAME);
@@ -966,7 +1044,18 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                     return;
                 }
 
-                if (isRetriableFailure(o.getStatusCode())
+                if (o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND) {
+                    // the image does not exist on the host, the next pull must not be skipped
+                    imageInventory.markMissing(context.computeState.documentSelfLink,
+                            getFullImageName(context));
+                }
+
+                if (o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND
+                        && context.imagePullSkipped) {
+                    // retrying the create would fail the same way, pull the image instead
+                    task.preventRetries();
+                    context.forceImagePull = true;
+                } else if (isRetriableFailure(o.getStatusCode())
                         && !shouldTryCreateFromLocalImage(context.containerDescription)) {
                     // if local image was currently preferred, another task
                     // will be submitted to try with remote image
@@ -1039,6 +1128,13 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
 
     }
 
+    /**
+     * Returns the canonical name of the image of the container (with the latest tag if needed)
+     */
+    private static String getFullImageName(RequestContext context) {
+        return DockerImage.fromImageName(context.containerDescription.image).toString();
+    }
+
     private boolean shouldTryCreateFromLocalImage(ContainerDescription containerDescription) {
         if (containerDescription.customProperties == null) {
             return false;
@@ -1051,6 +1147,16 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         return Boolean.valueOf(useLocalImageFirst);
     }
 
+    private boolean shouldAlwaysPullImage(ContainerDescription containerDescription) {
+        return containerDescription.customProperties != null
+                && Boolean.valueOf(containerDescription.customProperties
+                        .get(DOCKER_CONTAINER_CREATE_ALWAYS_PULL_IMAGE));
+    }
+
+    private static String getRegistryAuth(CommandInput commandInput) {
+        return (String) commandInput.getProperties().get(DOCKER_IMAGE_REGISTRY_AUTH);
+    }
+
     private String getBundledImage(ContainerDescription containerDescription) {
         if (containerDescription.customProperties == null) {
             return null;
@@ -1241,6 +1347,12 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                     return;
                                 }
 
+                                if (context.containerState.image != null) {
+                                    imageInventory.markPresent(
+                                            context.computeState.documentSelfLink,
+                                            DockerImage.fromImageName(
+                                                    context.containerState.image).toString());
+                                }
                                 handleExceptions(context.request, context.operation, () -> {
                                     patchContainerState(context.request, context.containerState,
                                             props, context);
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.vmware.admiral.common.util.DockerImage;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Keeps track of the images known to be present on the Docker hosts and of the image pulls in
+ * progress, so that:
+ * <ul>
+ * <li>concurrent pulls of the same image on the same host with the same registry credentials
+ * share a single pull,</li>
+ * <li>a pull is skipped if the image was pulled on the host with the same credentials shortly
+ * before, unless its tag is {@value DockerImage#DEFAULT_TAG} which is expected to move,</li>
+ * <li>a container which prefers a local image is not first tried on a host which is known not
+ * to have the image.</li>
+ * </ul>
+ * The presence information is fed by the adapter operations, i.e. pulls, loads, created and
+ * inspected containers. It is not authoritative as images may be removed from a host by other
+ * clients, so it is only used to skip work that would otherwise be retried.
+ */
+class DockerImageInventory {
+
+    /**
+     * Presence of an image on a host.
+     */
+    private static class ImageEntry {
+        boolean present;
+        long pullTimeMicros;
+        String pullCredentials;
+    }
+
+    private final int maxSize;
+
+    // guarded by itself
+    private final Map<String, ImageEntry> images;
+
+    // guarded by itself
+    private final Map<String, DeferredResult<Void>> pulls = new HashMap<>();
+
+    @SuppressWarnings("serial")
+    DockerImageInventory(int maxSize) {
+        this.maxSize = maxSize;
+        this.images = new LinkedHashMap<String, ImageEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageEntry> eldest) {
+                return size() > DockerImageInventory.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Pulls the image on the host with the given function unless a pull of the same image on
+     * the same host with the same registry credentials is already in progress. In the latter case
+     * the coalesced callback is invoked and the result of the running pull is returned.
+     */
+    DeferredResult<Void> pull(String hostLink, String image, String registryAuth,
+            Supplier<DeferredResult<Void>> pullFunction, Runnable coalescedCallback) {
+        String credentials = hashCredentials(registryAuth);
+        String key = buildKey(hostLink, image) + "#" + credentials;
+        DeferredResult<Void> pull;
+        synchronized (pulls) {
+            pull = pulls.get(key);
+            if (pull == null) {
+                pull = new DeferredResult<>();
+                pulls.put(key, pull);
+            } else {
+                coalescedCallback.run();
+                return pull.thenApply(ignore -> null);
+            }
+        }
+
+        DeferredResult<Void> result = pull;
+        pullFunction.get().whenComplete((ignore, e) -> {
+            synchronized (pulls) {
+                pulls.remove(key);
+            }
+            if (e != null) {
+                result.fail(e);
+            } else {
+                markPulled(hostLink, image, registryAuth);
+                result.complete(null);
+            }
+        });
+        return result.thenApply(ignore -> null);
+    }
+
+    /**
+     * Returns whether the image was pulled on the host with the same registry credentials not
+     * more than the given time ago. Images with the {@value DockerImage#DEFAULT_TAG} tag are
+     * always pulled again.
+     */
+    boolean isRecentlyPulled(String hostLink, String image, String registryAuth,
+            long maxAgeMicros) {
+        if (DockerImage.DEFAULT_TAG.equals(DockerImage.fromImageName(image).getTag())) {
+            return false;
+        }
+        synchronized (images) {
+            ImageEntry entry = images.get(buildKey(hostLink, image));
+            return entry != null && entry.present
+                    && entry.pullTimeMicros > Utils.fromNowMicrosUtc(-maxAgeMicros)
+                    && hashCredentials(registryAuth).equals(entry.pullCredentials);
+        }
+    }
+
+    /**
+     * Returns whether the image was last seen missing on the host.
+     */
+    boolean isKnownMissing(String hostLink, String image) {
+        synchronized (images) {
+            ImageEntry entry = images.get(buildKey(hostLink, image));
+            return entry != null && !entry.present;
+        }
+    }
+
+    void markPresent(String hostLink, String image) {
+        update(hostLink, image, true, false, null);
+    }
+
+    void markPulled(String hostLink, String image, String registryAuth) {
+        update(hostLink, image, true, true, hashCredentials(registryAuth));
+    }
+
+    /**
+     * Marks the image missing on the host. Only to be called when the host reported that the
+     * image does not exist and not on other failures.
+     */
+    void markMissing(String hostLink, String image) {
+        update(hostLink, image, false, false, null);
+    }
+
+    private void update(String hostLink, String image, boolean present, boolean pulled,
+            String pullCredentials) {
+        if (hostLink == null || image == null) {
+            return;
+        }
+        long now = Utils.getSystemNowMicrosUtc();
+        synchronized (images) {
+            ImageEntry entry = images.computeIfAbsent(buildKey(hostLink, image),
+                    k -> new ImageEntry());
+            entry.present = present;
+            if (pulled) {
+                entry.pullTimeMicros = now;
+                entry.pullCredentials = pullCredentials;
+            } else if (!present) {
+                entry.pullTimeMicros = 0;
+                entry.pullCredentials = null;
+            }
+        }
+    }
+
+    private static String buildKey(String hostLink, String image) {
+        return hostLink + "#" + image;
+    }
+
+    /**
+     * The credentials are kept only as a hash, so that no secret is held by the inventory.
+     */
+    private static String hashCredentials(String registryAuth) {
+        return registryAuth == null ? "" : Utils.computeHash(registryAuth);
+    }
+}
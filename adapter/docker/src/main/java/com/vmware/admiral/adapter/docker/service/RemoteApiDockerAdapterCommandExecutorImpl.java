@@ -52,6 +52,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.yaml.snakeyaml.util.UriEncoder;
 
 import com.vmware.admiral.adapter.docker.util.DockerStreamUtil;
+import com.vmware.admiral.common.metrics.MetricRegistry;
+import com.vmware.admiral.common.metrics.MetricRegistry.Histogram;
 import com.vmware.admiral.common.util.AssertUtil;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.DelegatingX509KeyManager;
@@ -140,7 +142,12 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     private enum ClientMode {
         DEFAULT,
         ATTACH,
-        LARGE_DATA
+        LARGE_DATA;
+
+        private final Histogram requestDuration = MetricRegistry.getDefault().histogram(
+                "admiral_docker_request_duration_seconds",
+                "Duration of the requests to the Docker remote API.",
+                "client", name().toLowerCase());
     }
 
     protected RemoteApiDockerAdapterCommandExecutorImpl(ServiceHost host,
@@ -1015,6 +1022,7 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         Operation op = Operation.createGet(uri)
                 .setAction(action)
                 .setCompletion(completionHandler);
+        mode.requestDuration.observe(op);
 
         if (ClientMode.LARGE_DATA == mode) {
             op.setBodyNoCloning(body);
@@ -56,6 +56,10 @@ import com.vmware.admiral.compute.container.ContainerDescriptionService.Containe
 import com.vmware.admiral.compute.container.ContainerFactoryService;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryRequest;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryResponse;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsSample;
 import com.vmware.admiral.compute.container.PortBinding;
 import com.vmware.admiral.compute.container.ServiceNetwork;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
@@ -72,7 +76,6 @@ import com.vmware.photon.controller.model.security.util.AuthCredentialsType;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
-import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.TaskState;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.services.common.AuthCredentialsService;
@@ -865,14 +868,21 @@ public class DockerAdapterServiceTest extends BaseMockDockerTestCase {
     }
 
     private void sendGetContainerStatsStateRequest() throws Throwable {
+        ContainerStatsHistoryRequest request = new ContainerStatsHistoryRequest();
+        request.containerLinks = Collections.singletonList(containerStateReference.getPath());
+        request.latest = true;
         host.testStart(1);
-        host.send(Operation.createGet(UriUtils.buildStatsUri(containerStateReference))
+        host.send(Operation.createPost(UriUtils.buildUri(host,
+                ContainerStatsHistoryService.SELF_LINK))
+                .setBody(request)
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         host.failIteration(ex);
                     } else {
-                        ServiceStats serviceStats = o.getBody(ServiceStats.class);
-                        containerStats = ContainerStats.transform(serviceStats);
+                        ContainerStatsSample latest = o.getBody(
+                                ContainerStatsHistoryResponse.class).latest
+                                .get(containerStateReference.getPath());
+                        containerStats = latest != null ? latest.stats : new ContainerStats();
                         host.completeIteration();
                     }
                 }));
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.vmware.xenon.common.DeferredResult;
+
+public class DockerImageInventoryTest {
+
+    private static final String HOST1 = "/resources/compute/host1";
+    private static final String HOST2 = "/resources/compute/host2";
+    private static final String IMAGE = "registry.hub.docker.com/library/alpine:3.7";
+    private static final String LATEST_IMAGE = "registry.hub.docker.com/library/alpine:latest";
+    private static final String AUTH1 = "auth1";
+    private static final String AUTH2 = "auth2";
+
+    @Test
+    public void testConcurrentPullsAreCoalesced() {
+        DockerImageInventory inventory = new DockerImageInventory(100);
+        AtomicInteger pullCount = new AtomicInteger();
+        AtomicInteger coalescedCount = new AtomicInteger();
+        DeferredResult<Void> pull = new DeferredResult<>();
+
+        DeferredResult<Void> r1 = inventory.pull(HOST1, IMAGE, AUTH1, () -> {
+            pullCount.incrementAndGet();
+            return pull;
+        }, coalescedCount::incrementAndGet);
+        DeferredResult<Void> r2 = inventory.pull(HOST1, IMAGE, AUTH1, () -> {
+            pullCount.incrementAndGet();
+            return pull;
+        }, coalescedCount::incrementAndGet);
+        // a different host is pulled separately
+        DeferredResult<Void> r3 = inventory.pull(HOST2, IMAGE, AUTH1,
+                () -> DeferredResult.completed(null), coalescedCount::incrementAndGet);
+
+        assertEquals(1, pullCount.get());
+        assertEquals(1, coalescedCount.get());
+        assertTrue(r3.toCompletionStage().toCompletableFuture().isDone());
+        assertFalse(r1.toCompletionStage().toCompletableFuture().isDone());
+        assertFalse(r2.toCompletionStage().toCompletableFuture().isDone());
+
+        pull.complete(null);
+        assertTrue(r1.toCompletionStage().toCompletableFuture().isDone());
+        assertTrue(r2.toCompletionStage().toCompletableFuture().isDone());
+        assertTrue(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH1, TimeUnit.MINUTES.toMicros(1)));
+
+        // the next pull after completion is not coalesced
+        inventory.pull(HOST1, IMAGE, AUTH1, () -> {
+            pullCount.incrementAndGet();
+            return DeferredResult.completed(null);
+        }, coalescedCount::incrementAndGet);
+        assertEquals(2, pullCount.get());
+        assertEquals(1, coalescedCount.get());
+    }
+
+    @Test
+    public void testPullsWithDifferentCredentialsAreNotCoalesced() {
+        DockerImageInventory inventory = new DockerImageInventory(100);
+        AtomicInteger pullCount = new AtomicInteger();
+        AtomicInteger coalescedCount = new AtomicInteger();
+        DeferredResult<Void> pull = new DeferredResult<>();
+
+        inventory.pull(HOST1, IMAGE, AUTH1, () -> {
+            pullCount.incrementAndGet();
+            return pull;
+        }, coalescedCount::incrementAndGet);
+        inventory.pull(HOST1, IMAGE, AUTH2, () -> {
+            pullCount.incrementAndGet();
+            return pull;
+        }, coalescedCount::incrementAndGet);
+        inventory.pull(HOST1, IMAGE, null, () -> {
+            pullCount.incrementAndGet();
+            return pull;
+        }, coalescedCount::incrementAndGet);
+
+        assertEquals(3, pullCount.get());
+        assertEquals(0, coalescedCount.get());
+
+        // a recent pull is reused only with the same credentials
+        inventory.markPulled(HOST1, IMAGE, AUTH1);
+        assertTrue(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH1, TimeUnit.MINUTES.toMicros(1)));
+        assertFalse(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH2,
+                TimeUnit.MINUTES.toMicros(1)));
+        assertFalse(inventory.isRecentlyPulled(HOST1, IMAGE, null, TimeUnit.MINUTES.toMicros(1)));
+    }
+
+    @Test
+    public void testLatestImageIsAlwaysPulled() {
+        DockerImageInventory inventory = new DockerImageInventory(100);
+        inventory.markPulled(HOST1, LATEST_IMAGE, AUTH1);
+        assertFalse(inventory.isRecentlyPulled(HOST1, LATEST_IMAGE, AUTH1,
+                TimeUnit.MINUTES.toMicros(1)));
+        assertFalse(inventory.isRecentlyPulled(HOST1, "alpine", AUTH1,
+                TimeUnit.MINUTES.toMicros(1)));
+    }
+
+    @Test
+    public void testFailedPull() {
+        DockerImageInventory inventory = new DockerImageInventory(100);
+        DeferredResult<Void> result = inventory.pull(HOST1, IMAGE, AUTH1,
+                () -> DeferredResult.failed(new IllegalStateException("pull failed")), () -> {
+                });
+
+        assertTrue(result.toCompletionStage().toCompletableFuture().isCompletedExceptionally());
+        assertFalse(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH1, TimeUnit.MINUTES.toMicros(1)));
+    }
+
+    @Test
+    public void testImagePresence() {
+        DockerImageInventory inventory = new DockerImageInventory(1);
+        assertFalse(inventory.isKnownMissing(HOST1, IMAGE));
+
+        inventory.markMissing(HOST1, IMAGE);
+        assertTrue(inventory.isKnownMissing(HOST1, IMAGE));
+        assertFalse(inventory.isKnownMissing(HOST2, IMAGE));
+
+        // present but not pulled
+        inventory.markPresent(HOST1, IMAGE);
+        assertFalse(inventory.isKnownMissing(HOST1, IMAGE));
+        assertFalse(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH1, TimeUnit.MINUTES.toMicros(1)));
+
+        inventory.markPulled(HOST1, IMAGE, AUTH1);
+        assertTrue(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH1, TimeUnit.MINUTES.toMicros(1)));
+
+        // the oldest entry is evicted
+        inventory.markMissing(HOST2, IMAGE);
+        assertFalse(inventory.isRecentlyPulled(HOST1, IMAGE, AUTH1, TimeUnit.MINUTES.toMicros(1)));
+    }
+}
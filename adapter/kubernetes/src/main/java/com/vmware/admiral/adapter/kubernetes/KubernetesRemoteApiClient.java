@@ -39,6 +39,8 @@ import javax.net.ssl.X509ExtendedKeyManager;
 
 import com.vmware.admiral.adapter.kubernetes.service.AbstractKubernetesAdapterService.KubernetesContext;
 import com.vmware.admiral.common.KubernetesHostConstants;
+import com.vmware.admiral.common.metrics.MetricRegistry;
+import com.vmware.admiral.common.metrics.MetricRegistry.Histogram;
 import com.vmware.admiral.common.util.AuthUtils;
 import com.vmware.admiral.common.util.DelegatingX509KeyManager;
 import com.vmware.admiral.common.util.ServerX509TrustManager;
@@ -79,6 +81,10 @@ public class KubernetesRemoteApiClient {
 
     private static final int REQUEST_TIMEOUT_SECONDS = 10;
 
+    private static final Histogram REQUEST_DURATION = MetricRegistry.getDefault().histogram(
+            "admiral_kubernetes_request_duration_seconds",
+            "Duration of the requests to the Kubernetes API.");
+
     private final ServiceClient serviceClient;
     private final DelegatingX509KeyManager keyManager = new DelegatingX509KeyManager();
     private ServerX509TrustManager trustManager;
@@ -384,6 +390,7 @@ public class KubernetesRemoteApiClient {
                 .setCompletion(completionHandler);
 
         prepareRequest(op, context);
+        REQUEST_DURATION.observe(op);
         serviceClient.send(op);
     }
 
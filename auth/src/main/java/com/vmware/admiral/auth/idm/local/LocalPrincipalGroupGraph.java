@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.auth.idm.local;
+
+import static com.vmware.admiral.auth.util.PrincipalUtil.encode;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import com.vmware.admiral.auth.idm.local.LocalPrincipalService.LocalPrincipalState;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+
+/**
+ * In-memory graph of the {@link LocalPrincipalState} groups of a host, used to resolve the
+ * groups a principal belongs to, directly or through other groups, without querying the index.
+ *
+ * The graph is kept current by a continuous query and by the {@link LocalPrincipalService}s of
+ * the host, which apply their updates before completing them. The groups of a principal are
+ * computed once, with a traversal which tolerates cycles, and are cached until the members of
+ * one of the traversed groups change.
+ */
+public class LocalPrincipalGroupGraph {
+
+    private static final String QUERY_NAME = "local-principal-groups";
+
+    private static final Map<ServiceHost, LocalPrincipalGroupGraph> GRAPHS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static class Group {
+        private final String id;
+        private final long version;
+        private final Set<String> membersLinks;
+
+        private Group(String id, long version, Set<String> membersLinks) {
+            this.id = id;
+            this.version = version;
+            this.membersLinks = membersLinks;
+        }
+    }
+
+    private static class Closure {
+        private final Set<String> groupLinks;
+        private final Set<String> groupIds;
+
+        private Closure(Set<String> groupLinks, Set<String> groupIds) {
+            this.groupLinks = groupLinks;
+            this.groupIds = Collections.unmodifiableSet(groupIds);
+        }
+    }
+
+    // principal link -> principal, as a group with its direct members
+    private final Map<String, Group> groups = new HashMap<>();
+    // member link -> links of the groups it is a direct member of
+    private final Map<String, Set<String>> parents = new HashMap<>();
+    // principal link -> all groups of the principal, read without locking
+    private final Map<String, Closure> closures = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    /**
+     * Returns the graph of the given host, or {@code null} if it is not started.
+     */
+    public static LocalPrincipalGroupGraph get(ServiceHost host) {
+        return GRAPHS.get(host);
+    }
+
+    /**
+     * Returns the graph of the given host, starting it if needed. The groups are loaded with the
+     * authorization context of the caller.
+     */
+    public static LocalPrincipalGroupGraph start(ServiceHost host) {
+        LocalPrincipalGroupGraph graph;
+        synchronized (GRAPHS) {
+            graph = GRAPHS.get(host);
+            if (graph != null) {
+                return graph;
+            }
+            graph = new LocalPrincipalGroupGraph();
+            GRAPHS.put(host, graph);
+        }
+
+        graph.subscribe(host);
+        graph.load(host);
+        return graph;
+    }
+
+    /**
+     * Whether the groups are loaded and lookups can be answered from the graph.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the ids of the groups the given principal is a member of, directly or through
+     * other groups.
+     */
+    public Set<String> getAllGroups(String principalId) {
+        String principalLink = UriUtils.buildUriPath(LocalPrincipalFactoryService.SELF_LINK,
+                encode(principalId));
+        Closure closure = closures.get(principalLink);
+        if (closure == null) {
+            synchronized (this) {
+                closure = closures.computeIfAbsent(principalLink, this::computeClosure);
+            }
+        }
+        return closure.groupIds;
+    }
+
+    /**
+     * Applies the given state of a principal unless a newer version is already applied.
+     */
+    public void update(LocalPrincipalState state, long version) {
+        if (state == null || state.documentSelfLink == null) {
+            return;
+        }
+        Set<String> membersLinks = state.groupMembersLinks == null || state.groupMembersLinks
+                .isEmpty() ? Collections.emptySet() : new HashSet<>(state.groupMembersLinks);
+        String id = state.id != null ? state.id : Service.getId(state.documentSelfLink);
+        apply(state.documentSelfLink, version, new Group(id, version, membersLinks));
+    }
+
+    /**
+     * Removes the given principal unless a newer version of it is already applied.
+     */
+    public void remove(String principalLink, long version) {
+        apply(principalLink, version, null);
+    }
+
+    void onPrincipalChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        for (Object json : queryTask.results.documents.values()) {
+            LocalPrincipalState state = Utils.fromJson(json, LocalPrincipalState.class);
+            if (Action.DELETE.toString().equals(state.documentUpdateAction)) {
+                remove(state.documentSelfLink, state.documentVersion);
+            } else {
+                update(state, state.documentVersion);
+            }
+        }
+    }
+
+    private synchronized void apply(String groupLink, long version, Group group) {
+        Group current = groups.get(groupLink);
+        if (current != null && current.version > version) {
+            return;
+        }
+        if (group != null) {
+            groups.put(groupLink, group);
+        } else {
+            groups.remove(groupLink);
+        }
+
+        Set<String> oldMembers = current != null ? current.membersLinks
+                : Collections.emptySet();
+        Set<String> newMembers = group != null ? group.membersLinks : Collections.emptySet();
+        if (oldMembers.equals(newMembers)) {
+            return;
+        }
+
+        Set<String> changed = new HashSet<>();
+        changed.add(groupLink);
+        for (String member : oldMembers) {
+            if (!newMembers.contains(member)) {
+                changed.add(member);
+                Set<String> memberParents = parents.get(member);
+                if (memberParents != null && memberParents.remove(groupLink)
+                        && memberParents.isEmpty()) {
+                    parents.remove(member);
+                }
+            }
+        }
+        for (String member : newMembers) {
+            if (!oldMembers.contains(member)) {
+                changed.add(member);
+                parents.computeIfAbsent(member, m -> new HashSet<>()).add(groupLink);
+            }
+        }
+
+        // A principal is affected if it is an added or removed member, or if it reaches the
+        // changed group or such a member through its groups.
+        closures.entrySet().removeIf(e -> changed.contains(e.getKey())
+                || !Collections.disjoint(e.getValue().groupLinks, changed));
+    }
+
+    private Closure computeClosure(String principalLink) {
+        Set<String> groupLinks = new HashSet<>();
+        Set<String> groupIds = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(principalLink);
+        while (!pending.isEmpty()) {
+            Set<String> memberParents = parents.get(pending.poll());
+            if (memberParents == null) {
+                continue;
+            }
+            for (String groupLink : memberParents) {
+                if (groupLinks.add(groupLink)) {
+                    groupIds.add(groups.get(groupLink).id);
+                    pending.add(groupLink);
+                }
+            }
+        }
+        return new Closure(groupLinks, groupIds);
+    }
+
+    private void subscribe(ServiceHost host) {
+        CommonContinuousQueries.subscribeTo(host, QUERY_NAME,
+                Query.Builder.create().addKindFieldClause(LocalPrincipalState.class).build(),
+                this::onPrincipalChange);
+    }
+
+    private void load(ServiceHost host) {
+        QueryTask queryTask = QueryUtil.buildQuery(LocalPrincipalState.class, true);
+        QueryUtil.addExpandOption(queryTask);
+
+        new ServiceDocumentQuery<>(host, LocalPrincipalState.class)
+                .query(queryTask, (r) -> {
+                    if (r.hasException()) {
+                        host.log(Level.WARNING, "Failed to load the local principal groups: %s",
+                                Utils.toString(r.getException()));
+                        GRAPHS.remove(host, this);
+                    } else if (r.hasResult()) {
+                        update(r.getResult(), r.getResult().documentVersion);
+                    } else {
+                        ready = true;
+                    }
+                });
+    }
+}
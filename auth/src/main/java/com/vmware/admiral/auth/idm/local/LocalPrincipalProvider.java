@@ -49,10 +49,12 @@ public class LocalPrincipalProvider implements PrincipalProvider {
     private static final String FILTER_QUERY_KEY = "$filter";
 
     private Service service;
+    private LocalPrincipalGroupGraph groupGraph;
 
     @Override
     public void init(Service service) {
         this.service = service;
+        this.groupGraph = LocalPrincipalGroupGraph.start(service.getHost());
     }
 
     @Override
@@ -151,6 +153,10 @@ public class LocalPrincipalProvider implements PrincipalProvider {
     public DeferredResult<Set<String>> getAllGroupsForPrincipal(Operation op, String principalId) {
         assertNotNullOrEmpty(principalId, "principalId");
 
+        if (groupGraph.isReady()) {
+            return DeferredResult.completed(new HashSet<>(groupGraph.getAllGroups(principalId)));
+        }
+
         return getDirectlyAssignedGroupsForPrincipal(principalId)
                 .thenCompose(groups -> getIndirectlyAssignedGroupsForPrincipal(groups, null, null));
     }
@@ -117,6 +117,18 @@ public class LocalPrincipalService extends StatefulService {
         }
 
         LocalPrincipalState state = post.getBody(LocalPrincipalState.class);
+
+        // make the new principal visible to the group graph of this host before the caller
+        // sees it completed, the continuous query notification may come later
+        post.nestCompletion((o, e) -> {
+            if (e != null) {
+                post.fail(e);
+                return;
+            }
+            updateGroupGraph(graph -> graph.update(state, state.documentVersion));
+            post.complete();
+        });
+
         try {
             validatePrincipal(state);
 
@@ -140,6 +152,8 @@ public class LocalPrincipalService extends StatefulService {
         try {
             validatePrincipalPatch(patchState, currentState);
             PropertyUtils.mergeServiceDocuments(currentState, patchState);
+            updateGroupGraph(graph -> graph.update(currentState,
+                    currentState.documentVersion + 1));
             patch.complete();
         } catch (Exception ex) {
             patch.fail(ex);
@@ -150,6 +164,15 @@ public class LocalPrincipalService extends StatefulService {
     public void handleDelete(Operation delete) {
         LocalPrincipalState state = getState(delete);
         String stateId = Service.getId(state.documentSelfLink);
+        delete.nestCompletion((o, e) -> {
+            if (e != null) {
+                delete.fail(e);
+                return;
+            }
+            updateGroupGraph(graph -> graph.remove(state.documentSelfLink,
+                    state.documentVersion + 1));
+            delete.complete();
+        });
         if (state.type == null || LocalPrincipalType.USER == state.type) {
             deleteUserState(stateId, delete);
         } else {
@@ -157,6 +180,13 @@ public class LocalPrincipalService extends StatefulService {
         }
     }
 
+    private void updateGroupGraph(Consumer<LocalPrincipalGroupGraph> update) {
+        LocalPrincipalGroupGraph graph = LocalPrincipalGroupGraph.get(getHost());
+        if (graph != null) {
+            update.accept(graph);
+        }
+    }
+
     private void validatePrincipal(LocalPrincipalState principalState) {
         /*
          * Keep these properties optional for now.
@@ -146,7 +146,7 @@ public class UserGroupsUpdater {
             result = service.sendWithDeferredResult(getUserState, UserState.class);
         }
 
-        result.thenApply(us -> new Pair<>(us, (Throwable) null))
+        return result.thenApply(us -> new Pair<>(us, (Throwable) null))
                 .exceptionally(ex -> new Pair<>(null, ex))
                 .thenCompose(pair -> {
                     if (pair.right != null) {
@@ -182,8 +182,6 @@ public class UserGroupsUpdater {
 
                     return service.sendWithDeferredResult(patchOp, UserState.class);
                 });
-
-        return result;
     }
 
     private void validateUsersForDuplicates() {
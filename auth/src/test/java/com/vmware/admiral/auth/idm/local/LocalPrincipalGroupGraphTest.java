@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.auth.idm.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static com.vmware.admiral.auth.util.PrincipalUtil.encode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.vmware.admiral.auth.idm.local.LocalPrincipalService.LocalPrincipalState;
+import com.vmware.admiral.auth.idm.local.LocalPrincipalService.LocalPrincipalType;
+import com.vmware.xenon.common.UriUtils;
+
+public class LocalPrincipalGroupGraphTest {
+
+    private static final String USER = "fritz@admiral.com";
+
+    private final LocalPrincipalGroupGraph graph = new LocalPrincipalGroupGraph();
+
+    @Test
+    public void testDeepHierarchy() {
+        int depth = 100;
+        group("group-0", 0, USER);
+        for (int i = 1; i < depth; i++) {
+            group("group-" + i, 0, "group-" + (i - 1));
+        }
+
+        Set<String> groups = graph.getAllGroups(USER);
+        assertEquals(depth, groups.size());
+        for (int i = 0; i < depth; i++) {
+            assertTrue(groups.contains("group-" + i));
+        }
+        assertEquals(depth - 51, graph.getAllGroups("group-50").size());
+
+        // cutting the chain in the middle affects the principals below the cut only
+        group("group-50", 1);
+        assertEquals(50, graph.getAllGroups(USER).size());
+        assertEquals(depth - 51, graph.getAllGroups("group-50").size());
+        assertEquals(depth - 52, graph.getAllGroups("group-51").size());
+    }
+
+    @Test
+    public void testCyclicHierarchy() {
+        group("a", 0, USER, "c");
+        group("b", 0, "a");
+        group("c", 0, "b");
+        group("self", 0, "self", USER);
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "self")),
+                graph.getAllGroups(USER));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), graph.getAllGroups("a"));
+        assertEquals(new HashSet<>(Arrays.asList("self")), graph.getAllGroups("self"));
+
+        // breaking the cycle
+        group("a", 1, USER);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "self")),
+                graph.getAllGroups(USER));
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), graph.getAllGroups("a"));
+        assertEquals(new HashSet<>(Arrays.asList("c")), graph.getAllGroups("b"));
+        assertTrue(graph.getAllGroups("c").isEmpty());
+    }
+
+    @Test
+    public void testUpdatesAndRemovals() {
+        group("developers", 0, USER);
+        group("employees", 0, "developers");
+        assertEquals(new HashSet<>(Arrays.asList("developers", "employees")),
+                graph.getAllGroups(USER));
+
+        // an older version, e.g. a late notification, is ignored
+        group("employees", 2, "developers");
+        group("employees", 1);
+        assertEquals(2, graph.getAllGroups(USER).size());
+
+        graph.remove(link("developers"), 1);
+        assertTrue(graph.getAllGroups(USER).isEmpty());
+
+        group("developers", 2, USER);
+        assertEquals(new HashSet<>(Arrays.asList("developers", "employees")),
+                graph.getAllGroups(USER));
+
+        graph.remove(link("employees"), 3);
+        assertEquals(new HashSet<>(Arrays.asList("developers")), graph.getAllGroups(USER));
+    }
+
+    private void group(String id, long version, String... members) {
+        LocalPrincipalState state = new LocalPrincipalState();
+        state.id = id;
+        state.name = id;
+        state.type = LocalPrincipalType.GROUP;
+        state.documentSelfLink = link(id);
+        state.groupMembersLinks = Arrays.stream(members)
+                .map(LocalPrincipalGroupGraphTest::link)
+                .collect(Collectors.toList());
+        graph.update(state, version);
+    }
+
+    private static String link(String id) {
+        return UriUtils.buildUriPath(LocalPrincipalFactoryService.SELF_LINK, encode(id));
+    }
+}
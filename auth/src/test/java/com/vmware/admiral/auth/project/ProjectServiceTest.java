@@ -49,7 +49,9 @@ import com.vmware.admiral.compute.container.GroupResourcePlacementService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationFactoryService;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState;
-import com.vmware.admiral.service.common.UniquePropertiesService.UniquePropertiesState;
+import com.vmware.admiral.service.common.UniquePropertiesService;
+import com.vmware.admiral.service.common.UniquePropertyClaimService;
+import com.vmware.admiral.service.common.UniquePropertyClaimService.UniquePropertyClaimState;
 import com.vmware.admiral.service.common.harbor.Harbor;
 import com.vmware.admiral.service.common.harbor.mock.MockHarborApiProxyService;
 import com.vmware.photon.controller.model.resources.ResourcePoolService;
@@ -1317,18 +1319,18 @@ public class ProjectServiceTest extends AuthBaseTest {
         String projectIndex = project.customProperties
                 .get(ProjectService.CUSTOM_PROPERTY_PROJECT_INDEX);
 
-        String projectIndexesUri = ProjectService.UNIQUE_PROJECT_INDEXES_SERVICE_LINK;
-        List<String> claimedIndexes = getDocumentNoWait(UniquePropertiesState.class,
-                projectIndexesUri).uniqueProperties;
+        String claimLink = UniquePropertyClaimService.buildClaimLink(
+                UniquePropertiesService.PROJECT_INDEXES_ID, projectIndex);
+        UniquePropertyClaimState claim = getDocumentNoWait(UniquePropertyClaimState.class,
+                claimLink);
 
-        assertTrue(claimedIndexes.contains(projectIndex));
+        assertTrue(claim.claimed);
 
         deleteProject(project);
 
-        claimedIndexes = getDocumentNoWait(UniquePropertiesState.class,
-                projectIndexesUri).uniqueProperties;
+        claim = getDocumentNoWait(UniquePropertyClaimState.class, claimLink);
 
-        assertTrue(!claimedIndexes.contains(projectIndex));
+        assertTrue(!claim.claimed);
     }
 
     @Test
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares the results of a JMH run, written with <code>-rf json</code>, with the results of a
+ * previous run and fails when the score of a benchmark regressed more than the given percentage.
+ * A lower score is a regression for the throughput mode and a higher score is a regression for
+ * the time modes. Benchmarks which are not in the baseline are not compared.
+ * <p>
+ * If the baseline does not exist, the results are stored as the baseline.
+ * <p>
+ * Usage: <code>BenchmarkResultComparator results.json baseline.json maxRegressionPercent</code>
+ */
+public class BenchmarkResultComparator {
+
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    static class Score {
+        String mode;
+        double score;
+        String unit;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BenchmarkResultComparator results.json baseline.json"
+                    + " maxRegressionPercent");
+            System.exit(2);
+        }
+        Path results = Paths.get(args[0]);
+        Path baseline = Paths.get(args[1]);
+        double maxRegressionPercent = Double.parseDouble(args[2]);
+
+        if (!Files.exists(baseline)) {
+            Files.copy(results, baseline);
+            System.out.printf("No baseline found, stored the results as %s%n", baseline);
+            return;
+        }
+
+        List<String> regressions = compare(read(results), read(baseline), maxRegressionPercent);
+        if (!regressions.isEmpty()) {
+            System.err.printf("Benchmarks regressed more than %s%% against %s:%n",
+                    maxRegressionPercent, baseline);
+            regressions.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.printf("No benchmark regressed more than %s%% against %s%n",
+                maxRegressionPercent, baseline);
+    }
+
+    /**
+     * Returns a description of each benchmark which regressed more than the given percentage.
+     */
+    static List<String> compare(Map<String, Score> results, Map<String, Score> baseline,
+            double maxRegressionPercent) {
+        List<String> regressions = new ArrayList<>();
+        for (Entry<String, Score> e : results.entrySet()) {
+            Score current = e.getValue();
+            Score previous = baseline.get(e.getKey());
+            if (previous == null || !previous.mode.equals(current.mode)
+                    || !previous.unit.equals(current.unit) || previous.score == 0) {
+                continue;
+            }
+            double change = (current.score - previous.score) / previous.score * 100;
+            double regression = THROUGHPUT_MODE.equals(current.mode) ? -change : change;
+            if (regression > maxRegressionPercent) {
+                regressions.add(String.format("%s: %.3f %s, baseline %.3f %s (%.1f%%)",
+                        e.getKey(), current.score, current.unit, previous.score, previous.unit,
+                        change));
+            }
+        }
+        return regressions;
+    }
+
+    static Map<String, Score> read(Path path) throws IOException {
+        return parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the scores by benchmark name and parameters.
+     */
+    static Map<String, Score> parse(String json) {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonElement element : new JsonParser().parse(json).getAsJsonArray()) {
+            JsonObject result = element.getAsJsonObject();
+            JsonObject primaryMetric = result.getAsJsonObject("primaryMetric");
+
+            Score score = new Score();
+            score.mode = result.get("mode").getAsString();
+            score.score = primaryMetric.get("score").getAsDouble();
+            score.unit = primaryMetric.get("scoreUnit").getAsString();
+            scores.put(key(result), score);
+        }
+        return scores;
+    }
+
+    private static String key(JsonObject result) {
+        StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+        if (result.has("params")) {
+            Map<String, String> params = new TreeMap<>();
+            result.getAsJsonObject("params").entrySet()
+                    .forEach(p -> params.put(p.getKey(), p.getValue().getAsString()));
+            params.forEach((name, value) -> key.append(':').append(name).append('=')
+                    .append(value));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.admiral.compute.BindingEvaluator;
+import com.vmware.admiral.compute.ResourceType;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.content.Binding;
+import com.vmware.admiral.compute.content.Binding.BindingPlaceholder;
+import com.vmware.admiral.compute.content.Binding.ComponentBinding;
+import com.vmware.admiral.compute.content.ComponentTemplate;
+import com.vmware.admiral.compute.content.CompositeTemplate;
+import com.vmware.admiral.host.HostInitComputeServicesConfig;
+
+/**
+ * Evaluation of the design time bindings of a template, where each component binds a few fields
+ * of the previous one, so the bindings also resolve bindings of the referenced components.
+ * <p>
+ * The bindings are kept in the template after the evaluation, so the same template is evaluated
+ * by every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BindingEvaluatorBenchmark {
+
+    @Param({ "2", "10", "50" })
+    public int components;
+
+    private CompositeTemplate template;
+
+    @Setup
+    public void setUp() {
+        HostInitComputeServicesConfig.initCompositeComponentRegistry();
+
+        template = new CompositeTemplate();
+        template.components = new LinkedHashMap<>();
+        template.bindings = new ArrayList<>();
+        for (int i = 0; i < components; i++) {
+            ContainerDescription description = new ContainerDescription();
+            description.name = "component-" + i;
+            description.image = "registry.hub.docker.com/library/wordpress:4.9";
+            description.hostname = description.name + ".local";
+            description.workingDir = "/var/www/html";
+            description._cluster = 2;
+
+            ComponentTemplate<ContainerDescription> component = new ComponentTemplate<>();
+            component.type = ResourceType.CONTAINER_TYPE.getContentType();
+            component.data = description;
+            template.components.put(description.name, component);
+
+            if (i > 0) {
+                String previous = "component-" + (i - 1);
+                List<Binding> bindings = Arrays.asList(
+                        binding("_cluster", previous + "~_cluster"),
+                        binding("hostname", previous + "~hostname"),
+                        binding("working_dir", previous + "~working_dir"));
+                template.bindings.add(new ComponentBinding(description.name, bindings));
+            }
+        }
+    }
+
+    @Benchmark
+    public CompositeTemplate evaluateBindings() {
+        BindingEvaluator.evaluateBindings(template);
+        return template;
+    }
+
+    private static Binding binding(String targetField, String placeholder) {
+        return new Binding(Arrays.asList(targetField), String.format("${%s}", placeholder),
+                new BindingPlaceholder(placeholder));
+    }
+}
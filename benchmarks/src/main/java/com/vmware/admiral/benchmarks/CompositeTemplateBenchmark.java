@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.admiral.common.util.FileUtil;
+import com.vmware.admiral.common.util.YamlMapper;
+import com.vmware.admiral.compute.content.CompositeTemplate;
+import com.vmware.admiral.compute.content.CompositeTemplateUtil;
+import com.vmware.admiral.compute.content.compose.DockerCompose;
+import com.vmware.admiral.host.HostInitComputeServicesConfig;
+
+/**
+ * Round trips of templates through {@link CompositeTemplateUtil} and {@link YamlMapper}, as done
+ * by the import and export of templates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompositeTemplateBenchmark {
+
+    private String templateYaml;
+    private String templateJson;
+    private String composeYaml;
+
+    @Setup
+    public void setUp() throws IOException {
+        HostInitComputeServicesConfig.initCompositeComponentRegistry();
+
+        templateYaml = FileUtil.getResourceAsString("/composite.wordpress.yaml", true);
+        templateJson = YamlMapper.fromYamlToJson(templateYaml);
+        composeYaml = FileUtil.getResourceAsString("/docker.wordpress.yaml", true);
+    }
+
+    @Benchmark
+    public String compositeTemplateRoundTrip() throws IOException {
+        CompositeTemplate template = CompositeTemplateUtil.deserializeCompositeTemplate(
+                templateYaml);
+        return CompositeTemplateUtil.serializeCompositeTemplate(template);
+    }
+
+    @Benchmark
+    public String dockerComposeRoundTrip() throws IOException {
+        DockerCompose compose = CompositeTemplateUtil.deserializeDockerCompose(composeYaml);
+        CompositeTemplate template = CompositeTemplateUtil
+                .fromDockerComposeToCompositeTemplate(compose);
+        return CompositeTemplateUtil.serializeDockerCompose(
+                CompositeTemplateUtil.fromCompositeTemplateToDockerCompose(template));
+    }
+
+    @Benchmark
+    public String yamlToJson() throws IOException {
+        return YamlMapper.fromYamlToJson(templateYaml);
+    }
+
+    @Benchmark
+    public String jsonToYaml() throws IOException {
+        return YamlMapper.fromJsonToYaml(templateJson);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.admiral.adapter.docker.service.ContainerStateMapper;
+import com.vmware.admiral.common.util.FileUtil;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Mapping of the output of a container inspect to a {@link ContainerState}, as done for every
+ * container on each data collection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContainerStateMapperBenchmark {
+
+    private String inspectJson;
+    private Map<String, Object> inspect;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        inspectJson = FileUtil.getResourceAsString("/container-inspect.json", true);
+        inspect = Utils.fromJson(inspectJson, Map.class);
+    }
+
+    @Benchmark
+    public ContainerState mapInspect() {
+        ContainerState containerState = new ContainerState();
+        ContainerStateMapper.propertiesToContainerState(containerState, inspect);
+        return containerState;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public ContainerState parseAndMapInspect() {
+        ContainerState containerState = new ContainerState();
+        ContainerStateMapper.propertiesToContainerState(containerState,
+                Utils.fromJson(inspectJson, Map.class));
+        return containerState;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.X509TrustManager;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.admiral.common.util.DelegatingX509TrustManager;
+import com.vmware.photon.controller.model.security.util.CertificateUtil;
+
+/**
+ * Verification of server certificates with a {@link DelegatingX509TrustManager} holding a
+ * delegate per trusted certificate, as the trust manager of the host does for the certificates
+ * of the docker hosts and registries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DelegatingX509TrustManagerBenchmark {
+
+    private static final String AUTH_TYPE = "RSA";
+
+    @Param({ "1", "10", "100" })
+    public int trustedCertificates;
+
+    private DelegatingX509TrustManager trustManager;
+    private X509Certificate[] trustedChain;
+    private X509Certificate[] untrustedChain;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        trustManager = new DelegatingX509TrustManager();
+        for (int i = 0; i < trustedCertificates; i++) {
+            X509Certificate certificate = createCertificate("trusted-" + i, i, keyPair);
+            trustManager.putDelegate("trusted-" + i, (X509TrustManager) CertificateUtil
+                    .getTrustManagers("trusted-" + i, CertificateUtil.toPEMformat(certificate))[0]);
+            trustedChain = new X509Certificate[] { certificate };
+        }
+        untrustedChain = new X509Certificate[] {
+                createCertificate("untrusted", trustedCertificates,
+                        generator.generateKeyPair()) };
+    }
+
+    @Benchmark
+    public X509Certificate[] checkTrustedServer() throws CertificateException {
+        trustManager.checkServerTrusted(trustedChain, AUTH_TYPE);
+        return trustedChain;
+    }
+
+    @Benchmark
+    public CertificateException checkUntrustedServer() {
+        try {
+            trustManager.checkServerTrusted(untrustedChain, AUTH_TYPE);
+        } catch (CertificateException e) {
+            return e;
+        }
+        throw new IllegalStateException("Untrusted certificate accepted");
+    }
+
+    private static X509Certificate createCertificate(String commonName, int serial,
+            KeyPair keyPair) throws Exception {
+        X500Name name = new X500Name("CN=" + commonName);
+        long now = System.currentTimeMillis();
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name,
+                BigInteger.valueOf(serial + 1), new Date(now - TimeUnit.DAYS.toMillis(1)),
+                new Date(now + TimeUnit.DAYS.toMillis(365)), name, keyPair.getPublic());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(
+                new JcaContentSignerBuilder("SHA256WithRSA").build(keyPair.getPrivate())));
+    }
+}
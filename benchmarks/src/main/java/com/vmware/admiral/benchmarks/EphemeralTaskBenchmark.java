@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import static com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption.AUTO_MERGE_IF_NOT_NULL;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.vmware.admiral.service.common.AbstractTaskStatefulService;
+import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.TaskServiceDocument;
+import com.vmware.xenon.common.FactoryService;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.common.test.VerificationHost;
+
+/**
+ * Runs a task of the given number of sub-stage transitions, with and without keeping the
+ * transitions in memory, see {@link AbstractTaskStatefulService#setEphemeral}. Reports the
+ * latency of the task from its creation to its completion, and the number of writes of its
+ * document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EphemeralTaskBenchmark {
+
+    private static final Map<String, CompletableFuture<Long>> finishedTasks =
+            new ConcurrentHashMap<>();
+
+    @Param({ "false", "true" })
+    public boolean ephemeral;
+
+    @Param({ "5", "20" })
+    public int steps;
+
+    private VerificationHost host;
+    private TestRequestSender sender;
+    private String factoryLink;
+
+    /**
+     * The writes of the task documents per run, the initial POST and one per new version.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Writes {
+        public long writes;
+    }
+
+    @Setup
+    public void setUp() throws Throwable {
+        host = VerificationHost.create(0);
+        host.start();
+        host.setLoggingLevel(Level.WARNING);
+        factoryLink = ephemeral ? EphemeralStepsTaskService.FACTORY_LINK
+                : StepsTaskService.FACTORY_LINK;
+        host.startServiceAndWait(FactoryService.create(ephemeral
+                ? EphemeralStepsTaskService.class : StepsTaskService.class), factoryLink, null);
+        sender = host.getTestRequestSender();
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.tearDown();
+    }
+
+    @Benchmark
+    public long runTask(Writes writes) throws Exception {
+        StepsTaskState task = new StepsTaskState();
+        task.steps = steps;
+        task.step = 0;
+        String taskLink = sender.sendAndWait(Operation.createPost(host, factoryLink)
+                .setBody(task), StepsTaskState.class).documentSelfLink;
+
+        long version = finishedTasks.computeIfAbsent(taskLink, k -> new CompletableFuture<>())
+                .get(1, TimeUnit.MINUTES);
+        finishedTasks.remove(taskLink);
+        writes.writes += version + 1;
+        return version;
+    }
+
+    public static class StepsTaskState extends TaskServiceDocument<DefaultSubStage> {
+        public Integer steps;
+
+        @PropertyOptions(usage = AUTO_MERGE_IF_NOT_NULL)
+        public Integer step;
+    }
+
+    public static class StepsTaskService
+            extends AbstractTaskStatefulService<StepsTaskState, DefaultSubStage> {
+
+        public static final String FACTORY_LINK = "/benchmarks/steps-tasks";
+
+        public StepsTaskService() {
+            super(StepsTaskState.class, DefaultSubStage.class, "Steps Task");
+            super.toggleOption(ServiceOption.PERSISTENCE, true);
+            super.toggleOption(ServiceOption.REPLICATION, true);
+            super.toggleOption(ServiceOption.OWNER_SELECTION, true);
+        }
+
+        @Override
+        protected void handleStartedStagePatch(StepsTaskState state) {
+            switch (state.taskSubStage) {
+            case CREATED:
+            case PROCESSING:
+                if (state.step < state.steps) {
+                    proceedTo(DefaultSubStage.PROCESSING, s -> s.step = state.step + 1);
+                } else {
+                    complete();
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        @Override
+        protected void handleFinishedStagePatch(StepsTaskState state) {
+            super.handleFinishedStagePatch(state);
+            // the version of the completed document
+            finishedTasks.computeIfAbsent(state.documentSelfLink, k -> new CompletableFuture<>())
+                    .complete(state.documentVersion);
+        }
+    }
+
+    public static class EphemeralStepsTaskService extends StepsTaskService {
+        public static final String FACTORY_LINK = "/benchmarks/ephemeral-steps-tasks";
+
+        public EphemeralStepsTaskService() {
+            setEphemeral(true);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.vmware.admiral.compute.container.HostPortProfileService;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileReservationRequest;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileReservationRequestMode;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileState;
+import com.vmware.xenon.common.FactoryService;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.common.test.VerificationHost;
+
+/**
+ * Reservation and release of host ports through a {@link HostPortProfileService} of a host which
+ * already has the given number of ports reserved by other containers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HostPortProfileBenchmark {
+
+    private static final long START_PORT = 20000;
+    private static final long END_PORT = 60000;
+    private static final int ALLOCATED_PORTS = 5;
+
+    @Param({ "0", "100", "500" })
+    public int reservedPorts;
+
+    private VerificationHost host;
+    private TestRequestSender sender;
+    private String profileLink;
+
+    @Setup
+    public void setUp() throws Throwable {
+        host = VerificationHost.create(0);
+        host.start();
+        host.setLoggingLevel(Level.WARNING);
+        host.startServiceAndWait(FactoryService.create(HostPortProfileService.class),
+                HostPortProfileService.FACTORY_LINK, null);
+        sender = host.getTestRequestSender();
+
+        HostPortProfileState profile = new HostPortProfileState();
+        profile.hostLink = "/resources/compute/benchmark-host";
+        profile.startPort = START_PORT;
+        profile.endPort = END_PORT;
+        profile.reservedPorts = new LinkedHashMap<>();
+        for (long port = START_PORT; port < START_PORT + reservedPorts; port++) {
+            profile.reservedPorts.put(port, "/resources/containers/other-" + (port % 100));
+        }
+        profileLink = sender.sendAndWait(Operation.createPost(host,
+                HostPortProfileService.FACTORY_LINK).setBody(profile),
+                HostPortProfileState.class).documentSelfLink;
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.tearDown();
+    }
+
+    @Benchmark
+    public HostPortProfileState allocateAndRelease() {
+        String containerLink = "/resources/containers/" + Thread.currentThread().getId();
+
+        HostPortProfileReservationRequest allocate = new HostPortProfileReservationRequest();
+        allocate.containerLink = containerLink;
+        allocate.mode = HostPortProfileReservationRequestMode.ALLOCATE;
+        allocate.additionalHostPortCount = ALLOCATED_PORTS;
+        sender.sendAndWait(Operation.createPatch(UriUtils.buildUri(host, profileLink))
+                .setBody(allocate), HostPortProfileState.class);
+
+        HostPortProfileReservationRequest release = new HostPortProfileReservationRequest();
+        release.containerLink = containerLink;
+        release.mode = HostPortProfileReservationRequestMode.RELEASE;
+        return sender.sendAndWait(Operation.createPatch(UriUtils.buildUri(host, profileLink))
+                .setBody(release), HostPortProfileState.class);
+    }
+}
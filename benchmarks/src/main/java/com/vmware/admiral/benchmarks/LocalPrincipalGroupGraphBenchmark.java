@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import static com.vmware.admiral.auth.util.PrincipalUtil.encode;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.admiral.auth.idm.local.LocalPrincipalFactoryService;
+import com.vmware.admiral.auth.idm.local.LocalPrincipalGroupGraph;
+import com.vmware.admiral.auth.idm.local.LocalPrincipalService.LocalPrincipalState;
+import com.vmware.admiral.auth.idm.local.LocalPrincipalService.LocalPrincipalType;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Lookup of the groups of a user which is a member of a chain of nested groups of the given
+ * depth. The cached lookup should not depend on the depth, unlike the lookup after the members of
+ * the outermost group changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocalPrincipalGroupGraphBenchmark {
+
+    private static final String USER = "user@admiral.com";
+
+    @Param({ "1", "10", "100", "1000" })
+    public int depth;
+
+    private LocalPrincipalGroupGraph graph;
+    // the outermost group with and without another member
+    private LocalPrincipalState[] outermostGroup = new LocalPrincipalState[2];
+    private long version;
+
+    @Setup
+    public void setUp() {
+        graph = new LocalPrincipalGroupGraph();
+        String memberLink = link(USER);
+        for (int i = 0; i < depth; i++) {
+            outermostGroup[0] = group("group-" + i, memberLink);
+            graph.update(outermostGroup[0], version);
+            memberLink = outermostGroup[0].documentSelfLink;
+        }
+        outermostGroup[1] = group(outermostGroup[0].id,
+                outermostGroup[0].groupMembersLinks.get(0), link("other@admiral.com"));
+        graph.getAllGroups(USER);
+    }
+
+    @Benchmark
+    public Set<String> cachedLookup() {
+        return graph.getAllGroups(USER);
+    }
+
+    @Benchmark
+    public Set<String> lookupAfterChange() {
+        version++;
+        graph.update(outermostGroup[(int) (version % 2)], version);
+        return graph.getAllGroups(USER);
+    }
+
+    private static LocalPrincipalState group(String id, String... membersLinks) {
+        LocalPrincipalState state = new LocalPrincipalState();
+        state.id = id;
+        state.name = id;
+        state.type = LocalPrincipalType.GROUP;
+        state.documentSelfLink = link(id);
+        state.groupMembersLinks = Arrays.asList(membersLinks);
+        return state;
+    }
+
+    private static String link(String id) {
+        return UriUtils.buildUriPath(LocalPrincipalFactoryService.SELF_LINK, encode(id));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.monitoring;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.AggregationType;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Bin updates of the {@link InMemoryResourceMetricService}: the merge of the stats of a single
+ * collection into the kept time series and the recording of single samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InMemoryResourceMetricBenchmark {
+
+    private static final long BIN_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Param({ "60", "1440" })
+    public int bins;
+
+    private TimeSeriesStats target;
+    private TimeSeriesStats collection;
+    private long nowMicros;
+
+    @Setup
+    public void setUp() {
+        nowMicros = Utils.getNowMicrosUtc();
+        target = new TimeSeriesStats(bins, BIN_DURATION_MILLIS, EnumSet.allOf(
+                AggregationType.class));
+        long binDurationMicros = TimeUnit.MILLISECONDS.toMicros(BIN_DURATION_MILLIS);
+        for (int i = bins; i > 0; i--) {
+            target.add(nowMicros - i * binDurationMicros, i, 1);
+        }
+
+        // a collection reports a few samples of the current bin
+        collection = new TimeSeriesStats(bins, BIN_DURATION_MILLIS, EnumSet.allOf(
+                AggregationType.class));
+        for (int i = 0; i < 5; i++) {
+            collection.add(nowMicros + i, i, 1);
+        }
+    }
+
+    @Benchmark
+    public TimeSeriesStats mergeCollection() {
+        InMemoryResourceMetricService.merge(target, collection);
+        return target;
+    }
+
+    @Benchmark
+    public TimeSeriesStats addSample() {
+        target.add(nowMicros, 42, 1);
+        return target;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+import com.vmware.xenon.services.rdbms.PostgresSchemaManager.TableDescription;
+
+/**
+ * SQL generation of {@link PostgresQueryConverter} for queries of containers, as sent by the UI
+ * and the container related tasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PostgresQueryConverterBenchmark {
+
+    private TableDescription table;
+    private Query kindQuery;
+    private Query containersOfHostQuery;
+    private Query containerSearchQuery;
+
+    @Setup
+    public void setUp() {
+        PostgresSchemaManager schemaManager = new PostgresSchemaManager(new ServiceHost() {
+        });
+        schemaManager.addTable(td -> td.useFactoryService(ContainerFactoryService.class));
+        table = schemaManager.getTableDescriptionForFactoryLink(ContainerFactoryService.SELF_LINK);
+
+        kindQuery = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .build();
+
+        containersOfHostQuery = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addFieldClause(ContainerState.FIELD_NAME_PARENT_LINK,
+                        UriUtils.buildUriPath("/resources/compute", "docker-host"))
+                .addInClause(ContainerState.FIELD_NAME_POWER_STATE,
+                        Arrays.asList(PowerState.RUNNING.name(), PowerState.STOPPED.name(),
+                                PowerState.PAUSED.name()))
+                .addCompositeFieldClause(ContainerState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        "__containerHostType", "DOCKER")
+                .build();
+
+        containerSearchQuery = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addFieldClause(ContainerState.FIELD_NAME_NAMES, "*wordpress*",
+                        MatchType.WILDCARD, Occurance.SHOULD_OCCUR)
+                .addFieldClause(ContainerState.FIELD_NAME_IMAGE, "*wordpress*",
+                        MatchType.WILDCARD, Occurance.SHOULD_OCCUR)
+                .addFieldClause(ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK,
+                        "/resources/composite-components/", MatchType.PREFIX,
+                        Occurance.SHOULD_OCCUR)
+                .build();
+    }
+
+    @Benchmark
+    public String convertKindQuery() {
+        return PostgresQueryConverter.convert(kindQuery, null, table);
+    }
+
+    @Benchmark
+    public String convertContainersOfHostQuery() {
+        return PostgresQueryConverter.convert(containersOfHostQuery, null, table);
+    }
+
+    @Benchmark
+    public String convertContainerSearchQuery() {
+        return PostgresQueryConverter.convert(containerSearchQuery, null, table);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vmware.admiral.benchmarks.BenchmarkResultComparator.Score;
+
+public class BenchmarkResultComparatorTest {
+
+    private static final String BASELINE = "["
+            + result("Foo.bar", "thrpt", "{\"size\": \"10\"}", 1000, "ops/s") + ","
+            + result("Foo.bar", "thrpt", "{\"size\": \"100\"}", 100, "ops/s") + ","
+            + result("Foo.time", "avgt", null, 50, "us/op")
+            + "]";
+
+    @Test
+    public void testParse() {
+        Map<String, Score> scores = BenchmarkResultComparator.parse(BASELINE);
+
+        assertEquals(3, scores.size());
+        Score score = scores.get("Foo.bar:size=100");
+        assertEquals("thrpt", score.mode);
+        assertEquals(100, score.score, 0);
+        assertEquals("ops/s", score.unit);
+        assertTrue(scores.containsKey("Foo.time"));
+    }
+
+    @Test
+    public void testCompareWithinLimit() {
+        String results = "["
+                + result("Foo.bar", "thrpt", "{\"size\": \"10\"}", 950, "ops/s") + ","
+                + result("Foo.bar", "thrpt", "{\"size\": \"100\"}", 200, "ops/s") + ","
+                + result("Foo.time", "avgt", null, 40, "us/op") + ","
+                + result("Foo.added", "thrpt", null, 1, "ops/s")
+                + "]";
+
+        List<String> regressions = BenchmarkResultComparator.compare(
+                BenchmarkResultComparator.parse(results),
+                BenchmarkResultComparator.parse(BASELINE), 10);
+
+        assertTrue(regressions.toString(), regressions.isEmpty());
+    }
+
+    @Test
+    public void testCompareRegressions() {
+        String results = "["
+                + result("Foo.bar", "thrpt", "{\"size\": \"10\"}", 850, "ops/s") + ","
+                + result("Foo.bar", "thrpt", "{\"size\": \"100\"}", 100, "ops/s") + ","
+                + result("Foo.time", "avgt", null, 60, "us/op")
+                + "]";
+
+        List<String> regressions = BenchmarkResultComparator.compare(
+                BenchmarkResultComparator.parse(results),
+                BenchmarkResultComparator.parse(BASELINE), 10);
+
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.get(0), regressions.get(0).startsWith("Foo.bar:size=10:"));
+        assertTrue(regressions.get(1), regressions.get(1).startsWith("Foo.time:"));
+    }
+
+    private static String result(String benchmark, String mode, String params, double score,
+            String unit) {
+        return "{\"benchmark\": \"" + benchmark + "\", \"mode\": \"" + mode + "\","
+                + (params != null ? " \"params\": " + params + "," : "")
+                + " \"primaryMetric\": {\"score\": " + score + ", \"scoreUnit\": \"" + unit
+                + "\"}}";
+    }
+}
@@ -720,7 +720,8 @@ public class AdmiralAdapterService extends
             AdmiralAdapterTaskState state) {
         // Create allocation closure
         ContainerAllocationTaskState allocationTask = prepareContainerAllocationTask(containerDesc,
-                1, state.groupResourcePlacementLink);
+                1, state.groupResourcePlacementLink, state.serviceTaskCallback,
+                state.customProperties);
 
         HostSelectionFilter.HostSelection hostSelection = new HostSelectionFilter.HostSelection();
         hostSelection.resourceCount = 1;
@@ -778,8 +779,11 @@ public class AdmiralAdapterService extends
 
     private ContainerAllocationTaskState prepareContainerAllocationTask(
             ContainerDescription containerDesc,
-            long resourceCount, String placemenStateLink) {
-        String taskLink = buildTaskLink(containerDesc);
+            long resourceCount, String placemenStateLink, ServiceTaskCallback callback,
+            Map<String, String> customProperties) {
+        // the requester is the closure, or the warm pool for containers provisioned in advance
+        String taskLink = callback != null && callback.serviceSelfLink != null
+                ? callback.serviceSelfLink : buildTaskLink(containerDesc);
 
         ContainerAllocationTaskState allocationTask = new ContainerAllocationTaskState();
         allocationTask.resourceDescriptionLink = containerDesc.documentSelfLink;
@@ -789,6 +793,15 @@ public class AdmiralAdapterService extends
         allocationTask.tenantLinks = containerDesc.tenantLinks;
         allocationTask.serviceTaskCallback = createServiceCallBack(taskLink);
         allocationTask.customProperties = new HashMap<>();
+        // the tags of a warm container are copied to its container state by the allocation
+        if (customProperties != null) {
+            for (String key : Arrays.asList(ClosureProps.CUSTOM_PROPERTY_WARM_CONTAINER,
+                    ClosureProps.CUSTOM_PROPERTY_WARM_NODE)) {
+                if (customProperties.containsKey(key)) {
+                    allocationTask.customProperties.put(key, customProperties.get(key));
+                }
+            }
+        }
         return allocationTask;
     }
 
@@ -34,6 +34,9 @@ import com.vmware.admiral.closures.util.ClosureProps;
 import com.vmware.admiral.closures.util.ClosureUtils;
 import com.vmware.admiral.common.util.OperationUtil;
 import com.vmware.admiral.compute.ResourceType;
+import com.vmware.admiral.compute.container.ShellContainerExecutorService;
+import com.vmware.admiral.compute.container.ShellContainerExecutorService.ShellContainerExecutorResult;
+import com.vmware.admiral.compute.container.ShellContainerExecutorService.ShellContainerExecutorState;
 import com.vmware.admiral.request.RequestBrokerFactoryService;
 import com.vmware.admiral.request.RequestBrokerService.RequestBrokerState;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
@@ -126,6 +129,39 @@ public class AdmiralDockerClient implements ClosureDockerClient {
         logInfo("Removal request of execution container has been sent.");
     }
 
+    @Override
+    public void execContainer(String containerLink, String[] command,
+            Consumer<Throwable> errorHandler) {
+        ShellContainerExecutorState execState = new ShellContainerExecutorState();
+        execState.command = command;
+
+        URI uri = UriUtils.buildUri(getHost(), ShellContainerExecutorService.SELF_LINK,
+                UriUtils.buildUriQuery(ShellContainerExecutorService.CONTAINER_LINK_URI_PARAM,
+                        containerLink));
+        getHost().sendRequest(Operation.createPost(uri)
+                .setBody(execState)
+                .setReferer(getHost().getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logError("Unable to execute command in container %s: %s",
+                                containerLink, Utils.toString(e));
+                        errorHandler.accept(e);
+                        return;
+                    }
+
+                    ShellContainerExecutorResult result = o
+                            .getBody(ShellContainerExecutorResult.class);
+                    if (result.exitCode != null && result.exitCode != 0) {
+                        errorHandler.accept(new Exception(String.format(
+                                "Command in container %s exited with code %d: %s",
+                                containerLink, result.exitCode, result.output)));
+                        return;
+                    }
+
+                    errorHandler.accept(null);
+                }));
+    }
+
     @Override
     public void cleanImage(String imageName, String computeStateLink,
             Consumer<Throwable> errorHandler) {
@@ -0,0 +1,600 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.drivers.docker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.vmware.admiral.closures.drivers.ClosureDockerClient;
+import com.vmware.admiral.closures.drivers.ClosureDockerClientFactory;
+import com.vmware.admiral.closures.drivers.ContainerConfiguration;
+import com.vmware.admiral.closures.drivers.ImageConfiguration;
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.admiral.closures.util.ClosureProps;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.photon.controller.model.resources.ResourceState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+
+/**
+ * Pool of warm execution containers of a runtime.
+ *
+ * Warm containers are provisioned in advance from the runtime image and wait for executions, so
+ * an execution only has to start the runner in a leased container instead of provisioning a new
+ * one. Containers are grouped by the configuration they were provisioned with, i.e. image,
+ * resources, placement and tenant, and a container is leased by a single execution at a time.
+ * When the execution is cleaned the container is sanitized and returned to the pool, or
+ * destroyed if the execution did not finish successfully, the container was reused too many
+ * times or the sanitizing failed. Leases which are not released in time are considered leaked
+ * and their containers are destroyed.
+ *
+ * The number of warm containers of a group follows its demand: the rate of executions is
+ * multiplied by the time a container is held by an execution, and bounded by the minimum and
+ * maximum pool size.
+ *
+ * The pool is kept in the memory of the node, and the warm containers are tagged with the pool
+ * and the node which provisioned them. The provisioning callbacks may be lost, e.g. when the
+ * allocation reports to another node of the cluster, and the pool is lost when the node
+ * restarts, so the maintenance also looks up the containers tagged with the pool on this node:
+ * the containers of pending provisioning requests are added to the pool and the unknown ones
+ * are destroyed.
+ */
+public class ClosureContainerPool {
+
+    // runs the closure in the background, writing its output to the container logs
+    private static final String EXEC_COMMAND = "cd /app && %s=%s %s=%s"
+            + " nohup ./run.sh > /proc/1/fd/1 2>&1 &";
+
+    // stops the processes left by the execution and removes its files
+    private static final String SANITIZE_COMMAND = "for p in /proc/[0-9]*; do"
+            + " pid=${p#/proc/}; if [ \"$pid\" != 1 ] && [ \"$pid\" != $$ ]; then"
+            + " kill -9 \"$pid\" 2>/dev/null; fi; done;"
+            + " cd /app && rm -rf user_scripts response.json trusted.gz trust.pem /tmp/*";
+
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final ServiceHost host;
+    private final ClosureDockerClientFactory clientFactory;
+    private final String selfLink;
+    private final int minSize;
+    private final int maxSize;
+    private final int maxReuse;
+    private final long leaseTimeoutMicros;
+    private final long provisioningTimeoutMicros;
+
+    private final Map<String, Group> groups = new HashMap<>();
+    private final Map<String, PooledContainer> leases = new HashMap<>();
+    private final Map<String, Group> provisioning = new HashMap<>();
+    // links of the containers of the pool, idle, leased or being recycled
+    private final Set<String> containerLinks = new HashSet<>();
+    // links of the destroyed containers which may still be found
+    private final Set<String> destroyedLinks = new HashSet<>();
+    private long lastMaintenanceMicros;
+    private boolean started;
+
+    private static class Group {
+        private final String key;
+        private final ImageConfiguration imageConfig;
+        private final ContainerConfiguration configuration;
+        private final List<String> tenantLinks;
+        private final Map<String, String> customProperties;
+
+        private final Deque<PooledContainer> idle = new ArrayDeque<>();
+        private final Map<String, Long> provisioning = new HashMap<>();
+        private int leased;
+        private int arrivals;
+        private double arrivalRate;
+        private double holdTimeSeconds;
+
+        private Group(String key, ImageConfiguration imageConfig,
+                ContainerConfiguration configuration, Closure closure) {
+            this.key = key;
+            this.imageConfig = imageConfig;
+            this.configuration = configuration;
+            this.tenantLinks = closure.tenantLinks;
+            this.customProperties = closure.customProperties;
+        }
+
+        private boolean isUnused() {
+            return idle.isEmpty() && provisioning.isEmpty() && leased == 0
+                    && arrivalRate < 0.001;
+        }
+    }
+
+    private static class PooledContainer {
+        private final String containerLink;
+        private final Group group;
+        private int uses;
+        private String closureLink;
+        private long leasedTimeMicros;
+
+        private PooledContainer(String containerLink, Group group) {
+            this.containerLink = containerLink;
+            this.group = group;
+        }
+    }
+
+    /**
+     * Completion of the provisioning requests of warm containers.
+     */
+    public static class ProvisioningResponse extends ServiceTaskCallbackResponse {
+        public Set<String> resourceLinks;
+    }
+
+    /**
+     * Receives the completion of the provisioning requests of a pool, each of them reporting to
+     * its own link under the link of the pool.
+     */
+    private class ProvisioningCallbackService extends StatelessService {
+
+        private ProvisioningCallbackService() {
+            super.toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+        }
+
+        @Override
+        public void handlePatch(Operation patch) {
+            ProvisioningResponse response = patch.getBody(ProvisioningResponse.class);
+            onProvisioned(patch.getUri().getPath(), response.taskInfo, response.resourceLinks);
+            patch.complete();
+        }
+    }
+
+    public ClosureContainerPool(ServiceHost host, String runtime,
+            ClosureDockerClientFactory clientFactory) {
+        this(host, runtime, clientFactory, ClosureProps.CONTAINER_POOL_MIN_SIZE,
+                ClosureProps.CONTAINER_POOL_MAX_SIZE, ClosureProps.CONTAINER_POOL_MAX_REUSE,
+                // the clean up of an execution is delayed after its timeout
+                TimeUnit.SECONDS.toMicros(ClosureProps.MAX_EXEC_TIMEOUT_SECONDS + 60));
+    }
+
+    public ClosureContainerPool(ServiceHost host, String runtime,
+            ClosureDockerClientFactory clientFactory, int minSize, int maxSize, int maxReuse,
+            long leaseTimeoutMicros) {
+        this.host = host;
+        this.clientFactory = clientFactory;
+        this.selfLink = UriUtils.buildUriPath(ManagementUriParts.CLOSURES_CONTAINER_POOL, runtime);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxReuse = maxReuse;
+        this.leaseTimeoutMicros = leaseTimeoutMicros;
+        this.provisioningTimeoutMicros = TimeUnit.SECONDS.toMicros(
+                ClosureProps.DOCKER_IMAGE_REQUEST_TIMEOUT_SECONDS);
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public String getSelfLink() {
+        return selfLink;
+    }
+
+    /**
+     * Starts the service receiving the provisioning callbacks and the periodic maintenance.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        lastMaintenanceMicros = Utils.getSystemNowMicrosUtc();
+        host.startService(Operation.createPost(UriUtils.buildUri(host, selfLink)),
+                new ProvisioningCallbackService());
+        scheduleMaintenance();
+    }
+
+    /**
+     * Leases a warm container for the execution of the closure.
+     *
+     * @param key Key of the configuration of the container
+     * @param imageConfig Image to provision the containers of the configuration from
+     * @param configuration Configuration to provision the containers of the configuration with
+     * @param closure Closure to execute
+     * @return link of the leased container, or {@code null} if none is available
+     */
+    public String lease(String key, ImageConfiguration imageConfig,
+            ContainerConfiguration configuration, Closure closure) {
+        String containerLink = null;
+        Runnable provision = null;
+        synchronized (this) {
+            if (leases.containsKey(closure.documentSelfLink)) {
+                return null;
+            }
+
+            Group group = groups.computeIfAbsent(key,
+                    k -> new Group(k, imageConfig, configuration, closure));
+            group.arrivals++;
+
+            PooledContainer container = group.idle.poll();
+            if (container != null) {
+                container.uses++;
+                container.closureLink = closure.documentSelfLink;
+                container.leasedTimeMicros = Utils.getSystemNowMicrosUtc();
+                group.leased++;
+                leases.put(closure.documentSelfLink, container);
+                containerLink = container.containerLink;
+            } else if (group.provisioning.isEmpty()) {
+                // warm up the configuration without waiting for the next maintenance
+                provision = prepareProvisioning(group);
+            }
+        }
+
+        if (provision != null) {
+            provision.run();
+        }
+        return containerLink;
+    }
+
+    /**
+     * Builds the command which runs the closure in a leased container.
+     */
+    public static String[] buildExecCommand(String taskUri, String token) {
+        return new String[] { "sh", "-c", String.format(EXEC_COMMAND,
+                ClosureProps.ENV_PROP_TASK_URI, quote(taskUri),
+                ClosureProps.ENV_PROP_TOKEN, quote(token == null ? "" : token)) };
+    }
+
+    /**
+     * Returns the container leased by the closure to the pool, or destroys it if it is not
+     * reusable.
+     *
+     * @return {@code true} if the closure has leased a container of the pool
+     */
+    public boolean release(Closure closure) {
+        PooledContainer container;
+        boolean reusable;
+        synchronized (this) {
+            container = leases.remove(closure.documentSelfLink);
+            if (container == null) {
+                return false;
+            }
+            Group group = container.group;
+            group.leased--;
+            double holdTime = (Utils.getSystemNowMicrosUtc() - container.leasedTimeMicros)
+                    / (double) TimeUnit.SECONDS.toMicros(1);
+            group.holdTimeSeconds = group.holdTimeSeconds == 0 ? holdTime
+                    : RATE_SMOOTHING * holdTime + (1 - RATE_SMOOTHING) * group.holdTimeSeconds;
+            container.closureLink = null;
+            reusable = closure.state == TaskStage.FINISHED && container.uses < maxReuse
+                    && groups.get(group.key) == group;
+        }
+
+        if (!reusable) {
+            destroy(container);
+            return true;
+        }
+
+        getClient().execContainer(container.containerLink,
+                new String[] { "sh", "-c", SANITIZE_COMMAND }, e -> {
+                    if (e != null) {
+                        logWarning("Unable to sanitize warm container %s: %s",
+                                container.containerLink, Utils.toString(e));
+                        destroy(container);
+                        return;
+                    }
+                    synchronized (this) {
+                        if (groups.get(container.group.key) == container.group) {
+                            container.group.idle.push(container);
+                            return;
+                        }
+                    }
+                    destroy(container);
+                });
+        return true;
+    }
+
+    /**
+     * Destroys the container leased by the closure, e.g. when the execution could not be started
+     * in it.
+     */
+    public void discard(String closureLink) {
+        PooledContainer container;
+        synchronized (this) {
+            container = leases.remove(closureLink);
+            if (container == null) {
+                return;
+            }
+            container.group.leased--;
+        }
+        destroy(container);
+    }
+
+    /**
+     * Destroys the leaked leases, resizes the pool to the demand observed since the previous
+     * maintenance and reconciles the pool with the warm containers provisioned by this node.
+     */
+    public void maintain() {
+        List<Runnable> actions = new ArrayList<>();
+        synchronized (this) {
+            long now = Utils.getSystemNowMicrosUtc();
+            double elapsedSeconds = Math.max(TimeUnit.SECONDS.toMicros(1),
+                    now - lastMaintenanceMicros) / (double) TimeUnit.SECONDS.toMicros(1);
+            lastMaintenanceMicros = now;
+
+            for (Iterator<PooledContainer> it = leases.values().iterator(); it.hasNext();) {
+                PooledContainer container = it.next();
+                if (now - container.leasedTimeMicros > leaseTimeoutMicros) {
+                    logWarning("Lease of warm container %s by %s has leaked",
+                            container.containerLink, container.closureLink);
+                    it.remove();
+                    container.group.leased--;
+                    actions.add(() -> destroy(container));
+                }
+            }
+
+            for (Iterator<Group> it = groups.values().iterator(); it.hasNext();) {
+                Group group = it.next();
+                for (Iterator<Map.Entry<String, Long>> slots = group.provisioning.entrySet()
+                        .iterator(); slots.hasNext();) {
+                    Map.Entry<String, Long> slot = slots.next();
+                    if (now - slot.getValue() > provisioningTimeoutMicros) {
+                        slots.remove();
+                        provisioning.remove(slot.getKey());
+                    }
+                }
+                group.arrivalRate = RATE_SMOOTHING * group.arrivals / elapsedSeconds
+                        + (1 - RATE_SMOOTHING) * group.arrivalRate;
+                group.arrivals = 0;
+
+                int size = getTargetSize(group);
+                while (group.idle.size() > size) {
+                    PooledContainer container = group.idle.pollLast();
+                    actions.add(() -> destroy(container));
+                }
+                for (int i = group.idle.size() + group.provisioning.size(); i < size; i++) {
+                    actions.add(prepareProvisioning(group));
+                }
+
+                if (group.isUnused()) {
+                    it.remove();
+                }
+            }
+        }
+
+        actions.forEach(Runnable::run);
+        reconcile();
+    }
+
+    public synchronized int getIdleCount(String key) {
+        Group group = groups.get(key);
+        return group == null ? 0 : group.idle.size();
+    }
+
+    public synchronized int getTargetSize(String key) {
+        Group group = groups.get(key);
+        return group == null ? 0 : getTargetSize(group);
+    }
+
+    private int getTargetSize(Group group) {
+        if (group.arrivalRate < 0.001) {
+            // the configuration is not in use anymore
+            return 0;
+        }
+        // expected number of concurrent executions, the hold time defaults to the period of
+        // the maintenance until an execution has completed
+        double holdTime = group.holdTimeSeconds > 0 ? group.holdTimeSeconds
+                : ClosureProps.CONTAINER_POOL_MAINTENANCE_PERIOD_SECONDS;
+        int size = (int) Math.ceil(group.arrivalRate * holdTime);
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    private Runnable prepareProvisioning(Group group) {
+        String slotLink = UriUtils.buildUriPath(selfLink, UUID.randomUUID().toString());
+        group.provisioning.put(slotLink, Utils.getSystemNowMicrosUtc());
+        provisioning.put(slotLink, group);
+        return () -> provision(group, slotLink);
+    }
+
+    private void provision(Group group, String slotLink) {
+        ContainerConfiguration configuration = new ContainerConfiguration(
+                UriUtils.getLastPathSegment(slotLink) + "_warm");
+        configuration.memoryMB = group.configuration.memoryMB;
+        configuration.cpuShares = group.configuration.cpuShares;
+        configuration.logConfiguration = group.configuration.logConfiguration;
+        configuration.envVars = group.configuration.envVars;
+
+        // the provisioning request reports to the link of the slot as if it was a closure
+        Closure request = new Closure();
+        request.documentSelfLink = slotLink;
+        request.tenantLinks = group.tenantLinks;
+        request.customProperties = group.customProperties != null
+                ? new HashMap<>(group.customProperties) : new HashMap<>();
+        request.customProperties.put(ClosureProps.CUSTOM_PROPERTY_WARM_CONTAINER, slotLink);
+        request.customProperties.put(ClosureProps.CUSTOM_PROPERTY_WARM_NODE, host.getId());
+
+        logInfo("Provisioning warm container %s", slotLink);
+        getClient().createAndStartContainer(request, group.imageConfig, configuration, e -> {
+            if (e != null) {
+                logWarning("Unable to provision warm container %s: %s", slotLink,
+                        Utils.toString(e));
+                synchronized (this) {
+                    provisioning.remove(slotLink);
+                    group.provisioning.remove(slotLink);
+                }
+            }
+        });
+    }
+
+    void onProvisioned(String slotLink, TaskState taskInfo, Set<String> resourceLinks) {
+        boolean failed = TaskState.isFailed(taskInfo) || TaskState.isCancelled(taskInfo);
+        if (!failed && (resourceLinks == null || resourceLinks.isEmpty())) {
+            // the provisioning request has been submitted, the container is not ready yet
+            return;
+        }
+
+        List<PooledContainer> unused = new ArrayList<>();
+        synchronized (this) {
+            Group group = provisioning.remove(slotLink);
+            if (group == null || group.provisioning.remove(slotLink) == null) {
+                // timed out, already found by the maintenance or provisioned by another node,
+                // the maintenance of the node which provisioned the container takes care of it
+                logFine("Ignoring the provisioning of unknown warm container %s", slotLink);
+                return;
+            }
+            for (String containerLink : resourceLinks != null ? resourceLinks
+                    : new ArrayList<String>()) {
+                PooledContainer container = new PooledContainer(containerLink, group);
+                containerLinks.add(containerLink);
+                if (!failed && groups.get(group.key) == group) {
+                    logInfo("Warm container %s is ready", containerLink);
+                    group.idle.push(container);
+                } else {
+                    unused.add(container);
+                }
+            }
+        }
+
+        if (failed) {
+            logWarning("Unable to provision warm container %s: %s", slotLink,
+                    taskInfo.failure != null ? taskInfo.failure.message : taskInfo.stage);
+        }
+        unused.forEach(this::destroy);
+    }
+
+    private void destroy(PooledContainer container) {
+        destroy(container.containerLink);
+    }
+
+    private void destroy(String containerLink) {
+        synchronized (this) {
+            containerLinks.remove(containerLink);
+            destroyedLinks.add(containerLink);
+        }
+        logInfo("Destroying warm container %s", containerLink);
+        getClient().removeContainer(containerLink,
+                e -> logWarning("Unable to destroy warm container %s: %s",
+                        containerLink, Utils.toString(e)));
+    }
+
+    /**
+     * Adds the warm containers of the pending provisioning requests, whose callbacks were lost,
+     * to the pool and destroys the warm containers of this node which are not in the pool, e.g.
+     * provisioned before a restart.
+     */
+    private void reconcile() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addCompositeFieldClause(ResourceState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        ClosureProps.CUSTOM_PROPERTY_WARM_NODE, host.getId())
+                .addFieldClause(QuerySpecification.buildCompositeFieldName(
+                        ResourceState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        ClosureProps.CUSTOM_PROPERTY_WARM_CONTAINER),
+                        UriUtils.buildUriPath(selfLink, UriUtils.URI_WILDCARD_CHAR),
+                        MatchType.WILDCARD)
+                .build();
+        QueryTask queryTask = QueryTask.Builder.createDirectTask().setQuery(query).build();
+        QueryUtil.addExpandOption(queryTask);
+
+        List<ContainerState> containers = new ArrayList<>();
+        new ServiceDocumentQuery<>(host, ContainerState.class).query(queryTask, r -> {
+            if (r.hasException()) {
+                logWarning("Unable to find the warm containers of %s: %s", selfLink,
+                        Utils.toString(r.getException()));
+            } else if (r.hasResult()) {
+                containers.add(r.getResult());
+            } else {
+                reconcile(containers);
+            }
+        });
+    }
+
+    private void reconcile(List<ContainerState> containers) {
+        Map<String, String> found = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        synchronized (this) {
+            Set<String> links = new HashSet<>();
+            for (ContainerState container : containers) {
+                links.add(container.documentSelfLink);
+                if (containerLinks.contains(container.documentSelfLink)
+                        || destroyedLinks.contains(container.documentSelfLink)) {
+                    continue;
+                }
+                String slotLink = container.customProperties
+                        .get(ClosureProps.CUSTOM_PROPERTY_WARM_CONTAINER);
+                if (provisioning.containsKey(slotLink)) {
+                    if (container.powerState == PowerState.RUNNING) {
+                        found.put(slotLink, container.documentSelfLink);
+                    }
+                } else if (container.powerState != PowerState.PROVISIONING) {
+                    unknown.add(container.documentSelfLink);
+                }
+            }
+            destroyedLinks.retainAll(links);
+        }
+
+        found.forEach((slotLink, containerLink) -> onProvisioned(slotLink,
+                TaskState.createAsFinished(), Collections.singleton(containerLink)));
+        unknown.forEach(containerLink -> {
+            logWarning("Warm container %s is not in the pool", containerLink);
+            destroy(containerLink);
+        });
+    }
+
+    private void scheduleMaintenance() {
+        host.schedule(() -> {
+            if (host.isStopping()) {
+                return;
+            }
+            try {
+                maintain();
+            } catch (Throwable e) {
+                logWarning("Warm container pool maintenance failed: %s", Utils.toString(e));
+            }
+            scheduleMaintenance();
+        }, ClosureProps.CONTAINER_POOL_MAINTENANCE_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private ClosureDockerClient getClient() {
+        return clientFactory.getClient();
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    private void logFine(String message, Object... values) {
+        Utils.log(getClass(), getClass().getSimpleName(), Level.FINE, message, values);
+    }
+
+    private void logInfo(String message, Object... values) {
+        Utils.log(getClass(), getClass().getSimpleName(), Level.INFO, message, values);
+    }
+
+    private void logWarning(String message, Object... values) {
+        Utils.log(getClass(), getClass().getSimpleName(), Level.WARNING, message, values);
+    }
+}
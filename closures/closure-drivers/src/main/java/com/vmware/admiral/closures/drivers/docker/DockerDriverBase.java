@@ -15,10 +15,12 @@ import static com.vmware.admiral.service.common.SslTrustCertificateService.SSL_T
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -39,6 +41,7 @@ import com.vmware.admiral.common.util.ServiceDocumentQuery.ServiceDocumentQueryE
 import com.vmware.admiral.common.util.SubscriptionManager;
 import com.vmware.admiral.service.common.ConfigurationService;
 import com.vmware.admiral.service.common.SslTrustCertificateService.SslTrustCertificateState;
+import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
@@ -68,6 +71,8 @@ public abstract class DockerDriverBase implements ExecutionDriver {
 
     private AtomicReference<String> trustCertificates;
 
+    private volatile ClosureContainerPool containerPool;
+
     public abstract String getDockerImage();
 
     public DockerDriverBase(ServiceHost serviceHost, DriverRegistry driverRegistry,
@@ -164,9 +169,104 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         imageConfig.registry = getConfigProperty(
                 ClosureProps.CLOSURE_RUNTIME_IMAGE_REGISTRY + closureDesc.runtime);
 
-        logInfo("Creating container with name: %s image: %s", containerName, containerImage);
-        dockerClient.createAndStartContainer(closure, imageConfig, configuration, errorHandler);
-        logInfo("Code execution request sent.");
+        Runnable provision = () -> {
+            logInfo("Creating container with name: %s image: %s", containerName,
+                    containerImage);
+            dockerClient.createAndStartContainer(closure, imageConfig, configuration,
+                    errorHandler);
+            logInfo("Code execution request sent.");
+        };
+
+        ClosureContainerPool pool = getContainerPool(closureDesc.runtime);
+        if (!isPoolable(pool, configuration)) {
+            provision.run();
+            return;
+        }
+
+        ContainerConfiguration warmConfiguration = new ContainerConfiguration();
+        warmConfiguration.memoryMB = configuration.memoryMB;
+        warmConfiguration.cpuShares = configuration.cpuShares;
+        warmConfiguration.logConfiguration = configuration.logConfiguration;
+        String certs = trustCertificates.get();
+        certs = certs == null ? "" : certs;
+        String poolKey = ClosureUtils.calculateHash(new String[] { imageConfig.registry,
+                imageConfig.imageNameVersion, String.valueOf(configuration.memoryMB),
+                String.valueOf(configuration.cpuShares), String.valueOf(
+                        configuration.logConfiguration),
+                getConfiguredPlacement(closure), String.valueOf(closure.tenantLinks),
+                certs });
+        // the key is part of the environment, so that each configuration has its own container
+        // description
+        warmConfiguration.envVars = new String[] {
+                ClosureProps.ENV_WARM_CONTAINER + "=" + poolKey,
+                ClosureProps.ENV_TRUST_CERTS + "=" + certs };
+
+        String containerLink = pool.lease(poolKey, imageConfig, warmConfiguration, closure);
+        if (containerLink == null) {
+            provision.run();
+            return;
+        }
+
+        logInfo("Executing closure %s in warm container %s", closure.documentSelfLink,
+                containerLink);
+        executeInWarmContainer(dockerClient, closure, containerLink, token, e -> {
+            if (e != null) {
+                logWarning("Unable to execute closure %s in warm container %s: %s",
+                        closure.documentSelfLink, containerLink, Utils.toString(e));
+                pool.discard(closure.documentSelfLink);
+                provision.run();
+                return;
+            }
+            errorHandler.accept(null);
+        });
+    }
+
+    private boolean isPoolable(ClosureContainerPool pool, ContainerConfiguration configuration) {
+        // images with dependencies or external sources are built for a single closure
+        return pool.isEnabled() && !ClosureProps.IS_KEEP_ON_COMPLETION_ON
+                && ClosureUtils.isEmpty(configuration.dependencies)
+                && ClosureUtils.isEmpty(configuration.sourceURL);
+    }
+
+    private void executeInWarmContainer(ClosureDockerClient dockerClient, Closure closure,
+            String containerLink, String token, Consumer<Throwable> errorHandler) {
+        Closure patch = new Closure();
+        patch.resourceLinks = new HashSet<>();
+        patch.resourceLinks.add(containerLink);
+        patch.customProperties = new HashMap<>();
+        patch.customProperties.put(ClosureProps.CUSTOM_PROPERTY_LOGS_SINCE, String.valueOf(
+                TimeUnit.MICROSECONDS.toSeconds(Utils.getSystemNowMicrosUtc())));
+
+        serviceHost.sendRequest(Operation.createPatch(serviceHost, closure.documentSelfLink)
+                .setBody(patch)
+                .setReferer(serviceHost.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        errorHandler.accept(e);
+                        return;
+                    }
+                    dockerClient.execContainer(containerLink,
+                            ClosureContainerPool.buildExecCommand(
+                                    prepareCallbackUri(closure).toString(), token),
+                            errorHandler);
+                }));
+    }
+
+    private synchronized ClosureContainerPool getContainerPool(String runtime) {
+        if (containerPool == null) {
+            containerPool = new ClosureContainerPool(serviceHost, runtime, dockerClientFactory);
+            if (containerPool.isEnabled()) {
+                containerPool.start();
+            }
+        }
+        return containerPool;
+    }
+
+    private static String getConfiguredPlacement(Closure closure) {
+        if (closure.customProperties == null) {
+            return null;
+        }
+        return closure.customProperties.get(ClosureProps.CUSTOM_PROPERTY_PLACEMENT);
     }
 
     private static String getConfigProperty(String propertyName) {
@@ -188,6 +288,12 @@ public abstract class DockerDriverBase implements ExecutionDriver {
             return;
         }
 
+        ClosureContainerPool pool = containerPool;
+        if (pool != null && pool.release(closure)) {
+            logInfo("Warm container of closure %s released", closure.documentSelfLink);
+            return;
+        }
+
         logInfo("Killing container with for closure: %s", closure.documentSelfLink);
         for (String containerLink : closure.resourceLinks) {
             try {
@@ -307,6 +413,10 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         Utils.log(getClass(), getClass().getSimpleName(), Level.INFO, message, values);
     }
 
+    private void logWarning(String message, Object... values) {
+        Utils.log(getClass(), getClass().getSimpleName(), Level.WARNING, message, values);
+    }
+
     private void logFine(String message, Object... values) {
         Utils.log(getClass(), getClass().getSimpleName(), Level.FINE, message, values);
     }
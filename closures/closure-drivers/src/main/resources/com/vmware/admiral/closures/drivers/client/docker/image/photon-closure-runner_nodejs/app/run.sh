@@ -1,5 +1,8 @@
 #!/bin/bash
 
+# a warm container waits for the executions started in it by the container pool
+[[ -z "${TASK_URI}" && ! -z "${CLOSURE_WARM_CONTAINER}" ]] && exec tail -f /dev/null
+
 [[ ! -z "${TRUST_CERTS}" ]] && echo "${TRUST_CERTS}" | base64 --decode > trusted.gz
 [[ ! -z "${TRUST_CERTS}" ]] && gzip -dc < trusted.gz > trust.pem
 
@@ -1,5 +1,8 @@
 #!/bin/bash
 
+# a warm container waits for the executions started in it by the container pool
+[[ -z "${TASK_URI}" && ! -z "${CLOSURE_WARM_CONTAINER}" ]] && exec tail -f /dev/null
+
 mkdir ./user_scripts || echo "File exits"
 
 [[ ! -z "${TRUST_CERTS}" ]] && echo "${TRUST_CERTS}" | base64 --decode > trusted.gz
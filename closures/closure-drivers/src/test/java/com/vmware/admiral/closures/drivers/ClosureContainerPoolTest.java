@@ -0,0 +1,577 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.drivers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.closures.drivers.docker.AdmiralDockerClient;
+import com.vmware.admiral.closures.drivers.docker.ClosureContainerPool;
+import com.vmware.admiral.closures.drivers.docker.ClosureContainerPool.ProvisioningResponse;
+import com.vmware.admiral.closures.services.adapter.AdmiralAdapterFactoryService;
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.admiral.closures.services.closure.ClosureFactoryService;
+import com.vmware.admiral.closures.services.images.DockerImage;
+import com.vmware.admiral.closures.services.images.DockerImageFactoryService;
+import com.vmware.admiral.closures.util.ClosureProps;
+import com.vmware.admiral.closures.util.ClosureUtils;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.container.ContainerDescriptionFactoryService;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
+import com.vmware.admiral.compute.container.ShellContainerExecutorService;
+import com.vmware.admiral.request.ContainerAllocationTaskFactoryService;
+import com.vmware.admiral.request.ContainerAllocationTaskService.ContainerAllocationTaskState;
+import com.vmware.admiral.service.test.MockDockerAdapterService;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.BasicReusableHostTestCase;
+import com.vmware.xenon.common.FactoryService;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestRequestSender;
+
+public class ClosureContainerPoolTest extends BasicReusableHostTestCase {
+
+    private static final String KEY = "test-key";
+    private static final String SANITIZE = "rm -rf";
+    private static final String PLACEMENT_LINK = "/test/placement";
+    private static final String PLACEMENT_ZONE_LINK = "/test/placement-zone";
+    private static final String IMAGE_NAME = "closure-image";
+    private static final String BASE_IMAGE_NAME = "closure-base";
+    private static final String IMAGE_VERSION = "1.0";
+
+    // the allocation does not report the provisioned containers, e.g. to another node
+    private static volatile boolean dropCallbacks;
+    // links of the containers provisioned by the allocation, by the link of the requester
+    private static final Map<String, String> allocations = new ConcurrentHashMap<>();
+
+    private TestRequestSender sender;
+    private TestDockerClient client;
+    private String descriptionLink;
+    private int closures;
+
+    @Before
+    public void setUp() throws Throwable {
+        if (host.getServiceStage(ContainerFactoryService.SELF_LINK) == null) {
+            host.startServiceAndWait(ContainerFactoryService.class,
+                    ContainerFactoryService.SELF_LINK);
+            host.startServiceAndWait(ContainerDescriptionFactoryService.class,
+                    ContainerDescriptionFactoryService.SELF_LINK);
+            host.startServiceAndWait(MockDockerAdapterService.class,
+                    MockDockerAdapterService.SELF_LINK);
+            host.startServiceAndWait(ShellContainerExecutorService.class,
+                    ShellContainerExecutorService.SELF_LINK);
+            startAdmiralServices();
+        }
+        sender = host.getTestRequestSender();
+        client = new TestDockerClient();
+        dropCallbacks = false;
+
+        ContainerDescription description = new ContainerDescription();
+        description.name = "warm";
+        description.image = "test_image";
+        descriptionLink = sender.sendPostAndWait(
+                UriUtils.buildUri(host, ContainerDescriptionFactoryService.SELF_LINK), description,
+                ContainerDescription.class).documentSelfLink;
+    }
+
+    @Test
+    public void testLeaseAndRecycle() throws Throwable {
+        ClosureContainerPool pool = createPool(2, 2, TimeUnit.HOURS.toMicros(1));
+
+        // the first execution warms up the configuration
+        Closure first = closure(null);
+        assertNull(lease(pool, KEY, first));
+        waitForIdle(pool, KEY, 1);
+
+        String containerLink = lease(pool, KEY, first);
+        assertNotNull(containerLink);
+        exec(containerLink);
+
+        // the container is recycled after the execution finished
+        first.state = TaskStage.FINISHED;
+        assertTrue(pool.release(first));
+        waitForIdle(pool, KEY, 1);
+        assertEquals(Collections.singletonList(SANITIZE), client.commands.get(containerLink)
+                .subList(1, 2));
+
+        Closure second = closure(null);
+        assertEquals(containerLink, lease(pool, KEY, second));
+        exec(containerLink);
+
+        // and destroyed once it has been reused too many times
+        second.state = TaskStage.FINISHED;
+        assertTrue(pool.release(second));
+        waitForRemoved(containerLink);
+        assertFalse(pool.release(second));
+    }
+
+    @Test
+    public void testFailedExecutionIsNotRecycled() throws Throwable {
+        ClosureContainerPool pool = createPool(10, 10, TimeUnit.HOURS.toMicros(1));
+        Closure closure = closure(null);
+        lease(pool, KEY, closure);
+        waitForIdle(pool, KEY, 1);
+
+        String containerLink = lease(pool, KEY, closure);
+        closure.state = TaskStage.FAILED;
+        assertTrue(pool.release(closure));
+        waitForRemoved(containerLink);
+        assertEquals(Collections.emptyList(), client.commands.get(containerLink));
+
+        // a container which could not be sanitized is destroyed
+        lease(pool, KEY, closure);
+        waitForIdle(pool, KEY, 1);
+        containerLink = lease(pool, KEY, closure);
+        client.failing.add(containerLink);
+        closure.state = TaskStage.FINISHED;
+        assertTrue(pool.release(closure));
+        waitForRemoved(containerLink);
+    }
+
+    @Test
+    public void testLeakedLeaseIsDestroyed() throws Throwable {
+        ClosureContainerPool pool = createPool(10, 10, 1);
+        Closure closure = closure(null);
+        lease(pool, KEY, closure);
+        waitForIdle(pool, KEY, 1);
+
+        String containerLink = lease(pool, KEY, closure);
+        Thread.sleep(1);
+        pool.maintain();
+        waitForRemoved(containerLink);
+
+        // the execution completing late does not return the container to the pool
+        closure.state = TaskStage.FINISHED;
+        assertFalse(pool.release(closure));
+    }
+
+    @Test
+    public void testExecutionsAreIsolated() throws Throwable {
+        ClosureContainerPool pool = createPool(2, 10, TimeUnit.HOURS.toMicros(1));
+        Closure first = closure(Collections.singletonList("tenant-a"));
+        lease(pool, KEY, first);
+        waitForIdle(pool, KEY, 1);
+        String containerLink = lease(pool, KEY, first);
+
+        // a leased container is not leased by another execution of the same configuration
+        Closure second = closure(Collections.singletonList("tenant-a"));
+        String otherLink = waitForLease(pool, KEY, second);
+        assertNotEquals(containerLink, otherLink);
+
+        // nor by the executions of another tenant
+        Closure other = closure(Collections.singletonList("tenant-b"));
+        String otherTenantLink = waitForLease(pool, "other-key", other);
+        assertNotEquals(containerLink, otherTenantLink);
+        assertNotEquals(otherLink, otherTenantLink);
+        assertEquals(other.tenantLinks, getContainer(otherTenantLink).tenantLinks);
+
+        // a recycled container is sanitized before it is leased again
+        exec(containerLink);
+        first.state = TaskStage.FINISHED;
+        pool.release(first);
+        waitForIdle(pool, KEY, 1);
+        Closure third = closure(Collections.singletonList("tenant-a"));
+        assertEquals(containerLink, lease(pool, KEY, third));
+        List<String> commands = client.commands.get(containerLink);
+        assertEquals(2, commands.size());
+        assertTrue(commands.get(0).contains(ClosureProps.ENV_PROP_TASK_URI));
+        assertEquals(SANITIZE, commands.get(1));
+    }
+
+    @Test
+    public void testPoolFollowsDemand() throws Throwable {
+        ClosureContainerPool pool = createPool(10, 3, TimeUnit.HOURS.toMicros(1));
+        for (int i = 0; i < 10; i++) {
+            lease(pool, KEY, closure(null));
+        }
+        pool.maintain();
+        assertEquals(3, pool.getTargetSize(KEY));
+        waitForIdle(pool, KEY, 3);
+
+        // without executions the warm containers are destroyed
+        for (int i = 0; i < 100 && pool.getTargetSize(KEY) > 0; i++) {
+            pool.maintain();
+        }
+        assertEquals(0, pool.getTargetSize(KEY));
+        host.waitFor("Warm containers were not destroyed", () -> client.removed.size() == 3);
+        assertEquals(0, pool.getIdleCount(KEY));
+    }
+
+    @Test
+    public void testProvisionThroughAdmiralAdapter() throws Throwable {
+        client.admiral = true;
+        ClosureContainerPool pool = createPool(10, 1, TimeUnit.HOURS.toMicros(1));
+        String key = "admiral-" + UUID.randomUUID();
+        Closure closure = placedClosure();
+        assertNull(leaseThroughAdmiral(pool, key, closure));
+        waitForIdle(pool, key, 1);
+
+        String containerLink = leaseThroughAdmiral(pool, key, closure);
+        assertNotNull(containerLink);
+        Map<String, String> properties = getContainer(containerLink).customProperties;
+        assertEquals(host.getId(), properties.get(ClosureProps.CUSTOM_PROPERTY_WARM_NODE));
+        assertTrue(properties.get(ClosureProps.CUSTOM_PROPERTY_WARM_CONTAINER)
+                .startsWith(ManagementUriParts.CLOSURES_CONTAINER_POOL + "/"));
+    }
+
+    @Test
+    public void testLostProvisioningIsFoundByMaintenance() throws Throwable {
+        client.admiral = true;
+        dropCallbacks = true;
+        String runtime = "test-" + UUID.randomUUID();
+        String poolLink = UriUtils.buildUriPath(ManagementUriParts.CLOSURES_CONTAINER_POOL,
+                runtime);
+        ClosureContainerPool pool = createPool(runtime, 10, 1, TimeUnit.HOURS.toMicros(1));
+        String key = "admiral-" + UUID.randomUUID();
+        Closure closure = placedClosure();
+        assertNull(leaseThroughAdmiral(pool, key, closure));
+        host.waitFor("Warm container was not provisioned", () -> allocations.keySet().stream()
+                .anyMatch(link -> link.startsWith(poolLink + "/")));
+        assertEquals(0, pool.getIdleCount(key));
+
+        // the provisioned container is tagged with the pool which requested it
+        pool.maintain();
+        waitForIdle(pool, key, 1);
+        String containerLink = leaseThroughAdmiral(pool, key, closure);
+        assertTrue(allocations.containsValue(containerLink));
+        assertEquals(Collections.emptySet(), client.removed);
+    }
+
+    @Test
+    public void testUnknownContainersAreDestroyed() throws Throwable {
+        String runtime = "test-" + UUID.randomUUID();
+        String poolLink = UriUtils.buildUriPath(ManagementUriParts.CLOSURES_CONTAINER_POOL,
+                runtime);
+        // left behind by a previous instance of the pool on this node, and by another node
+        String unknownLink = createWarmContainer(poolLink, host.getId());
+        String otherNodeLink = createWarmContainer(poolLink, "other-node");
+
+        ClosureContainerPool pool = createPool(runtime, 10, 10, TimeUnit.HOURS.toMicros(1));
+        pool.maintain();
+        waitForRemoved(unknownLink);
+        assertFalse(client.removed.contains(otherNodeLink));
+        assertNotNull(getContainer(otherNodeLink));
+    }
+
+    private ClosureContainerPool createPool(int maxReuse, int maxSize, long leaseTimeoutMicros) {
+        return createPool("test-" + UUID.randomUUID(), maxReuse, maxSize, leaseTimeoutMicros);
+    }
+
+    private ClosureContainerPool createPool(String runtime, int maxReuse, int maxSize,
+            long leaseTimeoutMicros) {
+        ClosureContainerPool pool = new ClosureContainerPool(host, runtime, () -> client,
+                0, maxSize, maxReuse, leaseTimeoutMicros);
+        pool.start();
+        return pool;
+    }
+
+    private String lease(ClosureContainerPool pool, String key, Closure closure) {
+        ContainerConfiguration configuration = new ContainerConfiguration();
+        configuration.envVars = new String[] { ClosureProps.ENV_WARM_CONTAINER + "=" + key };
+        return pool.lease(key, new ImageConfiguration(), configuration, closure);
+    }
+
+    private String leaseThroughAdmiral(ClosureContainerPool pool, String key, Closure closure) {
+        ImageConfiguration imageConfig = new ImageConfiguration();
+        imageConfig.imageName = IMAGE_NAME;
+        imageConfig.imageNameVersion = IMAGE_VERSION;
+        imageConfig.baseImageName = BASE_IMAGE_NAME;
+        imageConfig.baseImageVersion = IMAGE_VERSION;
+        ContainerConfiguration configuration = new ContainerConfiguration();
+        configuration.memoryMB = ClosureProps.MIN_MEMORY_MB_RES_CONSTRAINT;
+        configuration.envVars = new String[] { ClosureProps.ENV_WARM_CONTAINER + "=" + key };
+        return pool.lease(key, imageConfig, configuration, closure);
+    }
+
+    private String waitForLease(ClosureContainerPool pool, String key, Closure closure) {
+        String[] containerLink = { lease(pool, key, closure) };
+        host.waitFor("No warm container was leased", () -> {
+            if (containerLink[0] == null) {
+                containerLink[0] = lease(pool, key, closure);
+            }
+            return containerLink[0] != null;
+        });
+        return containerLink[0];
+    }
+
+    private void waitForIdle(ClosureContainerPool pool, String key, int count) {
+        host.waitFor("Warm containers are not ready", () -> pool.getIdleCount(key) == count);
+    }
+
+    private void waitForRemoved(String containerLink) {
+        host.waitFor("Warm container was not destroyed",
+                () -> client.removed.contains(containerLink));
+    }
+
+    /**
+     * Runs a closure in the container through the shell executor and the mock adapter.
+     */
+    private void exec(String containerLink) {
+        String[] command = ClosureContainerPool.buildExecCommand("http://localhost/closure",
+                "token");
+        Throwable[] failure = { null };
+        boolean[] done = { false };
+        client.execContainer(containerLink, command, e -> {
+            failure[0] = e;
+            done[0] = true;
+        });
+        host.waitFor("Command was not executed", () -> done[0]);
+        assertNull(failure[0]);
+    }
+
+    private ContainerState getContainer(String containerLink) {
+        return sender.sendAndWait(Operation.createGet(host, containerLink), ContainerState.class);
+    }
+
+    private Closure closure(List<String> tenantLinks) {
+        Closure closure = new Closure();
+        closure.documentSelfLink = UriUtils.buildUriPath(ClosureFactoryService.FACTORY_LINK,
+                "closure-" + closures++);
+        closure.tenantLinks = tenantLinks;
+        return closure;
+    }
+
+    private Closure placedClosure() {
+        Closure closure = closure(null);
+        closure.customProperties = new HashMap<>();
+        closure.customProperties.put(ClosureProps.CUSTOM_PROPERTY_PLACEMENT, PLACEMENT_LINK);
+        return closure;
+    }
+
+    private String createWarmContainer(String poolLink, String nodeId) {
+        ContainerState container = new ContainerState();
+        container.descriptionLink = descriptionLink;
+        container.powerState = PowerState.RUNNING;
+        container.adapterManagementReference = UriUtils.buildUri(host,
+                MockDockerAdapterService.SELF_LINK);
+        container.customProperties = new HashMap<>();
+        container.customProperties.put(ClosureProps.CUSTOM_PROPERTY_WARM_CONTAINER,
+                UriUtils.buildUriPath(poolLink, UUID.randomUUID().toString()));
+        container.customProperties.put(ClosureProps.CUSTOM_PROPERTY_WARM_NODE, nodeId);
+        return sender.sendPostAndWait(UriUtils.buildUri(host, ContainerFactoryService.SELF_LINK),
+                container, ContainerState.class).documentSelfLink;
+    }
+
+    /**
+     * Starts the admiral adapter with a placement on a single host where the images have
+     * already been built, and an allocation which provisions the containers on the mock docker
+     * adapter.
+     */
+    private void startAdmiralServices() throws Throwable {
+        host.startServiceAndWait(AdmiralAdapterFactoryService.class,
+                AdmiralAdapterFactoryService.FACTORY_LINK);
+        // the maintenance of the images does not find them on the host
+        DriverRegistry driverRegistry = mock(DriverRegistry.class);
+        when(driverRegistry.getDriver()).thenReturn(mock(ExecutionDriver.class));
+        host.startServiceAndWait(new DockerImageFactoryService(driverRegistry),
+                DockerImageFactoryService.FACTORY_LINK, null);
+        host.startServiceAndWait(FactoryService.create(ComputeService.class),
+                ComputeService.FACTORY_LINK, null);
+        host.startServiceAndWait(new TestPlacementService(), PLACEMENT_LINK, null);
+        host.startServiceAndWait(new TestAllocationTaskService(),
+                ContainerAllocationTaskFactoryService.SELF_LINK, null);
+
+        ComputeState compute = new ComputeState();
+        compute.address = UUID.randomUUID().toString();
+        compute.descriptionLink = "desc";
+        compute.resourcePoolLink = PLACEMENT_ZONE_LINK;
+        String computeLink = host.getTestRequestSender().sendPostAndWait(
+                UriUtils.buildUri(host, ComputeService.FACTORY_LINK), compute,
+                ComputeState.class).documentSelfLink;
+        createImage(BASE_IMAGE_NAME + ":" + IMAGE_VERSION, computeLink);
+        createImage(IMAGE_NAME + ":" + IMAGE_VERSION, computeLink);
+    }
+
+    private void createImage(String name, String computeLink) {
+        DockerImage image = new DockerImage();
+        image.name = name;
+        image.computeStateLink = computeLink;
+        image.taskInfo = TaskState.createAsFinished();
+        image.documentSelfLink = UriUtils.buildUriPath(DockerImageFactoryService.FACTORY_LINK,
+                ClosureUtils.calculateHash(new String[] { name, "/", computeLink }));
+        host.getTestRequestSender().sendPostAndWait(
+                UriUtils.buildUri(host, DockerImageFactoryService.FACTORY_LINK), image,
+                DockerImage.class);
+    }
+
+    private static class TestPlacementService extends StatelessService {
+
+        @Override
+        public void handleGet(Operation get) {
+            GroupResourcePlacementState placement = new GroupResourcePlacementState();
+            placement.documentSelfLink = getSelfLink();
+            placement.resourcePoolLink = PLACEMENT_ZONE_LINK;
+            get.setBody(placement).complete();
+        }
+    }
+
+    /**
+     * Provisions the containers of the allocation requests on the mock docker adapter, with the
+     * custom properties of the request as the allocation does.
+     */
+    private static class TestAllocationTaskService extends StatelessService {
+
+        @Override
+        public void handlePost(Operation post) {
+            ContainerAllocationTaskState task = post.getBody(ContainerAllocationTaskState.class);
+            post.complete();
+
+            ContainerState container = new ContainerState();
+            container.descriptionLink = task.resourceDescriptionLink;
+            container.tenantLinks = task.tenantLinks;
+            container.customProperties = task.customProperties;
+            container.powerState = PowerState.RUNNING;
+            container.adapterManagementReference = UriUtils.buildUri(getHost(),
+                    MockDockerAdapterService.SELF_LINK);
+            sendRequest(Operation.createPost(this, ContainerFactoryService.SELF_LINK)
+                    .setBody(container)
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            return;
+                        }
+                        String containerLink = o.getBody(ContainerState.class).documentSelfLink;
+                        allocations.put(task.serviceTaskCallback.serviceSelfLink, containerLink);
+                        if (dropCallbacks) {
+                            return;
+                        }
+                        ProvisioningResponse response = new ProvisioningResponse();
+                        response.taskInfo = TaskState.createAsFinished();
+                        response.resourceLinks = Collections.singleton(containerLink);
+                        sendRequest(Operation.createPatch(this,
+                                task.serviceTaskCallback.serviceSelfLink)
+                                .setBody(response));
+                    }));
+        }
+    }
+
+    /**
+     * Provisions the warm containers on the mock docker adapter, or through the admiral adapter,
+     * and executes commands through the shell executor.
+     */
+    private class TestDockerClient implements ClosureDockerClient {
+
+        private final ClosureDockerClient admiralClient = new AdmiralDockerClient(host);
+        private boolean admiral;
+
+        private final Map<String, List<String>> commands = new ConcurrentHashMap<>();
+        private final Set<String> removed = ConcurrentHashMap.newKeySet();
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void createAndStartContainer(Closure closure, ImageConfiguration imageConfig,
+                ContainerConfiguration configuration, Consumer<Throwable> errorHandler) {
+            if (admiral) {
+                admiralClient.createAndStartContainer(closure, imageConfig, configuration,
+                        errorHandler);
+                return;
+            }
+            ContainerState container = new ContainerState();
+            container.documentSelfLink = UriUtils.buildUriPath(ContainerFactoryService.SELF_LINK,
+                    configuration.name);
+            container.names = Collections.singletonList(configuration.name);
+            container.descriptionLink = descriptionLink;
+            container.tenantLinks = closure.tenantLinks;
+            container.powerState = PowerState.RUNNING;
+            container.adapterManagementReference = UriUtils.buildUri(host,
+                    MockDockerAdapterService.SELF_LINK);
+            container.env = configuration.envVars;
+            container.customProperties = closure.customProperties;
+
+            host.sendRequest(Operation.createPost(host, ContainerFactoryService.SELF_LINK)
+                    .setBody(container)
+                    .setReferer(host.getUri())
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            errorHandler.accept(e);
+                            return;
+                        }
+                        commands.put(container.documentSelfLink,
+                                Collections.synchronizedList(new ArrayList<>()));
+
+                        // the allocation reports the provisioned container to the closure link
+                        ProvisioningResponse response = new ProvisioningResponse();
+                        response.taskInfo = TaskState.createAsFinished();
+                        response.resourceLinks = Collections.singleton(
+                                container.documentSelfLink);
+                        host.sendRequest(Operation.createPatch(host, closure.documentSelfLink)
+                                .setBody(response)
+                                .setReferer(host.getUri()));
+                        errorHandler.accept(null);
+                    }));
+        }
+
+        @Override
+        public void execContainer(String containerLink, String[] command,
+                Consumer<Throwable> errorHandler) {
+            String script = command[command.length - 1];
+            commands.get(containerLink).add(script.contains(SANITIZE) ? SANITIZE : script);
+            if (failing.contains(containerLink)) {
+                errorHandler.accept(new IllegalStateException("Simulated failure"));
+                return;
+            }
+            admiralClient.execContainer(containerLink, command, errorHandler);
+        }
+
+        @Override
+        public void removeContainer(String containerLink, Consumer<Throwable> errorHandler) {
+            host.sendRequest(Operation.createDelete(host, containerLink)
+                    .setReferer(host.getUri())
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            errorHandler.accept(e);
+                            return;
+                        }
+                        removed.add(containerLink);
+                    }));
+        }
+
+        @Override
+        public void cleanImage(String imageName, String computeStateLink,
+                Consumer<Throwable> errorHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void inspectImage(String imageName, String computeStateLink,
+                Consumer<Throwable> errorHandler) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
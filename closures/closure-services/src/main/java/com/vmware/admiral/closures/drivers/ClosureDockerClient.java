@@ -37,6 +37,15 @@ public interface ClosureDockerClient {
     void createAndStartContainer(Closure closure, ImageConfiguration imageConfig,
             ContainerConfiguration configuration, Consumer<Throwable> errorHandler);
 
+    /**
+     * Executes a command in a running container.
+     *
+     * @param containerLink Link of the container
+     * @param command Command and its arguments
+     * @param errorHandler Called with the failure, or {@code null} when the command succeeds
+     */
+    void execContainer(String containerLink, String[] command, Consumer<Throwable> errorHandler);
+
     /**
      * Cleans docker image
      *
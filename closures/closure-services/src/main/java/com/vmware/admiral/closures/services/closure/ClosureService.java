@@ -31,6 +31,7 @@ import com.vmware.admiral.closures.services.closuredescription.ClosureDescriptio
 import com.vmware.admiral.closures.util.ClosureProps;
 import com.vmware.admiral.closures.util.ClosureUtils;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
 import com.vmware.admiral.service.common.LogService.LogServiceState;
@@ -550,6 +551,12 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
         String resourceLink = closure.resourceLinks.iterator().next();
         String containerId = UriUtils.getLastPathSegment(resourceLink);
         String logsURI = ManagementUriParts.CONTAINER_LOGS + "?id=" + containerId;
+        if (closure.customProperties != null && closure.customProperties
+                .containsKey(ClosureProps.CUSTOM_PROPERTY_LOGS_SINCE)) {
+            // the container is reused, skip the logs of the previous executions
+            logsURI += "&since=" + closure.customProperties
+                    .get(ClosureProps.CUSTOM_PROPERTY_LOGS_SINCE);
+        }
         sendRequest(Operation
                 .createGet(this, logsURI)
                 .setCompletion((op, ex) -> {
@@ -761,6 +768,9 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
             currentState.logs = requestedState.logs;
         }
 
+        currentState.customProperties = PropertyUtils.mergeCustomProperties(
+                currentState.customProperties, requestedState.customProperties);
+
         if (requestedState.state == TaskStage.STARTED) {
             currentState.lastLeasedTimeMillis = System.currentTimeMillis();
             currentState.endTimeMillis = 0L;
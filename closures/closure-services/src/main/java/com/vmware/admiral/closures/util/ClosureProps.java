@@ -62,6 +62,23 @@ public class ClosureProps {
             .getInteger("com.vmware.admiral.closures.container.description.expiration.seconds",
                     120);
 
+    // Maximum number of warm execution containers kept per runtime configuration. The pool is
+    // disabled when set to 0.
+    public static final int CONTAINER_POOL_MAX_SIZE = Integer
+            .getInteger("closure.service.container-pool.max-size", 0);
+
+    // Minimum number of warm execution containers kept per runtime configuration in use
+    public static final int CONTAINER_POOL_MIN_SIZE = Integer
+            .getInteger("closure.service.container-pool.min-size", 0);
+
+    // Number of executions after which a warm container is destroyed instead of recycled
+    public static final int CONTAINER_POOL_MAX_REUSE = Integer
+            .getInteger("closure.service.container-pool.max-reuse", 20);
+
+    // Interval at which the warm pools are resized and checked for leaked containers
+    public static final Long CONTAINER_POOL_MAINTENANCE_PERIOD_SECONDS =
+            Long.getLong("closure.service.container-pool.maintenance-period", 10L);
+
     /**
      * Publicly/Externally accessible URI of Admiral services. In case it exits the propery will be
      * used by closure runtime execution to callback Admiral services instead of xenon publicUri
@@ -78,9 +95,14 @@ public class ClosureProps {
     public static final String ENV_PROP_TASK_URI = "TASK_URI";
     public static final String ENV_PROP_TOKEN = "TOKEN";
     public static final String ENV_TRUST_CERTS = "TRUST_CERTS";
+    public static final String ENV_WARM_CONTAINER = "CLOSURE_WARM_CONTAINER";
 
     // Custom properties
     public static final String CUSTOM_PROPERTY_PLACEMENT = "__closures_placement";
+    public static final String CUSTOM_PROPERTY_LOGS_SINCE = "__closures_logs_since";
+    // the link of the provisioning request of a warm container and the node which requested it
+    public static final String CUSTOM_PROPERTY_WARM_CONTAINER = "__closures_warm_container";
+    public static final String CUSTOM_PROPERTY_WARM_NODE = "__closures_warm_node";
 
     // General configuration properties
     public static final String MAX_LOG_FILE_SIZE = (MAX_LOG_SIZE_BYTES / 1024) + "k";
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.common.util;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.X509TrustManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.common.test.CommonTestStateFactory;
+import com.vmware.admiral.host.HostInitCommonServiceConfig;
+import com.vmware.admiral.service.common.SslTrustCertificateService;
+import com.vmware.admiral.service.common.SslTrustCertificateService.SslTrustCertificateState;
+import com.vmware.photon.controller.model.security.util.CertificateUtil;
+import com.vmware.photon.controller.model.security.util.CertificateUtil.CertChainKeyPair;
+import com.vmware.xenon.common.UriUtils;
+
+public class ServerX509TrustManagerReloadTest extends BaseTestCase {
+
+    private ServerX509TrustManager trustManager;
+
+    @Before
+    public void setUp() throws Throwable {
+        HostInitCommonServiceConfig.startServices(host);
+        waitForServiceAvailability(SslTrustCertificateService.FACTORY_LINK);
+
+        trustManager = new TestServerX509TrustManager(host,
+                TimeUnit.MILLISECONDS.toMicros(100));
+        trustManager.start();
+    }
+
+    @After
+    public void tearDown() {
+        trustManager.close();
+    }
+
+    @Test
+    public void testUnchangedCertificateIsNotReloaded() throws Throwable {
+        // the test certificate has expired, use it only as the issuer of a new one
+        CertChainKeyPair certificate = CertificateUtil.generateSigned("reload-test",
+                CertificateUtil.createCertificate(CommonTestStateFactory
+                        .getFileContent("docker-ssl-host-trust.PEM")),
+                KeyPairGenerator.getInstance("RSA").generateKeyPair().getPrivate());
+        SslTrustCertificateState state = new SslTrustCertificateState();
+        state.certificate = CertificateUtil.toPEMformat(certificate.getCertificate());
+        state = doPost(state, SslTrustCertificateService.FACTORY_LINK);
+        String alias = state.getAlias();
+
+        waitFor(() -> trustManager.getDelegate(alias) != null);
+        X509TrustManager delegate = trustManager.getDelegate(alias);
+
+        // let a few periodic verifications pass
+        Thread.sleep(500);
+        assertNotNull(trustManager.getDelegate(alias));
+        assertSame(delegate, trustManager.getDelegate(alias));
+
+        doDelete(UriUtils.buildUri(host, state.documentSelfLink), false);
+        waitFor(() -> trustManager.getDelegate(alias) == null);
+    }
+}
@@ -11,9 +11,12 @@
 
 package com.vmware.admiral.common.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -21,7 +24,10 @@ import com.vmware.admiral.common.test.BaseTestCase;
 import com.vmware.admiral.host.HostInitCommonServiceConfig;
 import com.vmware.admiral.service.common.CommonInitialBootService;
 import com.vmware.admiral.service.common.UniquePropertiesService;
+import com.vmware.admiral.service.common.UniquePropertiesService.UniquePropertiesRequest;
 import com.vmware.admiral.service.common.UniquePropertiesService.UniquePropertiesState;
+import com.vmware.admiral.service.common.UniquePropertyClaimService;
+import com.vmware.admiral.service.common.UniquePropertyClaimService.UniquePropertyClaimState;
 import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.test.TestContext;
@@ -140,10 +146,10 @@ public class UniquePropertiesUtilTest extends BaseTestCase {
                 });
         ctx1.await();
 
-        UniquePropertiesState state = getDocumentNoWait(UniquePropertiesState.class,
-                testState.documentSelfLink);
+        UniquePropertyClaimState state = getDocumentNoWait(UniquePropertyClaimState.class,
+                UniquePropertyClaimService.buildClaimLink(propertiesId, testEntry));
 
-        assertTrue(state.uniqueProperties.size() == 0);
+        assertFalse(state.claimed);
     }
 
     @Test
@@ -178,11 +184,96 @@ public class UniquePropertiesUtilTest extends BaseTestCase {
 
         ctx1.await();
 
+        UniquePropertyClaimState oldState = getDocumentNoWait(UniquePropertyClaimState.class,
+                UniquePropertyClaimService.buildClaimLink(propertiesId, testEntry));
+        UniquePropertyClaimState newState = getDocumentNoWait(UniquePropertyClaimState.class,
+                UniquePropertyClaimService.buildClaimLink(propertiesId, newTestEntry));
+
+        assertFalse(oldState.claimed);
+        assertTrue(newState.claimed);
+        assertEquals(newTestEntry, newState.value);
+    }
+
+    @Test
+    public void testClaimPropertiesIsAllOrNothing() throws Throwable {
+        String propertiesId = Service.getId(testState.documentSelfLink);
+
+        TestContext ctx = testCreate(1);
+        UniquePropertiesUtil.claimProperty(testService, propertiesId, "entry-2")
+                .whenComplete((isUsed, ex) -> {
+                    if (ex != null) {
+                        ctx.fail(ex);
+                        return;
+                    }
+                    ctx.completeIteration();
+                });
+        ctx.await();
+
+        TestContext ctx1 = testCreate(1);
+        UniquePropertiesUtil.claimProperties(testService, propertiesId,
+                Arrays.asList("entry-1", "Entry-2", "entry-3"))
+                .whenComplete((isUsed, ex) -> {
+                    if (ex != null) {
+                        ctx1.fail(ex);
+                        return;
+                    }
+                    try {
+                        assertTrue(isUsed);
+                    } catch (Throwable err) {
+                        ctx1.fail(err);
+                        return;
+                    }
+                    ctx1.completeIteration();
+                });
+        ctx1.await();
+
+        // the values claimed by the failed call are released
+        for (String entry : Arrays.asList("entry-1", "entry-3")) {
+            UniquePropertyClaimState state = getDocumentNoWait(UniquePropertyClaimState.class,
+                    UniquePropertyClaimService.buildClaimLink(propertiesId, entry));
+            assertTrue(state == null || !state.claimed);
+        }
+    }
+
+    @Test
+    public void testMigrateProperties() throws Throwable {
+        String propertiesId = Service.getId(testState.documentSelfLink);
+
+        UniquePropertiesRequest request = new UniquePropertiesRequest();
+        request.toAdd = Arrays.asList("legacy-1", "legacy-2");
+        doPatch(request, testState.documentSelfLink);
+
+        TestContext ctx = testCreate(1);
+        UniquePropertiesUtil.migrateProperties(testService, propertiesId)
+                .whenComplete((ignore, ex) -> {
+                    if (ex != null) {
+                        ctx.fail(ex);
+                        return;
+                    }
+                    ctx.completeIteration();
+                });
+        ctx.await();
+
         UniquePropertiesState state = getDocumentNoWait(UniquePropertiesState.class,
                 testState.documentSelfLink);
+        assertTrue(state.uniqueProperties.isEmpty());
 
-        assertTrue(state.uniqueProperties.size() == 1);
-        assertTrue(state.uniqueProperties.contains(newTestEntry));
+        TestContext ctx1 = testCreate(1);
+        UniquePropertiesUtil.claimProperty(testService, propertiesId, "Legacy-1")
+                .whenComplete((isUsed, ex) -> {
+                    if (ex != null) {
+                        ctx1.fail(ex);
+                        return;
+                    }
+                    try {
+                        assertTrue(isUsed);
+                    } catch (Throwable err) {
+                        ctx1.fail(err);
+                        return;
+                    }
+                    ctx1.completeIteration();
+                });
+        ctx1.await();
     }
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static com.vmware.admiral.host.StartupGraph.dependsOn;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.host.StartupGraph.GroupTiming;
+import com.vmware.admiral.host.StartupGraph.StartupReport;
+import com.vmware.admiral.service.common.StartupReportService;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+
+public class StartupGraphTest extends BaseTestCase {
+
+    private static final long GROUP_START_MILLIS = 500;
+
+    @Test
+    public void testStartGroupsAfterTheirDependencies() throws Throwable {
+        StartupReport report = new StartupGraph(host)
+                .add("a", () -> slowStart("/test/a"), "/test/a")
+                .add("b", () -> slowStart("/test/b"), "/test/b")
+                .add("c", dependsOn("a", "b"), () -> slowStart("/test/c"), "/test/c")
+                .add("d", dependsOn("a"), () -> slowStart("/test/d"))
+                .start().get(1, TimeUnit.MINUTES);
+
+        Map<String, GroupTiming> timings = report.groups.stream()
+                .collect(Collectors.toMap(t -> t.name, t -> t));
+        assertEquals(4, timings.size());
+
+        // dependents start once the services of their dependencies are available
+        GroupTiming a = timings.get("a");
+        GroupTiming b = timings.get("b");
+        assertTrue(timings.get("c").startedAtMillis >= a.readyAtMillis);
+        assertTrue(timings.get("c").startedAtMillis >= b.readyAtMillis);
+        assertTrue(timings.get("d").startedAtMillis >= a.readyAtMillis);
+        assertNotNull(a.servicesReadyAtMillis.get("/test/a"));
+        assertTrue(a.readyAtMillis >= GROUP_START_MILLIS);
+        assertTrue(report.totalMillis >= timings.get("c").readyAtMillis);
+    }
+
+    @Test
+    public void testStartDoesNotWaitForTheGroups() throws Throwable {
+        StartupGraph graph = new StartupGraph(host)
+                .add("a", () -> slowStart("/test/a"), "/test/a");
+        CompletableFuture<StartupReport> started = graph.start();
+
+        assertFalse(started.isDone());
+        assertEquals(0, graph.getReport().groups.get(0).readyAtMillis);
+        started.get(1, TimeUnit.MINUTES);
+        assertTrue(graph.getReport().groups.get(0).readyAtMillis >= GROUP_START_MILLIS);
+    }
+
+    @Test
+    public void testFailedGroupDoesNotStopIndependentGroups() throws Throwable {
+        CompletableFuture<StartupReport> started = new StartupGraph(host)
+                .add("a", () -> {
+                    throw new IllegalStateException("expected");
+                })
+                .add("b", dependsOn("a"), () -> slowStart("/test/b"), "/test/b")
+                .add("c", () -> slowStart("/test/c"), "/test/c")
+                .start();
+
+        try {
+            started.get(1, TimeUnit.MINUTES);
+            fail("Startup should fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        assertNotNull(host.getServiceStage("/test/c"));
+        assertNull(host.getServiceStage("/test/b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddGroupBeforeItsDependencies() {
+        new StartupGraph(host)
+                .add("b", dependsOn("a"), () -> { })
+                .add("a", () -> { });
+    }
+
+    @Test
+    public void testStartupReportService() throws Throwable {
+        StartupGraph graph = new StartupGraph(host).add("a", () -> slowStart("/test/a"),
+                "/test/a");
+        graph.start().get(1, TimeUnit.MINUTES);
+        host.startServiceAndWait(new StartupReportService(graph.getReport()),
+                StartupReportService.SELF_LINK, null);
+
+        StartupReport report = getDocument(StartupReport.class,
+                StartupReportService.SELF_LINK);
+
+        assertEquals(1, report.groups.size());
+        assertEquals("a", report.groups.get(0).name);
+        assertEquals(graph.getReport().totalMillis, report.totalMillis);
+    }
+
+    private void slowStart(String link) throws InterruptedException {
+        Thread.sleep(GROUP_START_MILLIS);
+        host.startService(Operation.createPost(UriUtils.buildUri(host, link)),
+                new StatelessService());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption.AUTO_MERGE_IF_NOT_NULL;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+
+public class EphemeralTaskTest extends BaseTestCase {
+
+    private static final int STEPS = 5;
+    private static final int MARKS = 20;
+
+    @Before
+    public void setUp() throws Throwable {
+        host.startFactory(new StepsTaskService());
+        host.startFactory(new EphemeralStepsTaskService());
+        host.startFactory(new MarksTaskService());
+        waitForServiceAvailability(StepsTaskService.FACTORY_LINK,
+                EphemeralStepsTaskService.FACTORY_LINK, MarksTaskService.FACTORY_LINK);
+    }
+
+    @Test
+    public void testEphemeralTaskWritesOnlyTheOutcome() throws Throwable {
+        StepsTaskState task = runTask(StepsTaskService.FACTORY_LINK);
+        StepsTaskState ephemeralTask = runTask(EphemeralStepsTaskService.FACTORY_LINK);
+
+        assertEquals(TaskStage.FINISHED, ephemeralTask.taskInfo.stage);
+        assertEquals(STEPS, ephemeralTask.steps.intValue());
+        assertEquals(STEPS, task.steps.intValue());
+
+        // the initial POST and the completion, instead of a version per step
+        assertTrue("Unexpected version " + ephemeralTask.documentVersion,
+                ephemeralTask.documentVersion < task.documentVersion);
+        assertTrue("Unexpected version " + ephemeralTask.documentVersion,
+                ephemeralTask.documentVersion <= 2);
+    }
+
+    @Test
+    public void testEphemeralTransitionsKeepConcurrentPatches() throws Throwable {
+        StepsTaskState task = doPost(new StepsTaskState(), MarksTaskService.FACTORY_LINK);
+
+        // the task keeps transitioning in memory until it is patched with all marks
+        List<Operation> patches = new ArrayList<>();
+        for (int i = 0; i < MARKS; i++) {
+            StepsTaskState patch = new StepsTaskState();
+            patch.taskInfo = TaskState.createAsStarted();
+            patch.marks = Collections.singleton("mark-" + i);
+            patches.add(Operation.createPatch(host, task.documentSelfLink).setBody(patch));
+        }
+        host.getTestRequestSender().sendAndWait(patches);
+
+        task = waitForTaskSuccess(task.documentSelfLink, StepsTaskState.class);
+        assertEquals(MARKS, task.marks.size());
+    }
+
+    private StepsTaskState runTask(String factoryLink) throws Throwable {
+        StepsTaskState task = doPost(new StepsTaskState(), factoryLink);
+        return waitForTaskSuccess(task.documentSelfLink, StepsTaskState.class);
+    }
+
+    public static class StepsTaskState extends TaskServiceDocument<DefaultSubStage> {
+        @PropertyOptions(usage = AUTO_MERGE_IF_NOT_NULL)
+        public Integer steps;
+
+        public Set<String> marks;
+    }
+
+    public static class StepsTaskService
+            extends AbstractTaskStatefulService<StepsTaskState, DefaultSubStage> {
+
+        public static final String FACTORY_LINK = "/test/steps-tasks";
+
+        public StepsTaskService() {
+            super(StepsTaskState.class, DefaultSubStage.class, "Steps Task");
+            super.toggleOption(ServiceOption.PERSISTENCE, true);
+            super.toggleOption(ServiceOption.REPLICATION, true);
+            super.toggleOption(ServiceOption.OWNER_SELECTION, true);
+        }
+
+        @Override
+        protected void handleStartedStagePatch(StepsTaskState state) {
+            switch (state.taskSubStage) {
+            case CREATED:
+                proceedTo(DefaultSubStage.PROCESSING, s -> s.steps = 1);
+                break;
+            case PROCESSING:
+                if (state.steps < STEPS) {
+                    proceedTo(DefaultSubStage.PROCESSING, s -> s.steps = state.steps + 1);
+                } else {
+                    complete();
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    public static class EphemeralStepsTaskService extends StepsTaskService {
+        public static final String FACTORY_LINK = "/test/ephemeral-steps-tasks";
+
+        public EphemeralStepsTaskService() {
+            setEphemeral(true);
+        }
+    }
+
+    public static class MarksTaskService extends StepsTaskService {
+        public static final String FACTORY_LINK = "/test/ephemeral-marks-tasks";
+
+        public MarksTaskService() {
+            setEphemeral(true);
+        }
+
+        @Override
+        protected void customStateValidationAndMerge(Operation patch, StepsTaskState patchBody,
+                StepsTaskState currentState) {
+            if (patchBody.marks != null) {
+                if (currentState.marks == null) {
+                    currentState.marks = new HashSet<>();
+                }
+                currentState.marks.addAll(patchBody.marks);
+            }
+        }
+
+        @Override
+        protected void handleStartedStagePatch(StepsTaskState state) {
+            if (state.marks == null || state.marks.size() < MARKS) {
+                int steps = state.steps != null ? state.steps : 0;
+                proceedTo(DefaultSubStage.PROCESSING, s -> s.steps = steps + 1);
+            } else {
+                complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.metrics.MetricRegistry;
+import com.vmware.admiral.common.metrics.MetricRegistry.Counter;
+import com.vmware.admiral.common.metrics.MetricRegistry.Histogram;
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+
+public class MetricsServiceTest extends BaseTestCase {
+
+    @Before
+    public void setUp() throws Throwable {
+        host.startServiceAndWait(MetricsService.class, MetricsService.SELF_LINK);
+    }
+
+    @Test
+    public void testRender() {
+        MetricRegistry registry = new MetricRegistry();
+        Counter counter = registry.counter("test_requests_total", "Requests.",
+                "path", "/a\"b");
+        counter.inc();
+        counter.add(2);
+        registry.gauge("test_queue_depth", "Queue depth.", () -> 4);
+        Histogram histogram = registry.histogram("test_duration_seconds", "Duration.",
+                "client", "default");
+        histogram.observeMicros(10);
+        histogram.observeMicros(100);
+        histogram.observeMicros(1000);
+        histogram.observeMicros(Long.MAX_VALUE / 2);
+
+        String text = registry.render();
+
+        assertTrue(text, text.contains("# HELP test_requests_total Requests.\n"
+                + "# TYPE test_requests_total counter\n"
+                + "test_requests_total{path=\"/a\\\"b\"} 3\n"));
+        assertTrue(text, text.contains("# TYPE test_queue_depth gauge\n"
+                + "test_queue_depth 4.0\n"));
+        assertTrue(text, text.contains("# TYPE test_duration_seconds histogram\n"
+                + "test_duration_seconds_bucket{client=\"default\",le=\"0.000064\"} 1\n"
+                + "test_duration_seconds_bucket{client=\"default\",le=\"0.000128\"} 2\n"));
+        assertTrue(text, text.contains(
+                "test_duration_seconds_bucket{client=\"default\",le=\"0.001024\"} 3\n"));
+        assertTrue(text, text.contains(
+                "test_duration_seconds_bucket{client=\"default\",le=\"67.108864\"} 3\n"
+                        + "test_duration_seconds_bucket{client=\"default\",le=\"+Inf\"} 4\n"));
+        assertTrue(text, text.contains("test_duration_seconds_count{client=\"default\"} 4\n"));
+        assertEquals(4, histogram.getCount());
+
+        registry.unregister("test_queue_depth");
+        assertFalse(registry.render().contains("test_queue_depth"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterWithDifferentType() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("test_metric", "Metric.");
+        registry.histogram("test_metric", "Metric.");
+    }
+
+    @Test
+    public void testObserveOperation() throws Throwable {
+        Histogram histogram = MetricRegistry.getDefault().histogram(
+                "test_operation_duration_seconds", "Duration of the test operations.");
+        AtomicReference<String> body = new AtomicReference<>();
+
+        Operation get = Operation.createGet(UriUtils.buildUri(host, MetricsService.SELF_LINK))
+                .forceRemote()
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        host.failIteration(e);
+                        return;
+                    }
+                    body.set(o.getBody(String.class));
+                    host.completeIteration();
+                });
+        host.testStart(1);
+        host.send(histogram.observe(get));
+        host.testWait();
+
+        assertEquals(1, histogram.getCount());
+        assertTrue(body.get(), body.get().contains(
+                "# TYPE test_operation_duration_seconds histogram\n"));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.host.HostInitCommonServiceConfig;
+import com.vmware.admiral.service.common.UniquePropertyClaimService.UniquePropertyClaimState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.TestRequestSender.FailureResponse;
+
+public class UniquePropertyClaimServiceTest extends BaseTestCase {
+    private static final String PROPERTIES_ID = "test-properties";
+
+    @Before
+    public void setup() throws Throwable {
+        HostInitCommonServiceConfig.startServices(host);
+        waitForServiceAvailability(UniquePropertyClaimService.FACTORY_LINK);
+        waitForInitialBootServiceToBeSelfStopped(CommonInitialBootService.SELF_LINK);
+    }
+
+    @Test
+    public void testClaimAndFree() throws Throwable {
+        UniquePropertyClaimState state = doPost(
+                UniquePropertyClaimService.buildClaim(PROPERTIES_ID, "Test-Entry"),
+                UniquePropertyClaimService.FACTORY_LINK);
+        assertEquals(UniquePropertyClaimService.buildClaimLink(PROPERTIES_ID, "test-entry"),
+                state.documentSelfLink);
+        assertEquals("test-entry", state.value);
+        assertTrue(state.claimed);
+
+        // claiming the same value again, in any case, conflicts
+        FailureResponse failure = host.getTestRequestSender().sendAndWaitFailure(
+                Operation.createPost(host, UniquePropertyClaimService.FACTORY_LINK)
+                        .setBody(UniquePropertyClaimService.buildClaim(PROPERTIES_ID,
+                                "TEST-ENTRY")));
+        assertEquals(Operation.STATUS_CODE_CONFLICT, failure.op.getStatusCode());
+
+        doPatch(new UniquePropertyClaimState(), state.documentSelfLink);
+        state = getDocumentNoWait(UniquePropertyClaimState.class, state.documentSelfLink);
+        assertFalse(state.claimed);
+
+        // a freed value can be claimed again
+        state = doPost(UniquePropertyClaimService.buildClaim(PROPERTIES_ID, "test-entry"),
+                UniquePropertyClaimService.FACTORY_LINK);
+        assertTrue(state.claimed);
+    }
+
+    @Test
+    public void testConcurrentClaimsOfTheSameValue() {
+        List<Operation> posts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            posts.add(Operation.createPost(host, UniquePropertyClaimService.FACTORY_LINK)
+                    .setBody(UniquePropertyClaimService.buildClaim(PROPERTIES_ID, "concurrent")));
+        }
+
+        int[] claims = new int[1];
+        int[] conflicts = new int[1];
+        TestContext ctx = testCreate(posts.size());
+        for (Operation post : posts) {
+            host.send(post.setReferer(host.getUri()).setCompletion((o, e) -> {
+                synchronized (claims) {
+                    if (e == null) {
+                        claims[0]++;
+                    } else if (o.getStatusCode() == Operation.STATUS_CODE_CONFLICT) {
+                        conflicts[0]++;
+                    }
+                }
+                ctx.completeIteration();
+            }));
+        }
+        ctx.await();
+
+        assertEquals(1, claims[0]);
+        assertEquals(posts.size() - 1, conflicts[0]);
+    }
+}
@@ -32,8 +32,14 @@ public interface ManagementUriParts {
     String INSTANCE_TYPE_PROFILES = CONFIG + "/instance-types";
     String MIGRATION = CONFIG + "/migration";
     String UNIQUE_PROPERTIES = CONFIG + "/unique-properties";
+    String UNIQUE_PROPERTY_CLAIMS = UNIQUE_PROPERTIES + "-claims";
     String FAVORITE_IMAGES_FLAG = CONFIG + "/should-populate-favorites";
 
+    // Management:
+    String MGMT = URI_PREFIX + "/mgmt";
+    String METRICS = MGMT + "/metrics";
+    String STARTUP_REPORT = MGMT + "/startup";
+
     String COMPOSITE_DESCRIPTION_UPGRADE_TRANSFORM_PATH = UPGRADE_TRANSFORM_PREFIX
             + "/composite-descriptions";
     String CONTAINERS_UPGRADE_TRANSFORM_PATH = UPGRADE_TRANSFORM_PREFIX + "/containers";
@@ -55,6 +61,7 @@ public interface ManagementUriParts {
     String EXTENSIBILITY_SUBSCRIPTION = EXTENSIBILITY + "-subscriptions";
     String EXTENSIBILITY_MANAGER = EXTENSIBILITY + "-manager";
     String EXTENSIBILITY_CALLBACKS = EXTENSIBILITY + "-callbacks";
+    String EXTENSIBILITY_OUTBOX = EXTENSIBILITY + "-outbox";
 
     String EVENT_TOPIC = CONFIG + "/event-topic";
 
@@ -66,6 +73,7 @@ public interface ManagementUriParts {
     String RESOURCES = URI_PREFIX + "/resources";
     String RESOURCE_GROUP_PLACEMENTS = RESOURCES + "/group-placements";
     String RESOURCE_NAME_PREFIXES = RESOURCES + "/name-prefixes";
+    String RESOURCE_NAME_PREFIX_ALLOCATION = RESOURCE_NAME_PREFIXES + "-allocation";
     String DEPLOYMENT_POLICIES = RESOURCES + "/deployment-policies";
     String HOST_PORT_PROFILES = RESOURCES + "/host-port-profiles";
     String ELASTIC_PLACEMENT_ZONES = RESOURCES + "/elastic-placement-zones";
@@ -96,6 +104,8 @@ public interface ManagementUriParts {
 
     String CONTAINERS = RESOURCES + "/containers";
     String CONTAINER_STATS = RESOURCES + "/container-stats";
+    String CONTAINER_STATS_HISTORY = CONTAINER_STATS + "/history";
+    String CONTAINER_HEALTH_CHECK_SCHEDULER = RESOURCES + "/container-health-check-scheduler";
     String CONTAINER_LOGS = RESOURCES + "/container-logs";
     String CONTAINER_SHELL = RESOURCES + "/container-shell";
     String CONTAINER_DESC = RESOURCES + "/container" + DESCRIPTION_SUFFIX;
@@ -111,6 +121,7 @@ public interface ManagementUriParts {
     String CLOSURES_DESC = RESOURCES + "/closure" + DESCRIPTION_SUFFIX;
     String CLOSURES_IMAGES = RESOURCES + "/closure-images";
     String CLOSURES_CONTAINER_DESC = CONTAINER_DESC + "/closure-container-desc";
+    String CLOSURES_CONTAINER_POOL = RESOURCES + "/closure-container-pool";
 
     String CONTAINER_HOSTS = RESOURCES + "/hosts";
     String CONTAINER_HOST_DATA_COLLECTION = RESOURCES + "/hosts-data-collections";
@@ -157,6 +168,7 @@ public interface ManagementUriParts {
     String REQUEST = URI_PREFIX + "/request";
     String REQUESTS = URI_PREFIX + "/requests";
     String REQUEST_STATUS = URI_PREFIX + "/request-status";
+    String REQUEST_STATUS_AGGREGATOR = REQUEST_STATUS + "-aggregator";
     String REQUEST_GRAPH = URI_PREFIX + "/request-graph";
     String REQUEST_RESOURCE_OPERATIONS = REQUEST + "/resource-operations";
     String REQUEST_REMOVAL_OPERATIONS = REQUEST + "/resource-removal-operations";
@@ -194,6 +206,8 @@ public interface ManagementUriParts {
     String REQUEST_PROVISION_NAME_PREFIXES_TASKS = REQUEST + "/resource-prefix-tasks";
     String REQUEST_CALLBACK_HANDLER_TASKS = REQUEST + "/callback-handler/";
     String REQUEST_CONTAINER_PORTS_ALLOCATION_TASKS = REQUEST + "/container-ports-allocation-tasks";
+    String REQUEST_CONTAINER_PROVISIONING_SCHEDULER = REQUEST
+            + "/container-provisioning-scheduler";
     String REQUEST_PROVISION_PKS_CLUSTER_TASK = REQUEST + "/provision-pks-cluster-task";
     String REQUEST_REMOVE_PKS_CLUSTER_TASK = REQUEST + "/remove-pks-cluster-task";
     String REQUEST_RESIZE_PKS_CLUSTER_TASK = REQUEST + "/resize-pks-cluster-task";
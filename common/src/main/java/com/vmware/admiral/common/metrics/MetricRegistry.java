@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.common.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+
+/**
+ * Registry of counters, gauges and latency histograms rendered in the Prometheus text exposition
+ * format by the {@link com.vmware.admiral.service.common.MetricsService}.
+ *
+ * Counters and histograms are lock-free and can be updated from any thread. Gauges are read
+ * through a callback only when the registry is rendered. The sample names and labels are rendered
+ * once, when a metric is registered, so a scrape only appends the current values.
+ */
+public class MetricRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private static final MetricRegistry DEFAULT = new MetricRegistry();
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private volatile int renderedLength = 1024;
+
+    /**
+     * Returns the registry shared by the services of the process.
+     */
+    public static MetricRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the counter with the given name and label pairs, registering it if missing.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).children.computeIfAbsent(
+                labels(labels), l -> new Counter(name, l));
+    }
+
+    /**
+     * Returns the histogram with the given name and label pairs, registering it if missing.
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).children.computeIfAbsent(
+                labels(labels), l -> new Histogram(name, l));
+    }
+
+    /**
+     * Registers a gauge with the given name and label pairs which value is read from the given
+     * supplier on every render. A gauge registered with the same labels is replaced.
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        String l = labels(labels);
+        family(name, help, Type.GAUGE).children.put(l, new Gauge(name, l, supplier));
+    }
+
+    /**
+     * Removes the metric with the given name and label pairs, e.g. a gauge which supplier
+     * references a stopped service.
+     */
+    public void unregister(String name, String... labels) {
+        Family family = families.get(name);
+        if (family != null) {
+            family.children.remove(labels(labels));
+        }
+    }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder(renderedLength);
+        render(sb);
+        if (sb.length() > renderedLength) {
+            renderedLength = sb.length();
+        }
+        return sb.toString();
+    }
+
+    public void render(StringBuilder sb) {
+        for (Family family : families.values()) {
+            if (family.children.isEmpty()) {
+                continue;
+            }
+            sb.append(family.header);
+            for (Metric metric : family.children.values()) {
+                metric.render(sb);
+            }
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException(String.format(
+                    "Metric %s is already registered as %s", name, family.type));
+        }
+        return family;
+    }
+
+    static String labels(String... labels) {
+        if (labels == null || labels.length == 0) {
+            return "";
+        }
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final class Family {
+        private final String header;
+        private final Type type;
+        private final Map<String, Metric> children = new ConcurrentSkipListMap<>();
+
+        private Family(String name, String help, Type type) {
+            this.header = "# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n")
+                    + "\n# TYPE " + name + " " + type.name().toLowerCase() + "\n";
+            this.type = type;
+        }
+    }
+
+    private abstract static class Metric {
+        abstract void render(StringBuilder sb);
+    }
+
+    /**
+     * Monotonically increasing count, e.g. of requests or failures.
+     */
+    public static final class Counter extends Metric {
+        private final String sample;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String labels) {
+            this.sample = name + labels + " ";
+        }
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        void render(StringBuilder sb) {
+            sb.append(sample).append(value.sum()).append('\n');
+        }
+    }
+
+    private static final class Gauge extends Metric {
+        private final String sample;
+        private final DoubleSupplier supplier;
+
+        private Gauge(String name, String labels, DoubleSupplier supplier) {
+            this.sample = name + labels + " ";
+            this.supplier = supplier;
+        }
+
+        @Override
+        void render(StringBuilder sb) {
+            sb.append(sample).append(supplier.getAsDouble()).append('\n');
+        }
+    }
+
+    /**
+     * Latency histogram with buckets of exponentially growing width, from 64 microseconds to
+     * about 67 seconds, so that the relative error of a recorded value is bound by its bucket
+     * instead of by a fixed bucket width.
+     */
+    public static final class Histogram extends Metric {
+        private static final int MIN_EXPONENT = 6;
+        private static final int MAX_EXPONENT = 26;
+        private static final String[] UPPER_BOUNDS = new String[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+        static {
+            for (int i = 0; i < UPPER_BOUNDS.length; i++) {
+                UPPER_BOUNDS[i] = BigDecimal.valueOf(1L << (MIN_EXPONENT + i), 6)
+                        .stripTrailingZeros().toPlainString();
+            }
+        }
+
+        private final String bucketSample;
+        private final String sumSample;
+        private final String countSample;
+        // the last bucket counts the values over the highest upper bound
+        private final AtomicLongArray buckets = new AtomicLongArray(UPPER_BOUNDS.length + 1);
+        private final LongAdder sumMicros = new LongAdder();
+
+        private Histogram(String name, String labels) {
+            this.bucketSample = name + "_bucket" + (labels.isEmpty() ? "{"
+                    : labels.substring(0, labels.length() - 1) + ",") + "le=\"";
+            this.sumSample = name + "_sum" + labels + " ";
+            this.countSample = name + "_count" + labels + " ";
+        }
+
+        public void observeMicros(long micros) {
+            buckets.incrementAndGet(bucketIndex(micros));
+            sumMicros.add(Math.max(micros, 0));
+        }
+
+        /**
+         * Observes the time from now until the completion of the given operation and returns the
+         * operation. Must be called after its completion handler is set.
+         */
+        public Operation observe(Operation op) {
+            long startNanos = System.nanoTime();
+            CompletionHandler completion = op.getCompletion();
+            op.setCompletion((o, e) -> {
+                observeMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+                if (completion != null) {
+                    completion.handle(o, e);
+                }
+            });
+            return op;
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        static int bucketIndex(long micros) {
+            if (micros <= (1L << MIN_EXPONENT)) {
+                return 0;
+            }
+            int exponent = Long.SIZE - Long.numberOfLeadingZeros(micros - 1);
+            return Math.min(exponent - MIN_EXPONENT, UPPER_BOUNDS.length);
+        }
+
+        @Override
+        void render(StringBuilder sb) {
+            long count = 0;
+            for (int i = 0; i < UPPER_BOUNDS.length; i++) {
+                count += buckets.get(i);
+                sb.append(bucketSample).append(UPPER_BOUNDS[i]).append("\"} ").append(count)
+                        .append('\n');
+            }
+            count += buckets.get(UPPER_BOUNDS.length);
+            sb.append(bucketSample).append("+Inf\"} ").append(count).append('\n');
+            sb.append(sumSample).append(sumMicros.sum() / 1e6).append('\n');
+            sb.append(countSample).append(count).append('\n');
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.vmware.admiral.service.common.EventTopicService.EventTopicState;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionService.ExtensibilitySubscription;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.photon.controller.model.resources.ComputeService.LifecycleState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
@@ -62,11 +63,21 @@ public class CommonContinuousQueries {
          */
         COMPUTES,
 
+        /**
+         * Query for all {@link ComputeState}s, including the ones owned by other nodes.
+         */
+        ALL_COMPUTES,
+
         /**
          * Query for all {@link ComputeState}s in {@link LifecycleState.RETIRED} state.
          */
         RETIRED_COMPUTES,
 
+        /**
+         * Query for all {@link ResourcePoolState}s.
+         */
+        RESOURCE_POOLS,
+
         /**
          * Query for all {@link EventTopicState}s
          */
@@ -83,7 +94,27 @@ public class CommonContinuousQueries {
      */
     public static void subscribeTo(ServiceHost host, ContinuousQueryId queryId,
             Consumer<Operation> consumer) {
-        QueryTask task = getQueryTask(host, queryId);
+        subscribeTo(host, getQueryTask(host, queryId), consumer);
+    }
+
+    /**
+     * Subscribes a consumer to a continuous query for documents of types not known to this
+     * module. The expanded documents matching the given query are sent to the consumer. Consumers
+     * subscribed with the same name share the query.
+     */
+    public static void subscribeTo(ServiceHost host, String queryName, Query query,
+            Consumer<Operation> consumer) {
+        QueryTask task = QueryTask.Builder.create()
+                .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                .setQuery(query).build();
+        task.documentSelfLink = QUERY_TASK_SELF_LINK_PREFIX + "-" + queryName;
+        task.documentExpirationTimeMicros = Utils.fromNowMicrosUtc(
+                TimeUnit.DAYS.toMicros(QUERY_TASK_EXPIRATION_DAYS));
+        subscribeTo(host, task, consumer);
+    }
+
+    private static void subscribeTo(ServiceHost host, QueryTask task,
+            Consumer<Operation> consumer) {
         Operation.createPost(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
                 .setBody(task)
                 .setReferer(host.getUri())
@@ -121,6 +152,14 @@ public class CommonContinuousQueries {
             task = QueryTask.Builder.create().addOption(QueryOption.CONTINUOUS)
                     .setQuery(computeQuery).build();
             break;
+        case ALL_COMPUTES:
+            Query allComputesQuery = Query.Builder.create()
+                    .addKindFieldClause(ComputeState.class)
+                    .build();
+            task = QueryTask.Builder.create()
+                    .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                    .setQuery(allComputesQuery).build();
+            break;
         case RETIRED_COMPUTES:
             Query retiredComputesQuery = Query.Builder.create()
                     .addKindFieldClause(ComputeState.class)
@@ -130,6 +169,14 @@ public class CommonContinuousQueries {
             task = QueryTask.Builder.create().addOption(QueryOption.CONTINUOUS)
                     .setQuery(retiredComputesQuery).build();
             break;
+        case RESOURCE_POOLS:
+            Query resourcePoolQuery = Query.Builder.create()
+                    .addKindFieldClause(ResourcePoolState.class)
+                    .build();
+            task = QueryTask.Builder.create()
+                    .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                    .setQuery(resourcePoolQuery).build();
+            break;
         case EVENT_TOPICS:
             Query eventTopicQuery = Query.Builder.create()
                     .addKindFieldClause(EventTopicState.class)
@@ -21,7 +21,11 @@ import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,16 +40,19 @@ import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState
 import com.vmware.admiral.service.common.SslTrustCertificateService.SslTrustCertificateState;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * Server Trust Manager that can verify public certificates as well as self-signed stored in
  * SslTrustCertificateService. The TrustManager is synchronized with any changes in
  * SslTrustCertificateService and have up to date ssl trust certificate at any point of time with
  * some delays when the deployment requires polling for updates instead of subscription based model.
+ * Only the changed certificates are loaded and a certificate is parsed again only if it changed.
  */
 public class ServerX509TrustManager implements X509TrustManager, Closeable {
     private static final String SSL_TRUST_CONFIG_SUBSCRIBE_FOR_LINK = UriUtils.buildUriPath(
@@ -79,6 +86,9 @@ public class ServerX509TrustManager implements X509TrustManager, Closeable {
     /* Last time the document was update in microseconds since UNIX epoch */
     private volatile long documentUpdateTimeMicros;
 
+    /* Certificates loaded from SslTrustCertificateService, by alias */
+    private final Map<String, LoadedCertificate> loadedCertificates = new ConcurrentHashMap<>();
+
     private AtomicBoolean started = new AtomicBoolean();
 
     public static ServerX509TrustManager create(ServiceHost host) {
@@ -215,9 +225,9 @@ public class ServerX509TrustManager implements X509TrustManager, Closeable {
 
         Runnable task = () -> {
             try {
-                host.log(Level.FINE, "Host %s reloading all certificates", host.getPublicUri());
-                documentUpdateTimeMicros = 0;
-                loadSslTrustCertServices();
+                host.log(Level.FINE, "Host %s verifying the loaded certificates",
+                        host.getPublicUri());
+                verifyLoadedCertificates(nextDelay);
 
                 reloadCounter.updateAndGet((r) -> (r > reloadCounterThreshold) ? r : r + 1);
 
@@ -255,6 +265,46 @@ public class ServerX509TrustManager implements X509TrustManager, Closeable {
         this.documentUpdateTimeMicros = currentDocumentUpdateTimeMicros;
     }
 
+    /**
+     * Compares the links of the stored certificates with the loaded ones and reloads all
+     * certificates only if they differ, e.g. because a replicated certificate was missed or a
+     * deleted one was already removed from the index. Otherwise only the certificates updated
+     * since the previous check are reloaded, in case one was replicated with an older update time.
+     */
+    private void verifyLoadedCertificates(long sinceLastCheckMicros) {
+        long updatedSinceMicros = Math.max(0, documentUpdateTimeMicros - sinceLastCheckMicros);
+        Set<String> aliases = new HashSet<>();
+        QueryTask q = QueryUtil.buildQuery(SslTrustCertificateState.class, true);
+        sslTrustQuery.query(q, (r) -> {
+            if (r.hasException()) {
+                host.log(Level.WARNING, "Exception during ssl trust cert verification: %s",
+                        Utils.toString(r.getException()));
+                return;
+            }
+            if (r.hasResult()) {
+                aliases.add(Service.getId(r.getDocumentSelfLink()));
+                return;
+            }
+
+            if (aliases.equals(loadedCertificates.keySet())) {
+                long currentDocumentUpdateTimeMicros = Utils.getNowMicrosUtc();
+                sslTrustQuery.queryUpdatedSince(updatedSinceMicros, queryHandler);
+                documentUpdateTimeMicros = Math.max(documentUpdateTimeMicros,
+                        currentDocumentUpdateTimeMicros);
+                return;
+            }
+
+            host.log(Level.FINE, "Loaded certificates differ from the stored ones, reloading");
+            for (String alias : loadedCertificates.keySet()) {
+                if (!aliases.contains(alias)) {
+                    queryHandler.deleteCertificate(alias);
+                }
+            }
+            documentUpdateTimeMicros = 0;
+            loadSslTrustCertServices();
+        });
+    }
+
     private void subscribeForSslTrustCertNotifications() {
         this.subscriptionManager.start((n) -> {
             loadSslTrustCertServices();
@@ -320,6 +370,20 @@ public class ServerX509TrustManager implements X509TrustManager, Closeable {
         return this.delegatingTrustManager.getDelegate(key);
     }
 
+    /**
+     * A certificate loaded from a {@link SslTrustCertificateState} and the trust manager built
+     * from it.
+     */
+    private static class LoadedCertificate {
+        private final String certificateHash;
+        private final X509TrustManager trustManager;
+
+        private LoadedCertificate(String certificateHash, X509TrustManager trustManager) {
+            this.certificateHash = certificateHash;
+            this.trustManager = trustManager;
+        }
+    }
+
     private static class SslTrustQueryCompletionHandler implements
             Consumer<ServiceDocumentQueryElementResult<SslTrustCertificateState>> {
         private final ServerX509TrustManager self;
@@ -348,10 +412,23 @@ public class ServerX509TrustManager implements X509TrustManager, Closeable {
         }
 
         private void loadCertificate(SslTrustCertificateState sslTrustCert) {
+            String alias = sslTrustCert.getAlias();
             try {
-                self.putDelegate(sslTrustCert.getAlias(), sslTrustCert.certificate);
+                // building the trust manager parses the certificate, skip it if unchanged
+                String certificateHash = Utils.computeHash(sslTrustCert.certificate);
+                LoadedCertificate loaded = self.loadedCertificates.get(alias);
+                if (loaded != null && loaded.certificateHash.equals(certificateHash)
+                        && self.getDelegate(alias) == loaded.trustManager) {
+                    return;
+                }
+
+                X509TrustManager trustManager = (X509TrustManager) CertificateUtil
+                        .getTrustManagers(alias, sslTrustCert.certificate)[0];
+                self.delegatingTrustManager.putDelegate(alias, trustManager);
+                self.loadedCertificates.put(alias,
+                        new LoadedCertificate(certificateHash, trustManager));
                 Utils.log(getClass(), "Self Signed Trust Store", Level.FINE,
-                        "Certificate with alias %s updated", sslTrustCert.getAlias());
+                        "Certificate with alias %s updated", alias);
             } catch (Throwable e) {
                 Utils.logWarning(
                         "Exception during certificate reload with alias: %s. Error: %s",
@@ -360,6 +437,7 @@ public class ServerX509TrustManager implements X509TrustManager, Closeable {
         }
 
         private void deleteCertificate(String alias) {
+            self.loadedCertificates.remove(alias);
             self.delegatingTrustManager.removeDelegate(alias);
             Utils.log(getClass(), "Self Signed Trust Store", Level.FINE,
                     "Certificate with alias %s removed", alias);
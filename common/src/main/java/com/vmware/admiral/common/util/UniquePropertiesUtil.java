@@ -14,20 +14,34 @@ package com.vmware.admiral.common.util;
 import static com.vmware.admiral.common.util.AssertUtil.assertNotNull;
 import static com.vmware.admiral.common.util.AssertUtil.assertNotNullOrEmpty;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 import com.vmware.admiral.service.common.UniquePropertiesService;
 import com.vmware.admiral.service.common.UniquePropertiesService.UniquePropertiesRequest;
+import com.vmware.admiral.service.common.UniquePropertiesService.UniquePropertiesState;
+import com.vmware.admiral.service.common.UniquePropertyClaimService;
+import com.vmware.admiral.service.common.UniquePropertyClaimService.UniquePropertyClaimState;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.UriUtils;
 
+/**
+ * Claims unique values, e.g. project names, through {@link UniquePropertyClaimService}, one
+ * document per value.
+ */
 public class UniquePropertiesUtil {
 
     /**
      * @param service Service that is using the util.
-     * @param propertiesId The ID of UniquePropertiesService's child which hold the unique elements.
+     * @param propertiesId The ID of the group of unique values.
      * @param propertyName The property should be added in the list of unique elements.
      * @return Deferred result of boolean which is true if the property is already used and
      * claiming it failed or false if the claim was successful.
@@ -35,62 +49,73 @@ public class UniquePropertiesUtil {
     public static DeferredResult<Boolean> claimProperty(Service service, String propertiesId,
             String propertyName) {
 
-        assertNotNull(service, "service");
-        assertNotNullOrEmpty(propertiesId, "propertiesId");
         assertNotNullOrEmpty(propertyName, "propertyName");
+        return claimProperties(service, propertiesId, Collections.singletonList(propertyName));
+    }
 
-        UniquePropertiesRequest request = new UniquePropertiesRequest();
-        request.toAdd = Collections.singletonList(propertyName);
-
-        DeferredResult<Boolean> result = new DeferredResult<>();
-
-        String uriPath = UriUtils.buildUriPath(UniquePropertiesService.FACTORY_LINK, propertiesId);
-
-        Operation patch = Operation.createPatch(service, uriPath)
-                .setBody(request)
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        if (o.getStatusCode() == Operation.STATUS_CODE_CONFLICT) {
-                            result.complete(true);
-                            return;
-                        }
-                        result.fail(ex);
-                        return;
-                    }
-                    result.complete(false);
-                });
+    /**
+     * Claims all the given properties or none of them.
+     *
+     * @return Deferred result of boolean which is true if any of the properties is already used
+     * and claiming them failed or false if the claim was successful.
+     */
+    public static DeferredResult<Boolean> claimProperties(Service service, String propertiesId,
+            Collection<String> propertyNames) {
 
-        service.sendRequest(patch);
-        return result;
+        assertNotNull(service, "service");
+        assertNotNullOrEmpty(propertiesId, "propertiesId");
+        assertNotNull(propertyNames, "propertyNames");
+
+        Set<String> values = toLowerCase(propertyNames);
+        List<String> claimed = Collections.synchronizedList(new ArrayList<>());
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<DeferredResult<Boolean>> claims = values.stream()
+                .map(value -> claim(service, propertiesId, value)
+                        .thenApply(isUsed -> {
+                            if (!isUsed) {
+                                claimed.add(value);
+                            }
+                            return isUsed;
+                        })
+                        .exceptionally(ex -> {
+                            failures.add(ex);
+                            return false;
+                        }))
+                .collect(Collectors.toList());
+
+        return DeferredResult.allOf(claims).thenCompose(results -> {
+            boolean isUsed = results.contains(Boolean.TRUE);
+            if (!isUsed && failures.isEmpty()) {
+                return DeferredResult.completed(false);
+            }
+            // release the properties claimed so far
+            return freeProperties(service, propertiesId, claimed).thenCompose(ignore -> {
+                if (!failures.isEmpty()) {
+                    return DeferredResult.failed(failures.get(0));
+                }
+                return DeferredResult.completed(true);
+            });
+        });
     }
 
     public static DeferredResult<Void> freeProperty(Service service, String propertiesId, String
             propertyName) {
 
-        assertNotNull(service, "service");
-        assertNotNullOrEmpty(propertiesId, "propertiesId");
         assertNotNullOrEmpty(propertyName, "propertyName");
+        return freeProperties(service, propertiesId, Collections.singletonList(propertyName));
+    }
 
-        UniquePropertiesRequest request = new UniquePropertiesRequest();
-        request.toRemove = Collections.singletonList(propertyName);
-
-        String uriPath = UriUtils.buildUriPath(UniquePropertiesService.FACTORY_LINK, propertiesId);
-
-        DeferredResult<Void> result = new DeferredResult<>();
+    public static DeferredResult<Void> freeProperties(Service service, String propertiesId,
+            Collection<String> propertyNames) {
 
-        Operation patch = Operation.createPatch(service, uriPath)
-                .setBody(request)
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        result.fail(ex);
-                        return;
-                    }
-                    result.complete(null);
-                });
-
-        service.sendRequest(patch);
+        assertNotNull(service, "service");
+        assertNotNullOrEmpty(propertiesId, "propertiesId");
+        assertNotNull(propertyNames, "propertyNames");
 
-        return result;
+        List<DeferredResult<Void>> frees = toLowerCase(propertyNames).stream()
+                .map(value -> free(service, propertiesId, value))
+                .collect(Collectors.toList());
+        return DeferredResult.allOf(frees).thenApply(ignore -> null);
     }
 
     public static DeferredResult<Boolean> updateClaimedProperty(Service service, String
@@ -100,16 +125,61 @@ public class UniquePropertiesUtil {
         assertNotNullOrEmpty(newPropertyName, "newPropertyName");
         assertNotNullOrEmpty(oldPropertyName, "oldPropertyName");
 
-        UniquePropertiesRequest request = new UniquePropertiesRequest();
-        request.toRemove = Collections.singletonList(oldPropertyName);
-        request.toAdd = Collections.singletonList(newPropertyName);
+        if (newPropertyName.equalsIgnoreCase(oldPropertyName)) {
+            return DeferredResult.completed(false);
+        }
+
+        return claimProperty(service, propertiesId, newPropertyName)
+                .thenCompose(isUsed -> {
+                    if (isUsed) {
+                        return DeferredResult.completed(true);
+                    }
+                    return freeProperty(service, propertiesId, oldPropertyName)
+                            .thenApply(ignore -> false);
+                });
+    }
+
+    /**
+     * Moves the values kept in the list of the given {@link UniquePropertiesService} document to
+     * {@link UniquePropertyClaimService} documents. Values which are already claimed are skipped.
+     */
+    public static DeferredResult<Void> migrateProperties(Service service, String propertiesId) {
+        assertNotNull(service, "service");
+        assertNotNullOrEmpty(propertiesId, "propertiesId");
 
         String uriPath = UriUtils.buildUriPath(UniquePropertiesService.FACTORY_LINK, propertiesId);
 
+        return service.sendWithDeferredResult(Operation.createGet(service, uriPath),
+                UniquePropertiesState.class)
+                .thenCompose(state -> {
+                    if (state.uniqueProperties == null || state.uniqueProperties.isEmpty()) {
+                        return DeferredResult.completed(null);
+                    }
+                    List<String> values = new ArrayList<>(state.uniqueProperties);
+                    List<DeferredResult<Boolean>> claims = toLowerCase(values).stream()
+                            .map(value -> claim(service, propertiesId, value))
+                            .collect(Collectors.toList());
+
+                    UniquePropertiesRequest request = new UniquePropertiesRequest();
+                    request.toRemove = values;
+                    return DeferredResult.allOf(claims)
+                            .thenCompose(ignore -> service.sendWithDeferredResult(
+                                    Operation.createPatch(service, uriPath).setBody(request)))
+                            .thenApply(ignore -> {
+                                service.getHost().log(Level.INFO,
+                                        "Migrated %d unique properties of %s", values.size(),
+                                        propertiesId);
+                                return null;
+                            });
+                });
+    }
+
+    private static DeferredResult<Boolean> claim(Service service, String propertiesId,
+            String value) {
         DeferredResult<Boolean> result = new DeferredResult<>();
 
-        Operation patch = Operation.createPatch(service, uriPath)
-                .setBody(request)
+        Operation post = Operation.createPost(service, UniquePropertyClaimService.FACTORY_LINK)
+                .setBody(UniquePropertyClaimService.buildClaim(propertiesId, value))
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         if (o.getStatusCode() == Operation.STATUS_CODE_CONFLICT) {
@@ -122,7 +192,35 @@ public class UniquePropertiesUtil {
                     result.complete(false);
                 });
 
+        service.sendRequest(post);
+        return result;
+    }
+
+    private static DeferredResult<Void> free(Service service, String propertiesId,
+            String value) {
+        DeferredResult<Void> result = new DeferredResult<>();
+
+        Operation patch = Operation.createPatch(service,
+                UniquePropertyClaimService.buildClaimLink(propertiesId, value))
+                .setBody(new UniquePropertyClaimState())
+                .setCompletion((o, ex) -> {
+                    if (ex != null && o.getStatusCode() != Operation.STATUS_CODE_NOT_FOUND) {
+                        result.fail(ex);
+                        return;
+                    }
+                    result.complete(null);
+                });
+
         service.sendRequest(patch);
         return result;
     }
+
+    private static Set<String> toLowerCase(Collection<String> values) {
+        Set<String> result = new LinkedHashSet<>(values.size());
+        for (String value : values) {
+            assertNotNullOrEmpty(value, "propertyName");
+            result.add(value.toLowerCase());
+        }
+        return result;
+    }
 }
@@ -28,18 +28,23 @@ import com.vmware.admiral.service.common.ConfigurationService.ConfigurationFacto
 import com.vmware.admiral.service.common.CounterSubTaskService;
 import com.vmware.admiral.service.common.CredentialsProxyService;
 import com.vmware.admiral.service.common.EventTopicService;
+import com.vmware.admiral.service.common.ExtensibilityNotificationOutboxService;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionCallbackService;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionFactoryService;
 import com.vmware.admiral.service.common.LogService;
 import com.vmware.admiral.service.common.LongURIGetService;
+import com.vmware.admiral.service.common.MetricsService;
 import com.vmware.admiral.service.common.NodeHealthCheckService;
 import com.vmware.admiral.service.common.NodeMigrationService;
 import com.vmware.admiral.service.common.RegistryFactoryService;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService;
+import com.vmware.admiral.service.common.ResourceNamePrefixAllocationService;
 import com.vmware.admiral.service.common.ResourceNamePrefixService;
 import com.vmware.admiral.service.common.ReverseProxyService;
 import com.vmware.admiral.service.common.SslTrustCertificateFactoryService;
 import com.vmware.admiral.service.common.SslTrustImportService;
 import com.vmware.admiral.service.common.UniquePropertiesService;
+import com.vmware.admiral.service.common.UniquePropertyClaimService;
 import com.vmware.photon.controller.model.util.StartServicesHelper.ServiceMetadata;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
@@ -64,14 +69,19 @@ public class HostInitCommonServiceConfig extends HostInitServiceHelper {
                     service(ReverseProxyService.class),
                     service(ExtensibilitySubscriptionFactoryService.class),
                     service(LongURIGetService.class),
+                    service(RequestStatusAggregatorService.class),
                     service(RegistryFactoryService.class),
                     service(EventLogFactoryService.class),
+                    service(ResourceNamePrefixAllocationService.class),
+                    service(MetricsService.class),
                     factoryService(ResourceNamePrefixService.class),
                     factoryService(LogService.class),
                     factoryService(CounterSubTaskService.class),
                     factoryService(ExtensibilitySubscriptionCallbackService.class),
+                    factoryService(ExtensibilityNotificationOutboxService.class),
                     factoryService(EventTopicService.class),
-                    factoryService(UniquePropertiesService.class)));
+                    factoryService(UniquePropertiesService.class),
+                    factoryService(UniquePropertyClaimService.class)));
 
     @SuppressWarnings("unchecked")
     private static final Class<? extends Service>[] servicesToStart = new Class[] {
@@ -84,8 +94,11 @@ public class HostInitCommonServiceConfig extends HostInitServiceHelper {
             ReverseProxyService.class,
             ExtensibilitySubscriptionFactoryService.class,
             LongURIGetService.class,
+            RequestStatusAggregatorService.class,
             RegistryFactoryService.class,
-            EventLogFactoryService.class
+            EventLogFactoryService.class,
+            ResourceNamePrefixAllocationService.class,
+            MetricsService.class
     };
 
     @SuppressWarnings("unchecked")
@@ -94,8 +107,10 @@ public class HostInitCommonServiceConfig extends HostInitServiceHelper {
             LogService.class,
             CounterSubTaskService.class,
             ExtensibilitySubscriptionCallbackService.class,
+            ExtensibilityNotificationOutboxService.class,
             EventTopicService.class,
-            UniquePropertiesService.class
+            UniquePropertiesService.class,
+            UniquePropertyClaimService.class
     };
 
 
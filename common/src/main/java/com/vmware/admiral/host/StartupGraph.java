@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import com.vmware.xenon.common.OperationContext;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Starts groups of services, e.g. the services of a {@code HostInit*Config}, concurrently. Each
+ * group declares the groups it depends on and the links of the services it provides. A group is
+ * started once the services provided by all of its dependencies are available, so independent
+ * groups start in parallel. Starting the graph does not wait for the groups, their timings are
+ * filled in the report as they become ready.
+ *
+ * Groups must be added after their dependencies, which also rules out cycles.
+ */
+public class StartupGraph {
+
+    /**
+     * Starts the services of a group. May return before the services are available.
+     */
+    @FunctionalInterface
+    public interface StartupAction {
+        void start() throws Throwable;
+    }
+
+    /**
+     * Timings of a started graph, in milliseconds since its start.
+     */
+    public static class StartupReport {
+        public long totalMillis;
+        public List<GroupTiming> groups = new ArrayList<>();
+    }
+
+    public static class GroupTiming {
+        public String name;
+        public List<String> dependsOn;
+        public long startedAtMillis;
+        public long startDurationMillis;
+        public long readyAtMillis;
+        public Map<String, Long> servicesReadyAtMillis = new ConcurrentHashMap<>();
+    }
+
+    private static class Group {
+        private final String name;
+        private final StartupAction action;
+        private final String[] dependsOn;
+        private final String[] provides;
+        private final GroupTiming timing = new GroupTiming();
+        private CompletableFuture<Void> ready;
+
+        private Group(String name, StartupAction action, String[] dependsOn, String[] provides) {
+            this.name = name;
+            this.action = action;
+            this.dependsOn = dependsOn;
+            this.provides = provides;
+            this.timing.name = name;
+            this.timing.dependsOn = Arrays.asList(dependsOn);
+        }
+    }
+
+    private static final String[] NONE = new String[0];
+
+    private final ServiceHost host;
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+    private final StartupReport report = new StartupReport();
+
+    private long startNanos;
+
+    public StartupGraph(ServiceHost host) {
+        this.host = host;
+    }
+
+    public static String[] dependsOn(String... groupNames) {
+        return groupNames;
+    }
+
+    /**
+     * Adds a group without dependencies.
+     */
+    public StartupGraph add(String name, StartupAction action, String... provides) {
+        return add(name, NONE, action, provides);
+    }
+
+    /**
+     * Adds a group which is started after the services provided by the given groups are
+     * available.
+     */
+    public StartupGraph add(String name, String[] dependsOn, StartupAction action,
+            String... provides) {
+        if (groups.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup group " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!groups.containsKey(dependency)) {
+                throw new IllegalArgumentException(String.format(
+                        "Startup group %s depends on %s which is not added before it", name,
+                        dependency));
+            }
+        }
+        groups.put(name, new Group(name, action, dependsOn, provides));
+        return this;
+    }
+
+    /**
+     * Starts all groups without waiting for them. The returned future completes with the report
+     * once the services they provide are available, or exceptionally if a group fails to start.
+     * The operation context of the caller, e.g. its authorization context, is used for starting
+     * the groups.
+     */
+    public CompletableFuture<StartupReport> start() {
+        OperationContext context = OperationContext.getOperationContext();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(groups.size(), Utils.DEFAULT_THREAD_COUNT)), r -> {
+                    Thread t = new Thread(r, getClass().getSimpleName() + "-"
+                            + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        startNanos = System.nanoTime();
+        for (Group group : groups.values()) {
+            CompletableFuture<?>[] dependencies = Arrays.stream(group.dependsOn)
+                    .map(d -> groups.get(d).ready)
+                    .toArray(CompletableFuture[]::new);
+            group.ready = CompletableFuture.allOf(dependencies)
+                    .thenRunAsync(() -> startGroup(group, context), executor)
+                    .thenCompose(v -> waitForServices(group));
+            report.groups.add(group.timing);
+        }
+
+        // wait for every group to settle, so a failed group does not stop the independent ones
+        return CompletableFuture.allOf(groups.values().stream()
+                .map(g -> g.ready.handle((v, e) -> null))
+                .toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    executor.shutdown();
+                    for (Group group : groups.values()) {
+                        // rethrows the failure of the group, if any
+                        group.ready.join();
+                    }
+                    report.totalMillis = elapsedMillis();
+                    host.log(Level.INFO, "Started %d service groups in %d millis",
+                            groups.size(), report.totalMillis);
+                    return report;
+                });
+    }
+
+    public StartupReport getReport() {
+        return report;
+    }
+
+    private void startGroup(Group group, OperationContext context) {
+        OperationContext.restoreOperationContext(context);
+        group.timing.startedAtMillis = elapsedMillis();
+        try {
+            group.action.start();
+        } catch (Throwable e) {
+            host.log(Level.SEVERE, "Failed to start group %s: %s", group.name,
+                    Utils.toString(e));
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        } finally {
+            OperationContext.reset();
+        }
+        group.timing.startDurationMillis = elapsedMillis() - group.timing.startedAtMillis;
+    }
+
+    private CompletableFuture<Void> waitForServices(Group group) {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(group.provides.length);
+        if (group.provides.length == 0) {
+            group.timing.readyAtMillis = elapsedMillis();
+            ready.complete(null);
+            return ready;
+        }
+        for (String link : group.provides) {
+            host.registerForServiceAvailability((o, e) -> {
+                if (e != null) {
+                    ready.completeExceptionally(e);
+                    return;
+                }
+                group.timing.servicesReadyAtMillis.put(link, elapsedMillis());
+                if (remaining.decrementAndGet() == 0) {
+                    group.timing.readyAtMillis = elapsedMillis();
+                    ready.complete(null);
+                }
+            }, link);
+        }
+        return ready;
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -34,6 +34,7 @@ import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.host.IExtensibilityRegistryHost;
 import com.vmware.admiral.service.common.CounterSubTaskService.CounterSubTaskState;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService.RequestTrackerUpdate;
 import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
 import com.vmware.admiral.service.common.TagAssignmentService.KeyValue;
 import com.vmware.admiral.service.common.TagAssignmentService.TagAssignmentRequest;
@@ -74,6 +75,16 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
     // whether the task should self-delete itself upon completion
     private volatile boolean selfDelete;
 
+    // marks the PATCHes to self of the STARTED stage transitions of an ephemeral task
+    private static final String PRAGMA_DIRECTIVE_IN_MEMORY_TRANSITION = "xn-in-memory-transition";
+
+    // whether the STARTED stage transitions are kept in memory, see setEphemeral
+    private volatile boolean ephemeral;
+
+    // the latest state of an ephemeral task, only set while handling the start or a PATCH, which
+    // are serialized by the runtime
+    private volatile T ephemeralState;
+
     private Level logLevel = DEFAULT_LOG_LEVEL;
 
     /**
@@ -143,6 +154,20 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
         this.selfDelete = selfDelete;
     }
 
+    /**
+     * Keeps the transitions within the STARTED stage, made with {@link #proceedTo}, in the memory
+     * of the owner node instead of indexing and replicating the document for every sub-stage. The
+     * transitions are still PATCHes to self, so they are serialized with the other updates. Only
+     * the completion of the task and the PATCHes of other services, e.g. sub-task callbacks,
+     * update the document, starting from the latest in-memory state.
+     * <p>
+     * Meant for short-lived tasks which are not queried while running. A GET returns the state
+     * from the last update of the document, and if the owner changes, the task restarts from it.
+     */
+    protected void setEphemeral(boolean ephemeral) {
+        this.ephemeral = ephemeral;
+    }
+
     protected void setLogLevel(Level logLevel) {
         this.logLevel = logLevel;
     }
@@ -237,6 +262,10 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
             }
         }
 
+        if (this.ephemeral) {
+            this.ephemeralState = state;
+        }
+
         startPost.setBody(state);
         startPost.complete();
 
@@ -326,6 +355,10 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
         }
         T patchBody = getBody(patch);
         T state = getState(patch);
+        if (this.ephemeral && this.ephemeralState != null && this.ephemeralState != state) {
+            state = Utils.clone(this.ephemeralState);
+            setState(patch, state);
+        }
 
         // validates AND transitions the stage to the next state by using the patchBody
         if (validateStageTransitionAndState(patch, patchBody, state)) {
@@ -333,6 +366,14 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
             return;
         }
 
+        if (this.ephemeral) {
+            this.ephemeralState = state;
+            if (patch.hasPragmaDirective(PRAGMA_DIRECTIVE_IN_MEMORY_TRANSITION)) {
+                // neither indexed nor replicated
+                patch.addPragmaDirective(Operation.PRAGMA_DIRECTIVE_STATE_NOT_MODIFIED);
+            }
+        }
+
         patch.complete();
 
         checkAndHandleSubscriptions(state, patch);
@@ -456,9 +497,42 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
     }
 
     protected void updateRequestTracker(T state) {
+        if (state != null && state.requestTrackerLink != null
+                && aggregateRequestTrackerUpdate(state.requestTrackerLink, fromTask(state),
+                        () -> updateRequestTracker(state, RETRIES_COUNT))) {
+            return;
+        }
         updateRequestTracker(state, RETRIES_COUNT);
     }
 
+    /**
+     * Sends the task status to the node local {@link RequestStatusAggregatorService}, which
+     * coalesces it with the other updates of the same request tracker. Returns {@code false} if
+     * the aggregator is not available on this host, in which case the caller should patch the
+     * request tracker directly. The given fallback is run if the aggregator rejects the update.
+     */
+    protected boolean aggregateRequestTrackerUpdate(String requestTrackerLink,
+            TaskStatusState taskStatus, Runnable fallback) {
+        if (!getHost().checkServiceAvailable(RequestStatusAggregatorService.SELF_LINK)) {
+            return false;
+        }
+
+        RequestTrackerUpdate update = new RequestTrackerUpdate();
+        update.requestTrackerLink = requestTrackerLink;
+        update.taskStatus = taskStatus;
+        sendRequest(Operation
+                .createPatch(this, RequestStatusAggregatorService.SELF_LINK)
+                .setBodyNoCloning(update)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logFine("Failed to aggregate request tracker update, sending it"
+                                + " directly: %s", requestTrackerLink);
+                        fallback.run();
+                    }
+                }));
+        return true;
+    }
+
     protected void updateRequestTracker(T state, int retryCount) {
         if (state != null && state.requestTrackerLink != null) {
             sendRequest(Operation
@@ -811,14 +885,20 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
             patchBodyConfigurator.accept(body);
         }
 
-        sendRequest(Operation.createPatch(getUri())
+        Operation patch = Operation.createPatch(getUri())
                 .setBody(body)
                 .setCompletion((o, e) -> {
                     if (e != null) {
                         logWarning("Moving task to %s:%s failed: %s", stage, subStage,
                                 e.getMessage());
                     }
-                }));
+                });
+
+        if (this.ephemeral && stage == TaskStage.STARTED) {
+            patch.addPragmaDirective(PRAGMA_DIRECTIVE_IN_MEMORY_TRANSITION);
+        }
+
+        sendRequest(patch);
     }
 
     private void sendSelfDelete() {
@@ -12,13 +12,17 @@
 package com.vmware.admiral.service.common;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.UniquePropertiesUtil;
 import com.vmware.admiral.service.common.UniquePropertiesService.UniquePropertiesState;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 
 /**
  * Initial boot service for creating system default documents for the common module.
@@ -46,7 +50,30 @@ public class CommonInitialBootService extends AbstractInitialBootService {
             resources.add(defaultRegistryState);
         }
 
-        initInstances(post, resources.toArray(new ServiceDocument[resources.size()]));
+        // the values of the unique properties lists are moved to claim documents once the lists
+        // exist, so that values claimed by older versions are still reserved
+        Operation initPost = Operation.createPost(null).setCompletion((o, e) -> {
+            if (e != null) {
+                post.fail(e);
+                return;
+            }
+            DeferredResult.allOf(Arrays.asList(
+                    UniquePropertiesUtil.migrateProperties(this,
+                            UniquePropertiesService.PROJECT_NAMES_ID),
+                    UniquePropertiesUtil.migrateProperties(this,
+                            UniquePropertiesService.PROJECT_INDEXES_ID)))
+                    .whenComplete((ignore, ex) -> {
+                        if (ex != null) {
+                            logSevere("Failed to migrate unique properties: %s",
+                                    Utils.toString(ex));
+                            post.fail(ex);
+                            return;
+                        }
+                        post.complete();
+                    });
+        });
+
+        initInstances(initPost, resources.toArray(new ServiceDocument[resources.size()]));
     }
 
     public static UniquePropertiesState buildUniqueProjectNamesInstance() {
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonObject;
+
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.service.common.ExtensibilityNotificationOutboxService.ExtensibilityNotification;
+import com.vmware.admiral.service.common.ExtensibilitySubscriptionService.ExtensibilitySubscription;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.NodeSelectorService.SelectOwnerResponse;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.NodeGroupService.NodeGroupState;
+import com.vmware.xenon.services.common.NodeState;
+import com.vmware.xenon.services.common.NodeState.NodeStatus;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * Delivers extensibility notifications on behalf of {@link ExtensibilitySubscriptionManager}.
+ * <p>
+ * Every notification is first stored in the {@link ExtensibilityNotificationOutboxService} and
+ * then queued per subscriber. Each subscriber has a bounded number of requests in flight, and
+ * subscribers which opted in with {@link ExtensibilitySubscription#batchDelivery} receive the
+ * pending notifications in a single {@link ExtensibilityNotificationBatch}. A failed delivery
+ * pauses the subscriber queue with an exponential backoff. Delivered notifications are removed
+ * from the outbox, and the pending ones of this node are queued again on start. The pending
+ * notifications of nodes which left the node group are claimed by the owner of their outbox entry.
+ */
+class ExtensibilityNotificationDispatcher {
+
+    public static final String STAT_NAME_QUEUE_DEPTH = "extensibilityNotificationQueueDepth";
+    public static final String STAT_NAME_DISPATCH_LAG = "extensibilityNotificationDispatchLagMicros";
+    public static final String STAT_NAME_DELIVERED = "extensibilityNotificationsDelivered";
+    public static final String STAT_NAME_FAILED = "extensibilityNotificationsFailed";
+
+    private static final int NOTIFICATION_RETRY_COUNT = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.retries", 3);
+    private static final int NOTIFICATION_RETRY_WAIT = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.wait", 15);
+    private static final int NOTIFICATION_RETRY_MAX_WAIT = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.wait.max", 300);
+    private static final int MAX_REQUESTS_PER_SUBSCRIBER = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.concurrency", 4);
+    private static final int MAX_BATCH_SIZE = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.batch.size", 50);
+
+    /**
+     * Body sent to subscribers with {@link ExtensibilitySubscription#batchDelivery} set.
+     */
+    public static class ExtensibilityNotificationBatch extends ServiceDocument {
+        public static final String KIND = Utils.buildKind(ExtensibilityNotificationBatch.class);
+
+        /** Notifications in the order they were queued. */
+        public List<JsonObject> notifications;
+
+        public ExtensibilityNotificationBatch() {
+            this.documentKind = KIND;
+        }
+    }
+
+    private static class SubscriberQueue {
+        final Deque<ExtensibilityNotification> pending = new ArrayDeque<>();
+        int inFlight;
+        int failures;
+        boolean backingOff;
+    }
+
+    private final ExtensibilitySubscriptionManager manager;
+
+    private final Map<URI, SubscriberQueue> queues = new ConcurrentHashMap<>();
+
+    // outbox entries queued on this node, an entry is queued only once
+    private final Set<String> queuedLinks = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    long retryWaitMillis = TimeUnit.SECONDS.toMillis(NOTIFICATION_RETRY_WAIT);
+    long retryMaxWaitMillis = TimeUnit.SECONDS.toMillis(NOTIFICATION_RETRY_MAX_WAIT);
+
+    ExtensibilityNotificationDispatcher(ExtensibilitySubscriptionManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Stores the notification in the outbox and queues it for delivery.
+     *
+     * @param extensibility subscription to notify
+     * @param body          notification body
+     * @param taskLink      link of the task to fail when the notification cannot be delivered
+     */
+    void enqueue(ExtensibilitySubscription extensibility, ServiceDocument body, String taskLink) {
+        ExtensibilityNotification notification = new ExtensibilityNotification();
+        notification.callbackReference = extensibility.callbackReference;
+        notification.batchDelivery = Boolean.TRUE.equals(extensibility.batchDelivery);
+        notification.payloadJson = Utils.toJson(body);
+        notification.taskLink = taskLink;
+        notification.tenantLinks = extensibility.tenantLinks;
+        notification.nodeId = manager.getHost().getId();
+        notification.enqueueTimeMicros = Utils.getSystemNowMicrosUtc();
+
+        if (!manager.getHost().checkServiceAvailable(
+                ExtensibilityNotificationOutboxService.FACTORY_LINK)) {
+            // outbox is not started on this host, deliver without persisting
+            offer(notification);
+            return;
+        }
+
+        manager.sendRequest(Operation
+                .createPost(manager, ExtensibilityNotificationOutboxService.FACTORY_LINK)
+                .setBody(notification)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        manager.logWarning("Failed to store notification for [%s] in outbox: %s",
+                                notification.callbackReference, Utils.toString(e));
+                        offer(notification);
+                        return;
+                    }
+                    offer(o.getBody(ExtensibilityNotification.class));
+                }));
+    }
+
+    /**
+     * Queues the outbox entries left from a previous run of this node.
+     */
+    DeferredResult<Void> loadPending() {
+        DeferredResult<Void> res = new DeferredResult<>();
+        List<ExtensibilityNotification> pending = new ArrayList<>();
+        QueryTask q = QueryUtil.buildPropertyQuery(ExtensibilityNotification.class,
+                ExtensibilityNotification.FIELD_NAME_NODE_ID, manager.getHost().getId());
+        QueryUtil.addExpandOption(q);
+        new ServiceDocumentQuery<>(manager.getHost(), ExtensibilityNotification.class)
+                .query(q, (r) -> {
+                    if (r.hasException()) {
+                        manager.logWarning("Failed to load pending extensibility notifications: %s",
+                                Utils.toString(r.getException()));
+                        res.fail(r.getException());
+                    } else if (r.hasResult()) {
+                        pending.add(r.getResult());
+                    } else {
+                        manager.logInfo("Loaded %d pending extensibility notifications",
+                                pending.size());
+                        pending.sort(Comparator.comparing(n -> n.enqueueTimeMicros,
+                                Comparator.nullsFirst(Comparator.naturalOrder())));
+                        pending.forEach(this::offer);
+                        res.complete(null);
+                    }
+                });
+        return res;
+    }
+
+    /**
+     * Claims and queues the outbox entries of nodes which are not available in the node group
+     * anymore. Only the owner of an entry claims it.
+     */
+    DeferredResult<Void> reclaimOrphaned() {
+        ServiceHost host = manager.getHost();
+        return host.sendWithDeferredResult(Operation
+                .createGet(host, ServiceUriPaths.DEFAULT_NODE_GROUP)
+                .setReferer(manager.getUri()), NodeGroupState.class)
+                .thenCompose(nodeGroup -> {
+                    Set<String> availableNodes = new HashSet<>();
+                    for (NodeState node : nodeGroup.nodes.values()) {
+                        if (node.status == NodeStatus.AVAILABLE) {
+                            availableNodes.add(node.id);
+                        }
+                    }
+                    return queryOrphaned(availableNodes);
+                })
+                .thenCompose(orphaned -> {
+                    List<DeferredResult<Void>> claims = new ArrayList<>();
+                    for (ExtensibilityNotification notification : orphaned) {
+                        SelectOwnerResponse owner = host.findOwnerNode(null,
+                                notification.documentSelfLink);
+                        if (owner != null && owner.isLocalHostOwner) {
+                            claims.add(claim(notification));
+                        }
+                    }
+                    return DeferredResult.allOf(claims);
+                })
+                .thenAccept(ignore -> { });
+    }
+
+    private DeferredResult<List<ExtensibilityNotification>> queryOrphaned(
+            Set<String> availableNodes) {
+        DeferredResult<List<ExtensibilityNotification>> res = new DeferredResult<>();
+        List<ExtensibilityNotification> orphaned = new ArrayList<>();
+        QueryTask q = QueryUtil.buildQuery(ExtensibilityNotification.class, true);
+        QueryUtil.addExpandOption(q);
+        new ServiceDocumentQuery<>(manager.getHost(), ExtensibilityNotification.class)
+                .query(q, (r) -> {
+                    if (r.hasException()) {
+                        res.fail(r.getException());
+                    } else if (r.hasResult()) {
+                        if (!availableNodes.contains(r.getResult().nodeId)) {
+                            orphaned.add(r.getResult());
+                        }
+                    } else {
+                        res.complete(orphaned);
+                    }
+                });
+        return res;
+    }
+
+    private DeferredResult<Void> claim(ExtensibilityNotification notification) {
+        ExtensibilityNotification patch = new ExtensibilityNotification();
+        patch.nodeId = manager.getHost().getId();
+        patch.claimedFromNodeId = notification.nodeId;
+        DeferredResult<Void> res = new DeferredResult<>();
+        manager.sendRequest(Operation.createPatch(manager, notification.documentSelfLink)
+                .setBody(patch)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        // claimed by another node or delivered meanwhile
+                        manager.logFine("Failed to claim outbox entry [%s]: %s",
+                                notification.documentSelfLink, Utils.toString(e));
+                    } else {
+                        manager.logInfo("Claimed outbox entry [%s] of node %s",
+                                notification.documentSelfLink, notification.nodeId);
+                        offer(o.getBody(ExtensibilityNotification.class));
+                    }
+                    res.complete(null);
+                }));
+        return res;
+    }
+
+    private void offer(ExtensibilityNotification notification) {
+        if (notification.documentSelfLink != null
+                && !queuedLinks.add(notification.documentSelfLink)) {
+            // queued on enqueue and loaded from the outbox again
+            return;
+        }
+        SubscriberQueue queue = queues.computeIfAbsent(notification.callbackReference,
+                k -> new SubscriberQueue());
+        synchronized (queue) {
+            queue.pending.add(notification);
+        }
+        manager.setStat(STAT_NAME_QUEUE_DEPTH, queueDepth.incrementAndGet());
+
+        dispatch(notification.callbackReference, queue);
+    }
+
+    private void dispatch(URI callbackReference, SubscriberQueue queue) {
+        while (true) {
+            List<ExtensibilityNotification> notifications = new ArrayList<>();
+            synchronized (queue) {
+                if (queue.backingOff || queue.inFlight >= MAX_REQUESTS_PER_SUBSCRIBER
+                        || queue.pending.isEmpty()) {
+                    return;
+                }
+                notifications.add(queue.pending.poll());
+                while (Boolean.TRUE.equals(notifications.get(0).batchDelivery)
+                        && !queue.pending.isEmpty()
+                        && Boolean.TRUE.equals(queue.pending.peek().batchDelivery)
+                        && notifications.size() < MAX_BATCH_SIZE) {
+                    notifications.add(queue.pending.poll());
+                }
+                queue.inFlight++;
+            }
+            send(callbackReference, queue, notifications);
+        }
+    }
+
+    private void send(URI callbackReference, SubscriberQueue queue,
+            List<ExtensibilityNotification> notifications) {
+        Operation post = Operation.createPost(callbackReference);
+        if (Boolean.TRUE.equals(notifications.get(0).batchDelivery)) {
+            ExtensibilityNotificationBatch batch = new ExtensibilityNotificationBatch();
+            batch.notifications = new ArrayList<>(notifications.size());
+            for (ExtensibilityNotification n : notifications) {
+                batch.notifications.add(Utils.fromJson(n.payloadJson, JsonObject.class));
+            }
+            post.setBody(batch);
+        } else {
+            post.setBody(Utils.fromJson(notifications.get(0).payloadJson, JsonObject.class));
+        }
+
+        manager.sendRequest(post.setCompletion((o, e) -> {
+            if (e != null) {
+                handleFailure(callbackReference, queue, notifications, o, e);
+            } else {
+                handleSuccess(callbackReference, queue, notifications);
+            }
+        }));
+    }
+
+    private void handleSuccess(URI callbackReference, SubscriberQueue queue,
+            List<ExtensibilityNotification> notifications) {
+        synchronized (queue) {
+            queue.inFlight--;
+            queue.failures = 0;
+        }
+
+        long now = Utils.getSystemNowMicrosUtc();
+        long lag = 0;
+        for (ExtensibilityNotification n : notifications) {
+            if (n.enqueueTimeMicros != null) {
+                lag = Math.max(lag, now - n.enqueueTimeMicros);
+            }
+            remove(n);
+        }
+        manager.setStat(STAT_NAME_DISPATCH_LAG, lag);
+        manager.adjustStat(STAT_NAME_DELIVERED, notifications.size());
+        manager.setStat(STAT_NAME_QUEUE_DEPTH, queueDepth.addAndGet(-notifications.size()));
+
+        dispatch(callbackReference, queue);
+    }
+
+    private void handleFailure(URI callbackReference, SubscriberQueue queue,
+            List<ExtensibilityNotification> notifications, Operation o, Throwable e) {
+        List<ExtensibilityNotification> retry = new ArrayList<>();
+        for (ExtensibilityNotification n : notifications) {
+            n.attempts++;
+            manager.logWarning("Retrying [%s] times to notify [%s]. Error: [%s]",
+                    NOTIFICATION_RETRY_COUNT - n.attempts, callbackReference, e.getMessage());
+
+            if (n.attempts >= NOTIFICATION_RETRY_COUNT) {
+                manager.logWarning("Cannot notify [%s] for task [%s]. Error: %s",
+                        callbackReference, n.taskLink, e.getMessage());
+                manager.adjustStat(STAT_NAME_FAILED, 1);
+                remove(n);
+                if (n.taskLink != null) {
+                    manager.failTask(e.getMessage(), n.taskLink);
+                }
+            } else if (o.getStatusCode() == Operation.STATUS_CODE_TIMEOUT) {
+                // Call to ExtensibilitySubscriptionCallback will resume the service task.
+                manager.logWarning("Request to [%s] for task [%s] expired!",
+                        callbackReference, n.taskLink);
+                remove(n);
+            } else {
+                updateAttempts(n);
+                retry.add(n);
+            }
+        }
+        manager.setStat(STAT_NAME_QUEUE_DEPTH,
+                queueDepth.addAndGet(retry.size() - notifications.size()));
+
+        long waitMillis = 0;
+        synchronized (queue) {
+            queue.inFlight--;
+            // keep the original order of the notifications
+            for (int i = retry.size() - 1; i >= 0; i--) {
+                queue.pending.addFirst(retry.get(i));
+            }
+            if (!queue.backingOff && !queue.pending.isEmpty()) {
+                queue.backingOff = true;
+                waitMillis = Math.min(retryMaxWaitMillis,
+                        retryWaitMillis << Math.min(queue.failures, 20));
+                queue.failures++;
+            }
+        }
+
+        if (waitMillis > 0) {
+            manager.getHost().schedule(() -> {
+                synchronized (queue) {
+                    queue.backingOff = false;
+                }
+                dispatch(callbackReference, queue);
+            }, waitMillis, TimeUnit.MILLISECONDS);
+        } else {
+            dispatch(callbackReference, queue);
+        }
+    }
+
+    private void updateAttempts(ExtensibilityNotification notification) {
+        if (notification.documentSelfLink == null) {
+            return;
+        }
+
+        ExtensibilityNotification patch = new ExtensibilityNotification();
+        patch.attempts = notification.attempts;
+        manager.sendRequest(Operation.createPatch(manager, notification.documentSelfLink)
+                .setBody(patch)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        manager.logFine("Failed to update outbox entry [%s]: %s",
+                                notification.documentSelfLink, Utils.toString(e));
+                    }
+                }));
+    }
+
+    private void remove(ExtensibilityNotification notification) {
+        if (notification.documentSelfLink == null) {
+            return;
+        }
+
+        manager.sendRequest(Operation.createDelete(manager, notification.documentSelfLink)
+                .setCompletion((o, e) -> {
+                    // forget the entry only once it cannot be loaded from the outbox again
+                    queuedLinks.remove(notification.documentSelfLink);
+                    if (e != null) {
+                        manager.logWarning("Failed to remove outbox entry [%s]: %s",
+                                notification.documentSelfLink, Utils.toString(e));
+                    }
+                }));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.net.URI;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
+import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * {@code ExtensibilityNotificationOutboxService} persists extensibility notifications which are
+ * not yet delivered to their subscriber. An entry is created before the notification is sent and
+ * deleted once the subscriber has accepted it, so pending notifications are not lost when the node
+ * restarts. The notifications of a node which left the node group are claimed by the owner of the
+ * entry.
+ *
+ * @see ExtensibilityNotificationDispatcher
+ */
+public class ExtensibilityNotificationOutboxService extends StatefulService {
+
+    public static final String FACTORY_LINK = ManagementUriParts.EXTENSIBILITY_OUTBOX;
+
+    public static class ExtensibilityNotification extends MultiTenantDocument {
+
+        public static final String FIELD_NAME_NODE_ID = "nodeId";
+
+        @Documentation(description = "Subscriber address the notification is sent to")
+        @UsageOption(option = PropertyUsageOption.REQUIRED)
+        public URI callbackReference;
+
+        @Documentation(description = "Serialized notification body")
+        @UsageOption(option = PropertyUsageOption.REQUIRED)
+        public String payloadJson;
+
+        @Documentation(description = "Whether the subscriber accepts batched notifications")
+        @UsageOption(option = PropertyUsageOption.OPTIONAL)
+        public Boolean batchDelivery;
+
+        @Documentation(description = "Link of the task to fail when the notification cannot be "
+                + "delivered")
+        @UsageOption(option = PropertyUsageOption.OPTIONAL)
+        public String taskLink;
+
+        @Documentation(description = "Id of the node which dispatches the notification")
+        @UsageOption(option = PropertyUsageOption.REQUIRED)
+        public String nodeId;
+
+        @Documentation(description = "Id of the node the notification is claimed from. Set only "
+                + "in the PATCH which moves the notification of an unavailable node to another one")
+        @UsageOption(option = PropertyUsageOption.OPTIONAL)
+        public String claimedFromNodeId;
+
+        @Documentation(description = "Time the notification was queued")
+        @UsageOption(option = PropertyUsageOption.OPTIONAL)
+        public Long enqueueTimeMicros;
+
+        @Documentation(description = "Number of failed delivery attempts")
+        @UsageOption(option = PropertyUsageOption.OPTIONAL)
+        public int attempts;
+    }
+
+    public ExtensibilityNotificationOutboxService() {
+        super(ExtensibilityNotification.class);
+        toggleOption(ServiceOption.PERSISTENCE, true);
+        toggleOption(ServiceOption.REPLICATION, true);
+        toggleOption(ServiceOption.OWNER_SELECTION, true);
+    }
+
+    @Override
+    public void handleCreate(Operation post) {
+        if (!checkForBody(post)) {
+            return;
+        }
+
+        ExtensibilityNotification body = getBody(post);
+        Utils.validateState(getStateDescription(), body);
+        post.complete();
+    }
+
+    @Override
+    public void handlePut(Operation put) {
+        Operation.failActionNotSupported(put);
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!checkForBody(patch)) {
+            return;
+        }
+
+        ExtensibilityNotification patchBody = getBody(patch);
+        ExtensibilityNotification state = getState(patch);
+
+        if (patchBody.claimedFromNodeId != null) {
+            // another node takes over the notification, only if nobody did it before
+            if (!patchBody.claimedFromNodeId.equals(state.nodeId)) {
+                patch.fail(new IllegalStateException(String.format(
+                        "Notification is dispatched by node %s", state.nodeId)));
+                return;
+            }
+            state.nodeId = patchBody.nodeId;
+            patch.setBody(state).complete();
+            return;
+        }
+
+        if (patchBody.attempts < state.attempts) {
+            patch.fail(new IllegalArgumentException("Decrease attempts counter is not allowed"));
+            return;
+        }
+        state.attempts = patchBody.attempts;
+
+        patch.setBody(state).complete();
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument template = super.getDocumentTemplate();
+        com.vmware.photon.controller.model.ServiceUtils.setRetentionLimit(template);
+        return template;
+    }
+}
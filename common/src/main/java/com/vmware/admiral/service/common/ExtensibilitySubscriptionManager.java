@@ -50,18 +50,20 @@ import com.vmware.xenon.services.common.QueryTask;
  * Notifications can be asynchronous or synchronous (blocking). The first are sent and the task
  * proceeds with its execution. The latter block further task execution and wait callback to be
  * received.
+ * <p>
+ * Notifications are delivered through the {@link ExtensibilityNotificationDispatcher}.
  */
 public class ExtensibilitySubscriptionManager extends StatelessService {
 
     public static final String SELF_LINK = ManagementUriParts.EXTENSIBILITY_MANAGER;
 
-    private static final int NOTIFICATION_RETRY_COUNT = Integer.getInteger(
-            "com.vmware.admiral.service.extensibility.notification.retries", 3);
-    private static final int NOTIFICATION_RETRY_WAIT = Integer.getInteger(
-            "com.vmware.admiral.service.extensibility.notification.wait", 15);
     private static final Duration EXTENSIBILITY_TIMEOUT = Duration.parse(
             System.getProperty("com.vmware.admiral.service.extensibility.timeout", "PT30M"));
 
+    private static final long OUTBOX_RECLAIM_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.service.extensibility.outbox.reclaim.interval.micros",
+            TimeUnit.MINUTES.toMicros(1));
+
     private static final String TIMEOUT_SUFFIX = ".timeout";
     // internal map of the registered extensibility subscriptions
     private final Map<String, ExtensibilitySubscription> subscriptions = new ConcurrentHashMap<>();
@@ -74,7 +76,13 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
 
     private AtomicBoolean initialized = new AtomicBoolean();
 
+    private final ExtensibilityNotificationDispatcher dispatcher =
+            new ExtensibilityNotificationDispatcher(this);
+
     public ExtensibilitySubscriptionManager() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(OUTBOX_RECLAIM_INTERVAL_MICROS);
     }
 
     @Override
@@ -82,6 +90,23 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
         initialize(start);
     }
 
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        if (!initialized.get() || !getHost().checkServiceAvailable(
+                ExtensibilityNotificationOutboxService.FACTORY_LINK)) {
+            post.complete();
+            return;
+        }
+        // deliver the notifications left by nodes which are gone
+        dispatcher.reclaimOrphaned().whenComplete((ignore, e) -> {
+            if (e != null) {
+                logWarning("Failed to reclaim extensibility notifications: %s",
+                        Utils.toString(e));
+            }
+            post.complete();
+        });
+    }
+
     @Override
     public void handleStop(Operation delete) {
         initialized.set(false);
@@ -145,6 +170,8 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                 op.fail(th);
             } else {
                 op.complete();
+                // resume delivery of the notifications not sent before the last stop
+                dispatcher.loadPending();
             }
         });
     }
@@ -300,9 +327,9 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                     ExtensibilitySubscriptionCallback result = o
                             .getBody(ExtensibilitySubscriptionCallback.class);
 
-                    sendExternalNotification(extensibility,
+                    dispatcher.enqueue(extensibility,
                             buildDataToSend(notificationPayload, replyPayload, result),
-                            state, NOTIFICATION_RETRY_COUNT);
+                            state.documentSelfLink);
                 }));
     }
 
@@ -323,8 +350,7 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                 extensibility.callbackReference, state.documentSelfLink);
         // Task is filtered to provide only fields declared as notification payload.
         T notificationPayloadState = prepareTaskNotificationPayload(notificationPayload, state);
-        sendExternalNotification(extensibility, notificationPayloadState, state,
-                NOTIFICATION_RETRY_COUNT);
+        dispatcher.enqueue(extensibility, notificationPayloadState, state.documentSelfLink);
     }
 
     @SuppressWarnings("unchecked")
@@ -341,52 +367,6 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
         return filteredTask;
     }
 
-    /**
-     * Sends a service document to external url. Supports retry in case of an error and if task
-     * service is provided this method will call failTask when no more retries left.
-     *
-     * @param extensibility extensibility state
-     * @param body          document to send
-     * @param state         - task state
-     * @param retriesLeft   number of retries left before give up
-     */
-    @SuppressWarnings("rawtypes")
-    private <T extends TaskServiceDocument> void sendExternalNotification(
-            ExtensibilitySubscription extensibility,
-            ServiceDocument body, T state,
-            int retriesLeft) {
-
-        sendRequest(Operation.createPost(extensibility.callbackReference)
-                .setBody(body)
-                .setCompletion((o, e) -> {
-                    if (e != null) {
-                        logWarning(
-                                "Retrying [%s] times to notify [%s]. Error: [%s]",
-                                retriesLeft, extensibility.callbackReference,
-                                e.getMessage());
-
-                        if (retriesLeft <= 1) {
-                            logWarning("Cannot notify [%s] for task [%s]. Error: %s",
-                                    extensibility.callbackReference, body.documentSelfLink,
-                                    e.getMessage());
-
-                            failTask(e.getMessage(), state.documentSelfLink);
-                        } else if (o.getStatusCode() == Operation.STATUS_CODE_TIMEOUT) {
-                            // Call to ExtensibilitySubscriptionCallback will resume the service
-                            // task.
-                            logWarning("Request to [%s] for task [%s] expired!",
-                                    extensibility.callbackReference, body.documentSelfLink);
-                        } else {
-                            getHost().schedule(() -> {
-                                sendExternalNotification(extensibility, body, state,
-                                        retriesLeft - 1);
-                            }, NOTIFICATION_RETRY_WAIT, TimeUnit.SECONDS);
-
-                        }
-                    }
-                }));
-    }
-
     @SuppressWarnings("rawtypes")
     private <T extends TaskServiceDocument> ServiceDocument buildDataToSend(
             ServiceTaskCallbackResponse notificationPayload,
@@ -425,7 +405,7 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                 .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue()));
     }
 
-    private void failTask(String msg, String taskDocumentSelfLink) {
+    void failTask(String msg, String taskDocumentSelfLink) {
         String errMsg = msg != null ? msg : "Unexpected State";
         logWarning("Fail extensibility task: %s", errMsg);
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.metrics.MetricRegistry;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+
+/**
+ * Exposes the metrics of the {@link MetricRegistry} of the process in the Prometheus text
+ * exposition format, to be scraped by a Prometheus server.
+ */
+public class MetricsService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.METRICS;
+
+    private final MetricRegistry registry;
+
+    public MetricsService() {
+        this(MetricRegistry.getDefault());
+    }
+
+    public MetricsService(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        get.setContentType(MetricRegistry.CONTENT_TYPE);
+        get.setBodyNoCloning(registry.render());
+        get.complete();
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument d = super.getDocumentTemplate();
+        addServiceRequestRoute(d, Action.GET,
+                "Get the metrics of the host in the Prometheus text exposition format.", null);
+        return d;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local aggregator of request tracker updates. Task services report their progress here
+ * instead of patching the request status document directly. Updates for the same request tracker
+ * are coalesced within a short window and sent as a single {@link RequestStatusBatch} PATCH
+ * containing only the highest progress reported per task. Updates for tasks reaching a final stage
+ * flush the pending batch of their request tracker immediately.
+ */
+public class RequestStatusAggregatorService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.REQUEST_STATUS_AGGREGATOR;
+
+    public static final String STAT_NAME_UPDATES_RECEIVED = "requestTrackerUpdatesReceived";
+    public static final String STAT_NAME_PATCHES_SENT = "requestTrackerPatchesSent";
+    public static final String STAT_NAME_COALESCING_RATIO = "requestTrackerCoalescingRatio";
+
+    private static final long COALESCING_WINDOW_MILLIS = Long.getLong(
+            "com.vmware.admiral.service.request.tracker.coalescing.window.millis", 500);
+    private static final int RETRIES_COUNT = Integer.getInteger(
+            "com.vmware.admiral.service.tasks.retries", 3);
+
+    /**
+     * Update of a single task, sent by {@link AbstractTaskStatefulService} to the aggregator.
+     */
+    public static class RequestTrackerUpdate {
+        /** Link of the request status document to update. */
+        public String requestTrackerLink;
+
+        /** The task status to report. */
+        public TaskStatusState taskStatus;
+    }
+
+    /**
+     * Merged PATCH body sent to the request status document.
+     */
+    public static class RequestStatusBatch extends ServiceDocument {
+        public static final String KIND = Utils.buildKind(RequestStatusBatch.class);
+
+        /** Coalesced task updates in the order they were last reported. */
+        public List<TaskStatusState> updates;
+
+        public RequestStatusBatch() {
+            this.documentKind = KIND;
+        }
+    }
+
+    private static class PendingBatch {
+        final Map<String, TaskStatusState> updates = new LinkedHashMap<>();
+        boolean flushScheduled;
+        boolean flushed;
+    }
+
+    private final Map<String, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+
+    private final AtomicLong updatesReceived = new AtomicLong();
+    private final AtomicLong patchesSent = new AtomicLong();
+
+    public RequestStatusAggregatorService() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        RequestTrackerUpdate update = patch.getBody(RequestTrackerUpdate.class);
+        if (update.requestTrackerLink == null || update.taskStatus == null
+                || update.taskStatus.taskInfo == null) {
+            patch.fail(new IllegalArgumentException(
+                    "requestTrackerLink and taskStatus.taskInfo are required"));
+            return;
+        }
+        patch.complete();
+
+        updatesReceived.incrementAndGet();
+        adjustStat(STAT_NAME_UPDATES_RECEIVED, 1);
+
+        boolean finalStage = isFinal(update.taskStatus);
+        boolean scheduleFlush = false;
+        boolean added = false;
+        while (!added) {
+            PendingBatch batch = pendingBatches.computeIfAbsent(update.requestTrackerLink,
+                    k -> new PendingBatch());
+            synchronized (batch) {
+                if (batch.flushed) {
+                    // the batch was flushed concurrently, start a new one
+                    continue;
+                }
+                String key = update.taskStatus.phase + ":" + update.taskStatus.documentSelfLink;
+                // keep the updates in the order they were last reported, as the request status
+                // takes the phase and stage of the last applied update
+                TaskStatusState merged = merge(batch.updates.remove(key), update.taskStatus);
+                batch.updates.put(key, merged);
+                if (!finalStage && !batch.flushScheduled) {
+                    batch.flushScheduled = true;
+                    scheduleFlush = true;
+                }
+                added = true;
+            }
+        }
+
+        if (finalStage) {
+            flush(update.requestTrackerLink);
+        } else if (scheduleFlush) {
+            getHost().schedule(() -> flush(update.requestTrackerLink),
+                    COALESCING_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Keeps the update with the highest progress of the same task. Final stages always win, and
+     * optional fields set only by an earlier update are carried over.
+     */
+    private static TaskStatusState merge(TaskStatusState existing, TaskStatusState update) {
+        if (existing == null) {
+            return update;
+        }
+
+        TaskStatusState winner;
+        TaskStatusState other;
+        if (isFinal(existing) && !isFinal(update)) {
+            winner = existing;
+            other = update;
+        } else if (!isFinal(update) && existing.progress != null
+                && (update.progress == null || update.progress < existing.progress)) {
+            winner = existing;
+            other = update;
+        } else {
+            winner = update;
+            other = existing;
+        }
+
+        if (winner.name == null) {
+            winner.name = other.name;
+        }
+        if (winner.resourceLinks == null) {
+            winner.resourceLinks = other.resourceLinks;
+        }
+        if (winner.eventLogLink == null) {
+            winner.eventLogLink = other.eventLogLink;
+        }
+        return winner;
+    }
+
+    public static boolean isFinal(TaskStatusState status) {
+        return TaskState.isFinished(status.taskInfo) || TaskState.isFailed(status.taskInfo)
+                || TaskState.isCancelled(status.taskInfo);
+    }
+
+    private void flush(String requestTrackerLink) {
+        PendingBatch batch = pendingBatches.get(requestTrackerLink);
+        if (batch == null) {
+            // already flushed
+            return;
+        }
+
+        RequestStatusBatch body = new RequestStatusBatch();
+        synchronized (batch) {
+            if (batch.flushed) {
+                return;
+            }
+            batch.flushed = true;
+            pendingBatches.remove(requestTrackerLink, batch);
+            body.updates = new ArrayList<>(batch.updates.values());
+        }
+        if (body.updates.isEmpty()) {
+            return;
+        }
+
+        sendBatch(requestTrackerLink, body, RETRIES_COUNT);
+    }
+
+    private void sendBatch(String requestTrackerLink, RequestStatusBatch body, int retryCount) {
+        long sent = patchesSent.incrementAndGet();
+        adjustStat(STAT_NAME_PATCHES_SENT, 1);
+        setStat(STAT_NAME_COALESCING_RATIO, (double) updatesReceived.get() / sent);
+
+        sendRequest(Operation
+                .createPatch(this, requestTrackerLink)
+                .setBody(body)
+                .setCompletion((o, ex) -> {
+                    if (ex == null) {
+                        return;
+                    }
+                    // log but don't fail the tasks
+                    if (ex instanceof CancellationException) {
+                        logFine("CancellationException: Failed to update request tracker: %s",
+                                requestTrackerLink);
+                    } else if (retryCount > 0
+                            && body.updates.stream().anyMatch(u -> isFinal(u))) {
+                        // retry only batches with finished and failed updates. The others are
+                        // not so important
+                        getHost().schedule(
+                                () -> sendBatch(requestTrackerLink, body, retryCount - 1),
+                                QueryUtil.QUERY_RETRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    } else {
+                        logWarning("Failed to update request tracker: %s. Error: %s",
+                                requestTrackerLink, Utils.toString(ex));
+                    }
+                }));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixResponse;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NumberBlockLeaseRequest;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NumberBlockLeaseResponse;
+import com.vmware.xenon.common.LocalizableValidationException;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local allocation of resource name prefixes. Instead of sending a request to the owner of
+ * the {@link ResourceNamePrefixService} document for every allocation, the node leases blocks of
+ * consecutive numbers of the sequence and builds the prefixes from them locally. Each number is
+ * leased only once, so the prefixes stay unique across the nodes.
+ * <p>
+ * Numbers of a lease which are not used before the lease expires or the node stops are
+ * discarded, which leaves gaps in the sequence.
+ */
+public class ResourceNamePrefixAllocationService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.RESOURCE_NAME_PREFIX_ALLOCATION;
+
+    private static final long LEASE_BLOCK_SIZE = Long.getLong(
+            "dcp.management.name.prefix.lease.block.size", 100);
+
+    /**
+     * time after which the unused numbers of a lease are discarded, so that changes of the prefix
+     * document are picked up
+     */
+    private static final long LEASE_EXPIRATION_MICROS = Long.getLong(
+            "dcp.management.name.prefix.lease.expiration.micros", TimeUnit.MINUTES.toMicros(10));
+
+    /** An DTO used during POST request in order to allocate prefixes of a prefix document. */
+    public static class NamePrefixAllocationRequest {
+        /** (Required) Link of the {@link ResourceNamePrefixService} document. */
+        public String resourceNamePrefixLink;
+
+        /** (Required) Number of prefixes to allocate. */
+        public long resourceCount;
+    }
+
+    private static class Lease {
+        String prefix;
+        boolean addRandomToken;
+        long nextNumber;
+        long endNumber;
+        long expirationMicros;
+
+        boolean isUsable() {
+            return nextNumber < endNumber
+                    && expirationMicros > Utils.getSystemNowMicrosUtc();
+        }
+    }
+
+    /**
+     * The current lease of a prefix document and the allocations waiting for a new one.
+     */
+    private static class PrefixLeases {
+        Lease lease;
+        boolean leasing;
+        final Deque<Runnable> waiting = new ArrayDeque<>();
+    }
+
+    // guarded by itself
+    private final Map<String, PrefixLeases> leases = new HashMap<>();
+
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        NamePrefixAllocationRequest request = post.getBody(NamePrefixAllocationRequest.class);
+        if (request.resourceNamePrefixLink == null) {
+            post.fail(new IllegalArgumentException("'resourceNamePrefixLink' is required"));
+            return;
+        }
+        if (request.resourceCount <= 0) {
+            post.fail(new LocalizableValidationException(
+                    "Requested resource count must be positive number.",
+                    "common.name-prefix.count.positive"));
+            return;
+        }
+
+        allocate(post, request.resourceNamePrefixLink, request.resourceCount,
+                new ArrayList<>((int) request.resourceCount));
+    }
+
+    @Override
+    public void handleStop(Operation delete) {
+        synchronized (leases) {
+            leases.clear();
+        }
+        super.handleStop(delete);
+    }
+
+    private void allocate(Operation post, String prefixLink, long count, List<String> prefixes) {
+        long blockSize;
+        synchronized (leases) {
+            PrefixLeases prefixLeases = leases.computeIfAbsent(prefixLink,
+                    k -> new PrefixLeases());
+            Lease lease = prefixLeases.lease;
+            while (prefixes.size() < count && lease != null && lease.isUsable()) {
+                prefixes.add(ResourceNamePrefixService.buildNamePrefix(lease.prefix,
+                        lease.nextNumber++, lease.addRandomToken));
+            }
+            if (prefixes.size() < count && prefixLeases.leasing) {
+                prefixLeases.waiting.add(() -> allocate(post, prefixLink, count, prefixes));
+                return;
+            }
+            if (prefixes.size() < count) {
+                prefixLeases.leasing = true;
+            }
+            blockSize = Math.max(LEASE_BLOCK_SIZE, count - prefixes.size());
+        }
+
+        if (prefixes.size() == count) {
+            NamePrefixResponse response = new NamePrefixResponse();
+            response.resourceNamePrefixes = prefixes;
+            post.setBodyNoCloning(response).complete();
+            return;
+        }
+
+        sendRequest(Operation.createPatch(this, prefixLink)
+                .setBody(NumberBlockLeaseRequest.create(blockSize))
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to lease a block of %s: %s", prefixLink,
+                                Utils.toString(e));
+                        List<Runnable> waiting = completeLeasing(prefixLink, null);
+                        post.fail(e);
+                        waiting.forEach(Runnable::run);
+                        return;
+                    }
+                    List<Runnable> waiting = completeLeasing(prefixLink,
+                            o.getBody(NumberBlockLeaseResponse.class));
+                    // the allocation which leased the block goes first
+                    allocate(post, prefixLink, count, prefixes);
+                    waiting.forEach(Runnable::run);
+                }));
+    }
+
+    /**
+     * Stores the leased block, if any, and returns the allocations which waited for it.
+     */
+    private List<Runnable> completeLeasing(String prefixLink,
+            NumberBlockLeaseResponse response) {
+        List<Runnable> waiting;
+        synchronized (leases) {
+            PrefixLeases prefixLeases = leases.computeIfAbsent(prefixLink,
+                    k -> new PrefixLeases());
+            prefixLeases.leasing = false;
+            if (response != null) {
+                Lease lease = new Lease();
+                lease.prefix = response.prefix;
+                lease.addRandomToken = response.addRandomToken;
+                lease.nextNumber = response.firstNumber;
+                lease.endNumber = response.firstNumber + response.count;
+                lease.expirationMicros = Utils.fromNowMicrosUtc(LEASE_EXPIRATION_MICROS);
+                prefixLeases.lease = lease;
+            }
+            waiting = new ArrayList<>(prefixLeases.waiting);
+            prefixLeases.waiting.clear();
+        }
+        return waiting;
+    }
+}
@@ -32,6 +32,7 @@ import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
 import com.vmware.xenon.common.StatefulService;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 
 /**
  * Service for generating resource prefixes that are used to create names for provisioned resources.
@@ -124,6 +125,35 @@ public class ResourceNamePrefixService extends StatefulService {
         public List<String> resourceNamePrefixes;
     }
 
+    /**
+     * An DTO used during PATCH request in order to lease a block of consecutive numbers of the
+     * sequence, which the requesting node uses to build the prefixes on its own.
+     */
+    public static class NumberBlockLeaseRequest {
+        public static final String KIND = Utils.buildKind(NumberBlockLeaseRequest.class);
+
+        /** Has to be set to {@link #KIND} to distinguish the request from a name prefix one. */
+        public String documentKind;
+
+        /** The number of numbers to lease, less are leased at the end of the sequence. */
+        public long blockSize;
+
+        public static NumberBlockLeaseRequest create(long blockSize) {
+            NumberBlockLeaseRequest request = new NumberBlockLeaseRequest();
+            request.documentKind = KIND;
+            request.blockSize = blockSize;
+            return request;
+        }
+    }
+
+    /** An DTO used during PATCH response in order to return the leased block. */
+    public static class NumberBlockLeaseResponse {
+        public String prefix;
+        public boolean addRandomToken;
+        public long firstNumber;
+        public long count;
+    }
+
     public ResourceNamePrefixService() {
         super(ResourceNamePrefixState.class);
         super.toggleOption(ServiceOption.REPLICATION, true);
@@ -189,8 +219,14 @@ public class ResourceNamePrefixService extends StatefulService {
         }
         adjustStat(ResourceNamePrefixState.class.getSimpleName().toString(), 1);
 
-        NamePrefixRequest request = patch.getBody(NamePrefixRequest.class);
         ResourceNamePrefixState state = getState(patch);
+        NumberBlockLeaseRequest leaseRequest = patch.getBody(NumberBlockLeaseRequest.class);
+        if (NumberBlockLeaseRequest.KIND.equals(leaseRequest.documentKind)) {
+            leaseNumberBlock(patch, state, leaseRequest);
+            return;
+        }
+
+        NamePrefixRequest request = patch.getBody(NamePrefixRequest.class);
         if (request.resourceCount <= 0) {
             patch.fail(new LocalizableValidationException(
                     "Requested resource count must be positive number.", "common.name-prefix.count.positive"));
@@ -205,16 +241,8 @@ public class ResourceNamePrefixService extends StatefulService {
         response.resourceNamePrefixes = new ArrayList<String>((int) request.resourceCount);
 
         for (int i = 0; i < request.resourceCount; i++) {
-            final StringBuilder namePrefix = new StringBuilder();
-            namePrefix.append(state.prefix);
-            namePrefix.append(state.currentCount++);
-            if (state.addRandomToken) {
-                namePrefix.append(RANDOM_GENERATED_TOKEN_DELIMITER);
-                //adding time since 2016 as shortest and smallest possible guaranteed random token
-                long timestamp = System.currentTimeMillis() - SINCE_TIME;
-                namePrefix.append(timestamp);
-            }
-            response.resourceNamePrefixes.add(namePrefix.toString());
+            response.resourceNamePrefixes.add(buildNamePrefix(state.prefix,
+                    state.currentCount++, state.addRandomToken));
             if (state.currentCount > state.getMaxNumber()) {
                 // reset back to the beginning.
                 logWarning("Reseting name prefix counter [%s] to initial value [%s]...",
@@ -227,6 +255,49 @@ public class ResourceNamePrefixService extends StatefulService {
         patch.complete();
     }
 
+    private void leaseNumberBlock(Operation patch, ResourceNamePrefixState state,
+            NumberBlockLeaseRequest request) {
+        if (request.blockSize <= 0) {
+            patch.fail(new LocalizableValidationException(
+                    "Requested resource count must be positive number.", "common.name-prefix.count.positive"));
+            return;
+        }
+
+        NumberBlockLeaseResponse response = new NumberBlockLeaseResponse();
+        response.prefix = state.prefix;
+        response.addRandomToken = state.addRandomToken;
+        response.firstNumber = state.currentCount;
+        response.count = Math.min(request.blockSize,
+                state.getMaxNumber() - state.currentCount + 1);
+
+        state.currentCount += response.count;
+        if (state.currentCount > state.getMaxNumber()) {
+            // reset back to the beginning.
+            logWarning("Reseting name prefix counter [%s] to initial value [%s]...",
+                    state.currentCount, state.nextNumber);
+            state.currentCount = state.nextNumber;
+        }
+
+        patch.setBodyNoCloning(response);
+        patch.complete();
+    }
+
+    /**
+     * Builds the name prefix with the given number of the sequence.
+     */
+    public static String buildNamePrefix(String prefix, long number, boolean addRandomToken) {
+        final StringBuilder namePrefix = new StringBuilder();
+        namePrefix.append(prefix);
+        namePrefix.append(number);
+        if (addRandomToken) {
+            namePrefix.append(RANDOM_GENERATED_TOKEN_DELIMITER);
+            //adding time since 2016 as shortest and smallest possible guaranteed random token
+            long timestamp = System.currentTimeMillis() - SINCE_TIME;
+            namePrefix.append(timestamp);
+        }
+        return namePrefix.toString();
+    }
+
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
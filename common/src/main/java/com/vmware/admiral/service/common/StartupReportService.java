@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.host.StartupGraph;
+import com.vmware.admiral.host.StartupGraph.StartupReport;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+
+/**
+ * Returns the timings of the service groups started by a {@link StartupGraph} of the host.
+ */
+public class StartupReportService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.STARTUP_REPORT;
+
+    private final StartupReport report;
+
+    public StartupReportService(StartupReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        get.setBody(report);
+        get.complete();
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument d = super.getDocumentTemplate();
+        addServiceRequestRoute(d, Action.GET,
+                "Get the startup timings of the service groups of the host.",
+                StartupReport.class);
+        return d;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Claim of a single unique value, e.g. a project name. Each value of a group of unique values has
+ * its own document, with a link derived from the hash of the group and the lower case value, so
+ * claiming and freeing a value does not depend on the number of claimed values and does not
+ * rewrite a document holding all of them, as {@link UniquePropertiesService} does.
+ * <p>
+ * The value is claimed with an idempotent POST, which fails with
+ * {@link Operation#STATUS_CODE_CONFLICT} if the value is already claimed, and is freed with a
+ * PATCH. Freed documents are kept, so that the value can be claimed again.
+ */
+public class UniquePropertyClaimService extends StatefulService {
+    public static final String FACTORY_LINK = ManagementUriParts.UNIQUE_PROPERTY_CLAIMS;
+
+    public static class UniquePropertyClaimState extends ServiceDocument {
+        /** (Required) The ID of the group of unique values, e.g. project names. */
+        public String propertiesId;
+
+        /** (Required) The lower case value. */
+        public String value;
+
+        /** Whether the value is currently claimed. */
+        public Boolean claimed;
+    }
+
+    public UniquePropertyClaimService() {
+        super(UniquePropertyClaimState.class);
+        super.toggleOption(ServiceOption.PERSISTENCE, true);
+        super.toggleOption(ServiceOption.REPLICATION, true);
+        super.toggleOption(ServiceOption.OWNER_SELECTION, true);
+        super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
+    }
+
+    /**
+     * Builds the claim of the given value.
+     */
+    public static UniquePropertyClaimState buildClaim(String propertiesId, String value) {
+        UniquePropertyClaimState state = new UniquePropertyClaimState();
+        state.propertiesId = propertiesId;
+        state.value = value.toLowerCase();
+        state.claimed = true;
+        state.documentSelfLink = buildClaimLink(propertiesId, value);
+        return state;
+    }
+
+    /**
+     * Returns the link of the claim document of the given value.
+     */
+    public static String buildClaimLink(String propertiesId, String value) {
+        return UriUtils.buildUriPath(FACTORY_LINK,
+                propertiesId + "-" + Utils.computeHash(value.toLowerCase()));
+    }
+
+    @Override
+    public void handleCreate(Operation post) {
+        if (!checkForBody(post)) {
+            return;
+        }
+        UniquePropertyClaimState state = post.getBody(UniquePropertyClaimState.class);
+        try {
+            validate(state);
+        } catch (Throwable e) {
+            post.fail(e);
+            return;
+        }
+        state.claimed = true;
+        post.setBody(state).complete();
+    }
+
+    /**
+     * Claims a value which document already exists, converted from the idempotent POST.
+     */
+    @Override
+    public void handlePut(Operation put) {
+        if (!checkForBody(put)) {
+            return;
+        }
+        UniquePropertyClaimState currentState = getState(put);
+        UniquePropertyClaimState putState = put.getBody(UniquePropertyClaimState.class);
+        try {
+            validate(putState);
+        } catch (Throwable e) {
+            put.fail(e);
+            return;
+        }
+        if (Boolean.TRUE.equals(currentState.claimed)) {
+            put.fail(Operation.STATUS_CODE_CONFLICT);
+            return;
+        }
+        currentState.value = putState.value;
+        currentState.claimed = true;
+        put.setBody(currentState).complete();
+    }
+
+    /**
+     * Frees the value.
+     */
+    @Override
+    public void handlePatch(Operation patch) {
+        UniquePropertyClaimState currentState = getState(patch);
+        if (!Boolean.TRUE.equals(currentState.claimed)) {
+            patch.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+        }
+        currentState.claimed = false;
+        patch.setBody(currentState).complete();
+    }
+
+    private static void validate(UniquePropertyClaimState state) {
+        AssertUtil.assertNotNullOrEmpty(state.propertiesId, "propertiesId");
+        AssertUtil.assertNotNullOrEmpty(state.value, "value");
+        state.value = state.value.toLowerCase();
+    }
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -46,6 +47,7 @@ import com.vmware.admiral.compute.content.CompositeTemplate;
 import com.vmware.admiral.compute.content.NestedState;
 import com.vmware.photon.controller.model.resources.ResourceState;
 import com.vmware.xenon.common.LocalizableValidationException;
+import com.vmware.xenon.common.ServiceDocument;
 
 /**
  * Utility class for working with Strings on a Composite description level, that have bindings in
@@ -105,6 +107,13 @@ public class BindingEvaluator {
     private static ObjectMapper objectMapper;
     private static ObjectWriter objectAsStringWriter;
 
+    /** type -> field name -> field, absent if the type has no such field */
+    private static final Map<Class<?>, Map<String, Optional<Field>>> FIELDS =
+            new ConcurrentHashMap<>();
+
+    /** type -> names of the fields that contain links, see {@link NestedState} */
+    private static final Map<Class<?>, Set<String>> LINK_FIELDS = new ConcurrentHashMap<>();
+
     static {
         objectMapper = new ObjectMapper(new YAMLFactory());
         FilterProvider filters = new SimpleFilterProvider().addFilter(
@@ -130,28 +139,87 @@ public class BindingEvaluator {
                 compositeTemplate.bindings);
 
         for (Binding.ComponentBinding componentBinding : bindingByComponentName.values()) {
-            @SuppressWarnings("rawtypes")
-            ComponentTemplate componentTemplate = componentNameToTemplate
+            ComponentTemplate<?> componentTemplate = componentNameToTemplate
                     .get(componentBinding.componentName);
 
-            for (Binding binding : componentBinding.bindings) {
-                if (binding.isProvisioningTimeBinding()) {
-                    continue;
-                }
+            PendingValues pending = new PendingValues(componentBinding.componentName,
+                    componentTemplate);
+            try {
+                for (Binding binding : componentBinding.bindings) {
+                    if (binding.isProvisioningTimeBinding()) {
+                        continue;
+                    }
 
-                try {
                     evaluateBinding(binding, componentBinding.componentName, componentTemplate,
                             componentNameToTemplate,
                             bindingByComponentName,
-                            new HashSet<>());
-                } catch (ReflectiveOperationException | IOException e) {
-                    throw new RuntimeException(e);
+                            new HashSet<>(), pending);
                 }
+                pending.flush();
+            } catch (ReflectiveOperationException | IOException e) {
+                throw new RuntimeException(e);
             }
 
         }
     }
 
+    /**
+     * The evaluated values of the bindings of a component which are not yet set in its template.
+     * Setting a value requires a serialization round trip of the whole template, so the values are
+     * set all at once, before the template is read by another binding or when all bindings of the
+     * component are evaluated.
+     */
+    private static class PendingValues {
+        final String componentName;
+        final ComponentTemplate<?> componentTemplate;
+        final List<List<String>> targetFieldPaths = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+
+        PendingValues(String componentName, ComponentTemplate<?> componentTemplate) {
+            this.componentName = componentName;
+            this.componentTemplate = componentTemplate;
+        }
+
+        void add(List<String> targetFieldPath, Object value) {
+            targetFieldPaths.add(targetFieldPath);
+            values.add(value);
+        }
+
+        void flushIfReading(String sourceComponentName) throws IOException {
+            if (componentName.equals(sourceComponentName)) {
+                flush();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void flush() throws IOException {
+            if (values.isEmpty()) {
+                return;
+            }
+            Map<String, Object> serializedComponentTemplate = TemplateSerializationUtils
+                    .serializeComponentTemplate(componentTemplate, objectMapper,
+                            objectAsStringWriter);
+            Map<String, Object> data = (Map<String, Object>) serializedComponentTemplate
+                    .get("data");
+            for (int i = 0; i < values.size(); i++) {
+                setValue(data, targetFieldPaths.get(i), values.get(i));
+            }
+            ComponentTemplate<?> updatedComponentTemplate = TemplateSerializationUtils
+                    .deserializeComponent(serializedComponentTemplate, objectMapper);
+            setTemplate(componentTemplate, updatedComponentTemplate);
+            targetFieldPaths.clear();
+            values.clear();
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private static void setTemplate(ComponentTemplate target, ComponentTemplate source) {
+            target.data = source.data;
+            target.children = source.children;
+            target.type = source.type;
+            target.dependsOn = source.dependsOn;
+        }
+    }
+
     /**
      * Applies the binding on a Component, after a dependent component is provisioned.
      */
@@ -173,6 +241,11 @@ public class BindingEvaluator {
             }
         }
 
+        // nothing to set, skip the serialization round trip of the state
+        if (evaluatedBindingMap.isEmpty()) {
+            return result;
+        }
+
         try {
             final Map<String, Object> resultBindingMap = new HashMap<>();
             sanitizeState(state, (normalizedState) -> {
@@ -187,10 +260,8 @@ public class BindingEvaluator {
             });
 
             applyEvaluatedState(resultBindingMap, evaluatedBindingMap, bindings);
-            if (!evaluatedBindingMap.isEmpty()) {
-                result = TemplateSerializationUtils.deserializeServiceDocument(resultBindingMap,
-                        state.object.getClass());
-            }
+            result = TemplateSerializationUtils.deserializeServiceDocument(resultBindingMap,
+                    state.object.getClass());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -227,8 +298,13 @@ public class BindingEvaluator {
 
     private static void applyEvaluatedState(Map<String, Object> resultBindingMap,
             Map<String, Object> evaluatedBindingMap, List<Binding> bindings) {
+        // the first binding of an expression is the target, regardless of the case
+        Map<String, Binding> bindingsByExpression = new HashMap<>();
+        for (Binding b : bindings) {
+            bindingsByExpression.putIfAbsent(b.placeholder.bindingExpression.toLowerCase(), b);
+        }
         evaluatedBindingMap.forEach((k, v) -> {
-            Binding targetBinding = findBindingByExpression(k, bindings);
+            Binding targetBinding = bindingsByExpression.get(k.toLowerCase());
             if (targetBinding != null) {
                 setValue(resultBindingMap, targetBinding.targetFieldPath, v);
             }
@@ -236,16 +312,6 @@ public class BindingEvaluator {
 
     }
 
-    private static Binding findBindingByExpression(String k, List<Binding> bindings) {
-        for (Binding b : bindings) {
-            if (k.equalsIgnoreCase(b.placeholder.bindingExpression)) {
-                return b;
-            }
-        }
-
-        return null;
-    }
-
     private static void evaluateProvisioningTimeBinding(Binding binding,
             Map<String, NestedState> provisionedResources, Map<String, Object> evaluatedBindings)
             throws ReflectiveOperationException, IOException {
@@ -266,39 +332,30 @@ public class BindingEvaluator {
         evaluatedBindings.put(binding.placeholder.bindingExpression, value);
     }
 
-    @SuppressWarnings("unchecked")
     private static void evaluateBinding(
             Binding binding,
             String componentName,
-            @SuppressWarnings("rawtypes") ComponentTemplate componentTemplate,
+            ComponentTemplate<?> componentTemplate,
             Map<String, ComponentTemplate<?>> componentNameToTemplate,
             Map<String, Binding.ComponentBinding> allBindings,
-            Set<String> visited) throws ReflectiveOperationException, IOException {
+            Set<String> visited,
+            PendingValues pending) throws ReflectiveOperationException, IOException {
 
         Object rootSourceValue = resolveValue(binding, componentName, componentTemplate,
-                componentNameToTemplate, allBindings, visited);
+                componentNameToTemplate, allBindings, visited, pending);
 
         if (rootSourceValue != null) {
-            Map<String, Object> serializedComponentTemplate = TemplateSerializationUtils
-                    .serializeComponentTemplate(componentTemplate, objectMapper,
-                            objectAsStringWriter);
-            setValue((Map<String, Object>) serializedComponentTemplate.get("data"),
-                    binding.targetFieldPath, rootSourceValue);
-            ComponentTemplate<?> updatedComponentTemplate = TemplateSerializationUtils
-                    .deserializeComponent(serializedComponentTemplate, objectMapper);
-            componentTemplate.data = updatedComponentTemplate.data;
-            componentTemplate.children = updatedComponentTemplate.children;
-            componentTemplate.type = updatedComponentTemplate.type;
-            componentTemplate.dependsOn = updatedComponentTemplate.dependsOn;
+            pending.add(binding.targetFieldPath, rootSourceValue);
         }
 
     }
 
     private static Object resolveValue(Binding binding, String templateName,
-            @SuppressWarnings("rawtypes") ComponentTemplate targetTemplate,
+            ComponentTemplate<?> targetTemplate,
             Map<String, ComponentTemplate<?>> componentNameToDescription,
-            Map<String, Binding.ComponentBinding> allBindings, Set<String> visited)
-            throws ReflectiveOperationException {
+            Map<String, Binding.ComponentBinding> allBindings, Set<String> visited,
+            PendingValues pending)
+            throws ReflectiveOperationException, IOException {
 
         // Assume the <<description>>.name is the same as the component name because of
         // CompositeTemplateUtil#sanitizeCompositeTemplate
@@ -315,9 +372,9 @@ public class BindingEvaluator {
         String sourceComponentName = BindingUtils
                 .extractComponentNameFromBindingExpression(bindingExpression);
 
-        @SuppressWarnings("rawtypes")
-        ComponentTemplate sourceTemplate = componentNameToDescription.get(sourceComponentName);
+        ComponentTemplate<?> sourceTemplate = componentNameToDescription.get(sourceComponentName);
 
+        pending.flushIfReading(sourceComponentName);
         Object rootSourceValue = getFieldValueByPath(sourceFieldPath, sourceTemplate.data);
 
         // if the source value is null it may be bound to something else
@@ -329,7 +386,7 @@ public class BindingEvaluator {
                 Binding nestedBinding = isSourceValueABinding.get();
                 rootSourceValue = resolveValue(nestedBinding, sourceComponentName, sourceTemplate,
                         componentNameToDescription,
-                        allBindings, visited);
+                        allBindings, visited, pending);
             }
         }
 
@@ -415,6 +472,31 @@ public class BindingEvaluator {
         }
     }
 
+    /**
+     * Returns the field of the given type with the given name, or its camel case form, from the
+     * cache of the resolved fields. The lookups walk the class hierarchy and are done once per
+     * type and field name.
+     */
+    private static Field findField(Class<?> type, String fieldName) {
+        return FIELDS.computeIfAbsent(type, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fieldName, name -> {
+                    Field field = PropertyUtils.findField(type, name);
+                    if (field == null) {
+                        field = PropertyUtils.findField(type, convertSnakeCaseToCamelCase(name));
+                    }
+                    return Optional.ofNullable(field);
+                }).orElse(null);
+    }
+
+    private static boolean isLinkField(Class<?> type, String fieldName) {
+        return LINK_FIELDS.computeIfAbsent(type, k -> {
+            Map<String, Class<? extends ServiceDocument>> linkFields = NestedState
+                    .getLinkFields(k);
+            return linkFields != null ? new HashSet<>(linkFields.keySet())
+                    : Collections.emptySet();
+        }).contains(fieldName);
+    }
+
     private static String convertSnakeCaseToCamelCase(String fieldName) {
         List<String> words = Arrays.asList(fieldName.split("_"));
 
@@ -462,8 +544,7 @@ public class BindingEvaluator {
             }
 
             // this field contains links
-            isCurrentFieldLink =
-                    NestedState.getNestedObjectType(value.getClass(), fieldName) != null;
+            isCurrentFieldLink = isLinkField(value.getClass(), fieldName);
 
             // special case for a map
             if (value instanceof Map) {
@@ -518,11 +599,7 @@ public class BindingEvaluator {
             }
 
             Class<?> type = value.getClass();
-            Field field = PropertyUtils.findField(type, fieldName);
-            if (field == null) {
-                String snakeCaseFieldName = convertSnakeCaseToCamelCase(fieldName);
-                field = PropertyUtils.findField(type, snakeCaseFieldName);
-            }
+            Field field = findField(type, fieldName);
 
             if (field != null) {
                 if (value instanceof Closure) {
@@ -568,7 +645,7 @@ public class BindingEvaluator {
     private static Object tryGetValueFromCustomProperties(Class<?> type, Object value,
             String fieldName) {
         Object result = null;
-        Field field = PropertyUtils.findField(type, ResourceState.FIELD_NAME_CUSTOM_PROPERTIES);
+        Field field = findField(type, ResourceState.FIELD_NAME_CUSTOM_PROPERTIES);
         if (field != null) {
             try {
                 Map<String, Object> customProperties = (Map<String, Object>) field.get(value);
@@ -11,20 +11,43 @@
 
 package com.vmware.admiral.compute;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+import com.google.gson.JsonObject;
+
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.CommonContinuousQueries;
 import com.vmware.admiral.common.util.CommonContinuousQueries.ContinuousQueryId;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.resources.ResourceState;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
 
 /**
  * A stateless service that periodically triggers enumeration of computes participating in all
  * query-driven placement zones.
+ * <p>
+ * Between the periodic enumerations the membership of changed computes is updated incrementally:
+ * the query of each resource pool is compiled into an {@link EpzComputeMatcher} and only the
+ * computes reported by the compute continuous query are retrieved and evaluated against it.
+ * Deleted computes trigger an enumeration of the placement zones they were last seen in.
  */
 public class EpzComputeEnumerationPeriodicService extends StatelessService {
 
@@ -40,6 +63,13 @@ public class EpzComputeEnumerationPeriodicService extends StatelessService {
     private final AtomicBoolean paused = new AtomicBoolean();
     private final AtomicBoolean invalidated = new AtomicBoolean();
 
+    // compiled resource pool queries, empty if the query cannot be evaluated in-memory
+    private final Map<String, Optional<EpzComputeMatcher>> matchers = new ConcurrentHashMap<>();
+    private final AtomicBoolean matchersLoaded = new AtomicBoolean();
+
+    // resource pools each compute was last evaluated into, used on compute deletion
+    private final Map<String, Set<String>> memberships = new ConcurrentHashMap<>();
+
     public EpzComputeEnumerationPeriodicService() {
         super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
         super.toggleOption(ServiceOption.PERSISTENCE, false);
@@ -55,6 +85,9 @@ public class EpzComputeEnumerationPeriodicService extends StatelessService {
     @Override
     public void handleStart(Operation startPost) {
         startPost.complete();
+        CommonContinuousQueries.subscribeTo(this.getHost(), ContinuousQueryId.RESOURCE_POOLS,
+                this::onResourcePoolChange);
+        loadResourcePools();
         CommonContinuousQueries.subscribeTo(this.getHost(), ContinuousQueryId.COMPUTES,
                 this::onComputeChange);
     }
@@ -62,11 +95,147 @@ public class EpzComputeEnumerationPeriodicService extends StatelessService {
     public void onComputeChange(Operation op) {
         op.complete();
         QueryTask queryTask = op.getBody(QueryTask.class);
-        if (queryTask.results != null && queryTask.results.documentLinks != null
-                && !queryTask.results.documentLinks.isEmpty()) {
+        if (queryTask.results == null || queryTask.results.documentLinks == null
+                || queryTask.results.documentLinks.isEmpty()) {
+            return;
+        }
+
+        if (!matchersLoaded.get() || matchers.values().stream().anyMatch(m -> !m.isPresent())) {
             doTrigger(() -> String.format("Compute change: %s",
                     String.join(", ", queryTask.results.documentLinks)), true);
+            return;
+        }
+
+        // the shared compute query does not expand content, the changed computes are retrieved
+        // with a single query and the ones not found anymore are deleted
+        Set<String> deletedLinks = new HashSet<>(queryTask.results.documentLinks);
+        Query computeQuery = Query.Builder.create()
+                .addKindFieldClause(ComputeState.class)
+                .addInClause(ServiceDocument.FIELD_NAME_SELF_LINK, queryTask.results.documentLinks)
+                .build();
+        new QueryByPages<>(getHost(), computeQuery, ComputeState.class, null)
+                .queryDocuments(compute -> {
+                    deletedLinks.remove(compute.documentSelfLink);
+                    updateMembership(compute);
+                })
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to retrieve changed computes: %s", Utils.toString(e));
+                        doTrigger(() -> String.format("Compute change: %s",
+                                String.join(", ", queryTask.results.documentLinks)), true);
+                        return;
+                    }
+                    deletedLinks.forEach(this::onComputeDeleted);
+                });
+    }
+
+    /**
+     * A deleted compute leaves the placement zones it was a member of. The zones are enumerated
+     * again so that anything derived from their membership is reconciled. A full enumeration is
+     * triggered for computes that were not evaluated since this service started.
+     */
+    private void onComputeDeleted(String computeLink) {
+        Set<String> rpLinks = memberships.remove(computeLink);
+        if (rpLinks == null) {
+            doTrigger(() -> String.format("Compute deleted: %s", computeLink), true);
+            return;
+        }
+
+        for (String rpLink : rpLinks) {
+            logFine("Compute %s deleted from placement zone %s", computeLink, rpLink);
+            EpzComputeEnumerationTaskService.triggerForResourcePool(this, rpLink);
+        }
+    }
+
+    public void onResourcePoolChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
         }
+
+        for (Object json : queryTask.results.documents.values()) {
+            ResourcePoolState rp = Utils.fromJson(json, ResourcePoolState.class);
+            if (Action.DELETE.toString().equals(rp.documentUpdateAction)) {
+                matchers.remove(rp.documentSelfLink);
+                memberships.values().forEach(rpLinks -> rpLinks.remove(rp.documentSelfLink));
+            } else {
+                addMatcher(rp);
+            }
+        }
+    }
+
+    private void loadResourcePools() {
+        Query rpQuery = Query.Builder.create().addKindFieldClause(ResourcePoolState.class).build();
+        new QueryByPages<>(getHost(), rpQuery, ResourcePoolState.class, null)
+                .queryDocuments(this::addMatcher)
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to load resource pools, compute changes will trigger"
+                                + " a full enumeration: %s", Utils.toString(e));
+                        return;
+                    }
+                    matchersLoaded.set(true);
+                });
+    }
+
+    private void addMatcher(ResourcePoolState rp) {
+        EpzComputeMatcher matcher = EpzComputeMatcher.compile(rp.query);
+        if (matcher == null) {
+            logInfo("Query of resource pool %s cannot be evaluated in-memory",
+                    rp.documentSelfLink);
+        }
+        matchers.put(rp.documentSelfLink, Optional.ofNullable(matcher));
+    }
+
+    /**
+     * Evaluates all resource pool queries against the given compute and patches its placement
+     * zone custom properties if the membership changed. The capacity of the affected resource
+     * pools is updated by {@link PlacementCapacityUpdatePeriodicService} on the resulting compute
+     * change.
+     */
+    private void updateMembership(ComputeState compute) {
+        JsonObject computeJson = EpzComputeMatcher.toJsonObject(compute);
+        Map<String, String> changes = new HashMap<>();
+        Set<String> rpLinks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        for (Entry<String, Optional<EpzComputeMatcher>> entry : matchers.entrySet()) {
+            if (!entry.getValue().isPresent()) {
+                // compiled after the change was received, left to the periodic enumeration
+                continue;
+            }
+            String propName = EpzComputeEnumerationTaskService.EPZ_CUSTOM_PROP_NAME_PREFIX
+                    + UriUtils.getLastPathSegment(entry.getKey());
+            boolean assigned = compute.customProperties != null
+                    && EpzComputeEnumerationTaskService.EPZ_CUSTOM_PROP_VALUE
+                            .equals(compute.customProperties.get(propName));
+            boolean matches = entry.getValue().get().matches(computeJson);
+            if (matches) {
+                rpLinks.add(entry.getKey());
+            }
+            if (assigned != matches) {
+                changes.put(propName,
+                        matches ? EpzComputeEnumerationTaskService.EPZ_CUSTOM_PROP_VALUE : null);
+            }
+        }
+
+        memberships.put(compute.documentSelfLink, rpLinks);
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        logFine("Updating placement zones of compute %s: %s", compute.documentSelfLink, changes);
+        // Note: ResourceState patch body is used because it has custom JSON serialization
+        // support for null values in a map
+        ResourceState patchBody = new ResourceState();
+        patchBody.customProperties = changes;
+        sendRequest(Operation.createPatch(this, compute.documentSelfLink)
+                .setBody(patchBody)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to update placement zones of compute %s: %s",
+                                compute.documentSelfLink, Utils.toString(e));
+                    }
+                }));
     }
 
     private void doTrigger(Supplier<String> logSupplier, boolean postponeIfPaused) {
@@ -114,6 +114,7 @@ public class EpzComputeEnumerationTaskService extends
 
         // these are one-off tasks that are not needed upon completion
         this.setSelfDelete(true);
+        this.setEphemeral(true);
 
         this.setLogLevel(DEFAULT_LOG_LEVEL);
     }
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+
+/**
+ * In-memory evaluation of a resource pool query against a single compute. Used to update the
+ * elastic placement zone membership of a changed compute without querying the index.
+ * <p>
+ * Only the subset of the query language generated for resource pools is supported: boolean
+ * clauses and term, prefix and wildcard matches on (nested) fields, collection items and map
+ * entries. {@link #compile(Query)} returns {@code null} for any other query, e.g. one with numeric
+ * ranges, in which case the membership has to be determined by {@link
+ * EpzComputeEnumerationTaskService}.
+ */
+public class EpzComputeMatcher {
+
+    private static final String FIELD_SEPARATOR_REGEX = Pattern
+            .quote(QuerySpecification.FIELD_NAME_CHARACTER);
+
+    private final Predicate<JsonObject> predicate;
+
+    private EpzComputeMatcher(Predicate<JsonObject> predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * Compiles the given resource pool query, returns {@code null} if the query is not supported.
+     */
+    public static EpzComputeMatcher compile(Query query) {
+        if (query == null) {
+            return null;
+        }
+        Predicate<JsonObject> predicate = compileQuery(query);
+        return predicate != null ? new EpzComputeMatcher(predicate) : null;
+    }
+
+    /**
+     * Converts the compute into the form evaluated by {@link #matches(JsonObject)}. The result can
+     * be reused across matchers.
+     */
+    public static JsonObject toJsonObject(ComputeState compute) {
+        return Utils.fromJson(Utils.toJson(compute), JsonObject.class);
+    }
+
+    public boolean matches(ComputeState compute) {
+        return matches(toJsonObject(compute));
+    }
+
+    public boolean matches(JsonObject compute) {
+        return predicate.test(compute);
+    }
+
+    private static Predicate<JsonObject> compileQuery(Query query) {
+        if (query.booleanClauses == null || query.booleanClauses.isEmpty()) {
+            return compileTerm(query.term);
+        }
+        if (query.term != null) {
+            return null;
+        }
+
+        List<Predicate<JsonObject>> must = new ArrayList<>();
+        List<Predicate<JsonObject>> mustNot = new ArrayList<>();
+        List<Predicate<JsonObject>> should = new ArrayList<>();
+        for (Query clause : query.booleanClauses) {
+            Predicate<JsonObject> p = compileQuery(clause);
+            if (p == null) {
+                return null;
+            }
+            Occurance occurance = clause.occurance != null ? clause.occurance
+                    : Occurance.MUST_OCCUR;
+            switch (occurance) {
+            case MUST_NOT_OCCUR:
+                mustNot.add(p);
+                break;
+            case SHOULD_OCCUR:
+                should.add(p);
+                break;
+            default:
+                must.add(p);
+                break;
+            }
+        }
+
+        // same as the index: SHOULD clauses are optional when there are MUST clauses
+        boolean shouldRequired = must.isEmpty() && !should.isEmpty();
+        return doc -> {
+            for (Predicate<JsonObject> p : must) {
+                if (!p.test(doc)) {
+                    return false;
+                }
+            }
+            for (Predicate<JsonObject> p : mustNot) {
+                if (p.test(doc)) {
+                    return false;
+                }
+            }
+            if (shouldRequired) {
+                for (Predicate<JsonObject> p : should) {
+                    if (p.test(doc)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return true;
+        };
+    }
+
+    private static Predicate<JsonObject> compileTerm(QueryTerm term) {
+        if (term == null || term.propertyName == null || term.matchValue == null
+                || term.range != null) {
+            return null;
+        }
+
+        String[] path = term.propertyName.split(FIELD_SEPARATOR_REGEX);
+        String value = term.matchValue;
+        MatchType matchType = term.matchType != null ? term.matchType : MatchType.TERM;
+        Predicate<String> valueMatcher;
+        switch (matchType) {
+        case TERM:
+            valueMatcher = value::equals;
+            break;
+        case PREFIX:
+            valueMatcher = s -> s.startsWith(value);
+            break;
+        case WILDCARD:
+            Pattern pattern = Pattern.compile(wildcardToRegex(value));
+            valueMatcher = s -> pattern.matcher(s).matches();
+            break;
+        default:
+            return null;
+        }
+
+        return doc -> {
+            for (String fieldValue : resolve(doc, path)) {
+                if (valueMatcher.test(fieldValue)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Returns the string values found under the given field path, collection items are flattened.
+     */
+    private static List<String> resolve(JsonObject doc, String[] path) {
+        List<JsonElement> current = Collections.singletonList(doc);
+        for (int i = 0; i < path.length && !current.isEmpty(); i++) {
+            List<JsonElement> next = new ArrayList<>();
+            for (JsonElement element : current) {
+                if (element.isJsonArray()
+                        && QuerySpecification.COLLECTION_FIELD_SUFFIX.equals(path[i])) {
+                    ((JsonArray) element).forEach(next::add);
+                } else if (element.isJsonObject()) {
+                    JsonObject object = element.getAsJsonObject();
+                    if (object.has(path[i])) {
+                        next.add(object.get(path[i]));
+                    } else if (i < path.length - 1) {
+                        // map keys may contain the field separator
+                        String key = String.join(QuerySpecification.FIELD_NAME_CHARACTER,
+                                Arrays.copyOfRange(path, i, path.length));
+                        if (object.has(key)) {
+                            return toStrings(Collections.singletonList(object.get(key)));
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+        return toStrings(current);
+    }
+
+    private static List<String> toStrings(List<JsonElement> elements) {
+        List<String> values = new ArrayList<>(elements.size());
+        for (JsonElement element : elements) {
+            if (element.isJsonPrimitive()) {
+                values.add(element.getAsString());
+            } else if (element.isJsonArray()) {
+                // a term on a collection without the item suffix matches any of the items
+                for (JsonElement item : element.getAsJsonArray()) {
+                    if (item.isJsonPrimitive()) {
+                        values.add(item.getAsString());
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String wildcardToRegex(String wildcard) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : wildcard.toCharArray()) {
+            if (c == '*') {
+                sb.append(".*");
+            } else if (c == '?') {
+                sb.append('.');
+            } else {
+                sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService.AggregatedComputeStats;
+import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService.ComputeStats;
+
+/**
+ * Running totals of the compute figures per resource pool. A compute change only moves the
+ * contribution of that compute between the totals of its previous and current resource pools, so
+ * the capacity of a resource pool can be updated without aggregating all of its computes.
+ * <p>
+ * Changes are applied only if they are newer than the last change seen for the compute. Removed
+ * computes are remembered until the next {@link #reconcile(PlacementCapacityAccumulator, long)}
+ * so that a snapshot loaded concurrently does not bring them back.
+ */
+class PlacementCapacityAccumulator {
+
+    private static final double CPU_USAGE_TOLERANCE = 0.000001;
+
+    private static class ComputeEntry {
+        final long updateTimeMicros;
+        final Set<String> resourcePoolLinks;
+        // null if the compute is removed or does not contribute to the capacity
+        final ComputeStats stats;
+
+        ComputeEntry(long updateTimeMicros, Set<String> resourcePoolLinks, ComputeStats stats) {
+            this.updateTimeMicros = updateTimeMicros;
+            this.resourcePoolLinks = resourcePoolLinks;
+            this.stats = stats;
+        }
+    }
+
+    private final Map<String, ComputeEntry> computes = new HashMap<>();
+    private final Map<String, AggregatedComputeStats> pools = new HashMap<>();
+
+    /**
+     * Records the current resource pools and statistics of a compute. Returns the resource pools
+     * which totals changed.
+     */
+    synchronized Set<String> update(String computeLink, long updateTimeMicros,
+            Set<String> resourcePoolLinks, ComputeStats stats) {
+        ComputeEntry previous = computes.get(computeLink);
+        if (previous != null && previous.updateTimeMicros > updateTimeMicros) {
+            return Collections.emptySet();
+        }
+        computes.put(computeLink, new ComputeEntry(updateTimeMicros, resourcePoolLinks, stats));
+
+        if (previous != null && previous.resourcePoolLinks.equals(resourcePoolLinks)
+                && equal(previous.stats, stats)) {
+            return Collections.emptySet();
+        }
+
+        Set<String> changed = new HashSet<>();
+        if (previous != null && previous.stats != null) {
+            for (String rpLink : previous.resourcePoolLinks) {
+                AggregatedComputeStats aggregatedStats = pools.get(rpLink);
+                if (aggregatedStats != null) {
+                    aggregatedStats.subtract(previous.stats);
+                    changed.add(rpLink);
+                }
+            }
+        }
+        if (stats != null) {
+            for (String rpLink : resourcePoolLinks) {
+                pools.computeIfAbsent(rpLink, k -> new AggregatedComputeStats()).add(stats);
+                changed.add(rpLink);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Records the removal of a compute. Returns the resource pools which totals changed.
+     */
+    Set<String> remove(String computeLink, long updateTimeMicros) {
+        return update(computeLink, updateTimeMicros, Collections.emptySet(), null);
+    }
+
+    synchronized void removeResourcePool(String resourcePoolLink) {
+        pools.remove(resourcePoolLink);
+    }
+
+    /**
+     * Returns a copy of the totals of the given resource pool.
+     */
+    synchronized AggregatedComputeStats get(String resourcePoolLink) {
+        AggregatedComputeStats aggregatedStats = pools.get(resourcePoolLink);
+        return aggregatedStats != null ? copy(aggregatedStats) : new AggregatedComputeStats();
+    }
+
+    /**
+     * Replaces the contents with the given snapshot, built from a full query started at the given
+     * time. Changes recorded after the snapshot was started are kept. Returns the resource pools
+     * which totals differ from the previous ones, i.e. for which changes were missed.
+     */
+    synchronized Set<String> reconcile(PlacementCapacityAccumulator snapshot,
+            long snapshotTimeMicros) {
+        Map<String, ComputeEntry> merged = new HashMap<>(snapshot.computes);
+        for (Entry<String, ComputeEntry> entry : computes.entrySet()) {
+            ComputeEntry snapshotEntry = merged.get(entry.getKey());
+            long snapshotEntryTime = snapshotEntry != null ? snapshotEntry.updateTimeMicros
+                    : snapshotTimeMicros;
+            if (entry.getValue().updateTimeMicros > snapshotEntryTime) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<String, AggregatedComputeStats> mergedPools = new HashMap<>();
+        merged.values().removeIf(e -> e.stats == null && e.resourcePoolLinks.isEmpty());
+        for (ComputeEntry entry : merged.values()) {
+            if (entry.stats != null) {
+                for (String rpLink : entry.resourcePoolLinks) {
+                    mergedPools.computeIfAbsent(rpLink, k -> new AggregatedComputeStats())
+                            .add(entry.stats);
+                }
+            }
+        }
+
+        Set<String> drifted = new HashSet<>();
+        Set<String> rpLinks = new HashSet<>(pools.keySet());
+        rpLinks.addAll(mergedPools.keySet());
+        for (String rpLink : rpLinks) {
+            AggregatedComputeStats current = pools.get(rpLink);
+            AggregatedComputeStats reconciled = mergedPools.get(rpLink);
+            if (!equal(current != null ? current : new AggregatedComputeStats(),
+                    reconciled != null ? reconciled : new AggregatedComputeStats())) {
+                drifted.add(rpLink);
+            }
+        }
+
+        computes.clear();
+        computes.putAll(merged);
+        pools.clear();
+        pools.putAll(mergedPools);
+        return drifted;
+    }
+
+    static boolean equal(AggregatedComputeStats s1, AggregatedComputeStats s2) {
+        return s1.computeCount == s2.computeCount
+                && s1.totalMemoryBytes == s2.totalMemoryBytes
+                && s1.cpuCoreCount == s2.cpuCoreCount
+                && s1.totalCpuMhz == s2.totalCpuMhz
+                && s1.availableMemoryBytes == s2.availableMemoryBytes
+                && Math.abs(s1.getCpuUsage() - s2.getCpuUsage()) < CPU_USAGE_TOLERANCE;
+    }
+
+    private static boolean equal(ComputeStats s1, ComputeStats s2) {
+        if (s1 == null || s2 == null) {
+            return s1 == s2;
+        }
+        return s1.totalMemoryBytes == s2.totalMemoryBytes
+                && s1.cpuCoreCount == s2.cpuCoreCount
+                && s1.cpuMhzPerCore == s2.cpuMhzPerCore
+                && s1.availableMemoryBytes == s2.availableMemoryBytes
+                && Double.compare(s1.cpuUsage, s2.cpuUsage) == 0;
+    }
+
+    private static AggregatedComputeStats copy(AggregatedComputeStats stats) {
+        AggregatedComputeStats copy = new AggregatedComputeStats();
+        copy.computeCount = stats.computeCount;
+        copy.totalMemoryBytes = stats.totalMemoryBytes;
+        copy.cpuCoreCount = stats.cpuCoreCount;
+        copy.totalCpuMhz = stats.totalCpuMhz;
+        copy.cpuUsageSumAllCores = stats.cpuUsageSumAllCores;
+        copy.availableMemoryBytes = stats.availableMemoryBytes;
+        return copy;
+    }
+}
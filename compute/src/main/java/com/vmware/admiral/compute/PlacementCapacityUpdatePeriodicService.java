@@ -13,20 +13,51 @@ package com.vmware.admiral.compute;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+import com.google.gson.JsonObject;
+
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.CommonContinuousQueries;
 import com.vmware.admiral.common.util.CommonContinuousQueries.ContinuousQueryId;
+import com.vmware.admiral.common.util.PropertyUtils;
+import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService.AggregatedComputeStats;
+import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService.ComputeStats;
+import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription.ComputeType;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
 
 /**
- * A stateless service that periodically triggers capacity update on placements and
- * placement zones based on the computes participating in them.
+ * A stateless service that keeps the capacity and usage figures of placements and placement
+ * zones up to date based on the computes participating in them.
+ * <p>
+ * The figures are aggregated incrementally: the query of each resource pool is compiled into an
+ * {@link EpzComputeMatcher} and every change reported by the compute continuous query only
+ * adjusts the totals of the resource pools the compute is (or was) part of. The periodic
+ * maintenance rebuilds the totals from a full query and updates only the resource pools which
+ * stored figures turn out to be different. Resource pools which queries cannot be evaluated
+ * in-memory are refreshed with a full {@link PlacementCapacityUpdateTaskService} run instead.
  */
 public class PlacementCapacityUpdatePeriodicService extends StatelessService {
 
@@ -42,6 +73,26 @@ public class PlacementCapacityUpdatePeriodicService extends StatelessService {
     private final AtomicBoolean paused = new AtomicBoolean();
     private final AtomicBoolean invalidated = new AtomicBoolean();
 
+    // used to coalesce the capacity updates of a resource pool with many changed computes
+    private static final long UPDATE_DELAY_MILLIS = Long.getLong(
+            "dcp.management.placement.compute.periodic.update.delay.millis", 500);
+
+    private static final double CPU_USAGE_TOLERANCE = 0.000001;
+
+    // compiled resource pool queries, empty if the query cannot be evaluated in-memory
+    private final Map<String, Optional<EpzComputeMatcher>> matchers = new ConcurrentHashMap<>();
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+
+    private final Map<String, ComputeDescription> descriptions = new ConcurrentHashMap<>();
+    private final PlacementCapacityAccumulator accumulator = new PlacementCapacityAccumulator();
+    private final AtomicBoolean accumulatorLoaded = new AtomicBoolean();
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    private final Set<String> changedPoolLinks = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
     public PlacementCapacityUpdatePeriodicService() {
         super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
         super.setMaintenanceIntervalMicros(MAINTENANCE_INTERVAL_MICROS);
@@ -50,24 +101,272 @@ public class PlacementCapacityUpdatePeriodicService extends StatelessService {
     @Override
     public void handlePeriodicMaintenance(Operation post) {
         post.complete();
-        doTrigger(() -> "Periodic refresh", false);
+        if (!accumulatorLoaded.get()) {
+            doTrigger(() -> "Periodic refresh", false);
+        }
+        rebuild();
     }
 
     @Override
     public void handleStart(Operation startPost) {
         startPost.complete();
 
-        CommonContinuousQueries.subscribeTo(this.getHost(), ContinuousQueryId.COMPUTES,
+        CommonContinuousQueries.subscribeTo(this.getHost(), ContinuousQueryId.RESOURCE_POOLS,
+                this::onResourcePoolChange);
+        CommonContinuousQueries.subscribeTo(this.getHost(), ContinuousQueryId.ALL_COMPUTES,
                 this::onComputeChange);
+        rebuild();
     }
 
     public void onComputeChange(Operation op) {
         op.complete();
         QueryTask queryTask = op.getBody(QueryTask.class);
-        if (queryTask.results != null && queryTask.results.documentLinks != null
-                && !queryTask.results.documentLinks.isEmpty()) {
-            doTrigger(() -> String.format("Compute change: %s",
-                    String.join(", ", queryTask.results.documentLinks)), true);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+
+        for (Object json : queryTask.results.documents.values()) {
+            ComputeState compute = Utils.fromJson(json, ComputeState.class);
+            // all nodes keep the totals but only the owner of the compute updates the pools
+            boolean isOwner = getHost().getId().equals(compute.documentOwner);
+            if (!accumulatorLoaded.get()) {
+                if (isOwner) {
+                    doTrigger(() -> String.format("Compute change: %s",
+                            compute.documentSelfLink), true);
+                }
+                continue;
+            }
+
+            if (Action.DELETE.toString().equals(compute.documentUpdateAction)) {
+                Set<String> changed = accumulator.remove(compute.documentSelfLink,
+                        compute.documentUpdateTimeMicros);
+                if (isOwner) {
+                    scheduleUpdate(changed, true);
+                }
+                continue;
+            }
+
+            getDescription(compute.descriptionLink).whenComplete((description, e) -> {
+                if (e != null) {
+                    logWarning("Failed to retrieve description of compute %s: %s",
+                            compute.documentSelfLink, Utils.toString(e));
+                    return;
+                }
+                Set<String> changed = accumulator.update(compute.documentSelfLink,
+                        compute.documentUpdateTimeMicros, getResourcePoolLinks(compute),
+                        getComputeStats(compute, description));
+                if (isOwner) {
+                    scheduleUpdate(changed, true);
+                }
+            });
+        }
+    }
+
+    public void onResourcePoolChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+
+        for (Object json : queryTask.results.documents.values()) {
+            ResourcePoolState rp = Utils.fromJson(json, ResourcePoolState.class);
+            if (Action.DELETE.toString().equals(rp.documentUpdateAction)) {
+                matchers.remove(rp.documentSelfLink);
+                queries.remove(rp.documentSelfLink);
+                accumulator.removeResourcePool(rp.documentSelfLink);
+            } else if (addResourcePool(rp)) {
+                // the computes of a new or changed query are not known without a full query
+                logFine("Query of resource pool %s changed", rp.documentSelfLink);
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * Compiles the query of the given resource pool. Returns whether the query changed.
+     */
+    private boolean addResourcePool(ResourcePoolState rp) {
+        String query = Utils.toJson(rp.query);
+        if (query.equals(queries.put(rp.documentSelfLink, query))) {
+            return false;
+        }
+
+        EpzComputeMatcher matcher = EpzComputeMatcher.compile(rp.query);
+        if (matcher == null) {
+            logInfo("Query of resource pool %s cannot be evaluated in-memory",
+                    rp.documentSelfLink);
+        }
+        matchers.put(rp.documentSelfLink, Optional.ofNullable(matcher));
+        return true;
+    }
+
+    private Set<String> getResourcePoolLinks(ComputeState compute) {
+        JsonObject computeJson = EpzComputeMatcher.toJsonObject(compute);
+        Set<String> rpLinks = new HashSet<>();
+        for (Entry<String, Optional<EpzComputeMatcher>> entry : matchers.entrySet()) {
+            if (entry.getValue().isPresent() && entry.getValue().get().matches(computeJson)) {
+                rpLinks.add(entry.getKey());
+            }
+        }
+        return rpLinks;
+    }
+
+    private static ComputeStats getComputeStats(ComputeState compute,
+            ComputeDescription description) {
+        return description != null
+                ? PlacementCapacityUpdateTaskService.getComputeStats(compute, description)
+                : null;
+    }
+
+    private DeferredResult<ComputeDescription> getDescription(String descriptionLink) {
+        if (descriptionLink == null) {
+            return DeferredResult.completed(null);
+        }
+        ComputeDescription description = descriptions.get(descriptionLink);
+        if (description != null) {
+            return DeferredResult.completed(description);
+        }
+        return sendWithDeferredResult(Operation.createGet(this, descriptionLink),
+                ComputeDescription.class)
+                .thenApply(cd -> {
+                    descriptions.put(descriptionLink, cd);
+                    return cd;
+                });
+    }
+
+    /**
+     * Rebuilds the totals of all resource pools from a full query and updates the resource pools
+     * which stored figures differ from the rebuilt ones.
+     */
+    private void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            rebuildRequested.set(true);
+            return;
+        }
+
+        long startTimeMicros = Utils.getSystemNowMicrosUtc();
+        Map<String, ResourcePoolState> pools = new HashMap<>();
+        Map<String, ComputeDescription> loadedDescriptions = new HashMap<>();
+        PlacementCapacityAccumulator snapshot = new PlacementCapacityAccumulator();
+
+        Query rpQuery = Query.Builder.create().addKindFieldClause(ResourcePoolState.class).build();
+        Query cdQuery = Query.Builder.create()
+                .addKindFieldClause(ComputeDescription.class)
+                .addInCollectionItemClause(ComputeDescription.FIELD_NAME_SUPPORTED_CHILDREN,
+                        Arrays.asList(ComputeType.DOCKER_CONTAINER.name(),
+                                ComputeType.VM_GUEST.name()))
+                .build();
+        Query computeQuery = Query.Builder.create().addKindFieldClause(ComputeState.class).build();
+
+        new QueryByPages<>(getHost(), rpQuery, ResourcePoolState.class, null)
+                .queryDocuments(rp -> {
+                    pools.put(rp.documentSelfLink, rp);
+                    addResourcePool(rp);
+                })
+                .thenCompose(ignore -> new QueryByPages<>(getHost(), cdQuery,
+                        ComputeDescription.class, null)
+                        .queryDocuments(cd -> loadedDescriptions.put(cd.documentSelfLink, cd)))
+                .thenCompose(ignore -> new QueryByPages<>(getHost(), computeQuery,
+                        ComputeState.class, null)
+                        .queryDocuments(compute -> snapshot.update(compute.documentSelfLink,
+                                compute.documentUpdateTimeMicros, getResourcePoolLinks(compute),
+                                getComputeStats(compute,
+                                        loadedDescriptions.get(compute.descriptionLink)))))
+                .whenComplete((ignore, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to load computes, compute changes will trigger"
+                                + " a full capacity update: %s", Utils.toString(e));
+                    } else {
+                        onRebuilt(pools, loadedDescriptions, snapshot, startTimeMicros);
+                    }
+
+                    rebuilding.set(false);
+                    if (rebuildRequested.getAndSet(false)) {
+                        rebuild();
+                    }
+                });
+    }
+
+    private void onRebuilt(Map<String, ResourcePoolState> pools,
+            Map<String, ComputeDescription> loadedDescriptions,
+            PlacementCapacityAccumulator snapshot, long startTimeMicros) {
+        matchers.keySet().retainAll(pools.keySet());
+        queries.keySet().retainAll(pools.keySet());
+        descriptions.clear();
+        descriptions.putAll(loadedDescriptions);
+
+        Set<String> drifted = accumulator.reconcile(snapshot, startTimeMicros);
+        if (accumulatorLoaded.getAndSet(true) && !drifted.isEmpty()) {
+            logWarning("Capacity of resource pools %s was out of date", drifted);
+        }
+
+        Set<String> outdated = new HashSet<>();
+        for (ResourcePoolState rp : pools.values()) {
+            if (!getHost().getId().equals(rp.documentOwner)) {
+                continue;
+            }
+            Optional<EpzComputeMatcher> matcher = matchers.get(rp.documentSelfLink);
+            if (matcher == null || !matcher.isPresent()
+                    || !isUpToDate(rp, accumulator.get(rp.documentSelfLink))) {
+                outdated.add(rp.documentSelfLink);
+            }
+        }
+        scheduleUpdate(outdated, false);
+    }
+
+    private static boolean isUpToDate(ResourcePoolState rp, AggregatedComputeStats stats) {
+        if (rp.maxMemoryBytes == null || rp.maxMemoryBytes != stats.totalMemoryBytes) {
+            return false;
+        }
+        Optional<Long> availableMemory = PropertyUtils.getPropertyLong(rp.customProperties,
+                ContainerHostDataCollectionService.RESOURCE_POOL_AVAILABLE_MEMORY_CUSTOM_PROP);
+        Optional<Double> cpuUsage = PropertyUtils.getPropertyDouble(rp.customProperties,
+                ContainerHostDataCollectionService.RESOURCE_POOL_CPU_USAGE_CUSTOM_PROP);
+        return availableMemory.isPresent()
+                && availableMemory.get() == stats.availableMemoryBytes
+                && cpuUsage.isPresent()
+                && Math.abs(cpuUsage.get() - stats.getCpuUsage()) < CPU_USAGE_TOLERANCE;
+    }
+
+    /**
+     * Schedules a capacity update of the given resource pools. Resource pools which queries
+     * cannot be evaluated in-memory are updated on any compute change.
+     */
+    private void scheduleUpdate(Collection<String> rpLinks, boolean onComputeChange) {
+        changedPoolLinks.addAll(rpLinks);
+        if (onComputeChange) {
+            matchers.forEach((rpLink, matcher) -> {
+                if (!matcher.isPresent()) {
+                    changedPoolLinks.add(rpLink);
+                }
+            });
+        }
+
+        if (!changedPoolLinks.isEmpty() && updateScheduled.compareAndSet(false, true)) {
+            getHost().schedule(this::updateResourcePools, UPDATE_DELAY_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void updateResourcePools() {
+        updateScheduled.set(false);
+        Set<String> rpLinks = new HashSet<>(changedPoolLinks);
+        changedPoolLinks.removeAll(rpLinks);
+
+        for (String rpLink : rpLinks) {
+            Optional<EpzComputeMatcher> matcher = matchers.get(rpLink);
+            if (matcher == null) {
+                continue;
+            }
+            if (!matcher.isPresent()) {
+                PlacementCapacityUpdateTaskService.triggerForResourcePool(this, rpLink);
+                continue;
+            }
+            // retry later if a task is already running as it may be using outdated figures
+            PlacementCapacityUpdateTaskService.triggerForResourcePool(this, rpLink,
+                    accumulator.get(rpLink),
+                    () -> scheduleUpdate(Collections.singleton(rpLink), false));
         }
     }
 
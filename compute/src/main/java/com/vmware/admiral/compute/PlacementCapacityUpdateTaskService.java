@@ -99,7 +99,8 @@ public class PlacementCapacityUpdateTaskService extends
                 indexing = STORE_ONLY)
         public String nextPageLink;
 
-        @Documentation(description = "Aggregated stats for completed compute pages.")
+        @Documentation(description = "Aggregated stats for completed compute pages or, if set"
+                + " on creation, the aggregated stats of all computes in the resource pool.")
         @PropertyOptions(usage = { SERVICE_USE, AUTO_MERGE_IF_NOT_NULL },
                 indexing = STORE_ONLY)
         public AggregatedComputeStats aggregatedStats;
@@ -108,7 +109,7 @@ public class PlacementCapacityUpdateTaskService extends
     /**
      * Represents collected statistics for a given compute.
      */
-    private static class ComputeStats {
+    static class ComputeStats {
         public long totalMemoryBytes;
         public long cpuCoreCount;
         public long cpuMhzPerCore;
@@ -120,16 +121,41 @@ public class PlacementCapacityUpdateTaskService extends
     /**
      * Represents aggregated statistics over multiple computes.
      */
-    private static class AggregatedComputeStats {
-        @SuppressWarnings("unused")
+    static class AggregatedComputeStats {
         public long computeCount;
         public long totalMemoryBytes;
         public long cpuCoreCount;
-        @SuppressWarnings("unused")
         public long totalCpuMhz;
 
         public double cpuUsageSumAllCores;
         public long availableMemoryBytes;
+
+        void add(ComputeStats stats) {
+            computeCount++;
+            totalMemoryBytes += stats.totalMemoryBytes;
+            cpuCoreCount += stats.cpuCoreCount;
+            totalCpuMhz += stats.cpuCoreCount * stats.cpuMhzPerCore;
+
+            availableMemoryBytes += stats.availableMemoryBytes;
+            cpuUsageSumAllCores += stats.cpuCoreCount * stats.cpuUsage;
+        }
+
+        void subtract(ComputeStats stats) {
+            computeCount--;
+            totalMemoryBytes -= stats.totalMemoryBytes;
+            cpuCoreCount -= stats.cpuCoreCount;
+            totalCpuMhz -= stats.cpuCoreCount * stats.cpuMhzPerCore;
+
+            availableMemoryBytes -= stats.availableMemoryBytes;
+            cpuUsageSumAllCores -= stats.cpuCoreCount * stats.cpuUsage;
+        }
+
+        /**
+         * Average cpu usage per core.
+         */
+        double getCpuUsage() {
+            return cpuCoreCount > 0 ? cpuUsageSumAllCores / cpuCoreCount : 0.0;
+        }
     }
 
     /**
@@ -137,8 +163,20 @@ public class PlacementCapacityUpdateTaskService extends
      * are run in parallel for the same resource pool.
      */
     public static void triggerForResourcePool(Service sender, String resourcePoolLink) {
+        triggerForResourcePool(sender, resourcePoolLink, null, null);
+    }
+
+    /**
+     * Triggers the capacity update task for the given resource pool with already aggregated
+     * compute figures. The computes of the resource pool are not queried in this case, only the
+     * resource pool and its placements are updated. The given callback is invoked if a task is
+     * already running for the resource pool.
+     */
+    static void triggerForResourcePool(Service sender, String resourcePoolLink,
+            AggregatedComputeStats aggregatedStats, Runnable alreadyRunningCallback) {
         PlacementCapacityUpdateTaskState task = new PlacementCapacityUpdateTaskState();
         task.resourcePoolLink = resourcePoolLink;
+        task.aggregatedStats = aggregatedStats;
         task.documentSelfLink = extractRpId(task);
 
         Operation.createPost(sender.getHost(), PlacementCapacityUpdateTaskService.FACTORY_LINK)
@@ -148,6 +186,9 @@ public class PlacementCapacityUpdateTaskService extends
                     if (o.getStatusCode() == Operation.STATUS_CODE_NOT_MODIFIED) {
                         sender.getHost().log(Level.FINE,
                                 "Capacity update task already running for " + resourcePoolLink);
+                        if (alreadyRunningCallback != null) {
+                            alreadyRunningCallback.run();
+                        }
                         return;
                     }
 
@@ -193,6 +234,7 @@ public class PlacementCapacityUpdateTaskService extends
 
         // these are one-off tasks that are not needed upon completion
         this.setSelfDelete(true);
+        this.setEphemeral(true);
 
         this.setLogLevel(DEFAULT_LOG_LEVEL);
     }
@@ -213,7 +255,12 @@ public class PlacementCapacityUpdateTaskService extends
     protected void handleStartedStagePatch(PlacementCapacityUpdateTaskState state) {
         switch (state.taskSubStage) {
         case CREATED:
-            proceedTo(PlacementCapacityUpdateTaskState.SubStage.QUERY_COMPUTES);
+            if (state.aggregatedStats != null) {
+                // figures already aggregated by the caller
+                proceedTo(PlacementCapacityUpdateTaskState.SubStage.UPDATE_RESOURCE_POOL);
+            } else {
+                proceedTo(PlacementCapacityUpdateTaskState.SubStage.QUERY_COMPUTES);
+            }
             break;
         case QUERY_COMPUTES:
             startComputeQuery(state, null);
@@ -359,18 +406,12 @@ public class PlacementCapacityUpdateTaskService extends
                 continue;
             }
 
-            ComputeStats stats = getComputeStats(state, compute, computeDescription);
+            ComputeStats stats = getComputeStats(compute, computeDescription);
             if (stats == null) {
                 continue;
             }
 
-            aggregatedStats.computeCount++;
-            aggregatedStats.totalMemoryBytes += stats.totalMemoryBytes;
-            aggregatedStats.cpuCoreCount += stats.cpuCoreCount;
-            aggregatedStats.totalCpuMhz += stats.cpuCoreCount * stats.cpuMhzPerCore;
-
-            aggregatedStats.availableMemoryBytes += stats.availableMemoryBytes;
-            aggregatedStats.cpuUsageSumAllCores += stats.cpuCoreCount * stats.cpuUsage;
+            aggregatedStats.add(stats);
         }
 
         return aggregatedStats;
@@ -378,11 +419,7 @@ public class PlacementCapacityUpdateTaskService extends
 
     private void updateResourcePool(PlacementCapacityUpdateTaskState state) {
         // calculate average cpu usage per core
-        double totalCpuUsage = 0.0;
-        if (state.aggregatedStats.cpuCoreCount > 0) {
-            totalCpuUsage = state.aggregatedStats.cpuUsageSumAllCores
-                    / state.aggregatedStats.cpuCoreCount;
-        }
+        double totalCpuUsage = state.aggregatedStats.getCpuUsage();
 
         ResourcePoolState rpPatchState = new ResourcePoolState();
         rpPatchState.customProperties = new HashMap<>();
@@ -498,8 +535,11 @@ public class PlacementCapacityUpdateTaskService extends
         return tenantAndGroupLinks != null ? String.join("/", tenantAndGroupLinks) : "";
     }
 
-    private ComputeStats getComputeStats(PlacementCapacityUpdateTaskState state,
-            ComputeState compute,
+    /**
+     * Collects the statistics of the given compute, returns {@code null} if the compute does not
+     * contribute to the placement capacity.
+     */
+    static ComputeStats getComputeStats(ComputeState compute,
             ComputeDescription computeDescription) {
         if (computeDescription.supportedChildren != null) {
             if (computeDescription.supportedChildren.contains(ComputeType.DOCKER_CONTAINER.name())) {
@@ -512,7 +552,7 @@ public class PlacementCapacityUpdateTaskService extends
         return null;
     }
 
-    private ComputeStats getContainerHostStats(ComputeState compute,
+    private static ComputeStats getContainerHostStats(ComputeState compute,
             ComputeDescription description) {
         ComputeStats stats = new ComputeStats();
 
@@ -530,7 +570,8 @@ public class PlacementCapacityUpdateTaskService extends
         return stats;
     }
 
-    private ComputeStats getComputeHostStats(ComputeState compute, ComputeDescription description) {
+    private static ComputeStats getComputeHostStats(ComputeState compute,
+            ComputeDescription description) {
         ComputeStats stats = new ComputeStats();
 
         stats.totalMemoryBytes = description.totalMemoryBytes;
@@ -524,15 +524,16 @@ public class ClusterService extends StatelessService {
         Map<String, ElasticPlacementZoneConfigurationState> ePZstates = QueryUtil
                 .extractQueryResult(
                         queryResult, ElasticPlacementZoneConfigurationState.class);
-        List<DeferredResult<ClusterDto>> clusterDtoList = ePZstates.keySet().stream()
-                .map(key -> ClusterUtils.getHostsWithinPlacementZone(ePZstates.get(key)
-                                .resourcePoolState.documentSelfLink, projectLink, get, getHost())
-                        .thenApply(computeStates -> {
-                            return ClusterUtils.placementZoneAndItsHostsToClusterDto(
-                                    ePZstates.get(key).resourcePoolState, computeStates);
-                        }))
+        List<ResourcePoolState> resourcePools = ePZstates.values().stream()
+                .map(ePZstate -> ePZstate.resourcePoolState)
                 .collect(Collectors.toList());
-        return DeferredResult.allOf(clusterDtoList);
+        return ClusterUtils.getHostsWithinPlacementZones(resourcePools, projectLink, get,
+                getHost())
+                .thenApply(hostsByPlacementZone -> resourcePools.stream()
+                        .map(resourcePool -> ClusterUtils.placementZoneAndItsHostsToClusterDto(
+                                resourcePool,
+                                hostsByPlacementZone.get(resourcePool.documentSelfLink)))
+                        .collect(Collectors.toList()));
     }
 
     private DeferredResult<ClusterDto> getInfoFromHostsWithinOnePlacementZone(
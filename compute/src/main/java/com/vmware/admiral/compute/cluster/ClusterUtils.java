@@ -18,12 +18,16 @@ import static com.vmware.admiral.compute.ContainerHostUtil.isVicHost;
 import static com.vmware.admiral.compute.cluster.ClusterService.ENFORCED_CLUSTER_STATUS_PROP;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
@@ -43,9 +47,11 @@ import com.vmware.admiral.compute.cluster.ClusterService.ClusterType;
 import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
 import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.photon.controller.model.resources.ResourcePoolService;
 import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState.ResourcePoolProperty;
 import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.ODataQueryVisitor;
@@ -95,16 +101,80 @@ public class ClusterUtils {
         ResourcePoolQueryHelper helper = ResourcePoolQueryHelper.createForResourcePool(host,
                 resourcePoolLink);
         helper.setExpandComputes(true);
-        helper.setAdditionalQueryClausesProvider(qb -> {
+        helper.setAdditionalQueryClausesProvider(getHostsQueryClausesProvider(projectLink, get));
+
+        helper.query((qr) -> {
+            if (qr.error != null) {
+                result.fail(qr.error);
+            } else {
+                result.complete(new ArrayList<>(qr.computesByLink.values()));
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Returns the hosts of each of the given placement zones, by placement zone link. The hosts of
+     * the non-elastic placement zones, which are the computes that link to them, are retrieved
+     * with a single query instead of a query per placement zone.
+     */
+    public static DeferredResult<Map<String, List<ComputeState>>> getHostsWithinPlacementZones(
+            Collection<ResourcePoolState> resourcePools, String projectLink, Operation get,
+            ServiceHost host) {
+        Map<String, List<ComputeState>> hostsByPlacementZone = new ConcurrentHashMap<>();
+        List<DeferredResult<Void>> queries = new ArrayList<>();
+        Set<String> linkedPlacementZones = new HashSet<>();
+
+        for (ResourcePoolState resourcePool : resourcePools) {
+            String resourcePoolLink = resourcePool.documentSelfLink;
+            if (resourcePool.properties != null
+                    && resourcePool.properties.contains(ResourcePoolProperty.ELASTIC)) {
+                queries.add(getHostsWithinPlacementZone(resourcePoolLink, projectLink, get, host)
+                        .thenAccept(hosts -> hostsByPlacementZone.put(resourcePoolLink, hosts)));
+            } else {
+                linkedPlacementZones.add(resourcePoolLink);
+                hostsByPlacementZone.put(resourcePoolLink, new ArrayList<>());
+            }
+        }
+
+        if (!linkedPlacementZones.isEmpty()) {
+            Query.Builder queryBuilder = Query.Builder.create()
+                    .addKindFieldClause(ComputeState.class)
+                    .addInClause(ComputeState.FIELD_NAME_RESOURCE_POOL_LINK,
+                            linkedPlacementZones);
+            getHostsQueryClausesProvider(projectLink, get).accept(queryBuilder);
+
+            queries.add(new QueryByPages<>(host, queryBuilder.build(), ComputeState.class, null)
+                    .queryDocuments(cs -> {
+                        List<ComputeState> hosts = hostsByPlacementZone.get(cs.resourcePoolLink);
+                        if (hosts != null) {
+                            synchronized (hosts) {
+                                hosts.add(cs);
+                            }
+                        }
+                    }));
+        }
+
+        return DeferredResult.allOf(queries).thenApply(ignore -> hostsByPlacementZone);
+    }
+
+    /**
+     * Returns the clauses which narrow down the computes of a placement zone to the hosts
+     * requested with the given operation.
+     */
+    private static Consumer<Query.Builder> getHostsQueryClausesProvider(String projectLink,
+            Operation get) {
+        Consumer<Query.Builder> provider = qb -> {
             qb.addCompositeFieldClause(ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
                     ComputeConstants.COMPUTE_CONTAINER_HOST_PROP_NAME, "true");
-        });
+        };
 
         if (projectLink != null && !projectLink.isEmpty()) {
-            helper.setAdditionalQueryClausesProvider(qb -> {
+            provider = qb -> {
                 qb.addInCollectionItemClause(ComputeState.FIELD_NAME_TENANT_LINKS,
                         Collections.singletonList(projectLink), Occurance.MUST_OCCUR);
-            });
+            };
         }
 
         if (get != null) {
@@ -133,20 +203,12 @@ public class ClusterUtils {
                         .getExpandedQueryPropertyNames(desc);
                 Query q = new ODataQueryVisitor(expandedQueryPropertyNames).toQuery(hostsFilter);
                 if (q != null) {
-                    helper.setAdditionalQueryClausesProvider(qb -> qb.addClause(q));
+                    provider = qb -> qb.addClause(q);
                 }
             }
         }
 
-        helper.query((qr) -> {
-            if (qr.error != null) {
-                result.fail(qr.error);
-            } else {
-                result.complete(new ArrayList<>(qr.computesByLink.values()));
-            }
-        });
-
-        return result;
+        return provider;
     }
 
     public static void getHostsWithinPlacementZone(
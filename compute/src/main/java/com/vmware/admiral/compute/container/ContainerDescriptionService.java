@@ -26,7 +26,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,7 +44,6 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import com.vmware.admiral.adapter.docker.util.DockerPortMapping;
-import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.KubernetesHostConstants;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.serialization.ReleaseConstants;
@@ -89,9 +87,6 @@ import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
  */
 public class ContainerDescriptionService extends StatefulService {
     public static final String FACTORY_LINK = ManagementUriParts.CONTAINER_DESC;
-    protected static final long MAINTENANCE_INTERVAL_MICROS = Long.getLong(
-            "dcp.management.container.stats.periodic.maintenance.period.micros",
-            TimeUnit.SECONDS.toMicros(120));
 
     // minimal container memory size fields
     private static final long CONTAINER_MIN_MEMORY_BYTES = 4_194_304;
@@ -489,8 +484,6 @@ public class ContainerDescriptionService extends StatefulService {
         super.toggleOption(ServiceOption.REPLICATION, true);
         super.toggleOption(ServiceOption.OWNER_SELECTION, true);
         super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
-        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
-        super.setMaintenanceIntervalMicros(MAINTENANCE_INTERVAL_MICROS);
     }
 
     @Override
@@ -594,27 +587,6 @@ public class ContainerDescriptionService extends StatefulService {
         }
     }
 
-    @Override
-    public void handlePeriodicMaintenance(Operation post) {
-        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
-            logFine("Skipping maintenance since service is not available: %s ", getUri());
-            post.complete();
-            return;
-        }
-
-        if (DeploymentProfileConfig.getInstance().isTest()) {
-            logFine("Skipping scheduled maintenance in test mode: %s", getUri());
-            post.complete();
-            return;
-        }
-
-        logFine("Performing maintenance for: %s", getUri());
-
-        HealthChecker.getInstance().doHealthCheck(getHost(), getSelfLink());
-
-        post.complete();
-    }
-
     @Override
     public void handlePut(Operation put) {
         if (!checkForBody(put)) {
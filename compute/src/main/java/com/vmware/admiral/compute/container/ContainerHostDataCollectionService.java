@@ -42,6 +42,9 @@ import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
 import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.metrics.MetricRegistry;
+import com.vmware.admiral.common.metrics.MetricRegistry.Counter;
+import com.vmware.admiral.common.metrics.MetricRegistry.Histogram;
 import com.vmware.admiral.common.serialization.ReleaseConstants;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.PropertyUtils;
@@ -110,6 +113,19 @@ public class ContainerHostDataCollectionService extends StatefulService {
             "com.vmware.admiral.compute.container.host.frequency.interval.micros",
             TimeUnit.SECONDS.toMicros(20));
 
+    private static final Counter COLLECTION_RUNS = MetricRegistry.getDefault().counter(
+            "admiral_data_collection_runs_total",
+            "Number of data collections of the container hosts.");
+    private static final Histogram HOST_COLLECTION_DURATION = MetricRegistry.getDefault()
+            .histogram("admiral_data_collection_host_duration_seconds",
+                    "Duration of the collection of the info of a container host.");
+    private static final Counter HOSTS_AVAILABLE = MetricRegistry.getDefault().counter(
+            "admiral_data_collection_hosts_total",
+            "Number of container hosts collected, by availability.", "result", "available");
+    private static final Counter HOSTS_NOT_AVAILABLE = MetricRegistry.getDefault().counter(
+            "admiral_data_collection_hosts_total",
+            "Number of container hosts collected, by availability.", "result", "unavailable");
+
     public static final String RESOURCE_POOL_CPU_USAGE_CUSTOM_PROP = "__cpuUsage";
     public static final String RESOURCE_POOL_AVAILABLE_MEMORY_CUSTOM_PROP = "__availableMemory";
 
@@ -768,6 +784,7 @@ public class ContainerHostDataCollectionService extends StatefulService {
                 return;
             }
             maintOp.complete();
+            COLLECTION_RUNS.inc();
             List<ComputeState> computeList = new ArrayList<ComputeState>(
                     qr.computesByLink.values());
             final AtomicInteger counter = new AtomicInteger();
@@ -792,10 +809,15 @@ public class ContainerHostDataCollectionService extends StatefulService {
                 continue;
             }
 
+            long startNanos = System.nanoTime();
             updateContainerHostInfo(compute, (o, error) -> {
+                HOST_COLLECTION_DURATION.observeMicros(
+                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
                 if (error != null) {
+                    HOSTS_NOT_AVAILABLE.inc();
                     handleHostNotAvailable(compute, error);
                 } else {
+                    HOSTS_AVAILABLE.inc();
                     handleHostAvailable(compute);
                 }
             }, null);
@@ -33,6 +33,9 @@ import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.Composable;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryRequest;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryResponse;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsSample;
 import com.vmware.admiral.compute.container.maintenance.ContainerHealthEvaluator;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.compute.container.util.ContainerUtil;
@@ -298,7 +301,6 @@ public class ContainerService extends StatefulService {
         super.toggleOption(ServiceOption.PERSISTENCE, true);
         super.toggleOption(ServiceOption.REPLICATION, true);
         super.toggleOption(ServiceOption.OWNER_SELECTION, true);
-        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
     }
 
     @Override
@@ -443,16 +445,50 @@ public class ContainerService extends StatefulService {
                 }));
     }
 
+    /**
+     * The stats are kept only by the {@link ContainerStatsHistoryService} of the owner node. The
+     * patch completes once the stats are recorded, so the health check counters of concurrent
+     * patches are not lost.
+     */
     private void patchContainerStats(Operation patch, ContainerState currentState) {
         ContainerStats patchStatsBody = patch.getBody(ContainerStats.class);
 
-        ContainerStats containerStats = ContainerStats.transform(this);
-        ContainerHealthEvaluator.create(getHost(), currentState)
-                .calculateHealthStatus(containerStats, patchStatsBody);
-        patchStatsBody.setStats(this);
+        ContainerStatsHistoryRequest request = new ContainerStatsHistoryRequest();
+        request.containerLinks = Collections.singletonList(getSelfLink());
+        request.latest = true;
+        request.localOnly = true;
+        sendRequest(Operation.createPost(this, ContainerStatsHistoryService.SELF_LINK)
+                .setBodyNoCloning(request)
+                .setCompletion((o, e) -> {
+                    ContainerStats containerStats = null;
+                    if (e != null) {
+                        logWarning("Failed to get the latest stats: %s", Utils.toString(e));
+                    } else {
+                        ContainerStatsSample latest = o.getBody(
+                                ContainerStatsHistoryResponse.class).latest.get(getSelfLink());
+                        containerStats = latest != null ? latest.stats : null;
+                    }
+                    ContainerHealthEvaluator.create(getHost(), currentState)
+                            .calculateHealthStatus(containerStats != null ? containerStats
+                                    : new ContainerStats(), patchStatsBody);
+                    recordStats(patch, patchStatsBody);
+                }));
+    }
 
-        patch.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
-        patch.complete();
+    private void recordStats(Operation patch, ContainerStats stats) {
+        ContainerStatsSample sample = new ContainerStatsSample();
+        sample.containerLink = getSelfLink();
+        sample.timeMicros = Utils.getNowMicrosUtc();
+        sample.stats = stats;
+        sendRequest(Operation.createPatch(this, ContainerStatsHistoryService.SELF_LINK)
+                .setBodyNoCloning(sample)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to record stats: %s", Utils.toString(e));
+                    }
+                    patch.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+                    patch.complete();
+                }));
     }
 
     @Override
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsStore;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsStore.Samples;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.NodeGroupBroadcastResponse;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * History of the container stats and health. The stats reported to the containers owned by this
+ * node are recorded in a {@link ContainerStatsStore}, which is the only place where the stats of
+ * the containers are kept. The history, or the latest stats, of many containers can be queried
+ * at once, without loading the container services. Queries are broadcast to all nodes and
+ * the results are merged, as each node only has the history of its own containers.
+ * <p>
+ * The rollups are persisted in the storage sandbox of the host on every maintenance, so that the
+ * history survives a restart of the node.
+ */
+public class ContainerStatsHistoryService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.CONTAINER_STATS_HISTORY;
+
+    private static final int RAW_SAMPLES = Integer.getInteger(
+            "com.vmware.admiral.compute.container.stats.history.raw.samples", 360);
+
+    private static final int ROLLUPS = Integer.getInteger(
+            "com.vmware.admiral.compute.container.stats.history.rollups", 2016);
+
+    private static final long ROLLUP_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.stats.history.rollup.interval.micros",
+            TimeUnit.MINUTES.toMicros(5));
+
+    private static final boolean PERSIST_ROLLUPS = Boolean.parseBoolean(System.getProperty(
+            "com.vmware.admiral.compute.container.stats.history.persist.rollups", "true"));
+
+    static final String ROLLUPS_FILE_NAME = "container-stats-rollups.bin";
+
+    /**
+     * Stats of a container reported at the given time.
+     */
+    public static class ContainerStatsSample {
+        public String containerLink;
+        public long timeMicros;
+        public ContainerStats stats;
+    }
+
+    public static class ContainerStatsHistoryRequest {
+        /** Links of the containers to return the history of. */
+        public List<String> containerLinks;
+
+        /** (Optional) Start of the time range, inclusive. */
+        public Long startTimeMicros;
+
+        /** (Optional) End of the time range, inclusive. */
+        public Long endTimeMicros;
+
+        /** Whether to return the rollups instead of the raw samples. */
+        public boolean rollups;
+
+        /**
+         * Whether to return only the latest stats of the containers, including the health check
+         * counters, instead of the history.
+         */
+        public boolean latest;
+
+        /** Whether to skip the broadcast to the other nodes. Infrastructure use only. */
+        public boolean localOnly;
+    }
+
+    /**
+     * History of a single container, the values of each metric have the same size as the times
+     * and missing values are <code>null</code>.
+     */
+    public static class ContainerStatsHistory {
+        public List<Long> timesMicros;
+        public Map<String, List<Double>> values;
+    }
+
+    public static class ContainerStatsHistoryResponse {
+        /** History per container link, containers without stats are not included. */
+        public Map<String, ContainerStatsHistory> containers = new HashMap<>();
+
+        /** Latest stats per container link, only returned for {@code latest} requests. */
+        public Map<String, ContainerStatsSample> latest = new HashMap<>();
+    }
+
+    private final ContainerStatsStore store = new ContainerStatsStore(RAW_SAMPLES, ROLLUPS,
+            ROLLUP_INTERVAL_MICROS);
+
+    public ContainerStatsHistoryService() {
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(ROLLUP_INTERVAL_MICROS);
+    }
+
+    @Override
+    public void handleStart(Operation startPost) {
+        File file = getRollupsFile();
+        if (file != null && file.exists()) {
+            try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                    new BufferedInputStream(Files.newInputStream(file.toPath()))))) {
+                store.readRollups(in);
+                logInfo("Loaded container stats rollups of %d containers", store.size());
+            } catch (Exception e) {
+                logWarning("Failed to load container stats rollups from %s: %s", file,
+                        Utils.toString(e));
+            }
+        }
+        startPost.complete();
+    }
+
+    /**
+     * Records a {@link ContainerStatsSample}.
+     */
+    @Override
+    public void handlePatch(Operation patch) {
+        ContainerStatsSample sample = patch.getBody(ContainerStatsSample.class);
+        if (sample.containerLink == null || sample.stats == null) {
+            patch.fail(new IllegalArgumentException("containerLink and stats are required"));
+            return;
+        }
+        store.record(sample.containerLink, sample.timeMicros, sample.stats);
+        patch.complete();
+    }
+
+    /**
+     * Returns the history of the containers in a {@link ContainerStatsHistoryRequest}.
+     */
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        ContainerStatsHistoryRequest request = post.getBody(ContainerStatsHistoryRequest.class);
+        try {
+            AssertUtil.assertNotNull(request.containerLinks, "containerLinks");
+        } catch (Throwable e) {
+            post.fail(e);
+            return;
+        }
+
+        if (request.localOnly) {
+            post.setBody(queryLocal(request)).complete();
+            return;
+        }
+
+        request.localOnly = true;
+        URI broadcastUri = UriUtils.buildBroadcastRequestUri(getUri(),
+                ServiceUriPaths.DEFAULT_NODE_SELECTOR);
+        sendRequest(Operation.createPost(broadcastUri)
+                .setBody(request)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        post.fail(e);
+                        return;
+                    }
+                    post.setBody(merge(o.getBody(NodeGroupBroadcastResponse.class)))
+                            .complete();
+                }));
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        post.complete();
+
+        int removed = store.removeOlderThan(
+                Utils.fromNowMicrosUtc(-ROLLUP_INTERVAL_MICROS * ROLLUPS));
+        if (removed > 0) {
+            logFine("Removed the stats history of %d containers", removed);
+        }
+
+        File file = getRollupsFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            Path tmp = new File(file.getPath() + ".tmp").toPath();
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+                store.writeRollups(out);
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logWarning("Failed to persist container stats rollups to %s: %s", file,
+                    Utils.toString(e));
+        }
+    }
+
+    ContainerStatsHistoryResponse queryLocal(ContainerStatsHistoryRequest request) {
+        long start = request.startTimeMicros != null ? request.startTimeMicros : Long.MIN_VALUE;
+        long end = request.endTimeMicros != null ? request.endTimeMicros : Long.MAX_VALUE;
+
+        ContainerStatsHistoryResponse response = new ContainerStatsHistoryResponse();
+        for (String containerLink : request.containerLinks) {
+            if (request.latest) {
+                ContainerStats stats = store.getLatest(containerLink);
+                if (stats != null) {
+                    ContainerStatsSample sample = new ContainerStatsSample();
+                    sample.containerLink = containerLink;
+                    sample.timeMicros = store.getLatestTime(containerLink);
+                    sample.stats = stats;
+                    response.latest.put(containerLink, sample);
+                }
+                continue;
+            }
+            Samples samples = store.query(containerLink, start, end, request.rollups);
+            if (samples != null && samples.timesMicros.length > 0) {
+                response.containers.put(containerLink, toHistory(samples));
+            }
+        }
+        return response;
+    }
+
+    private ContainerStatsHistoryResponse merge(NodeGroupBroadcastResponse broadcastResponse) {
+        ContainerStatsHistoryResponse response = new ContainerStatsHistoryResponse();
+        for (Map.Entry<URI, String> e : broadcastResponse.jsonResponses.entrySet()) {
+            ContainerStatsHistoryResponse nodeResponse = Utils.fromJson(e.getValue(),
+                    ContainerStatsHistoryResponse.class);
+            // a container which changed its owner has history on both nodes, the latest wins
+            nodeResponse.containers.forEach((link, history) -> response.containers.merge(link,
+                    history, (h1, h2) -> lastTime(h1) >= lastTime(h2) ? h1 : h2));
+            nodeResponse.latest.forEach((link, sample) -> response.latest.merge(link, sample,
+                    (s1, s2) -> s1.timeMicros >= s2.timeMicros ? s1 : s2));
+        }
+        if (!broadcastResponse.failures.isEmpty()) {
+            logWarning("Container stats history not available from %s",
+                    broadcastResponse.failures.keySet());
+        }
+        return response;
+    }
+
+    private static long lastTime(ContainerStatsHistory history) {
+        return history.timesMicros.get(history.timesMicros.size() - 1);
+    }
+
+    private static ContainerStatsHistory toHistory(Samples samples) {
+        ContainerStatsHistory history = new ContainerStatsHistory();
+        history.timesMicros = new ArrayList<>(samples.timesMicros.length);
+        for (long time : samples.timesMicros) {
+            history.timesMicros.add(time);
+        }
+        history.values = new HashMap<>();
+        for (int m = 0; m < ContainerStatsStore.METRICS.length; m++) {
+            List<Double> values = new ArrayList<>(samples.timesMicros.length);
+            for (double value : samples.values[m]) {
+                values.add(Double.isNaN(value) ? null : value);
+            }
+            history.values.put(ContainerStatsStore.METRICS[m], values);
+        }
+        return history;
+    }
+
+    private File getRollupsFile() {
+        URI sandbox = getHost().getStorageSandbox();
+        if (!PERSIST_ROLLUPS || sandbox == null) {
+            return null;
+        }
+        return new File(new File(sandbox), ROLLUPS_FILE_NAME);
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument template = super.getDocumentTemplate();
+        addServiceRequestRoute(template, Action.POST,
+                "Get the stats history, or the latest stats, of the containers in the request.",
+                ContainerStatsHistoryResponse.class);
+        addServiceRequestRoute(template, Action.PATCH,
+                "Record the stats of a container. Infrastructure use only.",
+                ContainerStatsSample.class);
+        return template;
+    }
+}
@@ -13,23 +13,44 @@ package com.vmware.admiral.compute.container;
 
 import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryRequest;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryResponse;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsSample;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 
+/**
+ * Returns the stats of a container after requesting fresh ones from the adapter. Concurrent
+ * requests for the same container share a single adapter request and stats younger than a
+ * configurable staleness are returned without contacting the adapter at all. The adapter
+ * requests for containers on the same Docker host are limited, so a large number of containers
+ * shown at once does not overload the host. They are not batched per host, since the Docker API
+ * returns the stats of one container per call and the adapters handle one container per request.
+ */
 public class ContainerStatsService extends StatelessService {
     public static final String SELF_LINK = ManagementUriParts.CONTAINER_STATS;
 
@@ -38,15 +59,48 @@ public class ContainerStatsService extends StatelessService {
     public static final String CONTAINER_ID_QUERY_PARAM = "id";
 
     private static final long INSPECT_INTERVAL = TimeUnit.SECONDS.toMicros(70);
-    private static final int MAX_SIZE = 10;
 
-    @SuppressWarnings("unchecked")
-    private static Map<String, Long> inspectCache = new LinkedHashMap(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > MAX_SIZE;
-        }
-    };
+    private static final long STATS_STALENESS_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.stats.staleness.micros",
+            TimeUnit.SECONDS.toMicros(5));
+
+    private static final int CACHE_MAX_SIZE = Integer.getInteger(
+            "com.vmware.admiral.compute.container.stats.cache.size", 1000);
+
+    private static final int MAX_REQUESTS_PER_HOST = Integer.getInteger(
+            "com.vmware.admiral.compute.container.stats.max.requests.per.host", 4);
+
+    /**
+     * Times of the last inspect and stats requests for a container.
+     */
+    private static class RequestTimes {
+        long inspectTimeMicros;
+        long statsTimeMicros;
+    }
+
+    /**
+     * Adapter requests for the containers of a single Docker host.
+     */
+    private static class HostRequests {
+        int running;
+        final Deque<Runnable> pending = new ArrayDeque<>();
+    }
+
+    // LRU of the recently refreshed containers, guarded by itself
+    @SuppressWarnings("serial")
+    private final Map<String, RequestTimes> requestTimes =
+            new LinkedHashMap<String, RequestTimes>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RequestTimes> eldest) {
+                    return size() > CACHE_MAX_SIZE;
+                }
+            };
+
+    // callbacks waiting for the in-flight refresh of a container, guarded by itself
+    private final Map<String, List<Runnable>> inFlightRefreshes = new HashMap<>();
+
+    // adapter requests per Docker host, guarded by itself
+    private final Map<String, HostRequests> hostRequests = new HashMap<>();
 
     @Override
     public void handleGet(Operation get) {
@@ -77,16 +131,110 @@ public class ContainerStatsService extends StatelessService {
                     }
                     ServiceUtils.handleExceptions(op, () -> {
                         ContainerState containerState = o.getBody(ContainerState.class);
-                        processInspect(containerState, () ->
-                                processStatsRequest(op, containerState));
+                        refreshStats(containerState, () ->
+                                forwardStatsResponse(op, containerState));
                     });
                 }));
     }
 
     /**
-     * Request getting stats through the adapter and then return /stats as body response
+     * Makes sure the stats of the container are not older than the configured staleness and
+     * runs the callback. Only one refresh per container is in flight at a time, callers arriving
+     * meanwhile wait for its completion.
+     */
+    private void refreshStats(ContainerState container, Runnable callback) {
+        String containerLink = container.documentSelfLink;
+        boolean isFresh;
+        synchronized (requestTimes) {
+            RequestTimes times = requestTimes.get(containerLink);
+            isFresh = times != null
+                    && times.statsTimeMicros > Utils.fromNowMicrosUtc(-STATS_STALENESS_MICROS);
+        }
+        if (isFresh) {
+            callback.run();
+            return;
+        }
+
+        synchronized (inFlightRefreshes) {
+            List<Runnable> callbacks = inFlightRefreshes.get(containerLink);
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+            callbacks = new ArrayList<>();
+            callbacks.add(callback);
+            inFlightRefreshes.put(containerLink, callbacks);
+        }
+
+        submitToHost(container.parentLink, done -> {
+            AtomicBoolean completed = new AtomicBoolean();
+            Runnable complete = () -> {
+                if (!completed.compareAndSet(false, true)) {
+                    return;
+                }
+                done.run();
+                List<Runnable> callbacks;
+                synchronized (inFlightRefreshes) {
+                    callbacks = inFlightRefreshes.remove(containerLink);
+                }
+                callbacks.forEach(Runnable::run);
+            };
+            runRefreshStep(containerLink, () -> processInspect(container, () ->
+                    runRefreshStep(containerLink, () ->
+                            processStatsRequest(container, complete), complete)), complete);
+        });
+    }
+
+    /**
+     * Runs a step of a container refresh. A step failing before its request is sent still
+     * completes the refresh, so that the waiting callers and the host slot are released.
      */
-    private void processStatsRequest(Operation op, ContainerState containerState) {
+    private void runRefreshStep(String containerLink, Runnable step, Runnable complete) {
+        try {
+            step.run();
+        } catch (Throwable e) {
+            logWarning("Failed to refresh stats of container %s: %s", containerLink,
+                    Utils.toString(e));
+            complete.run();
+        }
+    }
+
+    /**
+     * Runs the given adapter request once less than the maximum number of requests for the
+     * given Docker host are running. The request has to run the provided callback on completion.
+     */
+    private void submitToHost(String hostLink, Consumer<Runnable> request) {
+        String key = hostLink != null ? hostLink : "";
+        Runnable runnable = () -> request.accept(() -> completeOnHost(key));
+        synchronized (hostRequests) {
+            HostRequests requests = hostRequests.computeIfAbsent(key, k -> new HostRequests());
+            if (requests.running >= MAX_REQUESTS_PER_HOST) {
+                requests.pending.add(runnable);
+                return;
+            }
+            requests.running++;
+        }
+        runnable.run();
+    }
+
+    private void completeOnHost(String key) {
+        Runnable next;
+        synchronized (hostRequests) {
+            HostRequests requests = hostRequests.get(key);
+            next = requests.pending.poll();
+            if (next == null && --requests.running == 0) {
+                hostRequests.remove(key);
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Request getting stats through the adapter
+     */
+    private void processStatsRequest(ContainerState containerState, Runnable callback) {
         AdapterRequest request = new AdapterRequest();
         request.resourceReference = UriUtils.buildUri(getHost(), containerState.documentSelfLink);
         request.operationTypeId = ContainerOperationType.STATS.id;
@@ -96,30 +244,44 @@ public class ContainerStatsService extends StatelessService {
                 .setBodyNoCloning(request)
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
-                        // do not return, just log warning, previous /stats will be returned
+                        // do not fail, just log warning, previous /stats will be returned
                         logWarning("Exception in stats request for container: %s. Error: %s",
                                 containerState.documentSelfLink, Utils.toString(ex));
+                    } else {
+                        synchronized (requestTimes) {
+                            getRequestTimes(containerState.documentSelfLink).statsTimeMicros =
+                                    Utils.getNowMicrosUtc();
+                        }
                     }
-                    forwardStatsResponse(op, containerState);
+                    callback.run();
                 }));
     }
 
     /**
-     * Executes /stats request to the container state and copy its response to the GET operation.
+     * Gets the latest stats of the container from the {@link ContainerStatsHistoryService} and
+     * completes the GET operation with them, in the format of the stats of a service.
      */
     private void forwardStatsResponse(Operation op, ContainerState containerState) {
-        sendRequest(Operation
-                .createGet(UriUtils.buildStatsUri(getHost(), containerState.documentSelfLink))
+        ContainerStatsHistoryRequest request = new ContainerStatsHistoryRequest();
+        request.containerLinks = Collections.singletonList(containerState.documentSelfLink);
+        request.latest = true;
+        sendRequest(Operation.createPost(this, ContainerStatsHistoryService.SELF_LINK)
+                .setBodyNoCloning(request)
                 .setExpiration(op.getExpirationMicrosUtc())
                 .setCompletion((o, e) -> {
-                    op.setBodyNoCloning(o.getBodyRaw());
-                    op.setStatusCode(o.getStatusCode());
-                    op.transferResponseHeadersFrom(o);
                     if (e != null) {
                         op.fail(e);
-                    } else {
-                        op.complete();
+                        return;
                     }
+                    ContainerStatsSample latest = o.getBody(ContainerStatsHistoryResponse.class)
+                            .latest.get(containerState.documentSelfLink);
+                    ServiceStats stats = latest != null
+                            ? latest.stats.toServiceStats(latest.timeMicros)
+                            : new ServiceStats();
+                    stats.documentKind = ServiceStats.KIND;
+                    stats.documentSelfLink = UriUtils.buildUriPath(
+                            containerState.documentSelfLink, ServiceHost.SERVICE_URI_SUFFIX_STATS);
+                    op.setBodyNoCloning(stats).complete();
                 }));
     }
 
@@ -146,12 +308,21 @@ public class ContainerStatsService extends StatelessService {
     }
 
     private boolean isInspectionNeeded(ContainerState container) {
-        Long lastInspect = inspectCache.get(container.documentSelfLink);
-        if (lastInspect == null || lastInspect < Utils.fromNowMicrosUtc(-INSPECT_INTERVAL)) {
-            inspectCache.put(container.documentSelfLink, Utils.getNowMicrosUtc());
-            return true;
+        synchronized (requestTimes) {
+            RequestTimes times = getRequestTimes(container.documentSelfLink);
+            if (times.inspectTimeMicros < Utils.fromNowMicrosUtc(-INSPECT_INTERVAL)) {
+                times.inspectTimeMicros = Utils.getNowMicrosUtc();
+                return true;
+            }
+            return false;
         }
-        return false;
+    }
+
+    /**
+     * Returns the request times of the given container, the caller has to hold the lock.
+     */
+    private RequestTimes getRequestTimes(String containerLink) {
+        return requestTimes.computeIfAbsent(containerLink, k -> new RequestTimes());
     }
 
     @Override
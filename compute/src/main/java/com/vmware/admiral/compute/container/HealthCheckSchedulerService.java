@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.HealthChecker.HealthConfig;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+
+/**
+ * Runs the health checks of the containers owned by this node. The containers and the health
+ * configurations of their descriptions are kept in memory and updated from continuous queries,
+ * the next checks are kept in a {@link HealthCheckTimingWheel}.
+ * <p>
+ * The checks of a container are spread over the interval with a random jitter and the number of
+ * concurrent checks per container host is limited, so that the containers of a host are not all
+ * checked at the same time.
+ */
+public class HealthCheckSchedulerService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.CONTAINER_HEALTH_CHECK_SCHEDULER;
+
+    /**
+     * interval between the health checks of a container
+     */
+    private static final long HEALTH_CHECK_INTERVAL_MICROS = Long.getLong(
+            "dcp.management.container.stats.periodic.maintenance.period.micros",
+            TimeUnit.SECONDS.toMicros(120));
+
+    private static final double HEALTH_CHECK_JITTER = 0.1;
+
+    private static final long TICK_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.health.check.tick.micros",
+            TimeUnit.SECONDS.toMicros(1));
+
+    private static final int WHEEL_SIZE = 256;
+
+    private static final int MAX_CHECKS_PER_HOST = Integer.getInteger(
+            "com.vmware.admiral.compute.container.health.check.max.checks.per.host", 4);
+
+    private static final int MAX_CONNECTIONS = Integer.getInteger(
+            "com.vmware.admiral.compute.container.health.check.max.connections", 64);
+
+    /**
+     * time after which a check which did not complete does not occupy a slot of the host anymore
+     */
+    private static final long CHECK_TIMEOUT_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    /**
+     * interval of the full reload of the containers and the descriptions, in case changes were
+     * missed, e.g. on a change of the owner of a container
+     */
+    private static final long RELOAD_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.health.check.reload.interval.micros",
+            TimeUnit.MINUTES.toMicros(30));
+
+    private static final String CONTAINERS_QUERY_NAME = "health-check-containers";
+    private static final String DESCRIPTIONS_QUERY_NAME = "health-check-descriptions";
+
+    private final Map<String, HealthConfig> healthConfigs = new ConcurrentHashMap<>();
+    private final Map<String, ContainerState> containers = new ConcurrentHashMap<>();
+
+    // guarded by itself
+    private final HealthCheckTimingWheel<String> wheel = new HealthCheckTimingWheel<>(
+            TICK_MICROS, WHEEL_SIZE, Utils.getSystemNowMicrosUtc());
+    // containers in the wheel or being checked, guarded by the wheel
+    private final Set<String> scheduled = new HashSet<>();
+
+    // guarded by this
+    private final Map<String, Deque<String>> pendingPerHost = new HashMap<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    private final Set<String> removedWhileReloading = ConcurrentHashMap.newKeySet();
+
+    public HealthCheckSchedulerService() {
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(RELOAD_INTERVAL_MICROS);
+    }
+
+    @Override
+    public void handleStart(Operation startPost) {
+        getHost().getClient().setConnectionLimitPerTag(
+                HealthChecker.HEALTH_CHECK_CONNECTION_TAG, MAX_CONNECTIONS);
+        startPost.complete();
+
+        CommonContinuousQueries.subscribeTo(getHost(), DESCRIPTIONS_QUERY_NAME,
+                Query.Builder.create().addKindFieldClause(ContainerDescription.class).build(),
+                this::onDescriptionChange);
+        CommonContinuousQueries.subscribeTo(getHost(), CONTAINERS_QUERY_NAME, buildContainerQuery(),
+                this::onContainerChange);
+        reload();
+        scheduleTick();
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        post.complete();
+        reload();
+    }
+
+    void onDescriptionChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        for (Object json : queryTask.results.documents.values()) {
+            ContainerDescription description = Utils.fromJson(json, ContainerDescription.class);
+            if (Action.DELETE.toString().equals(description.documentUpdateAction)) {
+                healthConfigs.remove(description.documentSelfLink);
+            } else {
+                updateHealthConfig(description);
+            }
+        }
+    }
+
+    void onContainerChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        for (Object json : queryTask.results.documents.values()) {
+            ContainerState container = Utils.fromJson(json, ContainerState.class);
+            if (Action.DELETE.toString().equals(container.documentUpdateAction)) {
+                containers.remove(container.documentSelfLink);
+                if (reloading.get()) {
+                    removedWhileReloading.add(container.documentSelfLink);
+                }
+            } else {
+                updateContainer(container);
+            }
+        }
+    }
+
+    /**
+     * Runs the checks due until the given time.
+     */
+    void runDueChecks(long nowMicros) {
+        List<String> due;
+        synchronized (wheel) {
+            due = wheel.advance(nowMicros);
+        }
+        for (String containerLink : due) {
+            ContainerState container = containers.get(containerLink);
+            if (container == null) {
+                synchronized (wheel) {
+                    scheduled.remove(containerLink);
+                }
+                continue;
+            }
+            submit(container.parentLink, containerLink);
+        }
+    }
+
+    boolean isTracked(String containerLink) {
+        return containers.containsKey(containerLink);
+    }
+
+    private void scheduleTick() {
+        if (DeploymentProfileConfig.getInstance().isTest()) {
+            logFine("Skipping scheduled health checks in test mode: %s", getUri());
+            return;
+        }
+        getHost().schedule(() -> {
+            if (getHost().isStopping() || DeploymentProfileConfig.getInstance().isTest()) {
+                return;
+            }
+            try {
+                runDueChecks(Utils.getSystemNowMicrosUtc());
+            } catch (Throwable e) {
+                logWarning("Failed to run health checks: %s", Utils.toString(e));
+            }
+            scheduleTick();
+        }, TICK_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    private void reload() {
+        if (!reloading.compareAndSet(false, true)) {
+            return;
+        }
+        removedWhileReloading.clear();
+
+        long startTimeMicros = Utils.getSystemNowMicrosUtc();
+        Set<String> loadedDescriptions = new HashSet<>();
+        Set<String> loadedContainers = new HashSet<>();
+        Query descriptionQuery = Query.Builder.create()
+                .addKindFieldClause(ContainerDescription.class).build();
+
+        new QueryByPages<>(getHost(), descriptionQuery, ContainerDescription.class, null)
+                .queryDocuments(description -> {
+                    loadedDescriptions.add(description.documentSelfLink);
+                    updateHealthConfig(description);
+                })
+                .thenCompose(ignore -> new QueryByPages<>(getHost(), buildContainerQuery(),
+                        ContainerState.class, null)
+                        .queryDocuments(container -> {
+                            if (!removedWhileReloading.contains(container.documentSelfLink)) {
+                                loadedContainers.add(container.documentSelfLink);
+                                updateContainer(container);
+                            }
+                        }))
+                .whenComplete((ignore, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to load the containers to check: %s",
+                                Utils.toString(e));
+                    } else {
+                        // drop what was removed or moved to another owner since the last load
+                        healthConfigs.keySet().retainAll(loadedDescriptions);
+                        containers.values().removeIf(c -> !loadedContainers.contains(
+                                c.documentSelfLink)
+                                && c.documentUpdateTimeMicros < startTimeMicros);
+                    }
+                    reloading.set(false);
+                });
+    }
+
+    private void updateHealthConfig(ContainerDescription description) {
+        if (description.healthConfig != null && description.healthConfig.protocol != null) {
+            healthConfigs.put(description.documentSelfLink, description.healthConfig);
+        } else {
+            healthConfigs.remove(description.documentSelfLink);
+        }
+    }
+
+    private void updateContainer(ContainerState container) {
+        ContainerState current = containers.get(container.documentSelfLink);
+        if (current != null
+                && current.documentUpdateTimeMicros > container.documentUpdateTimeMicros) {
+            return;
+        }
+        containers.put(container.documentSelfLink, toTarget(container));
+
+        synchronized (wheel) {
+            if (scheduled.add(container.documentSelfLink)) {
+                // new containers are spread over the whole interval
+                wheel.schedule(container.documentSelfLink, Utils.getSystemNowMicrosUtc()
+                        + ThreadLocalRandom.current().nextLong(HEALTH_CHECK_INTERVAL_MICROS));
+            }
+        }
+    }
+
+    private void submit(String hostLink, String containerLink) {
+        String hostKey = String.valueOf(hostLink);
+        synchronized (this) {
+            int running = runningPerHost.getOrDefault(hostKey, 0);
+            if (running >= MAX_CHECKS_PER_HOST) {
+                pendingPerHost.computeIfAbsent(hostKey, k -> new ArrayDeque<>())
+                        .add(containerLink);
+                return;
+            }
+            runningPerHost.put(hostKey, running + 1);
+        }
+        check(hostKey, containerLink);
+    }
+
+    private void check(String hostKey, String containerLink) {
+        AtomicBoolean completed = new AtomicBoolean();
+        Runnable onComplete = () -> {
+            if (completed.compareAndSet(false, true)) {
+                onCheckComplete(hostKey, containerLink);
+            }
+        };
+
+        ContainerState container = containers.get(containerLink);
+        HealthConfig healthConfig = container != null && container.descriptionLink != null
+                ? healthConfigs.get(container.descriptionLink) : null;
+        if (healthConfig == null) {
+            onComplete.run();
+            return;
+        }
+
+        getHost().schedule(onComplete, CHECK_TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+        try {
+            HealthChecker.getInstance().doHealthCheckRequest(getHost(), container,
+                    healthConfig, stats -> onComplete.run());
+        } catch (Throwable e) {
+            logWarning("Health check of %s failed: %s", containerLink, Utils.toString(e));
+            onComplete.run();
+        }
+    }
+
+    private void onCheckComplete(String hostKey, String containerLink) {
+        reschedule(containerLink);
+
+        String next;
+        synchronized (this) {
+            Deque<String> pending = pendingPerHost.get(hostKey);
+            next = pending != null ? pending.poll() : null;
+            if (pending != null && pending.isEmpty()) {
+                pendingPerHost.remove(hostKey);
+            }
+            if (next == null) {
+                runningPerHost.computeIfPresent(hostKey, (k, v) -> v > 1 ? v - 1 : null);
+                return;
+            }
+        }
+        // the slot of the host is passed to the next check
+        check(hostKey, next);
+    }
+
+    private void reschedule(String containerLink) {
+        synchronized (wheel) {
+            if (!containers.containsKey(containerLink)) {
+                scheduled.remove(containerLink);
+                return;
+            }
+            long jitter = (long) (HEALTH_CHECK_INTERVAL_MICROS * HEALTH_CHECK_JITTER
+                    * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+            wheel.schedule(containerLink, Utils.getSystemNowMicrosUtc()
+                    + HEALTH_CHECK_INTERVAL_MICROS + jitter);
+        }
+    }
+
+    private Query buildContainerQuery() {
+        return Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addFieldClause(ServiceDocument.FIELD_NAME_OWNER, getHost().getId())
+                .build();
+    }
+
+    /**
+     * Keeps only the fields used by the health checks.
+     */
+    private static ContainerState toTarget(ContainerState container) {
+        ContainerState target = new ContainerState();
+        target.documentSelfLink = container.documentSelfLink;
+        target.documentUpdateTimeMicros = container.documentUpdateTimeMicros;
+        target.descriptionLink = container.descriptionLink;
+        target.parentLink = container.parentLink;
+        target.ports = container.ports;
+        target.powerState = container.powerState;
+        return target;
+    }
+}
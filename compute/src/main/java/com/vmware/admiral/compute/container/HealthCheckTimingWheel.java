@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel with two levels. The inner wheel has one slot per tick, the outer
+ * wheel one slot per turn of the inner wheel. Items due later than a turn of the outer wheel are
+ * kept in an overflow list. Scheduling an item and collecting the due items costs O(1) per item,
+ * regardless of the number of scheduled items.
+ * <p>
+ * Items cannot be cancelled, the owner of the wheel is expected to ignore the items which are no
+ * longer relevant when they become due. Not thread safe.
+ */
+class HealthCheckTimingWheel<T> {
+
+    private static class Entry<T> {
+        final T item;
+        final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickMicros;
+    private final int wheelSize;
+    private final List<List<Entry<T>>> inner;
+    private final List<List<Entry<T>>> outer;
+    private List<Entry<T>> overflow = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    HealthCheckTimingWheel(long tickMicros, int wheelSize, long startTimeMicros) {
+        this.tickMicros = tickMicros;
+        this.wheelSize = wheelSize;
+        this.inner = createWheel(wheelSize);
+        this.outer = createWheel(wheelSize);
+        this.currentTick = startTimeMicros / tickMicros;
+    }
+
+    /**
+     * Schedules the item to be returned by {@link #advance(long)} once the given time is reached.
+     * Items due in the past are returned on the next tick.
+     */
+    void schedule(T item, long deadlineMicros) {
+        long deadlineTick = Math.max(deadlineMicros / tickMicros, currentTick + 1);
+        add(new Entry<>(item, deadlineTick));
+        size++;
+    }
+
+    /**
+     * Advances the wheel to the given time and returns the items due until then.
+     */
+    List<T> advance(long nowMicros) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMicros / tickMicros;
+        while (currentTick < targetTick) {
+            currentTick++;
+            if (currentTick % ((long) wheelSize * wheelSize) == 0) {
+                List<Entry<T>> entries = overflow;
+                overflow = new ArrayList<>();
+                entries.forEach(this::add);
+            }
+            if (currentTick % wheelSize == 0) {
+                List<Entry<T>> slot = outer.get(slotIndex(currentTick / wheelSize));
+                List<Entry<T>> entries = new ArrayList<>(slot);
+                slot.clear();
+                entries.forEach(this::add);
+            }
+
+            List<Entry<T>> slot = inner.get(slotIndex(currentTick));
+            for (Entry<T> entry : slot) {
+                due.add(entry.item);
+            }
+            size -= slot.size();
+            slot.clear();
+        }
+        return due;
+    }
+
+    /**
+     * Returns the number of scheduled items.
+     */
+    int size() {
+        return size;
+    }
+
+    private void add(Entry<T> entry) {
+        long deadlineTick = Math.max(entry.deadlineTick, currentTick);
+        if (deadlineTick - currentTick < wheelSize) {
+            inner.get(slotIndex(deadlineTick)).add(entry);
+        } else if (deadlineTick / wheelSize - currentTick / wheelSize < wheelSize) {
+            outer.get(slotIndex(deadlineTick / wheelSize)).add(entry);
+        } else {
+            overflow.add(entry);
+        }
+    }
+
+    private int slotIndex(long tick) {
+        return (int) (tick % wheelSize);
+    }
+
+    private static <T> List<List<Entry<T>>> createWheel(int wheelSize) {
+        List<List<Entry<T>>> wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        return wheel;
+    }
+}
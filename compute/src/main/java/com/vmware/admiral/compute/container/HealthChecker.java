@@ -71,6 +71,12 @@ import com.vmware.xenon.services.common.QueryTask;
 public class HealthChecker {
     public static final String SERVICE_REFERRER_PATH = "/health-checker";
 
+    /**
+     * connection tag of the HTTP health checks, keeps their connections to the containers in a
+     * separate pool so that they are reused across checks and do not use up the default pool
+     */
+    public static final String HEALTH_CHECK_CONNECTION_TAG = "health-check";
+
     private static final int DEFAULT_PORT = 80;
     private static final int DEFAULT_TIMEOUT = 2000;
     private static volatile HealthChecker instance;
@@ -299,12 +305,13 @@ public class HealthChecker {
             return;
         }
 
-        this.bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getTimeoutMillis(healthConfig));
-
         targetPort = targetPort != null && targetPort > 0 ? targetPort : DEFAULT_PORT;
 
+        // the shared bootstrap is cloned as the timeout is specific to the health config
         InetSocketAddress remoteAddress = new InetSocketAddress(targetAddress, targetPort);
-        ChannelFuture channelFuture = bootstrap.connect(remoteAddress);
+        ChannelFuture channelFuture = bootstrap.clone()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getTimeoutMillis(healthConfig))
+                .connect(remoteAddress);
         OperationContext origContext = OperationContext.getOperationContext();
 
         channelFuture.addListener((ChannelFutureListener) result -> {
@@ -347,6 +354,8 @@ public class HealthChecker {
 
         if (healthConfig.httpVersion == HttpVersion.HTTP_v2) {
             op.setConnectionSharing(true);
+        } else {
+            op.setConnectionTag(HEALTH_CHECK_CONNECTION_TAG);
         }
 
         op.setExpiration(ServiceUtils.getExpirationTimeFromNowInMicros(
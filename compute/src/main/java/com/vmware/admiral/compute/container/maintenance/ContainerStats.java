@@ -11,7 +11,6 @@
 
 package com.vmware.admiral.compute.container.maintenance;
 
-import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.ServiceStats.ServiceStat;
 import com.vmware.xenon.common.Utils;
@@ -66,52 +65,39 @@ public class ContainerStats {
     /** indicator if the container is stopped */
     public Boolean containerStopped;
 
-    public void setStats(Service service) {
+    /**
+     * Returns the stats reported at the given time in the format of the {@link ServiceStats} of a
+     * service, zero and unset values are not included.
+     */
+    public ServiceStats toServiceStats(long timeMicros) {
+        ServiceStats serviceStats = new ServiceStats();
         if (cpuUsage != 0) {
-            service.setStat(FIELD_NAME_CPU_USAGE, cpuUsage);
+            setStat(serviceStats, timeMicros, FIELD_NAME_CPU_USAGE, cpuUsage);
         }
         if (memUsage != 0) {
-            service.setStat(ContainerStats.FIELD_NAME_MEM_USAGE, memUsage);
+            setStat(serviceStats, timeMicros, FIELD_NAME_MEM_USAGE, memUsage);
         }
         if (memLimit != 0) {
-            service.setStat(ContainerStats.FIELD_NAME_MEM_LIMIT, memLimit);
+            setStat(serviceStats, timeMicros, FIELD_NAME_MEM_LIMIT, memLimit);
         }
         if (networkIn != 0) {
-            service.setStat(ContainerStats.FIELD_NAME_NETWORK_IN, networkIn);
+            setStat(serviceStats, timeMicros, FIELD_NAME_NETWORK_IN, networkIn);
         }
         if (networkOut != 0) {
-            service.setStat(ContainerStats.FIELD_NAME_NETWORK_OUT, networkOut);
+            setStat(serviceStats, timeMicros, FIELD_NAME_NETWORK_OUT, networkOut);
         }
 
         if (healthCheckSuccess != null) {
-            service.setStat(ContainerStats.FIELD_NAME_HEALTH_SUCCESS_COUNT, healthSuccessCount);
-            service.setStat(ContainerStats.FIELD_NAME_HEALTH_FAILURE_COUNT, healthFailureCount);
-            service.setStat(ContainerStats.FIELD_NAME_HEALTH_CHECK_SUCCESS,
+            setStat(serviceStats, timeMicros, FIELD_NAME_HEALTH_SUCCESS_COUNT, healthSuccessCount);
+            setStat(serviceStats, timeMicros, FIELD_NAME_HEALTH_FAILURE_COUNT, healthFailureCount);
+            setStat(serviceStats, timeMicros, FIELD_NAME_HEALTH_CHECK_SUCCESS,
                     healthCheckSuccess ? 1 : 0);
         }
         if (containerStopped != null) {
-            service.setStat(ContainerStats.FIELD_NAME_CONTAINER_STOPPED, containerStopped ? 1 : 0);
+            setStat(serviceStats, timeMicros, FIELD_NAME_CONTAINER_STOPPED,
+                    containerStopped ? 1 : 0);
         }
-    }
-
-    public static ContainerStats transform(Service service) {
-        ContainerStats containerStats = new ContainerStats();
-        containerStats.cpuUsage = getValue(service, ContainerStats.FIELD_NAME_CPU_USAGE);
-        containerStats.memUsage = (long) getValue(service, ContainerStats.FIELD_NAME_MEM_USAGE);
-        containerStats.memLimit = (long) getValue(service, ContainerStats.FIELD_NAME_MEM_LIMIT);
-        containerStats.networkIn = (long) getValue(service,
-                ContainerStats.FIELD_NAME_NETWORK_IN);
-        containerStats.networkOut = (long) getValue(service,
-                ContainerStats.FIELD_NAME_NETWORK_OUT);
-        containerStats.healthSuccessCount = (int) getValue(service,
-                ContainerStats.FIELD_NAME_HEALTH_SUCCESS_COUNT);
-        containerStats.healthFailureCount = (int) getValue(service,
-                ContainerStats.FIELD_NAME_HEALTH_FAILURE_COUNT);
-        containerStats.healthCheckSuccess = getValue(service,
-                ContainerStats.FIELD_NAME_HEALTH_CHECK_SUCCESS) == 1 ? Boolean.TRUE : Boolean.FALSE;
-        containerStats.containerStopped = getValue(service,
-                ContainerStats.FIELD_NAME_CONTAINER_STOPPED) == 1 ? Boolean.TRUE : Boolean.FALSE;
-        return containerStats;
+        return serviceStats;
     }
 
     public static ContainerStats transform(ServiceStats serviceStats) {
@@ -143,11 +129,12 @@ public class ContainerStats {
         return serviceStat.latestValue;
     }
 
-    private static double getValue(Service service, String fieldName) {
-        ServiceStat serviceStat = service.getStat(fieldName);
-        if (serviceStat == null) {
-            return 0;
-        }
-        return serviceStat.latestValue;
+    private static void setStat(ServiceStats serviceStats, long timeMicros, String name,
+            double value) {
+        ServiceStat stat = new ServiceStat();
+        stat.name = name;
+        stat.latestValue = value;
+        stat.lastUpdateMicrosUtc = timeMicros;
+        serviceStats.entries.put(name, stat);
     }
 }
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time series of the container stats kept in primitive ring buffers, one column per metric. Each
+ * container has a ring of the raw samples and a ring of rollups, the averages of the samples in
+ * fixed time buckets, which cover a longer period with less memory. Missing values, e.g. the
+ * health of a container without health config, are stored as {@link Double#NaN}. The rings start
+ * small and grow up to their capacity, so that short lived containers do not hold the memory of
+ * the whole retention period. The latest stats reported for each container are kept as well.
+ * <p>
+ * The rollups can be written to and read from a compact binary format so that they survive a
+ * restart of the node. Thread safe.
+ */
+public class ContainerStatsStore {
+
+    public static final String[] METRICS = {
+            ContainerStats.FIELD_NAME_CPU_USAGE,
+            ContainerStats.FIELD_NAME_MEM_USAGE,
+            ContainerStats.FIELD_NAME_MEM_LIMIT,
+            ContainerStats.FIELD_NAME_NETWORK_IN,
+            ContainerStats.FIELD_NAME_NETWORK_OUT,
+            ContainerStats.FIELD_NAME_HEALTH_CHECK_SUCCESS,
+            ContainerStats.FIELD_NAME_CONTAINER_STOPPED };
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int INITIAL_RING_CAPACITY = 16;
+
+    /**
+     * Samples of a container in the given time range, the values are indexed as {@link #METRICS}.
+     */
+    public static class Samples {
+        public long[] timesMicros;
+        public double[][] values;
+    }
+
+    private static class Ring {
+        final int maxCapacity;
+        long[] times;
+        double[][] values;
+        int next;
+        int size;
+
+        Ring(int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            int capacity = Math.min(maxCapacity, INITIAL_RING_CAPACITY);
+            times = new long[capacity];
+            values = new double[METRICS.length][capacity];
+        }
+
+        void add(long timeMicros, double[] sample) {
+            if (size == times.length && size < maxCapacity) {
+                // the ring did not wrap yet, the samples are in order from the start
+                int capacity = (int) Math.min(maxCapacity, 2L * size);
+                times = Arrays.copyOf(times, capacity);
+                for (int m = 0; m < METRICS.length; m++) {
+                    values[m] = Arrays.copyOf(values[m], capacity);
+                }
+                next = size;
+            }
+            times[next] = timeMicros;
+            for (int m = 0; m < METRICS.length; m++) {
+                values[m][next] = sample[m];
+            }
+            next = (next + 1) % times.length;
+            size = Math.min(size + 1, times.length);
+        }
+
+        Samples range(long fromMicros, long toMicros) {
+            int start = (next - size + times.length) % times.length;
+            int count = 0;
+            int first = -1;
+            for (int i = 0; i < size; i++) {
+                long time = times[(start + i) % times.length];
+                if (time >= fromMicros && time <= toMicros) {
+                    if (first < 0) {
+                        first = i;
+                    }
+                    count = i - first + 1;
+                }
+            }
+
+            Samples samples = new Samples();
+            samples.timesMicros = new long[count];
+            samples.values = new double[METRICS.length][count];
+            for (int i = 0; i < count; i++) {
+                int index = (start + first + i) % times.length;
+                samples.timesMicros[i] = times[index];
+                for (int m = 0; m < METRICS.length; m++) {
+                    samples.values[m][i] = values[m][index];
+                }
+            }
+            return samples;
+        }
+
+        long lastTime() {
+            return size == 0 ? Long.MIN_VALUE : times[(next - 1 + times.length) % times.length];
+        }
+
+        int capacity() {
+            return times.length;
+        }
+    }
+
+    private static class Series {
+        final Ring raw;
+        final Ring rollups;
+        long bucket = Long.MIN_VALUE;
+        final double[] bucketSums = new double[METRICS.length];
+        final int[] bucketCounts = new int[METRICS.length];
+        long lastSampleMicros;
+        ContainerStats latest;
+
+        Series(int rawCapacity, int rollupCapacity) {
+            raw = new Ring(rawCapacity);
+            rollups = new Ring(rollupCapacity);
+        }
+    }
+
+    private final int rawCapacity;
+    private final int rollupCapacity;
+    private final long rollupIntervalMicros;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public ContainerStatsStore(int rawCapacity, int rollupCapacity, long rollupIntervalMicros) {
+        this.rawCapacity = rawCapacity;
+        this.rollupCapacity = rollupCapacity;
+        this.rollupIntervalMicros = rollupIntervalMicros;
+    }
+
+    /**
+     * Records the given stats of a container. Samples are expected in increasing time order per
+     * container, out of order samples are only kept in the raw ring.
+     */
+    public void record(String containerLink, long timeMicros, ContainerStats stats) {
+        double[] sample = toSample(stats);
+        Series s = series.computeIfAbsent(containerLink,
+                k -> new Series(rawCapacity, rollupCapacity));
+        synchronized (s) {
+            s.raw.add(timeMicros, sample);
+            if (timeMicros >= s.lastSampleMicros) {
+                s.lastSampleMicros = timeMicros;
+                s.latest = stats;
+            }
+
+            long bucket = timeMicros / rollupIntervalMicros;
+            if (bucket > s.bucket) {
+                flushBucket(s);
+                s.bucket = bucket;
+            } else if (bucket < s.bucket) {
+                return;
+            }
+            for (int m = 0; m < METRICS.length; m++) {
+                if (!Double.isNaN(sample[m])) {
+                    s.bucketSums[m] += sample[m];
+                    s.bucketCounts[m]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the samples of the given container between the given times, inclusive, or
+     * <code>null</code> if there are no stats for the container. The rollups include the bucket
+     * which is still being filled.
+     */
+    public Samples query(String containerLink, long fromMicros, long toMicros, boolean rollups) {
+        Series s = series.get(containerLink);
+        if (s == null) {
+            return null;
+        }
+        synchronized (s) {
+            if (!rollups) {
+                return s.raw.range(fromMicros, toMicros);
+            }
+            Samples samples = s.rollups.range(fromMicros, toMicros);
+            long bucketTime = s.bucket * rollupIntervalMicros;
+            if (s.bucket != Long.MIN_VALUE && bucketTime > s.rollups.lastTime()
+                    && bucketTime >= fromMicros && bucketTime <= toMicros) {
+                int count = samples.timesMicros.length;
+                samples.timesMicros = Arrays.copyOf(samples.timesMicros, count + 1);
+                samples.timesMicros[count] = bucketTime;
+                double[] average = bucketAverage(s);
+                for (int m = 0; m < METRICS.length; m++) {
+                    samples.values[m] = Arrays.copyOf(samples.values[m], count + 1);
+                    samples.values[m][count] = average[m];
+                }
+            }
+            return samples;
+        }
+    }
+
+    /**
+     * Returns the latest stats reported for the given container, or <code>null</code> if no stats
+     * were reported since the start of the node.
+     */
+    public ContainerStats getLatest(String containerLink) {
+        Series s = series.get(containerLink);
+        if (s == null) {
+            return null;
+        }
+        synchronized (s) {
+            return s.latest;
+        }
+    }
+
+    /**
+     * Returns the time of the latest stats of the given container, see {@link #getLatest}.
+     */
+    public long getLatestTime(String containerLink) {
+        Series s = series.get(containerLink);
+        if (s == null) {
+            return Long.MIN_VALUE;
+        }
+        synchronized (s) {
+            return s.lastSampleMicros;
+        }
+    }
+
+    /**
+     * Returns the number of samples the rings of the given container can currently hold, raw
+     * samples and rollups together.
+     */
+    int capacity(String containerLink) {
+        Series s = series.get(containerLink);
+        if (s == null) {
+            return 0;
+        }
+        synchronized (s) {
+            return s.raw.capacity() + s.rollups.capacity();
+        }
+    }
+
+    public void remove(String containerLink) {
+        series.remove(containerLink);
+    }
+
+    /**
+     * Removes the containers without samples since the given time.
+     */
+    public int removeOlderThan(long timeMicros) {
+        int removed = 0;
+        for (Iterator<Series> it = series.values().iterator(); it.hasNext();) {
+            Series s = it.next();
+            synchronized (s) {
+                if (s.lastSampleMicros < timeMicros) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return series.size();
+    }
+
+    /**
+     * Writes the completed rollups of all containers. Per container the link and the number of
+     * rollups is followed by the times as deltas and a column of values per metric.
+     */
+    public void writeRollups(DataOutputStream out) throws IOException {
+        List<Map.Entry<String, Series>> entries = new ArrayList<>(series.entrySet());
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(METRICS.length);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Series> entry : entries) {
+            Samples samples;
+            synchronized (entry.getValue()) {
+                samples = entry.getValue().rollups.range(Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            out.writeUTF(entry.getKey());
+            out.writeInt(samples.timesMicros.length);
+            long previous = 0;
+            for (long time : samples.timesMicros) {
+                out.writeLong(time - previous);
+                previous = time;
+            }
+            for (double[] column : samples.values) {
+                for (double value : column) {
+                    out.writeFloat((float) value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads rollups written by {@link #writeRollups(DataOutputStream)}. The rollups of containers
+     * which already have rollups in the store are skipped.
+     */
+    public void readRollups(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported container stats format version " + version);
+        }
+        int metrics = in.readInt();
+        int containers = in.readInt();
+        for (int c = 0; c < containers; c++) {
+            String containerLink = in.readUTF();
+            int count = in.readInt();
+            long[] times = new long[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += in.readLong();
+                times[i] = previous;
+            }
+            double[][] values = new double[METRICS.length][count];
+            for (int m = 0; m < metrics; m++) {
+                for (int i = 0; i < count; i++) {
+                    float value = in.readFloat();
+                    if (m < METRICS.length) {
+                        values[m][i] = value;
+                    }
+                }
+            }
+            for (int m = metrics; m < METRICS.length; m++) {
+                Arrays.fill(values[m], Double.NaN);
+            }
+
+            Series s = new Series(rawCapacity, rollupCapacity);
+            double[] sample = new double[METRICS.length];
+            for (int i = 0; i < count; i++) {
+                for (int m = 0; m < METRICS.length; m++) {
+                    sample[m] = values[m][i];
+                }
+                s.rollups.add(times[i], sample);
+            }
+            s.lastSampleMicros = count > 0 ? times[count - 1] : 0;
+            series.putIfAbsent(containerLink, s);
+        }
+    }
+
+    // must be called while holding the lock of the series
+    private void flushBucket(Series s) {
+        if (s.bucket == Long.MIN_VALUE) {
+            return;
+        }
+        s.rollups.add(s.bucket * rollupIntervalMicros, bucketAverage(s));
+        Arrays.fill(s.bucketSums, 0);
+        Arrays.fill(s.bucketCounts, 0);
+    }
+
+    private static double[] bucketAverage(Series s) {
+        double[] average = new double[METRICS.length];
+        for (int m = 0; m < METRICS.length; m++) {
+            average[m] = s.bucketCounts[m] == 0 ? Double.NaN
+                    : s.bucketSums[m] / s.bucketCounts[m];
+        }
+        return average;
+    }
+
+    /**
+     * Converts the stats to the sample columns, following {@link ContainerStats#setStats} zero
+     * and unset values are treated as missing.
+     */
+    private static double[] toSample(ContainerStats stats) {
+        return new double[] {
+                stats.cpuUsage != 0 ? stats.cpuUsage : Double.NaN,
+                stats.memUsage != 0 ? stats.memUsage : Double.NaN,
+                stats.memLimit != 0 ? stats.memLimit : Double.NaN,
+                stats.networkIn != 0 ? stats.networkIn : Double.NaN,
+                stats.networkOut != 0 ? stats.networkOut : Double.NaN,
+                stats.healthCheckSuccess != null ? (stats.healthCheckSuccess ? 1 : 0) : Double.NaN,
+                stats.containerStopped != null ? (stats.containerStopped ? 1 : 0) : Double.NaN };
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Collections;
 
 import com.vmware.admiral.compute.EpzComputeEnumerationPeriodicService;
 import com.vmware.admiral.compute.PlacementCapacityUpdatePeriodicService;
+import com.vmware.admiral.compute.container.HealthCheckSchedulerService;
 import com.vmware.photon.controller.model.util.StartServicesHelper.ServiceMetadata;
 import com.vmware.xenon.common.ServiceHost;
 
@@ -34,11 +35,13 @@ public class HostInitComputeBackgroundServicesConfig extends HostInitServiceHelp
     public static final Collection<ServiceMetadata> SERVICES_METADATA =
             Collections.unmodifiableList(Arrays.asList(
                 service(EpzComputeEnumerationPeriodicService.class),
-                    service(PlacementCapacityUpdatePeriodicService.class)));
+                    service(PlacementCapacityUpdatePeriodicService.class),
+                    service(HealthCheckSchedulerService.class)));
 
     public static void startServices(ServiceHost host) {
         startServices(host,
                 EpzComputeEnumerationPeriodicService.class,
-                PlacementCapacityUpdatePeriodicService.class);
+                PlacementCapacityUpdatePeriodicService.class,
+                HealthCheckSchedulerService.class);
     }
 }
@@ -44,6 +44,7 @@ import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
 import com.vmware.admiral.compute.container.ContainerLogService;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerShellService;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService;
 import com.vmware.admiral.compute.container.ContainerStatsService;
 import com.vmware.admiral.compute.container.DeploymentPolicyService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService;
@@ -112,6 +113,7 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                     service(ContainerVolumeFactoryService.class),
                     service(ContainerNetworkFactoryService.class),
                     service(ContainerStatsService.class),
+                    service(ContainerStatsHistoryService.class),
                     service(RegistryHostConfigService.class),
                     service(CompositeDescriptionFactoryService.class),
                     service(CompositeDescriptionCloneService.class),
@@ -171,6 +173,7 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                 ContainerVolumeFactoryService.class,
                 ContainerNetworkFactoryService.class,
                 ContainerStatsService.class,
+                ContainerStatsHistoryService.class,
                 RegistryHostConfigService.class,
                 CompositeDescriptionFactoryService.class,
                 CompositeDescriptionCloneService.class,
@@ -72,6 +72,38 @@ public class BindingEvaluatorTest {
         assertEquals(firstDescription._cluster, secondDescription._cluster);
     }
 
+    @Test
+    public void testEvaluateMultipleBindingsOfComponent() {
+        ContainerDescription firstDescription = new ContainerDescription();
+        firstDescription.name = "A";
+        firstDescription._cluster = 5;
+        firstDescription.hostname = "host-a";
+        firstDescription.workingDir = "/opt/a";
+
+        ContainerDescription secondDescription = new ContainerDescription();
+        secondDescription.name = "B";
+
+        // the last binding reads a value set by another binding of the same component
+        List<Binding> bindings = Arrays.asList(
+                binding(Arrays.asList("_cluster"), "A~_cluster"),
+                binding(Arrays.asList("hostname"), "A~hostname"),
+                binding(Arrays.asList("working_dir"), "A~working_dir"),
+                binding(Arrays.asList("user"), "B~hostname"));
+        Binding.ComponentBinding componentBinding = new Binding.ComponentBinding("B", bindings);
+
+        CompositeTemplate compositeTemplate = createCompositeTemplate(Arrays
+                .asList(firstDescription, secondDescription), Arrays.asList(componentBinding));
+
+        BindingEvaluator.evaluateBindings(compositeTemplate);
+
+        secondDescription = (ContainerDescription) compositeTemplate.components.get("B").data;
+
+        assertEquals(Integer.valueOf(5), secondDescription._cluster);
+        assertEquals("host-a", secondDescription.hostname);
+        assertEquals("/opt/a", secondDescription.workingDir);
+        assertEquals("host-a", secondDescription.user);
+    }
+
     @Test
     public void testEvaluateSingleClosureBinding() {
         Closure closure = new Closure();
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.ElasticPlacementZoneConfigurationState;
+import com.vmware.admiral.compute.ElasticPlacementZoneService.ElasticPlacementZoneState;
+import com.vmware.admiral.compute.EpzComputeEnumerationTaskService.EpzComputeEnumerationTaskState;
+import com.vmware.admiral.compute.container.ComputeBaseTest;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription.ComputeType;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Tests for the {@link EpzComputeEnumerationPeriodicService} class.
+ */
+public class EpzComputeEnumerationPeriodicServiceTest extends ComputeBaseTest {
+
+    private ElasticPlacementZoneConfigurationState epz;
+
+    @Before
+    public void setUp() throws Throwable {
+        waitForServiceAvailability(EpzComputeEnumerationTaskService.FACTORY_LINK);
+        epz = createEpz("tag1");
+        host.startServiceAndWait(EpzComputeEnumerationPeriodicService.class,
+                EpzComputeEnumerationPeriodicService.SELF_LINK);
+    }
+
+    @Test
+    public void testIncrementalMembership() throws Throwable {
+        ComputeState cs1 = createComputeState("tag1");
+        ComputeState cs2 = createComputeState("tag2");
+        waitFor(() -> isMember(cs1.documentSelfLink));
+
+        // the compute is evaluated again when its tags change
+        ComputeState patch = new ComputeState();
+        patch.tagLinks = Collections.singleton("tag1");
+        doPatch(patch, cs2.documentSelfLink);
+        waitFor(() -> isMember(cs2.documentSelfLink));
+
+        // the placement zone of a deleted compute is enumerated again
+        Set<String> triggered = Collections.synchronizedSet(new HashSet<>());
+        host.getTestRequestSender().sendAndWait(Operation.createDelete(host,
+                EpzComputeEnumerationTaskService.FACTORY_LINK));
+        host.startServiceAndWait(new StatelessService() {
+            @Override
+            public void handlePost(Operation post) {
+                triggered.add(post.getBody(EpzComputeEnumerationTaskState.class)
+                        .resourcePoolLink);
+                post.complete();
+            }
+        }, EpzComputeEnumerationTaskService.FACTORY_LINK, null);
+        delete(cs1.documentSelfLink);
+        waitFor(() -> triggered.contains(epz.documentSelfLink));
+    }
+
+    private boolean isMember(String computeLink) throws Throwable {
+        ComputeState compute = getDocument(ComputeState.class, computeLink);
+        String propName = EpzComputeEnumerationTaskService.EPZ_CUSTOM_PROP_NAME_PREFIX
+                + UriUtils.getLastPathSegment(epz.documentSelfLink);
+        return compute.customProperties != null
+                && EpzComputeEnumerationTaskService.EPZ_CUSTOM_PROP_VALUE
+                        .equals(compute.customProperties.get(propName));
+    }
+
+    private ComputeState createComputeState(String... tags) throws Throwable {
+        ComputeState cs = new ComputeState();
+        cs.address = UUID.randomUUID().toString();
+        cs.descriptionLink = "desc";
+        cs.type = ComputeType.VM_GUEST;
+        cs.tagLinks = new HashSet<>();
+        Collections.addAll(cs.tagLinks, tags);
+        return doPost(cs, ComputeService.FACTORY_LINK);
+    }
+
+    private ElasticPlacementZoneConfigurationState createEpz(String... tags) throws Throwable {
+        ElasticPlacementZoneConfigurationState epz = new ElasticPlacementZoneConfigurationState();
+        epz.resourcePoolState = new ResourcePoolState();
+        epz.resourcePoolState.name = UUID.randomUUID().toString();
+        epz.epzState = new ElasticPlacementZoneState();
+        epz.epzState.tagLinksToMatch = new HashSet<>();
+        Collections.addAll(epz.epzState.tagLinksToMatch, tags);
+        return doOperation(epz,
+                UriUtils.buildUri(host, ElasticPlacementZoneConfigurationService.SELF_LINK),
+                ElasticPlacementZoneConfigurationState.class, false, Action.POST);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask.NumericRange;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+
+/**
+ * Tests for the {@link EpzComputeMatcher} class.
+ */
+public class EpzComputeMatcherTest {
+
+    private static final String RP_LINK = "/resources/pools/rp1";
+
+    @Test
+    public void testTagQuery() {
+        EpzComputeMatcher matcher = EpzComputeMatcher.compile(
+                buildRpQuery(null, "/tags/tag1", "/tags/tag2"));
+        assertNotNull(matcher);
+
+        assertTrue(matcher.matches(createCompute(null, null, "/tags/tag1", "/tags/tag2")));
+        assertTrue(matcher.matches(createCompute(null, null, "/tags/tag2", "/tags/tag1",
+                "/tags/tag3")));
+        assertFalse(matcher.matches(createCompute(null, null, "/tags/tag1")));
+        assertFalse(matcher.matches(createCompute(null, null)));
+
+        // explicitly assigned computes match regardless of tags
+        assertTrue(matcher.matches(createCompute(RP_LINK, null)));
+        assertFalse(matcher.matches(createCompute("/resources/pools/rp2", null)));
+    }
+
+    @Test
+    public void testTenantClause() {
+        EpzComputeMatcher global = EpzComputeMatcher.compile(buildRpQuery(null, "/tags/tag1"));
+        assertTrue(global.matches(createCompute(null, null, "/tags/tag1")));
+        assertFalse(global.matches(createCompute(null, "/tenants/t1", "/tags/tag1")));
+
+        EpzComputeMatcher tenant = EpzComputeMatcher.compile(
+                buildRpQuery(Collections.singletonList("/tenants/t1"), "/tags/tag1"));
+        assertTrue(tenant.matches(createCompute(null, "/tenants/t1", "/tags/tag1")));
+        assertFalse(tenant.matches(createCompute(null, "/tenants/t2", "/tags/tag1")));
+        assertFalse(tenant.matches(createCompute(null, null, "/tags/tag1")));
+    }
+
+    @Test
+    public void testKindAndCustomProperties() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ComputeState.class)
+                .addCompositeFieldClause(ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        "__prop", "value")
+                .build();
+        EpzComputeMatcher matcher = EpzComputeMatcher.compile(query);
+
+        ComputeState compute = createCompute(null, null);
+        assertFalse(matcher.matches(compute));
+        compute.customProperties = new HashMap<>();
+        compute.customProperties.put("__prop", "value");
+        assertTrue(matcher.matches(compute));
+        compute.documentKind = "other";
+        assertFalse(matcher.matches(compute));
+    }
+
+    @Test
+    public void testUnsupportedQuery() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ComputeState.class)
+                .addRangeClause(ComputeState.FIELD_NAME_UPDATE_TIME_MICROS,
+                        NumericRange.createLessThanRange(10L))
+                .build();
+        assertNull(EpzComputeMatcher.compile(query));
+        assertNull(EpzComputeMatcher.compile(null));
+    }
+
+    /**
+     * Same as the query generated by {@link ElasticPlacementZoneService}.
+     */
+    private static Query buildRpQuery(List<String> tenantLinks, String... tagLinks) {
+        Query.Builder tagQueryBuilder = Query.Builder.create();
+        for (String tagLink : tagLinks) {
+            tagQueryBuilder.addCollectionItemClause(ComputeState.FIELD_NAME_TAG_LINKS, tagLink);
+        }
+
+        Query kindClause = Query.Builder.create().addKindFieldClause(ComputeState.class).build();
+        Query assignmentClause = Query.Builder.create()
+                .addClause(tagQueryBuilder.build().setOccurance(Occurance.SHOULD_OCCUR))
+                .addFieldClause(ComputeState.FIELD_NAME_RESOURCE_POOL_LINK, RP_LINK,
+                        Occurance.SHOULD_OCCUR)
+                .build();
+        Query tenantClause = QueryUtil.addTenantClause(tenantLinks);
+
+        return Query.Builder.create()
+                .addClauses(kindClause, assignmentClause, tenantClause)
+                .build();
+    }
+
+    private static ComputeState createCompute(String resourcePoolLink, String tenantLink,
+            String... tagLinks) {
+        ComputeState compute = new ComputeState();
+        compute.documentKind = Utils.buildKind(ComputeState.class);
+        compute.documentSelfLink = "/resources/compute/c1";
+        compute.resourcePoolLink = resourcePoolLink;
+        if (tenantLink != null) {
+            compute.tenantLinks = Collections.singletonList(tenantLink);
+        }
+        if (tagLinks.length > 0) {
+            compute.tagLinks = new HashSet<>(Arrays.asList(tagLinks));
+        }
+        return compute;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService.AggregatedComputeStats;
+import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService.ComputeStats;
+
+/**
+ * Tests for the {@link PlacementCapacityAccumulator} class.
+ */
+public class PlacementCapacityAccumulatorTest {
+
+    private static final String RP1 = "/resources/pools/rp1";
+    private static final String RP2 = "/resources/pools/rp2";
+
+    @Test
+    public void testUpdateAndRemove() {
+        PlacementCapacityAccumulator accumulator = new PlacementCapacityAccumulator();
+
+        assertEquals(pools(RP1), accumulator.update("c1", 1, pools(RP1), stats(1000, 400, 2, 0.5)));
+        assertEquals(pools(RP1, RP2),
+                accumulator.update("c2", 1, pools(RP1, RP2), stats(2000, 2000, 4, 0.2)));
+        validate(accumulator.get(RP1), 2, 3000, 2400, (2 * 0.5 + 4 * 0.2) / 6);
+        validate(accumulator.get(RP2), 1, 2000, 2000, 0.2);
+
+        // unchanged figures do not affect the pools
+        assertTrue(accumulator.update("c1", 2, pools(RP1), stats(1000, 400, 2, 0.5)).isEmpty());
+
+        // compute moved to another pool
+        assertEquals(pools(RP1, RP2),
+                accumulator.update("c1", 3, pools(RP2), stats(1000, 800, 2, 0.5)));
+        validate(accumulator.get(RP1), 1, 2000, 2000, 0.2);
+        validate(accumulator.get(RP2), 2, 3000, 2800, (2 * 0.5 + 4 * 0.2) / 6);
+
+        // stale changes are ignored
+        assertTrue(accumulator.update("c1", 2, pools(RP1), stats(1, 1, 1, 1.0)).isEmpty());
+
+        assertEquals(pools(RP1, RP2), accumulator.remove("c2", 4));
+        validate(accumulator.get(RP1), 0, 0, 0, 0.0);
+        validate(accumulator.get(RP2), 1, 1000, 800, 0.5);
+    }
+
+    @Test
+    public void testReconcile() {
+        PlacementCapacityAccumulator accumulator = new PlacementCapacityAccumulator();
+        accumulator.update("c1", 1, pools(RP1), stats(1000, 1000, 1, 0.0));
+        accumulator.update("c2", 20, pools(RP1), stats(2000, 2000, 1, 0.0));
+        accumulator.remove("c3", 20);
+
+        // the snapshot misses the change of c2 and the removal of c3 which happened after it was
+        // started, but contains c4 which change was missed by the accumulator
+        PlacementCapacityAccumulator snapshot = new PlacementCapacityAccumulator();
+        snapshot.update("c1", 1, pools(RP1), stats(1000, 1000, 1, 0.0));
+        snapshot.update("c2", 5, pools(RP1), stats(500, 500, 1, 0.0));
+        snapshot.update("c3", 5, pools(RP1), stats(300, 300, 1, 0.0));
+        snapshot.update("c4", 5, pools(RP2), stats(4000, 4000, 1, 0.0));
+
+        assertEquals(pools(RP2), accumulator.reconcile(snapshot, 10));
+        validate(accumulator.get(RP1), 2, 3000, 3000, 0.0);
+        validate(accumulator.get(RP2), 1, 4000, 4000, 0.0);
+    }
+
+    private static void validate(AggregatedComputeStats stats, long computeCount,
+            long totalMemoryBytes, long availableMemoryBytes, double cpuUsage) {
+        assertEquals(computeCount, stats.computeCount);
+        assertEquals(totalMemoryBytes, stats.totalMemoryBytes);
+        assertEquals(availableMemoryBytes, stats.availableMemoryBytes);
+        assertEquals(cpuUsage, stats.getCpuUsage(), 0.0001);
+    }
+
+    private static ComputeStats stats(long totalMemoryBytes, long availableMemoryBytes,
+            long cpuCoreCount, double cpuUsage) {
+        ComputeStats stats = new ComputeStats();
+        stats.totalMemoryBytes = totalMemoryBytes;
+        stats.availableMemoryBytes = availableMemoryBytes;
+        stats.cpuCoreCount = cpuCoreCount;
+        stats.cpuUsage = cpuUsage;
+        return stats;
+    }
+
+    private static Set<String> pools(String... rpLinks) {
+        return rpLinks.length == 0 ? Collections.emptySet()
+                : new HashSet<>(Arrays.asList(rpLinks));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ComputeBaseTest;
+import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription.ComputeType;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+
+/**
+ * Tests for the {@link PlacementCapacityUpdatePeriodicService} class.
+ */
+public class PlacementCapacityUpdatePeriodicServiceTest extends ComputeBaseTest {
+
+    @Before
+    public void setUp() throws Throwable {
+        waitForServiceAvailability(PlacementCapacityUpdateTaskService.FACTORY_LINK);
+        host.startServiceAndWait(PlacementCapacityUpdatePeriodicService.class,
+                PlacementCapacityUpdatePeriodicService.SELF_LINK);
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Throwable {
+        ResourcePoolState rp = createResourcePool();
+        ComputeDescription cd = createComputeDescription();
+        waitFor(() -> hasFigures(rp.documentSelfLink, 0L, 0L, 0.0));
+
+        ComputeState c1 = createContainerHost(cd.documentSelfLink, rp.documentSelfLink,
+                4_000_000L, 2_000_000L, 2L, 0.10);
+        waitFor(() -> hasFigures(rp.documentSelfLink, 4_000_000L, 2_000_000L, 0.10));
+
+        ComputeState c2 = createContainerHost(cd.documentSelfLink, rp.documentSelfLink,
+                4_000_000L, 3_000_000L, 4L, 0.40);
+        waitFor(() -> hasFigures(rp.documentSelfLink, 8_000_000L, 5_000_000L,
+                (2 * 0.10 + 4 * 0.40) / 6));
+
+        // stats change
+        ComputeState patch = new ComputeState();
+        patch.customProperties = new HashMap<>();
+        patch.customProperties.put(ContainerHostService.DOCKER_HOST_AVAILABLE_MEMORY_PROP_NAME,
+                "1000000");
+        doPatch(patch, c1.documentSelfLink);
+        waitFor(() -> hasFigures(rp.documentSelfLink, 8_000_000L, 4_000_000L,
+                (2 * 0.10 + 4 * 0.40) / 6));
+
+        delete(c2.documentSelfLink);
+        waitFor(() -> hasFigures(rp.documentSelfLink, 4_000_000L, 1_000_000L, 0.10));
+    }
+
+    private boolean hasFigures(String resourcePoolLink, long maxMemoryBytes,
+            long availableMemoryBytes, double cpuUsage) throws Throwable {
+        ResourcePoolState rp = getDocument(ResourcePoolState.class, resourcePoolLink);
+        if (rp.maxMemoryBytes == null || rp.maxMemoryBytes != maxMemoryBytes
+                || rp.customProperties == null) {
+            return false;
+        }
+        String availableMemory = rp.customProperties.get(
+                ContainerHostDataCollectionService.RESOURCE_POOL_AVAILABLE_MEMORY_CUSTOM_PROP);
+        String usage = rp.customProperties.get(
+                ContainerHostDataCollectionService.RESOURCE_POOL_CPU_USAGE_CUSTOM_PROP);
+        return availableMemory != null && Long.parseLong(availableMemory) == availableMemoryBytes
+                && usage != null && Math.abs(Double.parseDouble(usage) - cpuUsage) < 0.01;
+    }
+
+    private ComputeState createContainerHost(String descriptionLink, String rpLink,
+            long totalMemoryBytes, long availableMemoryBytes, long cpuCores, double cpuUsage)
+            throws Throwable {
+        ComputeState cs = new ComputeState();
+        cs.descriptionLink = descriptionLink;
+        cs.resourcePoolLink = rpLink;
+        cs.customProperties = new HashMap<>();
+        cs.customProperties.put(ContainerHostService.DOCKER_HOST_TOTAL_MEMORY_PROP_NAME,
+                Long.toString(totalMemoryBytes));
+        cs.customProperties.put(ContainerHostService.DOCKER_HOST_AVAILABLE_MEMORY_PROP_NAME,
+                Long.toString(availableMemoryBytes));
+        cs.customProperties.put(ContainerHostService.DOCKER_HOST_NUM_CORES_PROP_NAME,
+                Long.toString(cpuCores));
+        cs.customProperties.put(ContainerHostService.DOCKER_HOST_CPU_USAGE_PCT_PROP_NAME,
+                Double.toString(cpuUsage));
+        return doPost(cs, ComputeService.FACTORY_LINK);
+    }
+
+    private ResourcePoolState createResourcePool() throws Throwable {
+        ResourcePoolState rp = new ResourcePoolState();
+        rp.name = UUID.randomUUID().toString();
+        return doPost(rp, ResourcePoolService.FACTORY_LINK);
+    }
+
+    private ComputeDescription createComputeDescription() throws Throwable {
+        ComputeDescription cd = new ComputeDescription();
+        cd.instanceAdapterReference = new URI("http://instanceAdapterReference");
+        cd.supportedChildren = new ArrayList<>();
+        cd.supportedChildren.add(ComputeType.DOCKER_CONTAINER.toString());
+        return doPost(cd, ComputeDescriptionService.FACTORY_LINK);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.cluster;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.ComputeConstants;
+import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService;
+import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.ElasticPlacementZoneConfigurationState;
+import com.vmware.admiral.compute.ElasticPlacementZoneService.ElasticPlacementZoneState;
+import com.vmware.admiral.compute.container.ComputeBaseTest;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState.ResourcePoolProperty;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Tests for the {@link ClusterUtils} class.
+ */
+public class ClusterUtilsTest extends ComputeBaseTest {
+
+    private static final String PROJECT_LINK = "/projects/project1";
+    private static final String TAG_LINK = "/resources/tags/elastic";
+
+    private ResourcePoolState zone1;
+    private ResourcePoolState zone2;
+    private ResourcePoolState elasticZone;
+    private ResourcePoolState emptyZone;
+
+    @Before
+    public void setUp() throws Throwable {
+        waitForServiceAvailability(ComputeService.FACTORY_LINK,
+                ResourcePoolService.FACTORY_LINK,
+                ElasticPlacementZoneConfigurationService.SELF_LINK);
+        zone1 = createPlacementZone();
+        zone2 = createPlacementZone();
+        emptyZone = createPlacementZone();
+        elasticZone = createElasticPlacementZone();
+    }
+
+    @Test
+    public void testHostsWithinPlacementZones() throws Throwable {
+        ComputeState host1 = createHost(zone1.documentSelfLink, PROJECT_LINK);
+        ComputeState host2 = createHost(zone1.documentSelfLink, "/projects/project2");
+        ComputeState host3 = createHost(zone2.documentSelfLink, PROJECT_LINK);
+        // the elastic placement zone has no tenant links, so it matches hosts without ones
+        ComputeState elasticHost = createHost(null, null, TAG_LINK);
+        // a host of a placement zone which also matches the elastic one
+        ComputeState sharedHost = createHost(zone2.documentSelfLink, null, TAG_LINK);
+        // not a container host
+        createCompute(zone1.documentSelfLink, null, false);
+
+        Map<String, Set<String>> hosts = getHostLinks(null);
+        assertEquals(links(host1, host2), hosts.get(zone1.documentSelfLink));
+        assertEquals(links(host3, sharedHost), hosts.get(zone2.documentSelfLink));
+        assertEquals(links(elasticHost, sharedHost), hosts.get(elasticZone.documentSelfLink));
+        assertEquals(Collections.emptySet(), hosts.get(emptyZone.documentSelfLink));
+
+        // the same hosts as with a query per placement zone
+        assertEquals(getHostLinksPerPlacementZone(null), hosts);
+        assertEquals(getHostLinksPerPlacementZone(PROJECT_LINK), getHostLinks(PROJECT_LINK));
+    }
+
+    private Map<String, Set<String>> getHostLinks(String projectLink) throws Exception {
+        Map<String, List<ComputeState>> hosts = await(ClusterUtils.getHostsWithinPlacementZones(
+                Arrays.asList(zone1, zone2, elasticZone, emptyZone), projectLink, null, host));
+        Map<String, Set<String>> hostLinks = new HashMap<>();
+        hosts.forEach((zoneLink, zoneHosts) -> hostLinks.put(zoneLink, links(zoneHosts)));
+        return hostLinks;
+    }
+
+    private Map<String, Set<String>> getHostLinksPerPlacementZone(String projectLink)
+            throws Exception {
+        Map<String, Set<String>> hostLinks = new HashMap<>();
+        for (ResourcePoolState zone : Arrays.asList(zone1, zone2, elasticZone, emptyZone)) {
+            hostLinks.put(zone.documentSelfLink, links(await(ClusterUtils
+                    .getHostsWithinPlacementZone(zone.documentSelfLink, projectLink, host))));
+        }
+        return hostLinks;
+    }
+
+    private ResourcePoolState createPlacementZone() throws Throwable {
+        ResourcePoolState zone = new ResourcePoolState();
+        zone.name = UUID.randomUUID().toString();
+        return doPost(zone, ResourcePoolService.FACTORY_LINK);
+    }
+
+    private ResourcePoolState createElasticPlacementZone() throws Throwable {
+        ElasticPlacementZoneConfigurationState epz = new ElasticPlacementZoneConfigurationState();
+        epz.resourcePoolState = new ResourcePoolState();
+        epz.resourcePoolState.name = UUID.randomUUID().toString();
+        epz.epzState = new ElasticPlacementZoneState();
+        epz.epzState.tagLinksToMatch = Collections.singleton(TAG_LINK);
+        epz = doOperation(epz,
+                UriUtils.buildUri(host, ElasticPlacementZoneConfigurationService.SELF_LINK),
+                ElasticPlacementZoneConfigurationState.class, false, Action.POST);
+
+        String zoneLink = epz.resourcePoolState.documentSelfLink;
+        waitFor(() -> {
+            ResourcePoolState zone = getDocument(ResourcePoolState.class, zoneLink);
+            return zone.properties != null
+                    && zone.properties.contains(ResourcePoolProperty.ELASTIC);
+        });
+        return getDocument(ResourcePoolState.class, zoneLink);
+    }
+
+    private ComputeState createHost(String zoneLink, String projectLink, String... tagLinks)
+            throws Throwable {
+        return createCompute(zoneLink, projectLink, true, tagLinks);
+    }
+
+    private ComputeState createCompute(String zoneLink, String projectLink,
+            boolean containerHost, String... tagLinks) throws Throwable {
+        ComputeState cs = new ComputeState();
+        cs.address = UUID.randomUUID().toString();
+        cs.descriptionLink = "desc";
+        cs.resourcePoolLink = zoneLink;
+        cs.tagLinks = new HashSet<>(Arrays.asList(tagLinks));
+        if (projectLink != null) {
+            cs.tenantLinks = Collections.singletonList(projectLink);
+        }
+        if (containerHost) {
+            cs.customProperties = new HashMap<>();
+            cs.customProperties.put(ComputeConstants.COMPUTE_CONTAINER_HOST_PROP_NAME, "true");
+        }
+        return doPost(cs, ComputeService.FACTORY_LINK);
+    }
+
+    private static Set<String> links(ComputeState... computes) {
+        return links(Arrays.asList(computes));
+    }
+
+    private static Set<String> links(Collection<ComputeState> computes) {
+        return computes.stream().map(cs -> cs.documentSelfLink).collect(Collectors.toSet());
+    }
+
+    private static <T> T await(DeferredResult<T> result) throws Exception {
+        return result.toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+    }
+}
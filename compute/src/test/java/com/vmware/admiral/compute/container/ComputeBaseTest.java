@@ -13,6 +13,7 @@ package com.vmware.admiral.compute.container;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.After;
@@ -20,6 +21,10 @@ import org.junit.Before;
 
 import com.vmware.admiral.common.test.BaseTestCase;
 import com.vmware.admiral.common.test.HostInitTestDcpServicesConfig;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryRequest;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryResponse;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsSample;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.host.CompositeComponentInterceptor;
 import com.vmware.admiral.host.ComputeInitialBootService;
 import com.vmware.admiral.host.HostInitCommonServiceConfig;
@@ -30,6 +35,7 @@ import com.vmware.admiral.service.common.AbstractInitialBootService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.test.TestContext;
 
@@ -83,4 +89,21 @@ public abstract class ComputeBaseTest extends BaseTestCase {
                 .setCompletion(ctx.getCompletion()));
         ctx.await();
     }
+
+    /**
+     * Returns the latest stats of the given container, missing values are converted as by
+     * {@link ContainerStats#transform(ServiceStats)}.
+     */
+    protected ContainerStats getContainerStats(String containerLink) throws Throwable {
+        ContainerStatsHistoryRequest request = new ContainerStatsHistoryRequest();
+        request.containerLinks = Collections.singletonList(containerLink);
+        request.latest = true;
+        ContainerStatsHistoryResponse response = host.getTestRequestSender().sendAndWait(
+                Operation.createPost(host, ContainerStatsHistoryService.SELF_LINK)
+                        .setBody(request)).getBody(ContainerStatsHistoryResponse.class);
+        ContainerStatsSample latest = response.latest.get(containerLink);
+        return ContainerStats.transform(latest != null
+                ? latest.stats.toServiceStats(latest.timeMicros)
+                : new ServiceStats());
+    }
 }
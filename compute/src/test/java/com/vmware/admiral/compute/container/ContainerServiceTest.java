@@ -126,6 +126,9 @@ public class ContainerServiceTest extends ComputeBaseTest {
     @Test
     public void testODataWithManyEntities() throws Throwable {
         int numberOfContainers = 6000;
+        // the containers have no stats to keep them started, keep the idle ones started until
+        // they are patched instead of stopping and starting them again on demand
+        host.setServiceCacheClearDelayMicros(TimeUnit.MINUTES.toMicros(10));
         List<String> containers = new ArrayList<>();
         for (int i = 0; i <= numberOfContainers; i++) {
             ContainerState state = createContainer("/parent/1", "tenant1");
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistory;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryRequest;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService.ContainerStatsHistoryResponse;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.xenon.common.Operation;
+
+/**
+ * Tests for the {@link ContainerStatsHistoryService} class.
+ */
+public class ContainerStatsHistoryServiceTest extends ComputeBaseTest {
+
+    @Before
+    public void setUp() throws Throwable {
+        waitForServiceAvailability(ContainerFactoryService.SELF_LINK,
+                ContainerStatsHistoryService.SELF_LINK);
+    }
+
+    @Test
+    public void testHistoryOfManyContainers() throws Throwable {
+        ContainerState container1 = createContainer();
+        ContainerState container2 = createContainer();
+
+        patchStats(container1, 10);
+        patchStats(container1, 20);
+        patchStats(container2, 30);
+        ContainerStats health = new ContainerStats();
+        health.healthCheckSuccess = true;
+        doPatch(health, container2.documentSelfLink);
+
+        ContainerStatsHistoryRequest request = new ContainerStatsHistoryRequest();
+        request.containerLinks = Arrays.asList(container1.documentSelfLink,
+                container2.documentSelfLink, "/resources/containers/missing");
+        waitFor(() -> {
+            ContainerStatsHistoryResponse response = queryHistory(request);
+            ContainerStatsHistory history = response.containers.get(
+                    container2.documentSelfLink);
+            return history != null && history.timesMicros.size() == 2;
+        });
+
+        ContainerStatsHistoryResponse response = queryHistory(request);
+        assertEquals(2, response.containers.size());
+        assertFalse(response.containers.containsKey("/resources/containers/missing"));
+
+        ContainerStatsHistory history1 = response.containers.get(container1.documentSelfLink);
+        assertEquals(Arrays.asList(10d, 20d),
+                history1.values.get(ContainerStats.FIELD_NAME_CPU_USAGE));
+
+        ContainerStatsHistory history2 = response.containers.get(container2.documentSelfLink);
+        List<Double> cpu = history2.values.get(ContainerStats.FIELD_NAME_CPU_USAGE);
+        assertEquals(30d, cpu.get(0), 0);
+        assertNull(cpu.get(1));
+        assertEquals(1d, history2.values.get(ContainerStats.FIELD_NAME_HEALTH_CHECK_SUCCESS)
+                .get(1), 0);
+
+        request.rollups = true;
+        assertEquals(2, queryHistory(request).containers.size());
+    }
+
+    private ContainerState createContainer() throws Throwable {
+        ContainerState container = new ContainerState();
+        container.image = "test-image";
+        return doPost(container, ContainerFactoryService.SELF_LINK);
+    }
+
+    private void patchStats(ContainerState container, double cpuUsage) throws Throwable {
+        ContainerStats stats = new ContainerStats();
+        stats.cpuUsage = cpuUsage;
+        doPatch(stats, container.documentSelfLink);
+    }
+
+    private ContainerStatsHistoryResponse queryHistory(ContainerStatsHistoryRequest request) {
+        return host.getTestRequestSender().sendAndWait(Operation
+                .createPost(host, ContainerStatsHistoryService.SELF_LINK)
+                .setBody(request)).getBody(ContainerStatsHistoryResponse.class);
+    }
+}
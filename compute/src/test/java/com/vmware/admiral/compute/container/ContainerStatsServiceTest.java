@@ -17,8 +17,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -40,7 +43,6 @@ import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.compute.container.maintenance.ContainerStatsEvaluator;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service.Action;
-import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
@@ -238,19 +240,69 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
             assertTrue(mockAdapterService.isStatsInvokedForResource(containerLink));
             assertTrue(mockAdapterService.isInspectInvokedForResource(containerLink));
 
+            // the stats are fresh enough to be returned without another adapter request
             mockAdapterService.reset();
             response = sender.sendAndWait(Operation.createGet(uri));
             assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
             stats = response.getBody(ServiceStats.class);
             assertNotNull(stats);
             assertEquals(ServiceStats.KIND, stats.documentKind);
-            assertTrue(mockAdapterService.isStatsInvokedForResource(containerLink));
+            assertFalse(mockAdapterService.isStatsInvokedForResource(containerLink));
             assertFalse(mockAdapterService.isInspectInvokedForResource(containerLink));
         } finally {
             stopService(mockAdapterService);
         }
     }
 
+    @Test
+    public void testConcurrentContainerStats() throws Throwable {
+        MockAdapterService mockAdapterService = new MockAdapterService();
+        try {
+            stopService(mockAdapterService);
+
+            URI adapterServiceUri = UriUtils.buildUri(host, ManagementUriParts.ADAPTER_DOCKER);
+            host.startService(Operation.createPost(adapterServiceUri), mockAdapterService);
+            waitForServiceAvailability(ManagementUriParts.ADAPTER_DOCKER);
+
+            containerState = doPost(createContainerState(null), ContainerFactoryService.SELF_LINK);
+
+            String query = String.format("%s=%s", ContainerStatsService.CONTAINER_ID_QUERY_PARAM,
+                    UriUtils.getLastPathSegment(containerState.documentSelfLink));
+            URI uri = UriUtils.buildUri(host, ContainerStatsService.SELF_LINK, query);
+            List<Operation> gets = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                gets.add(Operation.createGet(uri));
+            }
+            List<Operation> responses = host.getTestRequestSender().sendAndWait(gets);
+            for (Operation response : responses) {
+                assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
+            }
+            assertEquals(1, mockAdapterService.getStatsInvocationCount());
+        } finally {
+            stopService(mockAdapterService);
+        }
+    }
+
+    @Test
+    public void testContainerStatsRequestFailure() throws Throwable {
+        // no adapter reference, the refresh fails before any adapter request is sent
+        ContainerState container = new ContainerState();
+        container.parentLink = UriUtils.buildUriPath(ManagementUriParts.RESOURCES, "host");
+        container = doPost(container, ContainerFactoryService.SELF_LINK);
+
+        String query = String.format("%s=%s", ContainerStatsService.CONTAINER_ID_QUERY_PARAM,
+                UriUtils.getLastPathSegment(container.documentSelfLink));
+        URI uri = UriUtils.buildUri(host, ContainerStatsService.SELF_LINK, query);
+        TestRequestSender sender = host.getTestRequestSender();
+
+        // more requests than the per host limit, none of them waits for a leaked slot
+        for (int i = 0; i < 10; i++) {
+            Operation response = sender.sendAndWait(Operation.createGet(uri));
+            assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
+            assertEquals(ServiceStats.KIND, response.getBody(ServiceStats.class).documentKind);
+        }
+    }
+
     private ContainerState createContainerState(String containerDescriptionLink) {
         ContainerState container = new ContainerState();
         container.descriptionLink = containerDescriptionLink;
@@ -317,10 +369,7 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
                 .setCompletion(host.getCompletion()));
         host.testWait();
 
-        ServiceStats serviceStats = getDocument(ServiceStats.class, containerState.documentSelfLink
-                + ServiceHost.SERVICE_URI_SUFFIX_STATS);
-        assertNotNull(serviceStats);
-        return ContainerStats.transform(serviceStats);
+        return getContainerStats(containerState.documentSelfLink);
     }
 
     private ContainerDescription createContainerDescription() {
@@ -347,6 +396,7 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
 
         private final Set<String> resourcesInvokedStats = new ConcurrentSkipListSet<>();
         private final Set<String> resourcesInvokedInspect = new ConcurrentSkipListSet<>();
+        private final AtomicInteger statsInvocationCount = new AtomicInteger();
 
         public boolean isInspectInvokedForResource(String link) {
             return resourcesInvokedInspect.contains(link);
@@ -356,9 +406,14 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
             return resourcesInvokedStats.contains(link);
         }
 
+        public int getStatsInvocationCount() {
+            return statsInvocationCount.get();
+        }
+
         public void reset() {
             resourcesInvokedStats.clear();
             resourcesInvokedInspect.clear();
+            statsInvocationCount.set(0);
         }
 
         @Override
@@ -368,6 +423,7 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
                 logInfo(">>>> Invoking MockAdapterService handlePatch for Stats for: %s",
                         state.resourceReference);
                 resourcesInvokedStats.add(state.resourceReference.getPath());
+                statsInvocationCount.incrementAndGet();
             } else if (ContainerOperationType.INSPECT.id.equals(state.operationTypeId)) {
                 logInfo(">>>> Invoking MockAdapterService handlePatch for Inspect for: %s",
                         state.resourceReference);
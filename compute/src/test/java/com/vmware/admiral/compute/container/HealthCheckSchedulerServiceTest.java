@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.HealthChecker.HealthConfig;
+import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.RequestProtocol;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Tests for the {@link HealthCheckSchedulerService} class.
+ */
+public class HealthCheckSchedulerServiceTest extends ComputeBaseTest {
+
+    private HealthCheckSchedulerService scheduler;
+
+    @Before
+    public void setUp() throws Throwable {
+        waitForServiceAvailability(ContainerDescriptionService.FACTORY_LINK,
+                ContainerFactoryService.SELF_LINK, ComputeService.FACTORY_LINK);
+        scheduler = new HealthCheckSchedulerService();
+        host.startServiceAndWait(scheduler, HealthCheckSchedulerService.SELF_LINK, null);
+    }
+
+    @Test
+    public void testContainerIsCheckedAndRemoved() throws Throwable {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            int port = socket.getLocalPort();
+
+            ComputeState containerHost = new ComputeState();
+            containerHost.address = host.getPreferredAddress();
+            containerHost.descriptionLink = UriUtils.buildUriPath(ComputeService.FACTORY_LINK,
+                    "mockId");
+            containerHost = doPost(containerHost, ComputeService.FACTORY_LINK);
+
+            ContainerDescription description = new ContainerDescription();
+            description.image = "image:latest";
+            description.healthConfig = new HealthConfig();
+            description.healthConfig.protocol = RequestProtocol.TCP;
+            description.healthConfig.port = port;
+            description.healthConfig.healthyThreshold = 1;
+            description.healthConfig.unhealthyThreshold = 1;
+            description = doPost(description, ContainerDescriptionService.FACTORY_LINK);
+
+            ContainerState container = new ContainerState();
+            container.descriptionLink = description.documentSelfLink;
+            container.parentLink = containerHost.documentSelfLink;
+            container.status = ContainerState.CONTAINER_RUNNING_STATUS;
+            PortBinding portBinding = new PortBinding();
+            portBinding.containerPort = String.valueOf(port);
+            portBinding.hostPort = String.valueOf(port);
+            container.ports = Collections.singletonList(portBinding);
+            container = doPost(container, ContainerFactoryService.SELF_LINK);
+
+            // new containers are picked up from the continuous query
+            String containerLink = container.documentSelfLink;
+            waitFor(() -> scheduler.isTracked(containerLink));
+
+            // the first check is due within the check interval
+            scheduler.runDueChecks(Utils.fromNowMicrosUtc(TimeUnit.MINUTES.toMicros(10)));
+            waitFor(() -> {
+                ContainerStats stats = getContainerStats(containerLink);
+                return Boolean.TRUE.equals(stats.healthCheckSuccess);
+            });
+
+            delete(containerLink);
+            waitFor(() -> !scheduler.isTracked(containerLink));
+        }
+    }
+}
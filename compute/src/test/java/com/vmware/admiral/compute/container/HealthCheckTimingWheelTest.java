@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link HealthCheckTimingWheel} class.
+ */
+public class HealthCheckTimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    public void testItemsAreReturnedWhenDue() {
+        HealthCheckTimingWheel<String> wheel = new HealthCheckTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        wheel.schedule("a", 30);
+        wheel.schedule("b", 35);
+        wheel.schedule("c", 50);
+        assertEquals(3, wheel.size());
+
+        assertTrue(wheel.advance(29).isEmpty());
+        assertEquals(Arrays.asList("a", "b"), wheel.advance(30));
+        assertTrue(wheel.advance(49).isEmpty());
+        assertEquals(Collections.singletonList("c"), wheel.advance(55));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadlineIsReturnedOnNextTick() {
+        HealthCheckTimingWheel<String> wheel = new HealthCheckTimingWheel<>(TICK, WHEEL_SIZE, 100);
+        wheel.schedule("a", 0);
+        assertEquals(Collections.singletonList("a"), wheel.advance(110));
+    }
+
+    @Test
+    public void testOuterWheelAndOverflow() {
+        HealthCheckTimingWheel<String> wheel = new HealthCheckTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        // inner wheel covers 8 ticks, outer wheel 64 ticks
+        wheel.schedule("outer", 300);
+        wheel.schedule("overflow", 2000);
+        wheel.schedule("far-overflow", 7000);
+
+        assertTrue(wheel.advance(299).isEmpty());
+        assertEquals(Collections.singletonList("outer"), wheel.advance(300));
+        assertTrue(wheel.advance(1999).isEmpty());
+        assertEquals(Collections.singletonList("overflow"), wheel.advance(2005));
+        assertTrue(wheel.advance(6999).isEmpty());
+        assertEquals(Collections.singletonList("far-overflow"), wheel.advance(7000));
+    }
+
+    @Test
+    public void testRandomDeadlines() {
+        HealthCheckTimingWheel<Integer> wheel = new HealthCheckTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        Random random = new Random(1);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            long deadline = TICK + random.nextInt(10_000);
+            deadlines.put(i, deadline);
+            wheel.schedule(i, deadline);
+        }
+
+        int returned = 0;
+        long previous = 0;
+        for (long now = 0; now <= 10_000 + TICK; now += 1 + random.nextInt(200)) {
+            List<Integer> due = wheel.advance(now);
+            for (Integer item : due) {
+                long deadline = deadlines.get(item);
+                // returned on the first advance past the tick of the deadline
+                assertTrue(deadline / TICK <= now / TICK);
+                assertTrue(deadline / TICK > previous / TICK);
+            }
+            returned += due.size();
+            previous = now;
+        }
+        returned += wheel.advance(20_000).size();
+        assertEquals(1000, returned);
+        assertEquals(0, wheel.size());
+    }
+}
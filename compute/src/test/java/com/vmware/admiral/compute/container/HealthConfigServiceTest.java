@@ -12,7 +12,6 @@
 package com.vmware.admiral.compute.container;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
 
 import java.net.ServerSocket;
 import java.net.URI;
@@ -35,8 +34,6 @@ import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.xenon.common.FactoryService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service.Action;
-import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 
@@ -495,13 +492,6 @@ public class HealthConfigServiceTest extends ComputeBaseTest {
         return healthConfig;
     }
 
-    private ContainerStats getContainerStats(String containerLink) throws Throwable {
-        ServiceStats serviceStats = getDocument(ServiceStats.class, containerLink
-                + ServiceHost.SERVICE_URI_SUFFIX_STATS);
-        assertNotNull(serviceStats);
-        return ContainerStats.transform(serviceStats);
-    }
-
     private static class TestHealthService extends StatelessService {
         public static final String SELF_LINK = "/health-test";
 
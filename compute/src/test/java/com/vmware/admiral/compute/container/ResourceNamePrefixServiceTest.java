@@ -16,15 +16,23 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vmware.admiral.service.common.ResourceNamePrefixAllocationService;
+import com.vmware.admiral.service.common.ResourceNamePrefixAllocationService.NamePrefixAllocationRequest;
 import com.vmware.admiral.service.common.ResourceNamePrefixService;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRequest;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixResponse;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NumberBlockLeaseRequest;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NumberBlockLeaseResponse;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.ResourceNamePrefixState;
 import com.vmware.xenon.common.FactoryService;
 import com.vmware.xenon.common.Operation;
@@ -210,6 +218,70 @@ public class ResourceNamePrefixServiceTest extends ComputeBaseTest {
         }
     }
 
+    @Test
+    public void testLeaseNumberBlock() throws Throwable {
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state.numberOfDigits = 3;
+        state.nextNumber = 990;
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+
+        NumberBlockLeaseResponse lease = leaseBlock(state, 5);
+        assertEquals(state.prefix, lease.prefix);
+        assertEquals(990, lease.firstNumber);
+        assertEquals(5, lease.count);
+
+        // the block is truncated at the end of the sequence
+        lease = leaseBlock(state, 10);
+        assertEquals(995, lease.firstNumber);
+        assertEquals(5, lease.count);
+
+        // back to nextNumber
+        NamePrefixRequest request = new NamePrefixRequest();
+        request.resourceCount = 1;
+        assertEquals(state.prefix + state.nextNumber,
+                patch(state, request).resourceNamePrefixes.get(0));
+    }
+
+    @Test
+    public void testAllocationFromLeasedBlocks() throws Throwable {
+        waitForServiceAvailability(ResourceNamePrefixAllocationService.SELF_LINK);
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state.numberOfDigits = 5;
+        state.nextNumber = 10;
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+
+        // concurrent allocations share the leased blocks and get unique prefixes
+        int allocations = 20;
+        int resourceCount = 15;
+        List<Operation> ops = new ArrayList<>();
+        for (int i = 0; i < allocations; i++) {
+            NamePrefixAllocationRequest request = new NamePrefixAllocationRequest();
+            request.resourceNamePrefixLink = state.documentSelfLink;
+            request.resourceCount = resourceCount;
+            ops.add(Operation.createPost(host, ResourceNamePrefixAllocationService.SELF_LINK)
+                    .setBody(request));
+        }
+        Set<String> prefixes = new HashSet<>();
+        for (Operation op : host.getTestRequestSender().sendAndWait(ops)) {
+            List<String> allocated = op.getBody(NamePrefixResponse.class).resourceNamePrefixes;
+            assertEquals(resourceCount, allocated.size());
+            prefixes.addAll(allocated);
+        }
+        assertEquals(allocations * resourceCount, prefixes.size());
+
+        // numbers are leased from the document in blocks
+        NumberBlockLeaseResponse lease = leaseBlock(state, 1);
+        assertEquals(0, (lease.firstNumber - state.nextNumber) % 100);
+        assertTrue(lease.firstNumber >= state.nextNumber + allocations * resourceCount);
+    }
+
+    private NumberBlockLeaseResponse leaseBlock(ResourceNamePrefixState state, long blockSize) {
+        return host.getTestRequestSender().sendAndWait(Operation
+                .createPatch(host, state.documentSelfLink)
+                .setBody(NumberBlockLeaseRequest.create(blockSize)))
+                .getBody(NumberBlockLeaseResponse.class);
+    }
+
     private void validateIllegalArgument(ResourceNamePrefixState state, String expecation)
             throws Throwable {
         validateLocalizableException(() -> {
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsStore.Samples;
+
+/**
+ * Tests for the {@link ContainerStatsStore} class.
+ */
+public class ContainerStatsStoreTest {
+
+    private static final String CONTAINER_LINK = "/resources/containers/test";
+    private static final long ROLLUP_INTERVAL = 100;
+
+    @Test
+    public void testRawSamplesRing() {
+        ContainerStatsStore store = new ContainerStatsStore(3, 10, ROLLUP_INTERVAL);
+        assertNull(store.query(CONTAINER_LINK, 0, Long.MAX_VALUE, false));
+
+        for (int i = 1; i <= 5; i++) {
+            store.record(CONTAINER_LINK, i * 10, cpuStats(i));
+        }
+
+        // only the last 3 samples are kept
+        Samples samples = store.query(CONTAINER_LINK, 0, Long.MAX_VALUE, false);
+        assertArrayEquals(new long[] { 30, 40, 50 }, samples.timesMicros);
+        assertArrayEquals(new double[] { 3, 4, 5 }, samples.values[0], 0);
+        // the memory is not reported
+        assertTrue(Double.isNaN(samples.values[1][0]));
+
+        samples = store.query(CONTAINER_LINK, 35, 45, false);
+        assertArrayEquals(new long[] { 40 }, samples.timesMicros);
+    }
+
+    @Test
+    public void testRingsGrowUpToCapacity() {
+        ContainerStatsStore store = new ContainerStatsStore(100, 50, ROLLUP_INTERVAL);
+        store.record(CONTAINER_LINK, 10, cpuStats(1));
+        // the rings are allocated small and not for the whole retention
+        assertEquals(32, store.capacity(CONTAINER_LINK));
+
+        for (int i = 2; i <= 250; i++) {
+            store.record(CONTAINER_LINK, i * 10, cpuStats(i));
+        }
+        // the raw ring is full, the rollup ring only grew to the 25 completed rollups
+        assertEquals(100 + 32, store.capacity(CONTAINER_LINK));
+
+        // the samples recorded while growing are kept in order
+        Samples samples = store.query(CONTAINER_LINK, 0, Long.MAX_VALUE, false);
+        assertEquals(100, samples.timesMicros.length);
+        assertEquals(1510, samples.timesMicros[0]);
+        assertEquals(2500, samples.timesMicros[99]);
+        assertEquals(151, samples.values[0][0], 0);
+        assertEquals(250, samples.values[0][99], 0);
+        assertEquals(26, store.query(CONTAINER_LINK, 0, Long.MAX_VALUE, true)
+                .timesMicros.length);
+    }
+
+    @Test
+    public void testLatestStats() {
+        ContainerStatsStore store = new ContainerStatsStore(3, 10, ROLLUP_INTERVAL);
+        assertNull(store.getLatest(CONTAINER_LINK));
+
+        ContainerStats health = new ContainerStats();
+        health.healthCheckSuccess = true;
+        health.healthSuccessCount = 2;
+        store.record(CONTAINER_LINK, 20, health);
+        // an older sample does not replace the latest stats
+        store.record(CONTAINER_LINK, 10, cpuStats(1));
+
+        assertEquals(2, store.getLatest(CONTAINER_LINK).healthSuccessCount);
+        assertEquals(20, store.getLatestTime(CONTAINER_LINK));
+    }
+
+    @Test
+    public void testRollups() {
+        ContainerStatsStore store = new ContainerStatsStore(100, 10, ROLLUP_INTERVAL);
+        store.record(CONTAINER_LINK, 110, cpuStats(1));
+        store.record(CONTAINER_LINK, 150, cpuStats(3));
+        ContainerStats health = new ContainerStats();
+        health.healthCheckSuccess = true;
+        store.record(CONTAINER_LINK, 160, health);
+        store.record(CONTAINER_LINK, 220, cpuStats(10));
+
+        Samples samples = store.query(CONTAINER_LINK, 0, Long.MAX_VALUE, true);
+        // the bucket being filled is included
+        assertArrayEquals(new long[] { 100, 200 }, samples.timesMicros);
+        assertArrayEquals(new double[] { 2, 10 }, samples.values[0], 0);
+        assertEquals(1, samples.values[5][0], 0);
+        assertTrue(Double.isNaN(samples.values[5][1]));
+    }
+
+    @Test
+    public void testWriteAndReadRollups() throws Exception {
+        ContainerStatsStore store = new ContainerStatsStore(100, 10, ROLLUP_INTERVAL);
+        for (int i = 0; i < 5; i++) {
+            store.record(CONTAINER_LINK, i * ROLLUP_INTERVAL, cpuStats(i + 1));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            store.writeRollups(out);
+        }
+
+        ContainerStatsStore loaded = new ContainerStatsStore(100, 10, ROLLUP_INTERVAL);
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            loaded.readRollups(in);
+        }
+
+        // the last bucket was not completed and is not persisted
+        Samples samples = loaded.query(CONTAINER_LINK, 0, Long.MAX_VALUE, true);
+        assertArrayEquals(new long[] { 0, 100, 200, 300 }, samples.timesMicros);
+        assertArrayEquals(new double[] { 1, 2, 3, 4 }, samples.values[0], 0);
+        assertEquals(0, loaded.query(CONTAINER_LINK, 0, Long.MAX_VALUE, false)
+                .timesMicros.length);
+
+        assertEquals(1, loaded.removeOlderThan(301));
+        assertEquals(0, loaded.size());
+    }
+
+    private static ContainerStats cpuStats(double cpuUsage) {
+        ContainerStats stats = new ContainerStats();
+        stats.cpuUsage = cpuUsage;
+        return stats;
+    }
+}
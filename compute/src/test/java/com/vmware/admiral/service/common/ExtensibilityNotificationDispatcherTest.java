@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.service.common.ConfigurationService.ConfigurationFactoryService;
+import com.vmware.admiral.service.common.ExtensibilityNotificationDispatcher.ExtensibilityNotificationBatch;
+import com.vmware.admiral.service.common.ExtensibilityNotificationOutboxService.ExtensibilityNotification;
+import com.vmware.admiral.service.common.ExtensibilitySubscriptionService.ExtensibilitySubscription;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentQueryResult;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.TestRequestSender;
+
+public class ExtensibilityNotificationDispatcherTest extends BaseTestCase {
+
+    private static final String SUBSCRIBER_LINK = "/test-extensibility-subscriber";
+    private static final String TASK_LINK = "/test-extensibility-task";
+
+    private TestRequestSender sender;
+    private ExtensibilitySubscriptionManager manager;
+    private TestSubscriberService subscriber;
+    private TestTaskService taskService;
+
+    @Before
+    public void setUp() throws Throwable {
+        sender = host.getTestRequestSender();
+
+        host.startServiceAndWait(ConfigurationFactoryService.class,
+                ConfigurationFactoryService.SELF_LINK);
+        host.startFactory(new ExtensibilityNotificationOutboxService());
+        waitForServiceAvailability(ExtensibilityNotificationOutboxService.FACTORY_LINK);
+
+        manager = new ExtensibilitySubscriptionManager();
+        host.startServiceAndWait(manager, ExtensibilitySubscriptionManager.SELF_LINK, null);
+
+        subscriber = new TestSubscriberService();
+        host.startServiceAndWait(subscriber, SUBSCRIBER_LINK, null);
+
+        taskService = new TestTaskService();
+        host.startServiceAndWait(taskService, TASK_LINK, null);
+    }
+
+    @Test
+    public void testSingleDelivery() throws Throwable {
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        ExtensibilitySubscription subscription = createSubscription(false);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.enqueue(subscription, createBody("/task/" + i), "/task/" + i);
+        }
+
+        waitFor(() -> subscriber.received().size() == 5);
+        assertEquals(5, subscriber.requestCount());
+        waitFor(() -> getOutboxCount() == 0);
+    }
+
+    @Test
+    public void testBatchDelivery() throws Throwable {
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        ExtensibilitySubscription subscription = createSubscription(true);
+
+        for (int i = 0; i < 20; i++) {
+            dispatcher.enqueue(subscription, createBody("/task/" + i), "/task/" + i);
+        }
+
+        waitFor(() -> subscriber.received().size() == 20);
+        List<String> received = subscriber.received();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(received.contains("/task/" + i));
+        }
+        assertTrue(subscriber.requestCount() <= 20);
+        waitFor(() -> getOutboxCount() == 0);
+    }
+
+    @Test
+    public void testLoadPending() throws Throwable {
+        ExtensibilityNotification notification = new ExtensibilityNotification();
+        notification.callbackReference = UriUtils.buildUri(host, SUBSCRIBER_LINK);
+        notification.payloadJson = "{\"documentSelfLink\":\"/task/pending\"}";
+        notification.nodeId = host.getId();
+        notification.taskLink = "/task/pending";
+        sender.sendPostAndWait(
+                UriUtils.buildUri(host, ExtensibilityNotificationOutboxService.FACTORY_LINK),
+                notification, ExtensibilityNotification.class);
+
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        dispatcher.loadPending();
+
+        waitFor(() -> subscriber.received().contains("/task/pending"));
+        waitFor(() -> getOutboxCount() == 0);
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws Throwable {
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        dispatcher.retryWaitMillis = 200;
+        subscriber.failNext(2);
+
+        dispatcher.enqueue(createSubscription(false), createBody("/task/retry"), "/task/retry");
+
+        waitFor(() -> subscriber.received().contains("/task/retry"));
+        assertEquals(3, subscriber.requestCount());
+        List<Long> times = subscriber.requestTimes();
+        // the wait doubles after each failure
+        assertTrue(times.get(1) - times.get(0) >= 200);
+        assertTrue(times.get(2) - times.get(1) >= 400);
+        waitFor(() -> getOutboxCount() == 0);
+        assertTrue(taskService.failures().isEmpty());
+    }
+
+    @Test
+    public void testDeliveryFailure() throws Throwable {
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        dispatcher.retryWaitMillis = 50;
+        subscriber.failNext(Integer.MAX_VALUE);
+
+        dispatcher.enqueue(createSubscription(false), createBody("/task/failed"), TASK_LINK);
+
+        // the task is failed once all attempts are used and the entry is removed
+        waitFor(() -> taskService.failures().size() == 1);
+        assertEquals(TaskStage.FAILED, taskService.failures().get(0).taskInfo.stage);
+        assertEquals(3, subscriber.requestCount());
+        assertTrue(subscriber.received().isEmpty());
+        waitFor(() -> getOutboxCount() == 0);
+    }
+
+    @Test
+    public void testLoadPendingDoesNotQueueTwice() throws Throwable {
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        subscriber.hold(true);
+
+        // enqueued while the pending notifications are loaded on start
+        dispatcher.enqueue(createSubscription(false), createBody("/task/enqueued"),
+                "/task/enqueued");
+        waitFor(() -> subscriber.heldCount() == 1);
+        waitFor(() -> getOutboxCount() == 1);
+        waitForCompletion(dispatcher.loadPending());
+        waitForCompletion(dispatcher.loadPending());
+
+        Thread.sleep(500);
+        assertEquals(1, subscriber.heldCount());
+        subscriber.hold(false);
+        waitFor(() -> getOutboxCount() == 0);
+        assertEquals(Collections.singletonList("/task/enqueued"), subscriber.received());
+    }
+
+    @Test
+    public void testReclaimOrphaned() throws Throwable {
+        createOutboxEntry("/task/orphaned", "node-which-left");
+        createOutboxEntry("/task/local", host.getId());
+
+        ExtensibilityNotificationDispatcher dispatcher =
+                new ExtensibilityNotificationDispatcher(manager);
+        waitForCompletion(dispatcher.reclaimOrphaned());
+
+        waitFor(() -> subscriber.received().contains("/task/orphaned"));
+        waitFor(() -> getOutboxCount() == 1);
+        // the entries of available nodes are left to them
+        assertEquals(Collections.singletonList("/task/orphaned"), subscriber.received());
+
+        // claimed only once
+        waitForCompletion(dispatcher.reclaimOrphaned());
+        Thread.sleep(500);
+        assertEquals(1, subscriber.requestCount());
+    }
+
+    private void createOutboxEntry(String taskLink, String nodeId) {
+        ExtensibilityNotification notification = new ExtensibilityNotification();
+        notification.callbackReference = UriUtils.buildUri(host, SUBSCRIBER_LINK);
+        notification.payloadJson = "{\"documentSelfLink\":\"" + taskLink + "\"}";
+        notification.nodeId = nodeId;
+        notification.taskLink = taskLink;
+        sender.sendPostAndWait(
+                UriUtils.buildUri(host, ExtensibilityNotificationOutboxService.FACTORY_LINK),
+                notification, ExtensibilityNotification.class);
+    }
+
+    private void waitForCompletion(DeferredResult<Void> result) {
+        TestContext ctx = testCreate(1);
+        result.whenComplete((ignore, e) -> {
+            if (e != null) {
+                ctx.fail(e);
+                return;
+            }
+            ctx.complete();
+        });
+        ctx.await();
+    }
+
+    private long getOutboxCount() {
+        ServiceDocumentQueryResult result = sender.sendAndWait(
+                Operation.createGet(host, ExtensibilityNotificationOutboxService.FACTORY_LINK),
+                ServiceDocumentQueryResult.class);
+        return result.documentCount;
+    }
+
+    private ExtensibilitySubscription createSubscription(boolean batchDelivery) {
+        ExtensibilitySubscription subscription = new ExtensibilitySubscription();
+        subscription.task = "task";
+        subscription.stage = "stage";
+        subscription.substage = "substage";
+        subscription.blocking = false;
+        subscription.batchDelivery = batchDelivery;
+        subscription.callbackReference = UriUtils.buildUri(host, SUBSCRIBER_LINK);
+        return subscription;
+    }
+
+    private static ServiceDocument createBody(String link) {
+        ServiceDocument body = new ServiceDocument();
+        body.documentSelfLink = link;
+        return body;
+    }
+
+    private static class TestSubscriberService extends StatelessService {
+        private final List<String> received = new ArrayList<>();
+        private final List<Long> requestTimes = new ArrayList<>();
+        private final List<Operation> held = new ArrayList<>();
+        private int requestCount;
+        private int failures;
+        private boolean hold;
+
+        @Override
+        public void handlePost(Operation post) {
+            synchronized (this) {
+                requestCount++;
+                requestTimes.add(System.currentTimeMillis());
+                if (failures > 0) {
+                    failures--;
+                    post.fail(Operation.STATUS_CODE_INTERNAL_ERROR);
+                    return;
+                }
+                if (hold) {
+                    held.add(post);
+                    return;
+                }
+            }
+            accept(post);
+        }
+
+        private void accept(Operation post) {
+            ServiceDocument body = post.getBody(ServiceDocument.class);
+            synchronized (this) {
+                if (ExtensibilityNotificationBatch.KIND.equals(body.documentKind)) {
+                    ExtensibilityNotificationBatch batch = post.getBody(
+                            ExtensibilityNotificationBatch.class);
+                    for (JsonObject notification : batch.notifications) {
+                        received.add(notification.get("documentSelfLink").getAsString());
+                    }
+                } else {
+                    received.add(body.documentSelfLink);
+                }
+            }
+            post.complete();
+        }
+
+        synchronized List<String> received() {
+            return Collections.unmodifiableList(new ArrayList<>(received));
+        }
+
+        synchronized int requestCount() {
+            return requestCount;
+        }
+
+        synchronized List<Long> requestTimes() {
+            return new ArrayList<>(requestTimes);
+        }
+
+        synchronized void failNext(int count) {
+            failures = count;
+        }
+
+        synchronized int heldCount() {
+            return held.size();
+        }
+
+        void hold(boolean hold) {
+            List<Operation> release;
+            synchronized (this) {
+                this.hold = hold;
+                release = new ArrayList<>(held);
+                if (!hold) {
+                    held.clear();
+                }
+            }
+            if (!hold) {
+                release.forEach(this::accept);
+            }
+        }
+    }
+
+    private static class TestTaskService extends StatelessService {
+        private final List<ServiceTaskCallbackResponse> failures = new ArrayList<>();
+
+        @Override
+        public void handlePatch(Operation patch) {
+            synchronized (this) {
+                failures.add(patch.getBody(ServiceTaskCallbackResponse.class));
+            }
+            patch.complete();
+        }
+
+        synchronized List<ServiceTaskCallbackResponse> failures() {
+            return new ArrayList<>(failures);
+        }
+    }
+}
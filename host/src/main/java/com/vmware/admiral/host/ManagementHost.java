@@ -11,6 +11,8 @@
 
 package com.vmware.admiral.host;
 
+import static com.vmware.admiral.host.StartupGraph.dependsOn;
+
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -37,11 +39,15 @@ import com.vmware.admiral.auth.project.ProjectFactoryService;
 import com.vmware.admiral.auth.project.ProjectService;
 import com.vmware.admiral.auth.util.AuthUtil;
 import com.vmware.admiral.common.SwaggerDocumentation;
+import com.vmware.admiral.common.metrics.MetricRegistry;
 import com.vmware.admiral.common.serialization.ReleaseConstants;
 import com.vmware.admiral.common.util.AuthUtils;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.SecurityUtils;
 import com.vmware.admiral.common.util.ServerX509TrustManager;
+import com.vmware.admiral.compute.container.CompositeDescriptionFactoryService;
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService;
 import com.vmware.admiral.host.interceptor.AuthCredentialsInterceptor;
 import com.vmware.admiral.host.interceptor.InUsePlacementZoneInterceptor;
 import com.vmware.admiral.host.interceptor.OperationInterceptorRegistry;
@@ -54,6 +60,8 @@ import com.vmware.admiral.service.common.ConfigurationService;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionManager;
 import com.vmware.admiral.service.common.NodeMigrationService;
+import com.vmware.admiral.service.common.StartupReportService;
+import com.vmware.admiral.service.common.TaskServiceDocument;
 import com.vmware.admiral.service.common.harbor.HostInitHarborServices;
 import com.vmware.admiral.upgrade.transformation.ProjectsTransformationBootstrapService;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
@@ -75,7 +83,9 @@ import com.vmware.xenon.common.http.netty.NettyHttpServiceClient;
 import com.vmware.xenon.services.common.LegacyMigrationTaskService;
 import com.vmware.xenon.services.common.MigrationTaskService;
 import com.vmware.xenon.services.common.ServiceUriPaths;
+import com.vmware.xenon.services.rdbms.PostgresDocumentIndexService;
 import com.vmware.xenon.services.rdbms.PostgresSchemaManager;
+import com.vmware.xenon.services.rdbms.PostgresSchemaManager.TableDescription;
 import com.vmware.xenon.services.rdbms.PostgresServiceHost;
 import com.vmware.xenon.swagger.SwaggerDescriptorService;
 
@@ -84,6 +94,13 @@ import com.vmware.xenon.swagger.SwaggerDescriptorService;
  */
 public class ManagementHost extends PostgresServiceHost implements IExtensibilityRegistryHost {
 
+    private static final String STARTUP_GROUP_COMPUTE = "compute";
+
+    private static final String METRIC_INDEX_QUERY_QUEUE_DEPTH =
+            "admiral_index_query_queue_depth";
+    private static final String METRIC_INDEX_UPDATE_QUEUE_DEPTH =
+            "admiral_index_update_queue_depth";
+
     private static final long TIME_DRIFT_THRESHOLD_MICROS = Long.getLong(
             "com.vmware.admiral.host.ManagementHost.time.drift.threshold.micros",
             TimeUnit.MINUTES.toMicros(10));
@@ -195,6 +212,7 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
         startClosureServices(this, startMockHostAdapterInstance);
         startSwaggerService();
         startCustomSwaggerService();
+        registerIndexMetrics();
 
         log(Level.INFO, "**** Management host started. ****");
 
@@ -273,23 +291,57 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
                     && StatefulService.class.isAssignableFrom(serviceMetadata.serviceClass)) {
                 try {
                     if (serviceMetadata.factoryCreator != null) {
-                        sm.addFactory((StatefulService) serviceMetadata.factoryCreator.get()
-                                .createServiceInstance());
+                        StatefulService service = (StatefulService) serviceMetadata.factoryCreator
+                                .get().createServiceInstance();
+                        sm.addTable(td -> expireTasksInBatches(td.useStatefulService(service)));
                     } else {
-                        sm.addFactory(
-                                (Class<? extends StatefulService>) serviceMetadata.serviceClass);
+                        sm.addTable(td -> expireTasksInBatches(td.useStatefulService(
+                                (Class<? extends StatefulService>) serviceMetadata.serviceClass)));
                     }
                 } catch (Throwable e) {
                     log(Level.SEVERE, "Cannot register service factory for %s: %s",
                             serviceMetadata.serviceClass.getCanonicalName(), Utils.toString(e));
                 }
             } else if (FactoryService.class.isAssignableFrom(serviceMetadata.serviceClass)) {
-                sm.addCustomFactory((Class<? extends FactoryService>) serviceMetadata.serviceClass);
+                sm.addTable(td -> expireTasksInBatches(td.useFactoryService(
+                        (Class<? extends FactoryService>) serviceMetadata.serviceClass)));
             }
         }
         super.registerPostgresSchema(sm);
     }
 
+    /**
+     * Task documents are many and short-lived, so their expired documents are deleted in batches.
+     */
+    private static void expireTasksInBatches(TableDescription td) {
+        td.setExpireInBatches(TaskServiceDocument.class.isAssignableFrom(td.getStateType()));
+    }
+
+    /**
+     * Exposes the depth of the Postgres index queues through the {@link MetricRegistry}.
+     */
+    private void registerIndexMetrics() {
+        PostgresDocumentIndexService indexService = getPostgresDocumentIndexService();
+        if (indexService == null) {
+            return;
+        }
+        MetricRegistry registry = MetricRegistry.getDefault();
+        registry.gauge(METRIC_INDEX_QUERY_QUEUE_DEPTH,
+                "Number of queries waiting for a document index thread.",
+                indexService::getQueryQueueDepth, "host", getId());
+        registry.gauge(METRIC_INDEX_UPDATE_QUEUE_DEPTH,
+                "Number of updates waiting for a document index thread.",
+                indexService::getUpdateQueueDepth, "host", getId());
+    }
+
+    @Override
+    public void stop() {
+        MetricRegistry registry = MetricRegistry.getDefault();
+        registry.unregister(METRIC_INDEX_QUERY_QUEUE_DEPTH, "host", getId());
+        registry.unregister(METRIC_INDEX_UPDATE_QUEUE_DEPTH, "host", getId());
+        super.stop();
+    }
+
     protected void startFabricServices() throws Throwable {
         this.log(Level.INFO, "Fabric services starting ...");
         HostInitPhotonModelServiceConfig.startServices(this);
@@ -338,19 +390,53 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
         registerForServiceAvailability(CaSigningCertService.startTask(this), true,
                 CaSigningCertService.FACTORY_LINK);
 
-        HostInitComputeServicesConfig.startServices(this, false);
-        HostInitComputeBackgroundServicesConfig.startServices(this);
-        HostInitRequestServicesConfig.startServices(this);
-        HostInitImageServicesConfig.startServices(this);
-        HostInitUiServicesConfig.startServices(this);
-        HostInitHarborServices.startServices(this, startMockHostAdapterInstance);
-        HostInitDockerAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitKubernetesAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitRegistryAdapterServiceConfig.startServices(this);
+        // the groups start in the background, like the factories they start
+        StartupGraph graph = createManagementStartupGraph();
+        graph.start().whenComplete((report, e) -> {
+            if (e != null) {
+                this.log(Level.SEVERE, "Failed to start management services: %s",
+                        Utils.toString(e));
+            }
+        });
+        startService(Operation.createPost(UriUtils.buildUri(this,
+                StartupReportService.SELF_LINK)), new StartupReportService(graph.getReport()));
 
         this.log(Level.INFO, "Management services started.");
     }
 
+    /**
+     * The management services grouped by the config starting them. The services of the compute
+     * group are the base of the others, the rest are started concurrently once it is available.
+     * Host start does not wait for the groups.
+     */
+    protected StartupGraph createManagementStartupGraph() {
+        return new StartupGraph(this)
+                .add(STARTUP_GROUP_COMPUTE,
+                        () -> HostInitComputeServicesConfig.startServices(this, false),
+                        ContainerFactoryService.SELF_LINK,
+                        CompositeDescriptionFactoryService.SELF_LINK,
+                        GroupResourcePlacementService.FACTORY_LINK)
+                .add("compute-background", dependsOn(STARTUP_GROUP_COMPUTE),
+                        () -> HostInitComputeBackgroundServicesConfig.startServices(this))
+                .add("request", dependsOn(STARTUP_GROUP_COMPUTE),
+                        () -> HostInitRequestServicesConfig.startServices(this))
+                .add("image", dependsOn(STARTUP_GROUP_COMPUTE),
+                        () -> HostInitImageServicesConfig.startServices(this))
+                .add("ui",
+                        () -> HostInitUiServicesConfig.startServices(this))
+                .add("harbor",
+                        () -> HostInitHarborServices.startServices(this,
+                                startMockHostAdapterInstance))
+                .add("docker-adapter", dependsOn(STARTUP_GROUP_COMPUTE),
+                        () -> HostInitDockerAdapterServiceConfig.startServices(this,
+                                startMockHostAdapterInstance))
+                .add("kubernetes-adapter", dependsOn(STARTUP_GROUP_COMPUTE),
+                        () -> HostInitKubernetesAdapterServiceConfig.startServices(this,
+                                startMockHostAdapterInstance))
+                .add("registry-adapter",
+                        () -> HostInitRegistryAdapterServiceConfig.startServices(this));
+    }
+
     /**
      * Start Swagger service.
      */
@@ -29,6 +29,7 @@ import com.vmware.xenon.services.common.AuthCredentialsService;
 import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
 import com.vmware.xenon.services.common.QueryTask;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 import com.vmware.xenon.services.common.ServiceUriPaths;
 
 /**
@@ -74,24 +75,31 @@ public class AuthCredentialsInterceptor {
     }
 
     public static DeferredResult<Void> handleDelete(Service service, Operation op) {
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(ComputeState.class,
+                QuerySpecification.buildCompositeFieldName(
+                        ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        ComputeConstants.HOST_AUTH_CREDENTIALS_PROP_NAME),
+                service.getSelfLink());
+        // the first match is enough to know the credentials are in use
+        queryTask.querySpec.options.add(QueryOption.TOP_RESULTS);
+        queryTask.querySpec.resultLimit = 1;
+
         DeferredResult<Void> dr = new DeferredResult<>();
         service.sendRequest(Operation.createPost(service, ServiceUriPaths.CORE_QUERY_TASKS)
-                .setBody(QueryUtil.addCountOption(QueryUtil.buildPropertyQuery(ComputeState.class,
-                        QuerySpecification.buildCompositeFieldName(
-                                ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
-                                ComputeConstants.HOST_AUTH_CREDENTIALS_PROP_NAME),
-                        service.getSelfLink())))
+                .setBody(queryTask)
                 .setCompletion((o, e) -> {
                     if (e != null) {
                         service.getHost().log(Level.WARNING, Utils.toString(e));
                         dr.fail(e);
+                        return;
                     }
                     ServiceDocumentQueryResult result = o.getBody(QueryTask.class).results;
-                    if (result.documentCount != 0) {
-                        op.fail(new LocalizableValidationException(CREDENTIALS_IN_USE_MESSAGE,
+                    if (result.documentLinks != null && !result.documentLinks.isEmpty()) {
+                        dr.fail(new LocalizableValidationException(CREDENTIALS_IN_USE_MESSAGE,
                                 CREDENTIALS_IN_USE_MESSAGE_CODE));
+                    } else {
+                        dr.complete(null);
                     }
-                    dr.complete(null);
                 }));
         return dr;
     }
@@ -23,6 +23,7 @@ import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.Service.Action;
 import com.vmware.xenon.common.ServiceDocumentQueryResult;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 
 /**
  * Prevent deletion of {@link ResourcePoolState} if its in use by a {@link ComputeState}.
@@ -49,12 +50,14 @@ public class InUsePlacementZoneInterceptor {
             return null;
         }
 
-        QueryUtil.addCountOption(queryTask);
+        // the first match is enough to know the placement zone is in use
+        queryTask.querySpec.options.add(QueryOption.TOP_RESULTS);
+        queryTask.querySpec.resultLimit = 1;
 
         return QueryUtils.startQueryTask(service, queryTask)
                 .thenAccept(qt -> {
                     ServiceDocumentQueryResult result = qt.results;
-                    if (result.documentCount != 0) {
+                    if (result.documentLinks != null && !result.documentLinks.isEmpty()) {
                         throw new LocalizableValidationException(
                                 PLACEMENT_ZONE_IN_USE_MESSAGE,
                                 PLACEMENT_ZONE_IN_USE_MESSAGE_CODE);
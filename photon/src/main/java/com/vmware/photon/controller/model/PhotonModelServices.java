@@ -19,6 +19,7 @@ import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.DiskService;
 import com.vmware.photon.controller.model.resources.EndpointService;
 import com.vmware.photon.controller.model.resources.FirewallService;
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService;
 import com.vmware.photon.controller.model.resources.IPAddressService;
 import com.vmware.photon.controller.model.resources.ImageService;
 import com.vmware.photon.controller.model.resources.LoadBalancerDescriptionService;
@@ -57,6 +58,7 @@ public class PhotonModelServices {
             factoryService(SubnetService.class),
             factoryService(SubnetRangeService.class),
             factoryService(IPAddressService.class),
+            factoryService(IPAddressAllocationService.class),
             factoryService(ResourceGroupService.class),
             factoryService(NetworkService.class),
             factoryService(FirewallService.class),
@@ -105,6 +107,7 @@ public class PhotonModelServices {
         host.startFactory(new SubnetService());
         host.startFactory(new SubnetRangeService());
         host.startFactory(new IPAddressService());
+        host.startFactory(new IPAddressAllocationService());
         host.startFactory(new ResourceGroupService());
         host.startFactory(new NetworkService());
         host.startFactory(new FirewallService());
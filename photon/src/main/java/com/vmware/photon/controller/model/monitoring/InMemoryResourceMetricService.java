@@ -13,7 +13,6 @@ package com.vmware.photon.controller.model.monitoring;
 
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.TimeUnit;
 
 import com.vmware.photon.controller.model.UriPaths;
 import com.vmware.xenon.common.FactoryService;
@@ -62,17 +61,80 @@ public class InMemoryResourceMetricService extends StatefulService {
             if (currentStats == null) {
                 currentState.timeSeriesStats.put(tsStats.getKey(), tsStats.getValue());
             } else {
-                for (Entry<Long, TimeBin> bin : tsStats.getValue().bins.entrySet()) {
-                    for (int i = 0; i < bin.getValue().count; i++) {
-                        currentStats.add(TimeUnit.MILLISECONDS.toMicros(bin.getKey()), bin.getValue().avg, bin.getValue().avg);
-                    }
-                }
+                merge(currentStats, tsStats.getValue());
             }
         }
         setState(put, currentState);
         put.setBody(null).complete();
     }
 
+    /**
+     * Merges the bins of the source stats into the target stats. Bins with the same start are
+     * combined from their count, average, variance, sum, min and max, so the cost is linear in the
+     * number of bins and not in the number of samples, and the aggregates stay exact.
+     */
+    static void merge(TimeSeriesStats target, TimeSeriesStats source) {
+        for (Entry<Long, TimeBin> sourceBin : source.bins.entrySet()) {
+            long binKey = (sourceBin.getKey() / target.binDurationMillis)
+                    * target.binDurationMillis;
+            TimeBin targetBin = target.bins.get(binKey);
+            if (targetBin != null) {
+                merge(targetBin, sourceBin.getValue());
+                continue;
+            }
+            if (target.bins.size() >= target.numBins && binKey < target.bins.firstKey()) {
+                // older than the oldest bin which is kept
+                continue;
+            }
+            target.bins.put(binKey, copy(sourceBin.getValue()));
+            while (target.bins.size() > target.numBins) {
+                target.bins.remove(target.bins.firstKey());
+            }
+        }
+    }
+
+    private static void merge(TimeBin target, TimeBin source) {
+        if (target.avg == null || target.count == 0) {
+            target.avg = source.avg;
+            target.var = source.var;
+            target.count = source.count;
+        } else if (source.avg != null && source.count > 0) {
+            // parallel variant of the Welford algorithm used by TimeSeriesStats.add(),
+            // var holds the sum of the squared differences from the average
+            double count = target.count + source.count;
+            double delta = source.avg - target.avg;
+            target.avg = target.avg + delta * source.count / count;
+            target.var = (target.var != null ? target.var : 0)
+                    + (source.var != null ? source.var : 0)
+                    + delta * delta * target.count * source.count / count;
+            target.count = count;
+        }
+        if (source.sum != null) {
+            target.sum = target.sum != null ? target.sum + source.sum : source.sum;
+        }
+        if (source.min != null && (target.min == null || source.min < target.min)) {
+            target.min = source.min;
+        }
+        if (source.max != null && (target.max == null || source.max > target.max)) {
+            target.max = source.max;
+        }
+        if (source.latest != null) {
+            target.latest = source.latest;
+        }
+    }
+
+    private static TimeBin copy(TimeBin bin) {
+        TimeBin copy = new TimeBin();
+        copy.avg = bin.avg;
+        copy.var = bin.var;
+        copy.min = bin.min;
+        copy.max = bin.max;
+        copy.sum = bin.sum;
+        copy.latest = bin.latest;
+        copy.count = bin.count;
+        return copy;
+    }
+
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.resources;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.vmware.photon.controller.model.UriPaths;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryTop;
+import com.vmware.photon.controller.model.resources.SubnetRangeService.SubnetRangeState;
+import com.vmware.photon.controller.model.resources.util.PhotonModelUtils;
+import com.vmware.photon.controller.model.support.IPVersion;
+import com.vmware.photon.controller.model.util.AssertUtil;
+import com.vmware.photon.controller.model.util.IpHelper;
+import com.vmware.photon.controller.model.util.IpRangeTree;
+import com.vmware.xenon.common.LocalizableValidationException;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption;
+import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
+import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask.Query;
+
+/**
+ * Allocates the IP addresses of the statically assigned ranges of a subnet. There is one document
+ * per subnet, which also validates that the ranges of the subnet do not overlap.
+ *
+ * Instead of a document per address, the document keeps a bitmap of the used addresses of each
+ * range. The owner indexes the ranges with an interval tree and keeps their bitmaps in memory, so
+ * allocating and releasing an address takes amortized constant time. The indexes are rebuilt from
+ * the document when it was updated elsewhere, e.g. after an owner change.
+ *
+ * Released addresses are quarantined for {@link IPAddressAllocationState#quarantinePeriodMicros}
+ * before they are allocated again. The resources the addresses are allocated to are tracked by
+ * the {@link IPAddressService.IPAddressState}s of the callers.
+ *
+ * @see SubnetRangeService.SubnetRangeState
+ */
+public class IPAddressAllocationService extends StatefulService {
+    public static final String FACTORY_LINK = UriPaths.RESOURCES + "/ip-address-allocations";
+
+    public static final long DEFAULT_QUARANTINE_PERIOD_MICROS = Long.getLong(
+            UriPaths.PROPERTY_PREFIX + "ip.address.quarantine.period.micros",
+            TimeUnit.MINUTES.toMicros(5));
+
+    /**
+     * Maximum number of addresses allocated from a range. Only the first addresses of larger,
+     * e.g. IPv6, ranges are allocated.
+     */
+    public static final int MAX_RANGE_SIZE = Integer.getInteger(
+            UriPaths.PROPERTY_PREFIX + "ip.address.allocation.max.range.size", 1 << 16);
+
+    private static final int MAX_STATE_SIZE = 1024 * 1024; // 1MB
+
+    /**
+     * Represents the used addresses of the ranges of a subnet.
+     */
+    public static class IPAddressAllocationState extends ServiceDocument {
+
+        public static final String FIELD_NAME_SUBNET_LINK = "subnetLink";
+
+        /**
+         * Link to the subnet the ranges of which are allocated.
+         */
+        @Documentation(description = "Link to the subnet.")
+        @PropertyOptions(usage = {
+                PropertyUsageOption.REQUIRED,
+                PropertyUsageOption.SINGLE_ASSIGNMENT,
+                PropertyUsageOption.LINK
+                })
+        public String subnetLink;
+
+        /**
+         * Time a released IP address is not allocated again, in microseconds.
+         */
+        @Documentation(description = "Time a released IP address is not allocated again, in "
+                + "microseconds.")
+        public Long quarantinePeriodMicros;
+
+        /**
+         * Subnet range link to the used addresses of the range.
+         */
+        @Documentation(description = "Subnet range link to the used addresses of the range.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public Map<String, RangeAllocation> ranges;
+    }
+
+    /**
+     * Represents the used addresses of a subnet range, as offsets from its start address.
+     */
+    public static class RangeAllocation {
+        public String startIPAddress;
+
+        public String endIPAddress;
+
+        public IPVersion ipVersion;
+
+        /**
+         * DHCP ranges are checked for overlaps, but not allocated.
+         */
+        public Boolean isDHCP;
+
+        /**
+         * Base64 encoded bitmap of the allocated and quarantined addresses.
+         */
+        public String bitmap;
+
+        /**
+         * Offset of a released address in quarantine to its release time, in order of release.
+         */
+        public LinkedHashMap<Integer, Long> released;
+    }
+
+    public enum IPAddressAllocationRequestMode {
+        ALLOCATE,
+        RELEASE,
+        UPDATE_RANGE,
+        REMOVE_RANGE
+    }
+
+    /** A DTO used during PATCH operation in order to allocate IP addresses. */
+    public static class IPAddressAllocationRequest {
+        public IPAddressAllocationRequestMode mode;
+
+        /** Number of addresses to allocate. Default: 1. */
+        public Integer count;
+
+        /**
+         * The addresses to release. In the response, the allocated or released addresses.
+         */
+        public List<String> ipAddresses;
+
+        /** The range to allocate from, any range if not set, or the range to remove. */
+        public String subnetRangeLink;
+
+        /** The range to add or update. */
+        public SubnetRangeState subnetRange;
+    }
+
+    private static class RangeIndex {
+        private final BigInteger start;
+        private final int size;
+        private final BitSet used;
+        // all addresses before it are used
+        private int next;
+
+        private RangeIndex(BigInteger start, int size, BitSet used) {
+            this.start = start;
+            this.size = size;
+            this.used = used;
+        }
+
+        private int allocate() {
+            int offset = used.nextClearBit(next);
+            if (offset >= size) {
+                next = size;
+                return -1;
+            }
+            used.set(offset);
+            next = offset + 1;
+            return offset;
+        }
+
+        private void free(int offset) {
+            used.clear(offset);
+            next = Math.min(next, offset);
+        }
+    }
+
+    // indexes of the ranges of the document version in indexVersion
+    private Map<String, RangeIndex> rangeIndexes;
+    private IpRangeTree<String> rangeTree;
+    private long indexVersion = -1;
+
+    public IPAddressAllocationService() {
+        super(IPAddressAllocationState.class);
+        super.toggleOption(ServiceOption.PERSISTENCE, true);
+        super.toggleOption(ServiceOption.REPLICATION, true);
+        super.toggleOption(ServiceOption.OWNER_SELECTION, true);
+        super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
+    }
+
+    public static String getAllocationLink(String subnetLink) {
+        return UriUtils.buildUriPath(FACTORY_LINK, Service.getId(subnetLink));
+    }
+
+    /**
+     * Registers the existing ranges of the subnet, which are added before its allocation
+     * document is created.
+     */
+    @Override
+    public void handleCreate(Operation create) {
+        if (!checkForBody(create)) {
+            return;
+        }
+        IPAddressAllocationState state = create.getBody(IPAddressAllocationState.class);
+        try {
+            Utils.validateState(getStateDescription(), state);
+        } catch (Throwable t) {
+            create.fail(t);
+            return;
+        }
+        if (state.ranges == null) {
+            state.ranges = new HashMap<>();
+        }
+
+        Query query = Query.Builder.create()
+                .addKindFieldClause(SubnetRangeState.class)
+                .addFieldClause(SubnetRangeState.FIELD_NAME_SUBNET_LINK, state.subnetLink)
+                .build();
+        new QueryTop<>(getHost(), query, SubnetRangeState.class, null)
+                .collectDocuments(Collectors.toList())
+                .thenAccept(subnetRanges -> {
+                    for (SubnetRangeState subnetRange : subnetRanges) {
+                        state.ranges.putIfAbsent(subnetRange.documentSelfLink,
+                                toRangeAllocation(subnetRange));
+                    }
+                    create.setBody(state);
+                })
+                .whenCompleteNotify(create);
+    }
+
+    @Override
+    public void handlePut(Operation put) {
+        PhotonModelUtils.handleIdempotentPut(this, put);
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!checkForBody(patch)) {
+            return;
+        }
+
+        IPAddressAllocationState state = getState(patch);
+        try {
+            IPAddressAllocationRequest request = patch.getBody(IPAddressAllocationRequest.class);
+            AssertUtil.assertNotNull(request.mode, "mode");
+            switch (request.mode) {
+            case ALLOCATE:
+                allocate(state, request);
+                break;
+            case RELEASE:
+                release(state, request);
+                break;
+            case UPDATE_RANGE:
+                updateRange(state, request);
+                break;
+            case REMOVE_RANGE:
+                removeRange(state, request);
+                break;
+            default:
+                throw new UnsupportedOperationException(
+                        "This operation is not supported: " + request.mode);
+            }
+            // the indexes match the state this patch results in
+            indexVersion = state.documentVersion + 1;
+            patch.setBody(request).complete();
+        } catch (Throwable t) {
+            indexVersion = -1;
+            patch.fail(t);
+        }
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument td = super.getDocumentTemplate();
+        IPAddressAllocationState template = (IPAddressAllocationState) td;
+        template.quarantinePeriodMicros = DEFAULT_QUARANTINE_PERIOD_MICROS;
+        template.documentDescription.serializedStateSizeLimit = MAX_STATE_SIZE;
+        return template;
+    }
+
+    private void allocate(IPAddressAllocationState state, IPAddressAllocationRequest request) {
+        int count = request.count != null ? request.count : 1;
+        AssertUtil.assertTrue(count > 0, "count must be positive");
+        buildIndexes(state);
+
+        List<String> rangeLinks = request.subnetRangeLink != null
+                ? getRangeLinks(state, request.subnetRangeLink)
+                : rangeTree.values();
+        long now = Utils.getSystemNowMicrosUtc();
+
+        request.ipAddresses = new ArrayList<>(count);
+        Set<String> changedRanges = new HashSet<>();
+        for (String rangeLink : rangeLinks) {
+            RangeAllocation range = state.ranges.get(rangeLink);
+            if (Boolean.TRUE.equals(range.isDHCP)) {
+                continue;
+            }
+            RangeIndex index = rangeIndexes.get(rangeLink);
+            reclaimReleased(state, range, index, now);
+            for (int offset; request.ipAddresses.size() < count
+                    && (offset = index.allocate()) >= 0; ) {
+                request.ipAddresses.add(toIpAddress(range, index, offset));
+                changedRanges.add(rangeLink);
+            }
+            if (request.ipAddresses.size() == count) {
+                break;
+            }
+        }
+        if (request.ipAddresses.size() < count) {
+            // the indexes are rebuilt from the unchanged bitmaps
+            throw new LocalizableValidationException(
+                    String.format("There are not %d available IP addresses in subnet %s", count,
+                            state.subnetLink),
+                    "subnet.range.ip.unavailable", count, state.subnetLink);
+        }
+
+        changedRanges.forEach(l -> storeBitmap(state.ranges.get(l), rangeIndexes.get(l)));
+        logFine(() -> String.format("Allocated IP addresses %s of subnet %s",
+                request.ipAddresses, state.subnetLink));
+    }
+
+    private void release(IPAddressAllocationState state, IPAddressAllocationRequest request) {
+        AssertUtil.assertNotNull(request.ipAddresses, "ipAddresses");
+        buildIndexes(state);
+
+        long quarantinePeriod = getQuarantinePeriod(state);
+        long now = Utils.getSystemNowMicrosUtc();
+
+        List<String> released = new ArrayList<>();
+        Set<String> changedRanges = new HashSet<>();
+        for (String ipAddress : request.ipAddresses) {
+            BigInteger ip = IpHelper.ipStringToBigInteger(ipAddress);
+            String rangeLink = rangeTree.findOverlap(ip, ip);
+            if (rangeLink == null) {
+                continue;
+            }
+            RangeAllocation range = state.ranges.get(rangeLink);
+            RangeIndex index = rangeIndexes.get(rangeLink);
+            BigInteger offset = ip.subtract(index.start);
+            if (offset.compareTo(BigInteger.valueOf(index.size)) >= 0
+                    || !index.used.get(offset.intValue())
+                    || (range.released != null
+                            && range.released.containsKey(offset.intValue()))) {
+                continue;
+            }
+
+            released.add(ipAddress);
+            if (quarantinePeriod > 0) {
+                if (range.released == null) {
+                    range.released = new LinkedHashMap<>();
+                }
+                range.released.put(offset.intValue(), now);
+            } else {
+                index.free(offset.intValue());
+                changedRanges.add(rangeLink);
+            }
+        }
+
+        changedRanges.forEach(l -> storeBitmap(state.ranges.get(l), rangeIndexes.get(l)));
+        request.ipAddresses = released;
+        logFine(() -> String.format("Released IP addresses %s of subnet %s", released,
+                state.subnetLink));
+    }
+
+    /**
+     * Adds or updates a range. Fails if it overlaps with another range of the subnet, or if
+     * used addresses are outside of its new bounds.
+     */
+    private void updateRange(IPAddressAllocationState state, IPAddressAllocationRequest request) {
+        SubnetRangeState subnetRange = request.subnetRange;
+        AssertUtil.assertNotNull(subnetRange, "subnetRange");
+        AssertUtil.assertNotEmpty(subnetRange.documentSelfLink, "subnetRange.documentSelfLink");
+        buildIndexes(state);
+
+        String rangeLink = subnetRange.documentSelfLink;
+        RangeAllocation range = toRangeAllocation(subnetRange);
+        BigInteger start = IpHelper.ipStringToBigInteger(range.startIPAddress);
+        BigInteger end = IpHelper.ipStringToBigInteger(range.endIPAddress);
+        RangeAllocation current = state.ranges.get(rangeLink);
+        RangeIndex currentIndex = rangeIndexes.get(rangeLink);
+
+        if (currentIndex != null) {
+            rangeTree.remove(currentIndex.start);
+        }
+        String overlap = rangeTree.findOverlap(start, end);
+        if (currentIndex != null) {
+            rangeTree.put(currentIndex.start, getEnd(current), rangeLink);
+        }
+        if (overlap != null) {
+            RangeAllocation overlapRange = state.ranges.get(overlap);
+            throw new LocalizableValidationException(
+                    String.format("The submitted IP address range overlaps with a "
+                                    + "previously defined IP address range: %s-%s ",
+                            overlapRange.startIPAddress, overlapRange.endIPAddress),
+                    "subnet.range.ip.overlap", overlapRange.startIPAddress,
+                    overlapRange.endIPAddress);
+        }
+
+        BitSet used = new BitSet();
+        if (currentIndex != null) {
+            // keep the used addresses at their offsets from the new start address
+            int size = getSize(start, end);
+            long shift = currentIndex.start.subtract(start).longValueExact();
+            for (int offset = currentIndex.used.nextSetBit(0); offset >= 0;
+                    offset = currentIndex.used.nextSetBit(offset + 1)) {
+                used.set(shiftOffset(current, currentIndex, offset, shift, size));
+            }
+            if (current.released != null) {
+                range.released = new LinkedHashMap<>();
+                for (Entry<Integer, Long> e : current.released.entrySet()) {
+                    range.released.put(
+                            shiftOffset(current, currentIndex, e.getKey(), shift, size),
+                            e.getValue());
+                }
+            }
+        }
+        RangeIndex index = new RangeIndex(start, getSize(start, end), used);
+        storeBitmap(range, index);
+        state.ranges.put(rangeLink, range);
+        rangeIndexes.put(rangeLink, index);
+        if (currentIndex != null) {
+            rangeTree.remove(currentIndex.start);
+        }
+        rangeTree.put(start, end, rangeLink);
+    }
+
+    private void removeRange(IPAddressAllocationState state, IPAddressAllocationRequest request) {
+        AssertUtil.assertNotEmpty(request.subnetRangeLink, "subnetRangeLink");
+        buildIndexes(state);
+
+        state.ranges.remove(request.subnetRangeLink);
+        RangeIndex index = rangeIndexes.remove(request.subnetRangeLink);
+        if (index != null) {
+            rangeTree.remove(index.start);
+        }
+    }
+
+    /**
+     * Makes the addresses the quarantine of which expired available again. The bitmap is stored
+     * right away, so that it matches the quarantined addresses even if the allocation fails.
+     */
+    private void reclaimReleased(IPAddressAllocationState state, RangeAllocation range,
+            RangeIndex index, long now) {
+        if (range.released == null || range.released.isEmpty()) {
+            return;
+        }
+        long quarantinePeriod = getQuarantinePeriod(state);
+        boolean reclaimed = false;
+        for (Iterator<Entry<Integer, Long>> it = range.released.entrySet().iterator();
+                it.hasNext(); ) {
+            Entry<Integer, Long> e = it.next();
+            if (e.getValue() + quarantinePeriod > now) {
+                break;
+            }
+            it.remove();
+            index.free(e.getKey());
+            reclaimed = true;
+        }
+        if (reclaimed) {
+            storeBitmap(range, index);
+        }
+    }
+
+    private void buildIndexes(IPAddressAllocationState state) {
+        if (state.ranges == null) {
+            state.ranges = new HashMap<>();
+        }
+        if (indexVersion == state.documentVersion && rangeIndexes != null) {
+            return;
+        }
+        rangeIndexes = new HashMap<>();
+        rangeTree = new IpRangeTree<>();
+        for (Entry<String, RangeAllocation> e : state.ranges.entrySet()) {
+            RangeAllocation range = e.getValue();
+            BigInteger start = IpHelper.ipStringToBigInteger(range.startIPAddress);
+            BigInteger end = getEnd(range);
+            BitSet used = range.bitmap != null
+                    ? BitSet.valueOf(Base64.getDecoder().decode(range.bitmap))
+                    : new BitSet();
+            if (range.released != null) {
+                // the quarantined addresses of a previous version are used as well
+                range.released.keySet().forEach(used::set);
+            }
+            rangeIndexes.put(e.getKey(), new RangeIndex(start, getSize(start, end), used));
+            rangeTree.put(start, end, e.getKey());
+        }
+    }
+
+    private List<String> getRangeLinks(IPAddressAllocationState state, String rangeLink) {
+        if (!state.ranges.containsKey(rangeLink)) {
+            throw new LocalizableValidationException(
+                    String.format("Subnet range %s is not part of subnet %s", rangeLink,
+                            state.subnetLink),
+                    "subnet.range.not.found", rangeLink, state.subnetLink);
+        }
+        List<String> rangeLinks = new ArrayList<>(1);
+        rangeLinks.add(rangeLink);
+        return rangeLinks;
+    }
+
+    private static void storeBitmap(RangeAllocation range, RangeIndex index) {
+        range.bitmap = Base64.getEncoder().encodeToString(index.used.toByteArray());
+    }
+
+    private static int shiftOffset(RangeAllocation range, RangeIndex index, int offset,
+            long shift, int size) {
+        long shifted = offset + shift;
+        if (shifted < 0 || shifted >= size) {
+            String ipAddress = toIpAddress(range, index, offset);
+            throw new LocalizableValidationException(
+                    String.format("IP address %s is in use and must stay in the range",
+                            ipAddress),
+                    "subnet.range.ip.in.use", ipAddress);
+        }
+        return (int) shifted;
+    }
+
+    private static String toIpAddress(RangeAllocation range, RangeIndex index, int offset) {
+        return IpHelper.bigIntegerToIpString(index.start.add(BigInteger.valueOf(offset)),
+                range.ipVersion);
+    }
+
+    private static BigInteger getEnd(RangeAllocation range) {
+        return IpHelper.ipStringToBigInteger(range.endIPAddress);
+    }
+
+    private static int getSize(BigInteger start, BigInteger end) {
+        return end.subtract(start).add(BigInteger.ONE)
+                .min(BigInteger.valueOf(MAX_RANGE_SIZE)).intValue();
+    }
+
+    private static long getQuarantinePeriod(IPAddressAllocationState state) {
+        return state.quarantinePeriodMicros != null ? state.quarantinePeriodMicros
+                : DEFAULT_QUARANTINE_PERIOD_MICROS;
+    }
+
+    private static RangeAllocation toRangeAllocation(SubnetRangeState subnetRange) {
+        RangeAllocation range = new RangeAllocation();
+        range.startIPAddress = subnetRange.startIPAddress;
+        range.endIPAddress = subnetRange.endIPAddress;
+        range.ipVersion = subnetRange.ipVersion != null ? subnetRange.ipVersion : IPVersion.IPv4;
+        range.isDHCP = subnetRange.isDHCP;
+        return range;
+    }
+}
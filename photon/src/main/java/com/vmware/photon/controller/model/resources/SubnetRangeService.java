@@ -11,19 +11,16 @@
 
 package com.vmware.photon.controller.model.resources;
 
-import static com.vmware.photon.controller.model.resources.SubnetRangeService.SubnetRangeState.FIELD_NAME_SUBNET_LINK;
-
 import java.net.URI;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import com.vmware.photon.controller.model.ServiceUtils;
 import com.vmware.photon.controller.model.UriPaths;
-import com.vmware.photon.controller.model.query.QueryUtils;
-import com.vmware.photon.controller.model.query.QueryUtils.QueryTop;
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService.IPAddressAllocationRequest;
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService.IPAddressAllocationRequestMode;
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService.IPAddressAllocationState;
 import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
 import com.vmware.photon.controller.model.support.IPVersion;
 import com.vmware.photon.controller.model.util.AssertUtil;
@@ -33,10 +30,10 @@ import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription;
+import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.StatefulService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
-import com.vmware.xenon.services.common.QueryTask.Query;
 
 /**
  * Represents a range of IP addresses, assigned statically or by DHCP.
@@ -221,6 +218,35 @@ public class SubnetRangeService extends StatefulService {
         }
     }
 
+    /**
+     * Removes the range from the IP address allocation document of its subnet.
+     */
+    @Override
+    public void handleDelete(Operation delete) {
+        SubnetRangeState currentState = getState(delete);
+        if (ServiceHost.isServiceStop(delete) || currentState == null
+                || currentState.subnetLink == null) {
+            delete.complete();
+            return;
+        }
+
+        IPAddressAllocationRequest request = new IPAddressAllocationRequest();
+        request.mode = IPAddressAllocationRequestMode.REMOVE_RANGE;
+        request.subnetRangeLink = getSelfLink();
+
+        sendRequest(Operation
+                .createPatch(this, IPAddressAllocationService
+                        .getAllocationLink(currentState.subnetLink))
+                .setBody(request)
+                .setCompletion((o, e) -> {
+                    if (e != null && o.getStatusCode() != Operation.STATUS_CODE_NOT_FOUND) {
+                        logWarning("Failed to remove subnet range from %s: %s",
+                                o.getUri(), Utils.toString(e));
+                    }
+                    delete.complete();
+                }));
+    }
+
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument td = super.getDocumentTemplate();
@@ -245,11 +271,8 @@ public class SubnetRangeService extends StatefulService {
 
         validateState(subnetRangeState);
 
-        return DeferredResult
-                .allOf(
-                        validateIps(subnetRangeState),
-                        validateNoRangeOverlap(subnetRangeState)
-                );
+        return validateIps(subnetRangeState)
+                .thenCompose((ignored) -> registerRange(subnetRangeState));
     }
 
     /**
@@ -271,24 +294,36 @@ public class SubnetRangeService extends StatefulService {
     }
 
     /**
-     * Returns a Deferred result if there is no overlap of the current ip range with the pre
-     * existing ip ranges. Else exception is raised (in the method this calls).
+     * Adds the range to the IP address allocation document of its subnet, creating it if needed.
+     * The allocation service checks for overlaps with the other ranges of the subnet and raises an
+     * exception if there is one.
      *
      * @param subnetRangeState
      * @return A deferred result which indicates there was no range overlap.
      */
-    private DeferredResult<Void> validateNoRangeOverlap(SubnetRangeState subnetRangeState) {
-        if (subnetRangeState.subnetLink != null) {
-            return getSubnetRangesInSubnet(subnetRangeState.subnetLink)
-                    .thenAccept((subnetRangeList) -> {
-                        validateIpsOutsideDefinedRanges(
-                                subnetRangeState.documentSelfLink,
-                                subnetRangeState.startIPAddress,
-                                subnetRangeState.endIPAddress,
-                                subnetRangeList);
-                    });
+    private DeferredResult<Void> registerRange(SubnetRangeState subnetRangeState) {
+        if (subnetRangeState.subnetLink == null) {
+            return DeferredResult.completed(null);
         }
-        return DeferredResult.completed(null);
+        String allocationLink = IPAddressAllocationService
+                .getAllocationLink(subnetRangeState.subnetLink);
+
+        IPAddressAllocationState allocationState = new IPAddressAllocationState();
+        allocationState.documentSelfLink = allocationLink;
+        allocationState.subnetLink = subnetRangeState.subnetLink;
+
+        IPAddressAllocationRequest request = new IPAddressAllocationRequest();
+        request.mode = IPAddressAllocationRequestMode.UPDATE_RANGE;
+        request.subnetRange = subnetRangeState;
+
+        return sendWithDeferredResult(Operation
+                .createPost(this, IPAddressAllocationService.FACTORY_LINK)
+                .setBody(allocationState))
+                .thenCompose((ignored) -> sendWithDeferredResult(Operation
+                        .createPatch(this, allocationLink)
+                        .setBody(request)))
+                .thenAccept((ignored) -> {
+                });
     }
 
     /**
@@ -370,59 +405,6 @@ public class SubnetRangeService extends StatefulService {
         }
     }
 
-    /**
-     * We don't want ip ranges to overlap. So we check the newly created ip range,
-     * with the pre existing ip ranges and make sure there is no over lap.
-     * If there is an overlap, raise exception.
-     *
-     * @param documentSelfLink  The self link of the subnetrange document being modified
-     *                          This is empty if its a create.
-     * @param startIp           The start ip provided for this subnet range
-     * @param endIp             The end ip for this subnet range
-     * @param subnetRangeStates This is a list of all the pre-existing subnet states. We check
-     *                          for overlap against these.
-     */
-    private void validateIpsOutsideDefinedRanges(String documentSelfLink, String startIp,
-            String endIp,
-            List<SubnetRangeState>
-                    subnetRangeStates) {
-        String ipUnderTest;
-
-        for (SubnetRangeState subnetRangeState : subnetRangeStates) {
-            String selfLink = subnetRangeState.documentSelfLink;
-
-            //For create self link is empty. Check against all pre existing subnet ranges
-            //For updates or patches, don't check against self
-            if (selfLink == null || !selfLink.equals(documentSelfLink)) {
-
-                String ipBegin = subnetRangeState.startIPAddress;
-                String ipEnd = subnetRangeState.endIPAddress;
-                IPVersion ipVersion = subnetRangeState.ipVersion;
-
-                ipUnderTest = startIp;
-                throwExceptionIfIpOverlap(ipBegin, ipEnd, ipVersion, ipUnderTest);
-
-                ipUnderTest = endIp;
-                throwExceptionIfIpOverlap(ipBegin, ipEnd, ipVersion, ipUnderTest);
-            }
-
-        }
-    }
-
-    private void throwExceptionIfIpOverlap(String ipBegin, String ipEnd, IPVersion ipVersion,
-            String ipUnderTest) {
-        if (SubnetValidator.isIpInBetween(ipBegin, ipEnd, ipVersion,
-                ipUnderTest
-        )) {
-            throw new LocalizableValidationException(
-                    String.format("The submitted IP address range overlaps with a "
-                                    + "previously defined IP address range: %s-%s ",
-                            ipBegin, ipEnd),
-                    "subnet.range.ip.overlap", ipBegin, ipEnd);
-        }
-
-    }
-
     /**
      * Fetch subnet state by document link.
      *
@@ -435,27 +417,6 @@ public class SubnetRangeService extends StatefulService {
         return sendWithDeferredResult(Operation.createGet(uri));
     }
 
-    /**
-     * Fetch all pre existing subnet ranges
-     *
-     * @param subnetLink
-     * @return A deferred result that contains a list of pre-existing subnet ranges
-     */
-    private DeferredResult<List<SubnetRangeState>> getSubnetRangesInSubnet(String subnetLink) {
-        Query.Builder qBuilder = Query.Builder.create()
-                .addKindFieldClause(SubnetRangeState.class)
-                .addFieldClause(FIELD_NAME_SUBNET_LINK, subnetLink);
-
-        QueryTop<SubnetRangeState> queryTop = new QueryUtils.QueryTop<>(
-                this.getHost(),
-                qBuilder.build(),
-                SubnetRangeState.class,
-                null
-        );
-
-        return queryTop.collectDocuments(Collectors.toList());
-    }
-
     private SubnetRangeState getOperationBody(Operation operation) {
         checkHasBody(operation);
         SubnetRangeState subnetRangeState = operation.getBody(SubnetRangeState.class);
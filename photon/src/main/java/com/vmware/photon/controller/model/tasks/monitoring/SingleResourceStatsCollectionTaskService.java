@@ -406,7 +406,9 @@ public class SingleResourceStatsCollectionTaskService
                     ResourceMetricsService.FACTORY_LINK)).setBodyNoCloning(metrics));
         }
         for (InMemoryResourceMetric metric : inMemoryMetricsList) {
+            // binary body in case the request is forwarded to the owner on another node
             operations.add(Operation.createPost(getHost(), InMemoryResourceMetricService.FACTORY_LINK)
+                            .setContentType(Operation.MEDIA_TYPE_APPLICATION_KRYO_OCTET_STREAM)
                             .setBodyNoCloning(metric));
         }
         // Save each data point sequentially to create time based monotonically increasing sequence.
@@ -11,11 +11,14 @@
 
 package com.vmware.photon.controller.model.util;
 
+import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 
+import com.vmware.photon.controller.model.support.IPVersion;
+
 /**
  * Utility methods for dealing with IP addresses.
  */
@@ -83,6 +86,43 @@ public class IpHelper {
         }
     }
 
+    /**
+     * Convert an IPv4 or IPv6 address string to its unsigned numeric value.
+     *
+     * @param ip
+     * @return
+     */
+    public static BigInteger ipStringToBigInteger(String ip) {
+        try {
+            return new BigInteger(1, InetAddress.getByName(ip).getAddress());
+        } catch (UnknownHostException ex) {
+            throw new IllegalArgumentException(ip + " is not an IP address", ex);
+        }
+    }
+
+    /**
+     * Convert the unsigned numeric value of an IP address of the given version to an ip string.
+     *
+     * @param ip
+     * @param ipVersion
+     * @return
+     */
+    public static String bigIntegerToIpString(BigInteger ip, IPVersion ipVersion) {
+        int length = IPVersion.IPv6.equals(ipVersion) ? 16 : 4;
+        if (ip.signum() < 0 || ip.bitLength() > length * 8) {
+            throw new IllegalArgumentException(ip + " is not an " + ipVersion + " address");
+        }
+        byte[] bytes = ip.toByteArray();
+        byte[] address = new byte[length];
+        int count = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - count, address, length - count, count);
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid IP " + ip);
+        }
+    }
+
     /**
      * Convert an host byte order long to byte array in network byte order.
      *
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.util;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Interval tree of non-overlapping IP address ranges, ordered by their start address.
+ *
+ * Since the ranges do not overlap, the only candidate for overlapping a given range is the range
+ * with the greatest start address not after its end address, so finding an overlap takes
+ * logarithmic time.
+ *
+ * @param <T> the type of the value associated with a range
+ */
+public class IpRangeTree<T> {
+
+    private static class Range<T> {
+        private final BigInteger end;
+        private final T value;
+
+        private Range(BigInteger end, T value) {
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    private final TreeMap<BigInteger, Range<T>> ranges = new TreeMap<>();
+
+    /**
+     * Adds a range, replacing the one with the same start address if any. Overlaps are not
+     * checked.
+     */
+    public void put(BigInteger start, BigInteger end, T value) {
+        AssertUtil.assertTrue(start.compareTo(end) <= 0,
+                "start should be less than or equal to end");
+        ranges.put(start, new Range<>(end, value));
+    }
+
+    /**
+     * Removes the range with the given start address.
+     */
+    public void remove(BigInteger start) {
+        ranges.remove(start);
+    }
+
+    /**
+     * Returns the value of a range which overlaps with the given one, or {@code null} if none.
+     */
+    public T findOverlap(BigInteger start, BigInteger end) {
+        Map.Entry<BigInteger, Range<T>> candidate = ranges.floorEntry(end);
+        if (candidate != null && candidate.getValue().end.compareTo(start) >= 0) {
+            return candidate.getValue().value;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the values of the ranges, ordered by start address.
+     */
+    public List<T> values() {
+        return ranges.values().stream()
+                .map(r -> r.value)
+                .collect(Collectors.toList());
+    }
+
+    public int size() {
+        return ranges.size();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.EnumSet;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.AggregationType;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.TimeBin;
+
+public class InMemoryResourceMetricServiceTest {
+
+    private static final int NUM_BINS = 10;
+    private static final long BIN_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testMergeEqualsSinglePass() {
+        Random random = new Random(42);
+        TimeSeriesStats singlePass = stats();
+        TimeSeriesStats first = stats();
+        TimeSeriesStats second = stats();
+        int samples = 1000;
+        for (int i = 0; i < samples; i++) {
+            // the samples of both halves fall in the same three bins
+            long timestampMicros = TimeUnit.MILLISECONDS.toMicros(
+                    (i % 3) * BIN_DURATION_MILLIS + i);
+            double value = random.nextGaussian() * 100 + 50;
+            singlePass.add(timestampMicros, value, value);
+            (i < samples / 2 ? first : second).add(timestampMicros, value, value);
+        }
+
+        InMemoryResourceMetricService.merge(first, second);
+        assertStatsEqual(singlePass, first);
+    }
+
+    @Test
+    public void testMergeUnevenPartitions() {
+        TimeSeriesStats singlePass = stats();
+        TimeSeriesStats first = stats();
+        TimeSeriesStats second = stats();
+        double[] values = { 3, 7, 1, 12, 5, 5, 9, -4 };
+        for (int i = 0; i < values.length; i++) {
+            singlePass.add(i, values[i], values[i]);
+            (i < 1 ? first : second).add(i, values[i], values[i]);
+        }
+
+        InMemoryResourceMetricService.merge(first, second);
+        assertStatsEqual(singlePass, first);
+
+        TimeBin bin = first.bins.get(0L);
+        assertEquals(values.length, bin.count, DELTA);
+        assertEquals(4.75, bin.avg, DELTA);
+        assertEquals(-4, bin.min, DELTA);
+        assertEquals(12, bin.max, DELTA);
+    }
+
+    @Test
+    public void testMergeEmpty() {
+        TimeSeriesStats singlePass = stats();
+        singlePass.add(0, 5, 5);
+        singlePass.add(1, 7, 7);
+
+        // merging no samples leaves the aggregates unchanged
+        TimeSeriesStats target = stats();
+        target.add(0, 5, 5);
+        target.add(1, 7, 7);
+        InMemoryResourceMetricService.merge(target, stats());
+        assertStatsEqual(singlePass, target);
+
+        // merging into empty stats copies the aggregates
+        TimeSeriesStats empty = stats();
+        InMemoryResourceMetricService.merge(empty, singlePass);
+        assertStatsEqual(singlePass, empty);
+
+        // an empty bin takes the aggregates of the other bin
+        TimeSeriesStats emptyBin = stats();
+        emptyBin.bins.put(0L, new TimeBin());
+        InMemoryResourceMetricService.merge(emptyBin, singlePass);
+        assertStatsEqual(singlePass, emptyBin);
+    }
+
+    @Test
+    public void testMergeSingleSample() {
+        TimeSeriesStats singlePass = stats();
+        TimeSeriesStats first = stats();
+        TimeSeriesStats second = stats();
+        singlePass.add(0, 2, 2);
+        singlePass.add(1, 8, 8);
+        first.add(0, 2, 2);
+        second.add(1, 8, 8);
+
+        InMemoryResourceMetricService.merge(first, second);
+        assertStatsEqual(singlePass, first);
+
+        TimeBin bin = first.bins.get(0L);
+        assertEquals(2, bin.count, DELTA);
+        assertEquals(5, bin.avg, DELTA);
+        // sum of the squared differences from the average
+        assertEquals(18, bin.var, DELTA);
+        assertEquals(2, bin.min, DELTA);
+        assertEquals(8, bin.max, DELTA);
+        assertEquals(10, bin.sum, DELTA);
+        assertEquals(8, bin.latest, DELTA);
+    }
+
+    @Test
+    public void testMergeKeepsNewestBins() {
+        TimeSeriesStats target = stats();
+        TimeSeriesStats source = stats();
+        for (int i = 0; i < NUM_BINS; i++) {
+            target.add(TimeUnit.MILLISECONDS.toMicros((i + 1) * BIN_DURATION_MILLIS), i, i);
+        }
+        source.add(0, 1, 1);
+        source.add(TimeUnit.MILLISECONDS.toMicros((NUM_BINS + 1) * BIN_DURATION_MILLIS), 1, 1);
+
+        InMemoryResourceMetricService.merge(target, source);
+        assertEquals(NUM_BINS, target.bins.size());
+        assertNull(target.bins.get(0L));
+        assertNull(target.bins.get(BIN_DURATION_MILLIS));
+        assertEquals(1, target.bins.get((NUM_BINS + 1) * BIN_DURATION_MILLIS).count, DELTA);
+    }
+
+    private static TimeSeriesStats stats() {
+        return new TimeSeriesStats(NUM_BINS, BIN_DURATION_MILLIS,
+                EnumSet.allOf(AggregationType.class));
+    }
+
+    private static void assertStatsEqual(TimeSeriesStats expected, TimeSeriesStats actual) {
+        assertEquals(expected.bins.keySet(), actual.bins.keySet());
+        for (Entry<Long, TimeBin> entry : expected.bins.entrySet()) {
+            TimeBin expectedBin = entry.getValue();
+            TimeBin actualBin = actual.bins.get(entry.getKey());
+            assertEquals(expectedBin.count, actualBin.count, DELTA);
+            assertEquals(expectedBin.avg, actualBin.avg, DELTA);
+            // relative tolerance, the sum of the squared differences grows with the samples
+            assertEquals(expectedBin.var, actualBin.var,
+                    Math.max(DELTA, Math.abs(expectedBin.var) * 1e-12));
+            assertEquals(expectedBin.min, actualBin.min, DELTA);
+            assertEquals(expectedBin.max, actualBin.max, DELTA);
+            assertEquals(expectedBin.sum, actualBin.sum, DELTA);
+            assertEquals(expectedBin.latest, actualBin.latest, DELTA);
+        }
+    }
+}
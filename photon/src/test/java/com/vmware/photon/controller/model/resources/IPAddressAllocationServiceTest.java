@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService.IPAddressAllocationRequest;
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService.IPAddressAllocationRequestMode;
+import com.vmware.photon.controller.model.resources.IPAddressAllocationService.IPAddressAllocationState;
+import com.vmware.photon.controller.model.resources.SubnetRangeService.SubnetRangeState;
+import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
+import com.vmware.photon.controller.model.support.IPVersion;
+import com.vmware.photon.controller.model.util.IpHelper;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.common.test.TestRequestSender.FailureResponse;
+import com.vmware.xenon.common.test.VerificationHost;
+
+public class IPAddressAllocationServiceTest {
+
+    private VerificationHost host;
+    private TestRequestSender sender;
+    private SubnetState subnet;
+
+    @Before
+    public void setUp() throws Throwable {
+        host = VerificationHost.create(0);
+        host.start();
+        host.startFactory(new SubnetService());
+        host.startFactory(new SubnetRangeService());
+        host.startFactory(new IPAddressAllocationService());
+        host.waitForServiceAvailable(SubnetService.FACTORY_LINK, SubnetRangeService.FACTORY_LINK,
+                IPAddressAllocationService.FACTORY_LINK);
+        sender = host.getTestRequestSender();
+
+        SubnetState subnetState = new SubnetState();
+        subnetState.id = "subnet";
+        subnetState.name = "subnet";
+        subnetState.networkLink = UriUtils.buildUriPath(NetworkService.FACTORY_LINK, "network");
+        subnetState.subnetCIDR = "10.1.0.0/16";
+        subnet = sender.sendPostAndWait(UriUtils.buildUri(host, SubnetService.FACTORY_LINK),
+                subnetState, SubnetState.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (host != null) {
+            host.tearDown();
+        }
+    }
+
+    @Test
+    public void testConcurrentAllocations() {
+        createRange("10.1.0.1", "10.1.3.255");
+        createRange("10.1.4.0", "10.1.7.255");
+        int count = 2000;
+
+        List<Operation> allocations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            allocations.add(patch(allocate(1)));
+        }
+        Set<String> allocated = new HashSet<>();
+        for (Operation op : sender.sendAndWait(allocations)) {
+            List<String> ipAddresses = op.getBody(IPAddressAllocationRequest.class).ipAddresses;
+            assertEquals(1, ipAddresses.size());
+            allocated.add(ipAddresses.get(0));
+        }
+        assertEquals(count, allocated.size());
+
+        // the remaining 47 addresses, not one more
+        FailureResponse failure = sender.sendAndWaitFailure(
+                patch(allocate(48)));
+        assertEquals(Operation.STATUS_CODE_BAD_REQUEST, failure.op.getStatusCode());
+        List<String> last = sendAndWait(allocate(47));
+        assertEquals(47, last.size());
+        allocated.addAll(last);
+        assertEquals(count + 47, allocated.size());
+        assertTrue(allocated.contains("10.1.0.1"));
+        assertTrue(allocated.contains("10.1.7.255"));
+    }
+
+    @Test
+    public void testQuarantine() throws InterruptedException {
+        IPAddressAllocationState state = new IPAddressAllocationState();
+        state.documentSelfLink = IPAddressAllocationService.getAllocationLink(
+                subnet.documentSelfLink);
+        state.subnetLink = subnet.documentSelfLink;
+        state.quarantinePeriodMicros = TimeUnit.SECONDS.toMicros(1);
+        sender.sendPostAndWait(UriUtils.buildUri(host, IPAddressAllocationService.FACTORY_LINK),
+                state, IPAddressAllocationState.class);
+        createRange("10.1.0.1", "10.1.0.4");
+
+        assertEquals(Arrays.asList("10.1.0.1", "10.1.0.2"), sendAndWait(allocate(2)));
+        assertEquals(Arrays.asList("10.1.0.3"), sendAndWait(allocate(1)));
+
+        IPAddressAllocationRequest release = new IPAddressAllocationRequest();
+        release.mode = IPAddressAllocationRequestMode.RELEASE;
+        release.ipAddresses = Arrays.asList("10.1.0.1");
+        assertEquals(Arrays.asList("10.1.0.1"), sendAndWait(release));
+
+        // the released address is not allocated again until its quarantine expires
+        assertEquals(Arrays.asList("10.1.0.4"), sendAndWait(allocate(1)));
+        sender.sendAndWaitFailure(patch(allocate(1)));
+        Thread.sleep(TimeUnit.MICROSECONDS.toMillis(state.quarantinePeriodMicros));
+        assertEquals(Arrays.asList("10.1.0.1"), sendAndWait(allocate(1)));
+
+        // only allocated addresses are released
+        release.ipAddresses = Arrays.asList("10.1.0.1", "10.1.0.4", "10.1.0.5", "10.1.1.1");
+        assertEquals(Arrays.asList("10.1.0.1", "10.1.0.4"), sendAndWait(release));
+    }
+
+    @Test
+    public void testRangeOverlap() {
+        SubnetRangeState range = createRange("10.1.0.10", "10.1.0.20");
+
+        for (String[] overlap : new String[][] {
+                { "10.1.0.1", "10.1.0.10" },
+                { "10.1.0.20", "10.1.0.30" },
+                { "10.1.0.12", "10.1.0.15" },
+                { "10.1.0.1", "10.1.0.30" } }) {
+            FailureResponse failure = sender.sendAndWaitFailure(Operation
+                    .createPost(host, SubnetRangeService.FACTORY_LINK)
+                    .setBody(rangeState(overlap[0], overlap[1])));
+            assertTrue(failure.failure.getMessage(),
+                    failure.failure.getMessage().contains("overlaps"));
+        }
+        createRange("10.1.0.21", "10.1.0.30");
+
+        // growing the range into the next one fails, shrinking it keeps its allocations
+        assertEquals(Arrays.asList("10.1.0.10", "10.1.0.11"), sendAndWait(allocate(2)));
+        range.endIPAddress = "10.1.0.21";
+        sender.sendAndWaitFailure(Operation.createPatch(host, range.documentSelfLink)
+                .setBody(range));
+        range.startIPAddress = "10.1.0.11";
+        range.endIPAddress = "10.1.0.12";
+        sender.sendAndWaitFailure(Operation.createPatch(host, range.documentSelfLink)
+                .setBody(range));
+        range.startIPAddress = "10.1.0.5";
+        range.endIPAddress = "10.1.0.11";
+        sender.sendAndWait(Operation.createPatch(host, range.documentSelfLink).setBody(range));
+
+        IPAddressAllocationRequest allocate = allocate(5);
+        allocate.subnetRangeLink = range.documentSelfLink;
+        assertEquals(Arrays.asList("10.1.0.5", "10.1.0.6", "10.1.0.7", "10.1.0.8", "10.1.0.9"),
+                sendAndWait(allocate));
+
+        // a deleted range does not overlap anymore
+        sender.sendAndWait(Operation.createDelete(host, range.documentSelfLink));
+        createRange("10.1.0.1", "10.1.0.20");
+    }
+
+    @Test
+    public void testIpOffsets() {
+        assertEquals("2001:db8:0:0:0:1:0:1", IpHelper.bigIntegerToIpString(IpHelper
+                .ipStringToBigInteger("2001:db8::ffff:fffe").add(BigInteger.valueOf(3)),
+                IPVersion.IPv6));
+        assertEquals("10.1.1.0", IpHelper.bigIntegerToIpString(IpHelper
+                .ipStringToBigInteger("10.1.0.255").add(BigInteger.ONE), IPVersion.IPv4));
+    }
+
+    private SubnetRangeState createRange(String start, String end) {
+        return sender.sendPostAndWait(UriUtils.buildUri(host, SubnetRangeService.FACTORY_LINK),
+                rangeState(start, end), SubnetRangeState.class);
+    }
+
+    private SubnetRangeState rangeState(String start, String end) {
+        SubnetRangeState state = new SubnetRangeState();
+        state.id = start;
+        state.name = start;
+        state.subnetLink = subnet.documentSelfLink;
+        state.startIPAddress = start;
+        state.endIPAddress = end;
+        state.ipVersion = IPVersion.IPv4;
+        return state;
+    }
+
+    private static IPAddressAllocationRequest allocate(int count) {
+        IPAddressAllocationRequest request = new IPAddressAllocationRequest();
+        request.mode = IPAddressAllocationRequestMode.ALLOCATE;
+        request.count = count;
+        return request;
+    }
+
+    private List<String> sendAndWait(IPAddressAllocationRequest request) {
+        return sender.sendAndWait(patch(request))
+                .getBody(IPAddressAllocationRequest.class).ipAddresses;
+    }
+
+    private Operation patch(IPAddressAllocationRequest request) {
+        return Operation.createPatch(host,
+                IPAddressAllocationService.getAllocationLink(subnet.documentSelfLink))
+                .setBody(request);
+    }
+}
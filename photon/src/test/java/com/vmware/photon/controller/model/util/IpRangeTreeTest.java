@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class IpRangeTreeTest {
+
+    private final IpRangeTree<String> tree = new IpRangeTree<>();
+
+    @Test
+    public void testFindOverlap() {
+        put(10, 20, "a");
+        put(30, 40, "b");
+        put(50, 50, "c");
+
+        assertNull(find(0, 9));
+        assertNull(find(21, 29));
+        assertNull(find(41, 49));
+        assertNull(find(51, 100));
+        assertEquals("a", find(0, 10));
+        assertEquals("a", find(15, 16));
+        assertEquals("a", find(20, 29));
+        assertEquals("b", find(21, 30));
+        assertEquals("c", find(45, 55));
+        // one of the enclosed ranges
+        assertEquals("b", find(0, 49));
+        assertEquals(Arrays.asList("a", "b", "c"), tree.values());
+
+        tree.remove(BigInteger.valueOf(30));
+        assertNull(find(21, 49));
+        assertEquals(2, tree.size());
+    }
+
+    private void put(long start, long end, String value) {
+        tree.put(BigInteger.valueOf(start), BigInteger.valueOf(end), value);
+    }
+
+    private String find(long start, long end) {
+        return tree.findOverlap(BigInteger.valueOf(start), BigInteger.valueOf(end));
+    }
+}
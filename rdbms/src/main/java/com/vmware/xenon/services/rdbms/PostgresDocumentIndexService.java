@@ -19,8 +19,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -59,9 +62,11 @@ import com.vmware.xenon.services.common.NodeGroupBroadcastResponse;
 import com.vmware.xenon.services.common.QueryFilter;
 import com.vmware.xenon.services.common.QueryFilter.QueryFilterException;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryRuntimeContext;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
 import com.vmware.xenon.services.common.ServiceUriPaths;
 import com.vmware.xenon.services.common.SystemUserService;
 import com.vmware.xenon.services.common.UpdateIndexRequest;
@@ -114,6 +119,12 @@ public class PostgresDocumentIndexService extends StatelessService {
             UPDATE_QUEUE_DEPTH
     );
 
+    private static final int EXPIRED_DOCUMENT_BATCH_SIZE = XenonConfiguration.integer(
+            PostgresDocumentIndexService.class,
+            "expiredDocumentBatchSize",
+            10000
+    );
+
     private static int expiredDocumentSearchThreshold = 1000;
 
     static int queryResultLimit = DEFAULT_QUERY_RESULT_LIMIT;
@@ -241,6 +252,15 @@ public class PostgresDocumentIndexService extends StatelessService {
         static final String KIND = Utils.buildKind(MaintenanceRequest.class);
     }
 
+    /**
+     * Broadcast to the index service of every node once per batch of documents expired without
+     * loading them. Each node stops the services of the expired documents it has attached.
+     */
+    public static class StopExpiredServicesRequest extends ServiceDocument {
+        public List<String> documentLinks;
+        static final String KIND = Utils.buildKind(StopExpiredServicesRequest.class);
+    }
+
     public PostgresDocumentIndexService(ServiceHost host, DataSource ds) {
         super(ServiceDocument.class);
         toggleOption(ServiceOption.CORE, true);
@@ -257,6 +277,31 @@ public class PostgresDocumentIndexService extends StatelessService {
         return this.dao;
     }
 
+    /**
+     * Returns the number of queries waiting for a query thread.
+     */
+    public int getQueryQueueDepth() {
+        return getQueueDepth(this.queryQueue);
+    }
+
+    /**
+     * Returns the number of updates waiting for an indexing thread.
+     */
+    public int getUpdateQueueDepth() {
+        return getQueueDepth(this.updateQueue);
+    }
+
+    private static int getQueueDepth(RoundRobinOperationQueue queue) {
+        if (queue.isEmpty()) {
+            return 0;
+        }
+        int depth = 0;
+        for (Integer size : queue.sizesByKey().values()) {
+            depth += size;
+        }
+        return depth;
+    }
+
     @Override
     public void handleStart(final Operation post) {
         super.setMaintenanceIntervalMicros(getHost().getMaintenanceIntervalMicros() * 5);
@@ -462,6 +507,13 @@ public class PostgresDocumentIndexService extends StatelessService {
                         handleMaintenanceImpl(op);
                         break;
                     }
+                    if (o instanceof StopExpiredServicesRequest || op.isRemote()) {
+                        StopExpiredServicesRequest r = op.getBody(StopExpiredServicesRequest.class);
+                        if (StopExpiredServicesRequest.KIND.equals(r.documentKind)) {
+                            handleStopExpiredServices(op, r);
+                            break;
+                        }
+                    }
                 }
                 Operation.failActionNotSupported(op);
                 break;
@@ -861,7 +913,10 @@ public class PostgresDocumentIndexService extends StatelessService {
         }
 
         applyActiveQueries(postOrDelete, state, null);
+        stopExpiredService(state);
+    }
 
+    private void stopExpiredService(ServiceDocument state) {
         // remove service, if its running
         // Broadcasting delete to all nodes, to make sure owner node stop the service
         // TODO: Find better solution, all nodes query for expiration and stop if service owner?
@@ -876,6 +931,46 @@ public class PostgresDocumentIndexService extends StatelessService {
         getHost().broadcastRequest(ServiceUriPaths.DEFAULT_NODE_SELECTOR, false, delete);
     }
 
+    private void broadcastStopExpiredServices(List<String> links) {
+        StopExpiredServicesRequest body = new StopExpiredServicesRequest();
+        body.documentKind = StopExpiredServicesRequest.KIND;
+        body.documentLinks = links;
+        Operation post = Operation.createPost(getUri())
+                .setBodyNoCloning(body)
+                .disableFailureLogging(true)
+                .setReferer(getUri());
+        getHost().broadcastRequest(ServiceUriPaths.DEFAULT_NODE_SELECTOR, false, post);
+    }
+
+    private void handleStopExpiredServices(Operation op, StopExpiredServicesRequest r) {
+        if (op.isRemote() && getHost().isAuthorizationEnabled()
+                && (op.getAuthorizationContext() == null
+                        || !op.getAuthorizationContext().isSystemUser())) {
+            op.fail(Operation.STATUS_CODE_FORBIDDEN);
+            return;
+        }
+        op.complete();
+        if (r.documentLinks == null) {
+            return;
+        }
+        for (String link : r.documentLinks) {
+            // only the services attached on this node need to be stopped
+            if (getHost().getServiceStage(link) == null) {
+                continue;
+            }
+            ServiceDocument state = new ServiceDocument();
+            state.documentSelfLink = link;
+            state.documentUpdateAction = Action.DELETE.name();
+            Operation delete = Operation.createDelete(this, link)
+                    .setBodyNoCloning(state)
+                    .disableFailureLogging(true)
+                    .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_NO_INDEX_UPDATE)
+                    .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_NO_FORWARDING)
+                    .setReferer(getUri());
+            sendRequest(delete);
+        }
+    }
+
     @Override
     public URI getUri() {
         return this.uri;
@@ -1045,14 +1140,131 @@ public class PostgresDocumentIndexService extends StatelessService {
         int limit = expiredDocumentSearchThreshold;
         long now = Utils.getNowMicrosUtc();
         for (TableDescription tableDescription : this.dao.getPostgresSchemaManager().getTableDescriptions()) {
-            if (Utils.getSystemNowMicrosUtc() >= deadline || limit <= 0) {
+            if (Utils.getSystemNowMicrosUtc() >= deadline) {
                 break;
             }
+            // Continuous queries matching the kind need the state of each expired document
+            if (tableDescription.isExpireInBatches()
+                    && !hasActiveQueryForKind(tableDescription.getDocumentKind())) {
+                expireDocumentsInBatches(tableDescription, now, deadline);
+                continue;
+            }
+            if (limit <= 0) {
+                continue;
+            }
             int expired = applyDocumentExpirationPolicyForTable(tableDescription, now, deadline, limit);
             limit -= expired;
         }
     }
 
+    /**
+     * Whether an active continuous query may match documents of the given kind, in which case the
+     * expired documents are loaded and deleted one by one, so that the query is notified.
+     */
+    private boolean hasActiveQueryForKind(String documentKind) {
+        for (QueryTask task : this.activeQueries.values()) {
+            Set<String> kinds = getQueryKinds(task.querySpec.query);
+            if (kinds == null || kinds.contains(documentKind)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the document kinds the query is restricted to, or {@code null} if it may match
+     * documents of any kind.
+     */
+    static Set<String> getQueryKinds(QueryTask.Query query) {
+        if (query == null || query.occurance == Occurance.MUST_NOT_OCCUR) {
+            return null;
+        }
+        if (query.term != null) {
+            if (ServiceDocument.FIELD_NAME_KIND.equals(query.term.propertyName)
+                    && query.term.matchValue != null
+                    && (query.term.matchType == null || query.term.matchType == MatchType.TERM)) {
+                return Collections.singleton(query.term.matchValue);
+            }
+            return null;
+        }
+        if (query.booleanClauses == null || query.booleanClauses.isEmpty()) {
+            return null;
+        }
+
+        boolean hasMustClause = false;
+        Set<String> shouldKinds = new HashSet<>();
+        for (QueryTask.Query clause : query.booleanClauses) {
+            if (clause.occurance == Occurance.MUST_NOT_OCCUR) {
+                continue;
+            }
+            Set<String> kinds = getQueryKinds(clause);
+            if (clause.occurance == Occurance.SHOULD_OCCUR) {
+                if (kinds == null) {
+                    // one of the alternatives may match any kind
+                    shouldKinds = null;
+                } else if (shouldKinds != null) {
+                    shouldKinds.addAll(kinds);
+                }
+                continue;
+            }
+            // any required clause restricting the kinds restricts the whole query
+            if (kinds != null) {
+                return kinds;
+            }
+            hasMustClause = true;
+        }
+
+        // the optional clauses restrict the kinds only when there are no required ones
+        if (hasMustClause || shouldKinds == null || shouldKinds.isEmpty()) {
+            return null;
+        }
+        return shouldKinds;
+    }
+
+    /**
+     * Deletes the expired documents of the table with one statement per batch, without loading
+     * them, until there are no more expired documents or the deadline is reached. Not limited by
+     * {@link #getExpiredDocumentSearchThreshold()}, since the services of each batch are stopped
+     * with a single broadcast.
+     */
+    private int expireDocumentsInBatches(TableDescription tableDescription, long now,
+            long deadline) throws Exception {
+        String tableName = tableDescription.getTableName();
+        String sql = String.format("DELETE FROM %s WHERE documentselflink IN (SELECT documentselflink FROM %s WHERE documentexpirationtimemicros BETWEEN 1 AND ? LIMIT ?) RETURNING documentselflink",
+                tableName, tableName);
+
+        int expired = 0;
+        int deleted;
+        try (Connection conn = this.ds.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            do {
+                stmt.setLong(1, now);
+                stmt.setInt(2, EXPIRED_DOCUMENT_BATCH_SIZE);
+                List<String> links = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        links.add(rs.getString(1));
+                    }
+                }
+                deleted = links.size();
+                expired += deleted;
+                if (deleted > 0) {
+                    broadcastStopExpiredServices(links);
+                    adjustTimeSeriesStat(STAT_NAME_SERVICE_DELETE_COUNT, AGGREGATION_TYPE_SUM,
+                            deleted);
+                    adjustTimeSeriesStat(STAT_NAME_DOCUMENT_EXPIRATION_COUNT,
+                            AGGREGATION_TYPE_SUM, deleted);
+                }
+            } while (deleted == EXPIRED_DOCUMENT_BATCH_SIZE
+                    && Utils.getSystemNowMicrosUtc() < deadline);
+        }
+
+        if (expired > 0) {
+            logFine("Expired %d documents from %s", expired, tableName);
+        }
+        return expired;
+    }
+
     private int applyDocumentExpirationPolicyForTable(TableDescription tableDescription,
             long now, long deadline, int limit) throws Exception {
         int expired = 0;
@@ -136,6 +136,7 @@ public class PostgresSchemaManager {
         private Class<? extends ServiceDocument> stateType;
         private ServiceDocumentDescription sdd;
         private String tableName;
+        private boolean expireInBatches;
         private Map<String, ColumnDescription> columnByPropertyName = new HashMap<>();
 
         private TableDescription(ServiceHost host) {
@@ -279,6 +280,16 @@ public class PostgresSchemaManager {
             return this;
         }
 
+        /**
+         * Whether expired documents of the table are deleted in batches, without loading each of
+         * them. Suitable for tables with many short-lived documents, e.g. tasks. Documents are
+         * still expired one by one while there are continuous queries to notify.
+         */
+        public TableDescription setExpireInBatches(boolean expireInBatches) {
+            this.expireInBatches = expireInBatches;
+            return this;
+        }
+
         public TableDescription setFactoryLink(String factoryLink) {
             this.factoryLink = factoryLink;
             this.factoryLinkWithTrailingSlash = factoryLink + '/';
@@ -386,6 +397,10 @@ public class PostgresSchemaManager {
             return this.tableName;
         }
 
+        public boolean isExpireInBatches() {
+            return this.expireInBatches;
+        }
+
         Collection<ColumnDescription> getColumns() {
             return this.columnByPropertyName.values();
         }
@@ -97,6 +97,13 @@ public abstract class PostgresServiceHost extends ServiceHost {
         this.createTableOnFactoryStart = false;
     }
 
+    /**
+     * Returns the document index service, or {@code null} if the host is not using Postgres.
+     */
+    protected PostgresDocumentIndexService getPostgresDocumentIndexService() {
+        return this.postgresDocumentIndexService;
+    }
+
     PostgresSchemaManager getPostgresSchemaManager() {
         return this.postgresDocumentIndexService.getDao().getPostgresSchemaManager();
     }
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.services.common.ExampleService;
+import com.vmware.xenon.services.common.ExampleService.ExampleServiceState;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+import com.vmware.xenon.services.common.UserService.UserState;
+import com.vmware.xenon.services.rdbms.PostgresSchemaManager.TableDescription;
+
+/**
+ * Load test of the expiration of short-lived documents, such as tasks, on Postgres. Runs against
+ * the database configured with the {@code postgres.*} system properties of
+ * {@link PostgresHostUtils}, and is skipped when the database is not reachable.
+ */
+public class PostgresDocumentExpirationLoadTest {
+
+    private static final Logger logger = Logger
+            .getLogger(PostgresDocumentExpirationLoadTest.class.getName());
+
+    private static final int DOCUMENT_COUNT = Integer.getInteger(
+            "postgres.expiration.documentCount", 10000);
+    private static final int NOTIFIED_DOCUMENT_COUNT = 100;
+    private static final int BATCH_SIZE = 500;
+    private static final long MAINTENANCE_INTERVAL_MILLIS = 100;
+
+    // with the expiration of one document at a time limited to this many documents per
+    // maintenance, expiring all documents would take much longer than the wait below
+    private static final int EXPIRED_DOCUMENT_SEARCH_THRESHOLD = 10;
+    private static final Duration EXPIRATION_TIMEOUT = Duration.ofSeconds(Math.max(30,
+            DOCUMENT_COUNT * MAINTENANCE_INTERVAL_MILLIS / EXPIRED_DOCUMENT_SEARCH_THRESHOLD
+                    / 1000 / 4));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestPostgresServiceHost host;
+    private TestRequestSender sender;
+    private TableDescription table;
+    private int expiredDocumentSearchThreshold;
+
+    static class TestPostgresServiceHost extends PostgresServiceHost {
+    }
+
+    @Before
+    public void setUp() throws Throwable {
+        assumePostgresReachable();
+
+        this.expiredDocumentSearchThreshold = PostgresDocumentIndexService
+                .getExpiredDocumentSearchThreshold();
+        PostgresDocumentIndexService.setExpiredDocumentSearchThreshold(
+                EXPIRED_DOCUMENT_SEARCH_THRESHOLD);
+
+        this.host = new TestPostgresServiceHost();
+        this.host.initialize(new String[] {
+                "--port=0",
+                "--sandbox=" + this.folder.getRoot().getAbsolutePath() });
+        this.host.setMaintenanceIntervalMicros(
+                TimeUnit.MILLISECONDS.toMicros(MAINTENANCE_INTERVAL_MILLIS));
+        this.host.start();
+        this.host.startFactory(new ExampleService());
+        this.sender = new TestRequestSender(this.host);
+        TestContext.waitFor(Duration.ofSeconds(30),
+                () -> this.host.checkServiceAvailable(ExampleService.FACTORY_LINK),
+                "Example factory is not available");
+
+        // the example documents stand in for the task documents
+        this.table = this.host.getPostgresSchemaManager()
+                .getTableDescriptionForFactoryLink(ExampleService.FACTORY_LINK);
+        this.table.setExpireInBatches(true);
+        executeUpdate("DELETE FROM " + this.table.getTableName());
+    }
+
+    @After
+    public void tearDown() {
+        if (this.host == null) {
+            return;
+        }
+        PostgresDocumentIndexService.setExpiredDocumentSearchThreshold(
+                this.expiredDocumentSearchThreshold);
+        this.host.stop();
+        PostgresHostUtils.closeDataSource(this.host.getDataSource());
+    }
+
+    @Test
+    public void testExpireInBatchesWithContinuousQueryOfOtherKind() throws Throwable {
+        startContinuousQuery(UserState.class, ConcurrentHashMap.newKeySet());
+
+        List<String> links = createDocuments(DOCUMENT_COUNT);
+        long startNanos = System.nanoTime();
+        TestContext.waitFor(EXPIRATION_TIMEOUT, () -> countDocuments() == 0,
+                "Documents not expired");
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        logger.info(String.format("Expired %d documents in %d ms (%.0f documents/s)",
+                DOCUMENT_COUNT, elapsedMillis, DOCUMENT_COUNT * 1000.0 / elapsedMillis));
+
+        // the services are stopped with one broadcast per batch
+        TestContext.waitFor(Duration.ofSeconds(30), () -> links.stream()
+                .noneMatch(link -> this.host.getServiceStage(link) != null),
+                "Expired services not stopped");
+    }
+
+    @Test
+    public void testExpireEachDocumentWithContinuousQueryOfSameKind() throws Throwable {
+        Set<String> deleted = ConcurrentHashMap.newKeySet();
+        startContinuousQuery(ExampleServiceState.class, deleted);
+
+        List<String> links = createDocuments(NOTIFIED_DOCUMENT_COUNT);
+        TestContext.waitFor(EXPIRATION_TIMEOUT, () -> deleted.containsAll(links),
+                () -> String.format("%d of %d expired documents not notified",
+                        NOTIFIED_DOCUMENT_COUNT - deleted.size(), NOTIFIED_DOCUMENT_COUNT));
+        assertThat(countDocuments()).isZero();
+    }
+
+    /**
+     * Starts a continuous query of the documents of the given type, collecting the links of the
+     * deleted documents it is notified of.
+     */
+    private void startContinuousQuery(Class<? extends ServiceDocument> type, Set<String> deleted)
+            throws Throwable {
+        QueryTask task = QueryTask.Builder.create()
+                .addOption(QueryOption.CONTINUOUS)
+                .addOption(QueryOption.EXPAND_CONTENT)
+                .setQuery(Query.Builder.create().addKindFieldClause(type).build())
+                .build();
+        task.documentExpirationTimeMicros = Utils.fromNowMicrosUtc(TimeUnit.HOURS.toMicros(1));
+        int activeQueries = this.host.getPostgresDocumentIndexService().activeQueries.size();
+        QueryTask createdTask = this.sender.sendAndWait(Operation
+                .createPost(this.host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
+                .setBody(task), QueryTask.class);
+        TestContext.waitFor(Duration.ofSeconds(30), () -> this.host
+                .getPostgresDocumentIndexService().activeQueries.size() > activeQueries,
+                "Continuous query is not active");
+        this.host.startSubscriptionService(Operation
+                .createPost(this.host, createdTask.documentSelfLink)
+                .setReferer(this.host.getUri()), notification -> {
+                    notification.complete();
+                    QueryTask body = notification.getBody(QueryTask.class);
+                    if (body.results == null || body.results.documents == null) {
+                        return;
+                    }
+                    body.results.documents.values().forEach(json -> {
+                        ServiceDocument document = Utils.fromJson(json, ServiceDocument.class);
+                        if (Action.DELETE.name()
+                                .equals(document.documentUpdateAction)) {
+                            deleted.add(document.documentSelfLink);
+                        }
+                    });
+                });
+    }
+
+    private List<String> createDocuments(int count) {
+        long expirationMicros = Utils.fromNowMicrosUtc(TimeUnit.SECONDS.toMicros(1));
+        List<String> links = new ArrayList<>(count);
+        for (int i = 0; i < count; i += BATCH_SIZE) {
+            List<Operation> posts = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(count, i + BATCH_SIZE); j++) {
+                ExampleServiceState state = new ExampleServiceState();
+                state.name = "expiring-" + j;
+                state.documentExpirationTimeMicros = expirationMicros;
+                posts.add(Operation.createPost(this.host, ExampleService.FACTORY_LINK)
+                        .setBody(state));
+            }
+            this.sender.sendAndWait(posts, ExampleServiceState.class)
+                    .forEach(state -> links.add(state.documentSelfLink));
+        }
+        return links;
+    }
+
+    private long countDocuments() throws Exception {
+        try (Connection conn = this.host.getDataSource().getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT count(*) FROM " + this.table.getTableName())) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void executeUpdate(String sql) throws Exception {
+        try (Connection conn = this.host.getDataSource().getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private static void assumePostgresReachable() {
+        Properties props = PostgresHostUtils.getDataSourceProperties();
+        props.setProperty("connectionTimeout", "2000");
+        DataSource ds = null;
+        try {
+            ds = PostgresHostUtils.createDataSource(props);
+            ds.getConnection().close();
+        } catch (Exception e) {
+            Assume.assumeNoException("Postgres is not reachable", e);
+        } finally {
+            PostgresHostUtils.closeDataSource(ds);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.ExampleService.ExampleServiceState;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+import com.vmware.xenon.services.common.UserService.UserState;
+
+public class PostgresDocumentIndexServiceTest {
+
+    private static final String EXAMPLE_KIND = Utils.buildKind(ExampleServiceState.class);
+    private static final String USER_KIND = Utils.buildKind(UserState.class);
+
+    @Test
+    public void testGetQueryKinds() {
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addKindFieldClause(ExampleServiceState.class)
+                .build()))
+                .containsOnly(EXAMPLE_KIND);
+
+        // a required clause restricts the kinds of the whole query
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addFieldClause(ExampleServiceState.FIELD_NAME_NAME, "name")
+                .addKindFieldClause(ExampleServiceState.class)
+                .build()))
+                .containsOnly(EXAMPLE_KIND);
+
+        // alternatives of kinds
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addKindFieldClause(ExampleServiceState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(UserState.class, Occurance.SHOULD_OCCUR)
+                .build()))
+                .containsOnly(EXAMPLE_KIND, USER_KIND);
+
+        // a required clause with alternatives of kinds
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addFieldClause(ExampleServiceState.FIELD_NAME_NAME, "name")
+                .addClause(Query.Builder.create()
+                        .addKindFieldClause(ExampleServiceState.class, Occurance.SHOULD_OCCUR)
+                        .addKindFieldClause(UserState.class, Occurance.SHOULD_OCCUR)
+                        .build())
+                .build()))
+                .containsOnly(EXAMPLE_KIND, USER_KIND);
+    }
+
+    @Test
+    public void testGetQueryKindsOfAnyKind() {
+        assertThat(PostgresDocumentIndexService.getQueryKinds(null)).isNull();
+
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addFieldClause(ServiceDocument.FIELD_NAME_SELF_LINK, "/core/examples/*",
+                        MatchType.WILDCARD)
+                .build()))
+                .isNull();
+
+        // excluding a kind matches the other kinds
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addFieldClause(ExampleServiceState.FIELD_NAME_NAME, "name")
+                .addKindFieldClause(ExampleServiceState.class, Occurance.MUST_NOT_OCCUR)
+                .build()))
+                .isNull();
+
+        // one of the alternatives is not restricted to a kind
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addKindFieldClause(ExampleServiceState.class, Occurance.SHOULD_OCCUR)
+                .addFieldClause(ExampleServiceState.FIELD_NAME_NAME, "name",
+                        Occurance.SHOULD_OCCUR)
+                .build()))
+                .isNull();
+
+        // the alternatives are optional when there is a required clause
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addFieldClause(ExampleServiceState.FIELD_NAME_NAME, "name")
+                .addKindFieldClause(ExampleServiceState.class, Occurance.SHOULD_OCCUR)
+                .build()))
+                .isNull();
+
+        // a wildcard kind
+        assertThat(PostgresDocumentIndexService.getQueryKinds(Query.Builder.create()
+                .addFieldClause(ServiceDocument.FIELD_NAME_KIND, "com:vmware:*",
+                        MatchType.WILDCARD)
+                .build()))
+                .isNull();
+    }
+}
@@ -30,6 +30,7 @@ import com.vmware.admiral.request.ContainerNetworkProvisionTaskService;
 import com.vmware.admiral.request.ContainerNetworkRemovalTaskService;
 import com.vmware.admiral.request.ContainerOperationTaskFactoryService;
 import com.vmware.admiral.request.ContainerPortsAllocationTaskService;
+import com.vmware.admiral.request.ContainerProvisioningSchedulerService;
 import com.vmware.admiral.request.ContainerRedeploymentTaskService;
 import com.vmware.admiral.request.ContainerRemovalTaskFactoryService;
 import com.vmware.admiral.request.ContainerVolumeAllocationTaskService;
@@ -80,6 +81,7 @@ public class HostInitRequestServicesConfig extends HostInitServiceHelper {
                             service(RequestInitialBootService.class),
                             service(TagAssignmentService.class),
                             service(RequestBrokerGraphService.class),
+                            service(ContainerProvisioningSchedulerService.class),
                             factoryService(ClosureAllocationTaskService.class),
                             factoryService(ClosureProvisionTaskService.class),
                             factoryService(ContainerRedeploymentTaskService.class),
@@ -120,7 +122,8 @@ public class HostInitRequestServicesConfig extends HostInitServiceHelper {
                 NotificationsService.class,
                 RequestInitialBootService.class,
                 TagAssignmentService.class,
-                RequestBrokerGraphService.class);
+                RequestBrokerGraphService.class,
+                ContainerProvisioningSchedulerService.class);
 
         startServiceFactories(host,
                 ClosureAllocationTaskService.class,
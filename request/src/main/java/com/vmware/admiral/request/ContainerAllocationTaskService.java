@@ -47,6 +47,8 @@ import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.common.util.AssertUtil;
 import com.vmware.admiral.common.util.OperationUtil;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
@@ -62,6 +64,7 @@ import com.vmware.admiral.compute.container.ServiceNetwork;
 import com.vmware.admiral.compute.container.Ulimit;
 import com.vmware.admiral.compute.content.ServiceLinkSerializer;
 import com.vmware.admiral.request.ContainerAllocationTaskService.ContainerAllocationTaskState.SubStage;
+import com.vmware.admiral.request.ContainerProvisioningSchedulerService.ProvisioningRequest;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.admiral.request.ResourceNamePrefixTaskService.ResourceNamePrefixTaskState;
 import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
@@ -77,9 +80,11 @@ import com.vmware.photon.controller.model.resources.ResourceState;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * Task implementing the provision container request resource work flow.
@@ -91,12 +96,23 @@ public class ContainerAllocationTaskService extends
     public static final String HEALTH_CHECK_TIMEOUT_PARAM_NAME = "provision.container.health.check.timeout.ms";
     public static final String HEALTH_CHECK_DELAY_PARAM_NAME = "provision.container.health.check.delay.ms";
 
+    /**
+     * delay before a container provisioning rejected by a full provisioning queue is submitted
+     * again
+     */
+    private static final long PROVISIONING_RETRY_DELAY_MICROS = Long.getLong(
+            "com.vmware.admiral.request.container.provisioning.retry.delay.micros",
+            TimeUnit.SECONDS.toMicros(5));
+
     // cached container description
     private volatile ContainerDescription containerDescription;
 
     private long healthCheckDelay;
     private long healthCheckTimeout;
 
+    // time the provisioning was requested, orders the requests in the provisioning queue
+    private volatile long provisioningRequestTimeMicros;
+
     public static class ContainerAllocationTaskState extends
             com.vmware.admiral.service.common.TaskServiceDocument<ContainerAllocationTaskState.SubStage> {
 
@@ -629,10 +645,38 @@ public class ContainerAllocationTaskService extends
 
         logInfo("Provision request for %s containers", state.resourceCount);
 
-        for (String resourceLink : state.resourceLinks) {
-            createContainerInstanceRequests(state, taskCallback, resourceLink);
-        }
+        this.provisioningRequestTimeMicros = Utils.getSystemNowMicrosUtc();
+        // move to PROVISIONING before any request is sent, so that the completion of the
+        // requests is not overridden
         proceedTo(SubStage.PROVISIONING);
+        queryContainerHostLinks(state.resourceLinks, (hostLinks) -> {
+            for (String resourceLink : state.resourceLinks) {
+                createContainerInstanceRequests(state, taskCallback, resourceLink,
+                        hostLinks.get(resourceLink));
+            }
+        });
+    }
+
+    /**
+     * Retrieves the hosts of the containers with a single query, the provisioning requests are
+     * queued per host.
+     */
+    private void queryContainerHostLinks(Collection<String> resourceLinks,
+            Consumer<Map<String, String>> callback) {
+        QueryTask queryTask = QueryUtil.buildQuery(ContainerState.class, false);
+        QueryUtil.addListValueClause(queryTask, ServiceDocument.FIELD_NAME_SELF_LINK,
+                resourceLinks);
+        QueryUtil.addExpandOption(queryTask);
+        Map<String, String> hostLinks = new HashMap<>();
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).query(queryTask, (r) -> {
+            if (r.hasException()) {
+                failTask("Failure retrieving the hosts of the containers", r.getException());
+            } else if (r.hasResult()) {
+                hostLinks.put(r.getDocumentSelfLink(), r.getResult().parentLink);
+            } else {
+                callback.accept(hostLinks);
+            }
+        });
     }
 
     private boolean isAllocationRequest(ContainerAllocationTaskState state) {
@@ -854,22 +898,38 @@ public class ContainerAllocationTaskService extends
     }
 
     private void createContainerInstanceRequests(ContainerAllocationTaskState state,
-            ServiceTaskCallback taskCallback, String containerSelfLink) {
+            ServiceTaskCallback taskCallback, String containerSelfLink, String hostLink) {
         AdapterRequest adapterRequest = new AdapterRequest();
         adapterRequest.resourceReference = UriUtils.buildUri(getHost(), containerSelfLink);
         adapterRequest.serviceTaskCallback = taskCallback;
         adapterRequest.operationTypeId = ContainerOperationType.CREATE.id;
         adapterRequest.customProperties = state.customProperties;
 
-        sendRequest(Operation.createPatch(getHost(), state.instanceAdapterReference.toString())
-                .setBody(adapterRequest)
+        ProvisioningRequest provisioningRequest = new ProvisioningRequest();
+        provisioningRequest.hostLink = hostLink;
+        provisioningRequest.adapterReference = UriUtils.buildUri(getHost(),
+                state.instanceAdapterReference.toString());
+        provisioningRequest.adapterRequest = adapterRequest;
+        provisioningRequest.requestTimeMicros = this.provisioningRequestTimeMicros;
+
+        sendRequest(Operation.createPost(this, ContainerProvisioningSchedulerService.SELF_LINK)
+                .setBody(provisioningRequest)
                 .setContextId(getSelfId())
                 .setCompletion((o, e) -> {
+                    if (o.getStatusCode() == Operation.STATUS_CODE_UNAVAILABLE) {
+                        // the provisioning queue is full, submit the request again later
+                        logInfo("Provisioning of %s postponed, provisioning queue is full",
+                                containerSelfLink);
+                        getHost().schedule(() -> createContainerInstanceRequests(state,
+                                taskCallback, containerSelfLink, hostLink),
+                                PROVISIONING_RETRY_DELAY_MICROS, TimeUnit.MICROSECONDS);
+                        return;
+                    }
                     if (e != null) {
                         failTask("AdapterRequest failed for container: " + containerSelfLink, e);
                         return;
                     }
-                    logInfo("Container provisioning started for: %s", containerSelfLink);
+                    logInfo("Container provisioning scheduled for: %s", containerSelfLink);
                 }));
     }
 
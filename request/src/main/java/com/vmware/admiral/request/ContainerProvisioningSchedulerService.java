@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.service.common.ServiceTaskCallback;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+
+/**
+ * Node local admission control of the container provisioning requests sent to the container
+ * adapters. The requests are queued per Docker host and dispatched in the order of their request
+ * time, with limits on the number of requests being provisioned on a single host and on the node.
+ * <p>
+ * The adapter reports the result of the provisioning directly to the callback of the request, so
+ * the result is not lost when this node restarts. The slot of a dispatched request is released
+ * when the periodic maintenance finds its container provisioned or removed, or when the request
+ * times out. When the queue is full new requests are rejected with
+ * {@link Operation#STATUS_CODE_UNAVAILABLE} and have to be submitted again later.
+ */
+public class ContainerProvisioningSchedulerService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.REQUEST_CONTAINER_PROVISIONING_SCHEDULER;
+
+    public static final String STAT_NAME_QUEUED_REQUESTS = "queuedRequests";
+    public static final String STAT_NAME_RUNNING_REQUESTS = "runningRequests";
+    public static final String STAT_NAME_REJECTED_REQUESTS = "rejectedRequests";
+    public static final String STAT_NAME_EXPIRED_REQUESTS = "expiredRequests";
+    public static final String STAT_NAME_QUEUE_WAIT_MICROS_PREFIX = "queueWaitMicros:";
+
+    private static final int MAX_REQUESTS = Integer.getInteger(
+            "com.vmware.admiral.request.container.provisioning.max.requests", 64);
+
+    private static final int MAX_REQUESTS_PER_HOST = Integer.getInteger(
+            "com.vmware.admiral.request.container.provisioning.max.requests.per.host", 8);
+
+    private static final int MAX_QUEUED_REQUESTS = Integer.getInteger(
+            "com.vmware.admiral.request.container.provisioning.max.queued.requests", 10000);
+
+    /**
+     * interval of the check for provisioned containers which slots can be released
+     */
+    private static final long MAINTENANCE_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.request.container.provisioning.maintenance.interval.micros",
+            TimeUnit.SECONDS.toMicros(1));
+
+    /**
+     * time after which a dispatched request which container is still being provisioned does not
+     * occupy a slot anymore
+     */
+    private static final long REQUEST_TIMEOUT_MICROS = Long.getLong(
+            "com.vmware.admiral.request.container.provisioning.request.timeout.micros",
+            TimeUnit.MINUTES.toMicros(10));
+
+    public static class ProvisioningRequest {
+        /** Link of the host of the container. */
+        public String hostLink;
+
+        /** Reference of the adapter to send the request to. */
+        public URI adapterReference;
+
+        /** The request to send to the adapter, its callback receives the result. */
+        public AdapterRequest adapterRequest;
+
+        /** Time the provisioning was requested, older requests are dispatched first. */
+        public long requestTimeMicros;
+    }
+
+    private static class Entry {
+        final String resourceLink;
+        final String hostLink;
+        final ProvisioningRequest request;
+        final long sequence;
+        long queueTimeMicros;
+        long dispatchTimeMicros;
+        boolean running;
+
+        Entry(String hostLink, ProvisioningRequest request, long sequence) {
+            this.resourceLink = request.adapterRequest.resourceReference.getPath();
+            this.hostLink = hostLink;
+            this.request = request;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> REQUEST_AGE_ORDER = Comparator
+            .comparingLong((Entry e) -> e.request.requestTimeMicros)
+            .thenComparingLong(e -> e.sequence);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // package-private for testing
+    long requestTimeoutMicros = REQUEST_TIMEOUT_MICROS;
+
+    // guarded by this
+    private final Map<String, PriorityQueue<Entry>> queues = new HashMap<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private final Map<String, Entry> runningEntries = new HashMap<>();
+    private int queued;
+
+    public ContainerProvisioningSchedulerService() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(MAINTENANCE_INTERVAL_MICROS);
+    }
+
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        ProvisioningRequest request = post.getBody(ProvisioningRequest.class);
+        try {
+            AssertUtil.assertNotNull(request.hostLink, "hostLink");
+            AssertUtil.assertNotNull(request.adapterReference, "adapterReference");
+            AssertUtil.assertNotNull(request.adapterRequest, "adapterRequest");
+            AssertUtil.assertNotNull(request.adapterRequest.resourceReference,
+                    "adapterRequest.resourceReference");
+            AssertUtil.assertNotNull(request.adapterRequest.serviceTaskCallback,
+                    "adapterRequest.serviceTaskCallback");
+        } catch (Throwable e) {
+            post.fail(e);
+            return;
+        }
+
+        Entry entry = new Entry(request.hostLink, request, sequence.incrementAndGet());
+        synchronized (this) {
+            if (queued >= MAX_QUEUED_REQUESTS) {
+                adjustStat(STAT_NAME_REJECTED_REQUESTS, 1);
+                post.fail(Operation.STATUS_CODE_UNAVAILABLE);
+                return;
+            }
+            entry.queueTimeMicros = Utils.getSystemNowMicrosUtc();
+            queues.computeIfAbsent(entry.hostLink, k -> new PriorityQueue<>(REQUEST_AGE_ORDER))
+                    .add(entry);
+            queued++;
+            setStat(STAT_NAME_QUEUED_REQUESTS, queued);
+        }
+        post.complete();
+        dispatch();
+    }
+
+    /**
+     * Releases the slots of the dispatched requests which containers are not being provisioned
+     * anymore or which timed out and dispatches the next requests.
+     */
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        post.complete();
+
+        Set<String> resourceLinks;
+        synchronized (this) {
+            long expirationMicros = Utils.getSystemNowMicrosUtc() - requestTimeoutMicros;
+            for (Entry entry : new ArrayList<>(runningEntries.values())) {
+                if (entry.dispatchTimeMicros < expirationMicros) {
+                    logWarning("Container %s not provisioned in %d seconds, releasing its slot",
+                            entry.resourceLink,
+                            TimeUnit.MICROSECONDS.toSeconds(requestTimeoutMicros));
+                    adjustStat(STAT_NAME_EXPIRED_REQUESTS, 1);
+                    release(entry);
+                }
+            }
+            resourceLinks = new HashSet<>(runningEntries.keySet());
+        }
+        if (resourceLinks.isEmpty()) {
+            dispatch();
+            return;
+        }
+
+        QueryTask queryTask = QueryUtil.buildQuery(ContainerState.class, false);
+        QueryUtil.addListValueClause(queryTask, ServiceDocument.FIELD_NAME_SELF_LINK,
+                resourceLinks);
+        QueryUtil.addExpandOption(queryTask);
+        // the containers not found anymore were removed and release their slots as well
+        Set<String> provisioningLinks = new HashSet<>();
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).query(queryTask, r -> {
+            if (r.hasException()) {
+                logWarning("Failed to query provisioned containers: %s",
+                        Utils.toString(r.getException()));
+            } else if (r.hasResult()) {
+                if (r.getResult().powerState == PowerState.PROVISIONING) {
+                    provisioningLinks.add(r.getDocumentSelfLink());
+                }
+            } else {
+                synchronized (this) {
+                    resourceLinks.stream()
+                            .filter(link -> !provisioningLinks.contains(link))
+                            .map(runningEntries::get)
+                            .filter(entry -> entry != null)
+                            .collect(Collectors.toList())
+                            .forEach(this::release);
+                }
+                dispatch();
+            }
+        });
+    }
+
+    private void dispatch() {
+        List<Entry> dispatched = new ArrayList<>();
+        synchronized (this) {
+            while (runningEntries.size() < MAX_REQUESTS) {
+                Entry next = null;
+                for (Map.Entry<String, PriorityQueue<Entry>> e : queues.entrySet()) {
+                    if (runningPerHost.getOrDefault(e.getKey(), 0) >= MAX_REQUESTS_PER_HOST) {
+                        continue;
+                    }
+                    Entry head = e.getValue().peek();
+                    if (next == null || REQUEST_AGE_ORDER.compare(head, next) < 0) {
+                        next = head;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+
+                PriorityQueue<Entry> queue = queues.get(next.hostLink);
+                queue.poll();
+                if (queue.isEmpty()) {
+                    queues.remove(next.hostLink);
+                }
+                queued--;
+                Entry previous = runningEntries.get(next.resourceLink);
+                if (previous != null) {
+                    // submitted again, e.g. by a restarted task
+                    release(previous);
+                }
+                runningEntries.put(next.resourceLink, next);
+                runningPerHost.merge(next.hostLink, 1, Integer::sum);
+                next.running = true;
+                next.dispatchTimeMicros = Utils.getSystemNowMicrosUtc();
+                dispatched.add(next);
+            }
+            setStat(STAT_NAME_QUEUED_REQUESTS, queued);
+            setStat(STAT_NAME_RUNNING_REQUESTS, runningEntries.size());
+        }
+
+        for (Entry entry : dispatched) {
+            send(entry);
+        }
+    }
+
+    private void send(Entry entry) {
+        long waitMicros = entry.dispatchTimeMicros - entry.queueTimeMicros;
+        setStat(STAT_NAME_QUEUE_WAIT_MICROS_PREFIX + entry.hostLink, waitMicros);
+
+        sendRequest(Operation.createPatch(entry.request.adapterReference)
+                .setBody(entry.request.adapterRequest)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        failRequest(entry, e);
+                    }
+                }));
+    }
+
+    private void failRequest(Entry entry, Throwable ex) {
+        synchronized (this) {
+            if (!release(entry)) {
+                return;
+            }
+        }
+        logWarning("Adapter request for %s failed: %s", entry.resourceLink, Utils.toString(ex));
+
+        ServiceTaskCallback callback = entry.request.adapterRequest.serviceTaskCallback;
+        sendRequest(Operation.createPatch(buildCallbackUri(callback))
+                .setBody(callback.getFailedResponse(ex))
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Notifying %s for failed provisioning failed: %s",
+                                callback.serviceSelfLink, Utils.toString(e));
+                    }
+                }));
+        dispatch();
+    }
+
+    /**
+     * Frees the slot of a dispatched request and forgets it. Returns whether the request was
+     * still running. Must be called while holding the lock.
+     */
+    private boolean release(Entry entry) {
+        if (!entry.running) {
+            return false;
+        }
+        entry.running = false;
+        runningEntries.remove(entry.resourceLink, entry);
+        runningPerHost.computeIfPresent(entry.hostLink, (k, v) -> v > 1 ? v - 1 : null);
+        setStat(STAT_NAME_RUNNING_REQUESTS, runningEntries.size());
+        return true;
+    }
+
+    private URI buildCallbackUri(ServiceTaskCallback callback) {
+        if (callback.isExternal()) {
+            return URI.create(callback.serviceSelfLink);
+        }
+        return UriUtils.buildUri(getHost(), callback.serviceSelfLink);
+    }
+}
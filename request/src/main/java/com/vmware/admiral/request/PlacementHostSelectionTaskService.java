@@ -31,6 +31,8 @@ import java.util.stream.Collectors;
 import com.esotericsoftware.kryo.serializers.VersionFieldSerializer.Since;
 
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.metrics.MetricRegistry;
+import com.vmware.admiral.common.metrics.MetricRegistry.Histogram;
 import com.vmware.admiral.common.serialization.ReleaseConstants;
 import com.vmware.admiral.common.util.AssertUtil;
 import com.vmware.admiral.common.util.QueryUtil;
@@ -74,6 +76,10 @@ public class PlacementHostSelectionTaskService
     private static final int QUERY_RETRY_COUNT = Integer.getInteger(
             "com.vmware.admiral.service.placement.query.retries", 2);
 
+    private static final Histogram FILTER_DURATION = MetricRegistry.getDefault().histogram(
+            "admiral_placement_filter_duration_seconds",
+            "Duration of the filtering of the candidate hosts of a placement.");
+
     // cached component description
     private volatile ReservationComponentDescription description;
 
@@ -305,7 +311,7 @@ public class PlacementHostSelectionTaskService
         try {
             final AffinityFilters filters = AffinityFilters.build(getHost(),
                     description.getServiceDocument());
-            filter(state, filteredByMemory, filters.getQueue());
+            filter(state, filteredByMemory, filters.getQueue(), System.nanoTime());
         } catch (Exception e) {
             failTask(null, e);
         }
@@ -376,7 +382,7 @@ public class PlacementHostSelectionTaskService
     @SuppressWarnings({ "rawtypes", "unchecked" })
     private void filter(final PlacementHostSelectionTaskState state,
             final Map<String, HostSelection> hostSelectionMap,
-            final Queue<HostSelectionFilter> filters) {
+            final Queue<HostSelectionFilter> filters, final long startNanos) {
         if (isNoSelection(hostSelectionMap)) {
             failTask(null, new LocalizableValidationException("No suitable host available",
                     "request.placement.compute.missing"));
@@ -384,6 +390,8 @@ public class PlacementHostSelectionTaskService
         } else {
             final HostSelectionFilter filter = filters.poll();
             if (filter == null) {
+                FILTER_DURATION.observeMicros(
+                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
                 complete(state, hostSelectionMap);
             } else {
                 filter.filter(state, hostSelectionMap, (filteredHostSelectionMap, e) -> {
@@ -395,7 +403,7 @@ public class PlacementHostSelectionTaskService
                         }
                         return;
                     }
-                    filter(state, filteredHostSelectionMap, filters);
+                    filter(state, filteredHostSelectionMap, filters, startNanos);
                 });
             }
         }
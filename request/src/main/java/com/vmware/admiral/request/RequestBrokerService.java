@@ -372,6 +372,15 @@ public class RequestBrokerService extends
         requestStatus.name = name;
         requestStatus.documentSelfLink = state.requestTrackerLink;
         requestStatus.taskInfo = new TaskState();
+        // keep the order with the aggregated progress updates of the component tasks
+        if (aggregateRequestTrackerUpdate(state.requestTrackerLink, requestStatus,
+                () -> patchRequestTrackerName(state, requestStatus))) {
+            return;
+        }
+        patchRequestTrackerName(state, requestStatus);
+    }
+
+    private void patchRequestTrackerName(RequestBrokerState state, RequestStatus requestStatus) {
         Operation.createPatch(getHost(), state.requestTrackerLink)
                 .setBodyNoCloning(requestStatus)
                 .setCompletion((o, e) -> {
@@ -31,7 +31,10 @@ import com.vmware.admiral.common.util.UriUtilsExtended;
 import com.vmware.admiral.compute.ResourceType;
 import com.vmware.admiral.request.composition.CompositionGraph.ResourceNode;
 import com.vmware.admiral.request.composition.CompositionSubTaskService;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
 import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService.RequestStatusBatch;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption;
@@ -117,12 +120,39 @@ public class RequestStatusService extends StatefulService {
         RequestStatus body = patch.getBody(RequestStatus.class);
         RequestStatus state = getState(patch);
 
-        if (body.components != null) {
+        if (RequestStatusBatch.KIND.equals(body.documentKind)) {
+            // coalesced updates from the RequestStatusAggregatorService of a node
+            RequestStatusBatch batch = patch.getBody(RequestStatusBatch.class);
+            if (batch.updates != null) {
+                // keep the first reported name and resource links, like the separate updates do,
+                // and apply the final stages last so they are not overridden by in-flight tasks
+                for (TaskStatusState update : batch.updates) {
+                    handleUpdateNameAndResourceLinks(state, update);
+                }
+                for (TaskStatusState update : batch.updates) {
+                    if (!RequestStatusAggregatorService.isFinal(update)) {
+                        handleUpdateProgress(state, update);
+                    }
+                }
+                for (TaskStatusState update : batch.updates) {
+                    if (RequestStatusAggregatorService.isFinal(update)) {
+                        handleUpdateProgress(state, update);
+                    }
+                }
+            }
+        } else if (body.components != null) {
             handleUpdateComponents(state, body);
+            handleUpdateNameAndResourceLinks(state, body);
         } else {
             handleUpdateProgress(state, body);
+            handleUpdateNameAndResourceLinks(state, body);
         }
 
+        setState(patch, state);
+        patch.complete();
+    }
+
+    private void handleUpdateNameAndResourceLinks(RequestStatus state, TaskStatusState body) {
         if (state.name == null && body.name != null) {
             state.name = body.name;
         }
@@ -133,19 +163,16 @@ public class RequestStatusService extends StatefulService {
                 || willChangeToK8s(state, body)) {
             state.resourceLinks = body.resourceLinks;
         }
-
-        setState(patch, state);
-        patch.complete();
     }
 
-    private boolean willChangeToK8s(RequestStatus state, RequestStatus body) {
+    private boolean willChangeToK8s(RequestStatus state, TaskStatusState body) {
         return state.resourceLinks != null
                 && state.resourceLinks.stream().anyMatch( l -> l.contains(ManagementUriParts.COMPOSITE_COMPONENT))
                 && body.resourceLinks != null
                 && body.resourceLinks.stream().anyMatch(l -> l.contains(ManagementUriParts.KUBERNETES_DEPLOYMENTS));
     }
 
-    private void handleUpdateProgress(RequestStatus state, RequestStatus body) {
+    private void handleUpdateProgress(RequestStatus state, TaskStatusState body) {
         state.phase = body.phase;
         String component = DEFAULT_COMPONENT_NAME;
         String requestId = getSelfId();
@@ -28,7 +28,8 @@ import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.service.common.AbstractTaskStatefulService;
 import com.vmware.admiral.service.common.DefaultSubStage;
-import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRequest;
+import com.vmware.admiral.service.common.ResourceNamePrefixAllocationService;
+import com.vmware.admiral.service.common.ResourceNamePrefixAllocationService.NamePrefixAllocationRequest;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixResponse;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.ResourceNamePrefixState;
 import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
@@ -134,12 +135,13 @@ public class ResourceNamePrefixTaskService
     private void requestResourceNamePrefix(ResourceNamePrefixTaskState state,
             String resourceNamePrefixLink, Iterator<String> iterator, boolean globalSearch) {
 
-        NamePrefixRequest namePrefixRequest = new NamePrefixRequest();
-        namePrefixRequest.resourceCount = state.resourceCount;
+        NamePrefixAllocationRequest allocationRequest = new NamePrefixAllocationRequest();
+        allocationRequest.resourceNamePrefixLink = resourceNamePrefixLink;
+        allocationRequest.resourceCount = state.resourceCount;
 
         sendRequest(Operation
-                .createPatch(this, resourceNamePrefixLink)
-                .setBody(namePrefixRequest)
+                .createPost(this, ResourceNamePrefixAllocationService.SELF_LINK)
+                .setBody(allocationRequest)
                 .setCompletion((o, e) -> {
                     if (e != null) {
                         logWarning("Failure requesting resource name prefixes: %s. Retrying with"
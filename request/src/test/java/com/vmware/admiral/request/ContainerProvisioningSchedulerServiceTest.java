@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.adapter.common.ContainerOperationType;
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.request.ContainerProvisioningSchedulerService.ProvisioningRequest;
+import com.vmware.admiral.service.common.ServiceTaskCallback;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+
+public class ContainerProvisioningSchedulerServiceTest extends BaseTestCase {
+
+    private static final String ADAPTER_LINK = "/test/provisioning-adapter";
+    private static final String CALLBACK_LINK = "/test/provisioning-callback";
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+
+    private final List<AdapterRequest> adapterRequests = Collections
+            .synchronizedList(new ArrayList<>());
+    private final List<ServiceTaskCallbackResponse> callbackResponses = Collections
+            .synchronizedList(new ArrayList<>());
+
+    private ContainerProvisioningSchedulerService scheduler;
+
+    @Before
+    public void setUp() throws Throwable {
+        host.startServiceAndWait(new StatelessService() {
+            @Override
+            public void handlePatch(Operation patch) {
+                adapterRequests.add(patch.getBody(AdapterRequest.class));
+                patch.complete();
+            }
+        }, ADAPTER_LINK, null);
+        host.startServiceAndWait(new StatelessService() {
+            @Override
+            public void handlePatch(Operation patch) {
+                callbackResponses.add(patch.getBody(ServiceTaskCallbackResponse.class));
+                patch.complete();
+            }
+        }, CALLBACK_LINK, null);
+        host.startServiceAndWait(ContainerFactoryService.class, ContainerFactoryService.SELF_LINK);
+        scheduler = new ContainerProvisioningSchedulerService();
+        host.startServiceAndWait(scheduler, ContainerProvisioningSchedulerService.SELF_LINK,
+                null);
+    }
+
+    @Test
+    public void testPerHostLimitAndRequestAgeOrder() throws Throwable {
+        for (int i = 0; i < MAX_REQUESTS_PER_HOST; i++) {
+            submit("/hosts/host1", "c" + i, 10);
+        }
+        submit("/hosts/host1", "newer", 300);
+        submit("/hosts/host1", "older", 200);
+        submit("/hosts/host2", "other-host", 400);
+
+        // the requests above the limit of host1 are queued, host2 is not affected
+        waitFor(() -> adapterRequests.size() == MAX_REQUESTS_PER_HOST + 1);
+        Thread.sleep(2000);
+        assertEquals(MAX_REQUESTS_PER_HOST + 1, adapterRequests.size());
+        assertTrue(adapterRequests.stream().anyMatch(
+                r -> r.resourceReference.getPath().equals(containerLink("other-host"))));
+
+        // the adapter reports to the original callback
+        AdapterRequest first = findRequest(containerLink("c0"));
+        assertEquals(CALLBACK_LINK, first.serviceTaskCallback.serviceSelfLink);
+
+        // the first container is provisioned, the oldest queued request is dispatched
+        ContainerState patch = new ContainerState();
+        patch.powerState = PowerState.RUNNING;
+        doPatch(patch, containerLink("c0"));
+        waitFor(() -> adapterRequests.size() == MAX_REQUESTS_PER_HOST + 2);
+        assertEquals(containerLink("older"),
+                adapterRequests.get(adapterRequests.size() - 1).resourceReference.getPath());
+
+        // a removed container releases its slot as well
+        delete(containerLink("c1"));
+        waitFor(() -> adapterRequests.size() == MAX_REQUESTS_PER_HOST + 3);
+        assertEquals(containerLink("newer"),
+                adapterRequests.get(adapterRequests.size() - 1).resourceReference.getPath());
+        assertTrue(callbackResponses.isEmpty());
+    }
+
+    @Test
+    public void testExpiredRequestReleasesSlot() throws Throwable {
+        scheduler.requestTimeoutMicros = TimeUnit.SECONDS.toMicros(2);
+        for (int i = 0; i < MAX_REQUESTS_PER_HOST + 1; i++) {
+            submit("/hosts/host1", "c" + i, 10 + i);
+        }
+        waitFor(() -> adapterRequests.size() == MAX_REQUESTS_PER_HOST);
+
+        // none of the containers is provisioned, the queued request waits for the timeout
+        waitFor(() -> adapterRequests.size() == MAX_REQUESTS_PER_HOST + 1);
+        assertEquals(containerLink("c" + MAX_REQUESTS_PER_HOST),
+                adapterRequests.get(adapterRequests.size() - 1).resourceReference.getPath());
+    }
+
+    @Test
+    public void testAdapterFailureIsReported() throws Throwable {
+        ProvisioningRequest request = createRequest("/hosts/host1", "c1", 10);
+        request.adapterReference = UriUtils.buildUri(host, "/test/missing-adapter");
+        host.getTestRequestSender().sendAndWait(Operation
+                .createPost(host, ContainerProvisioningSchedulerService.SELF_LINK)
+                .setBody(request));
+
+        waitFor(() -> callbackResponses.size() == 1);
+        assertEquals(TaskStage.FAILED, callbackResponses.get(0).taskInfo.stage);
+    }
+
+    private void submit(String hostLink, String containerName, long requestTimeMicros)
+            throws Throwable {
+        ContainerState container = new ContainerState();
+        container.documentSelfLink = containerName;
+        container.parentLink = hostLink;
+        container.powerState = PowerState.PROVISIONING;
+        doPost(container, ContainerFactoryService.SELF_LINK);
+
+        host.getTestRequestSender().sendAndWait(Operation
+                .createPost(host, ContainerProvisioningSchedulerService.SELF_LINK)
+                .setBody(createRequest(hostLink, containerName, requestTimeMicros)));
+    }
+
+    private ProvisioningRequest createRequest(String hostLink, String containerName,
+            long requestTimeMicros) {
+        AdapterRequest adapterRequest = new AdapterRequest();
+        adapterRequest.resourceReference = UriUtils.buildUri(host, containerLink(containerName));
+        adapterRequest.operationTypeId = ContainerOperationType.CREATE.id;
+        adapterRequest.serviceTaskCallback = ServiceTaskCallback.create(CALLBACK_LINK);
+
+        ProvisioningRequest request = new ProvisioningRequest();
+        request.hostLink = hostLink;
+        request.adapterReference = UriUtils.buildUri(host, ADAPTER_LINK);
+        request.adapterRequest = adapterRequest;
+        request.requestTimeMicros = requestTimeMicros;
+        return request;
+    }
+
+    private static String containerLink(String containerName) {
+        return UriUtils.buildUriPath(ContainerFactoryService.SELF_LINK, containerName);
+    }
+
+    private AdapterRequest findRequest(String containerLink) {
+        synchronized (adapterRequests) {
+            return adapterRequests.stream()
+                    .filter(r -> r.resourceReference.getPath().equals(containerLink))
+                    .findFirst().get();
+        }
+    }
+}
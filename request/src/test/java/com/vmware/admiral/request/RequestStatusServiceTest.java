@@ -19,6 +19,7 @@ import static org.junit.Assert.assertTrue;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
@@ -41,7 +42,11 @@ import com.vmware.admiral.request.RequestStatusService.RequestStatus;
 import com.vmware.admiral.request.composition.CompositionTaskFactoryService;
 import com.vmware.admiral.request.composition.CompositionTaskService.CompositionTaskState;
 import com.vmware.admiral.request.util.TestRequestStateFactory;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
 import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService.RequestStatusBatch;
+import com.vmware.admiral.service.common.RequestStatusAggregatorService.RequestTrackerUpdate;
 import com.vmware.admiral.service.test.MockDockerAdapterService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
@@ -49,6 +54,8 @@ import com.vmware.xenon.common.Service.Action;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription.TypeName;
 import com.vmware.xenon.common.ServiceHost.Arguments;
+import com.vmware.xenon.common.ServiceStats.ServiceStat;
+import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.TaskState;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
@@ -303,6 +310,70 @@ public class RequestStatusServiceTest extends RequestBaseTest {
         }
     }
 
+    @Test
+    public void testCoalescedRequestTrackerUpdates() throws Throwable {
+        host.waitForServiceAvailable(RequestStatusAggregatorService.SELF_LINK);
+        URI aggregatorUri = UriUtils.buildUri(host, RequestStatusAggregatorService.SELF_LINK);
+
+        // a dedicated request tracker, so that only the PATCHes of this test are counted
+        List<RequestStatusBatch> batches = Collections.synchronizedList(new ArrayList<>());
+        requestId = UUID.randomUUID().toString();
+        String requestTrackerLink = UriUtils.buildUriPath("test-request-tracker", requestId);
+        host.startServiceAndWait(new StatelessService() {
+            @Override
+            public void handlePatch(Operation patch) {
+                batches.add(patch.getBody(RequestStatusBatch.class));
+                patch.complete();
+            }
+        }, requestTrackerLink, null);
+
+        int updates = 0;
+        for (int progress : new int[] { 10, 50, 30 }) {
+            sendRequestTrackerUpdate(requestTrackerLink, TaskState.createAsStarted(), progress);
+            updates++;
+        }
+        waitFor(() -> !batches.isEmpty());
+
+        // final stages are not delayed
+        sendRequestTrackerUpdate(requestTrackerLink, TaskState.createAsFinished(), 100);
+        updates++;
+        waitFor(() -> {
+            synchronized (batches) {
+                return batches.stream().anyMatch(b -> b.updates.stream()
+                        .anyMatch(RequestStatusAggregatorService::isFinal));
+            }
+        });
+
+        assertTrue(String.format("%d PATCHes sent for %d updates", batches.size(), updates),
+                batches.size() < updates);
+        assertEquals(Integer.valueOf(50), batches.get(0).updates.stream()
+                .map(u -> u.progress).max(Integer::compare).get());
+        assertTrue(getStatValue(aggregatorUri,
+                RequestStatusAggregatorService.STAT_NAME_COALESCING_RATIO) > 1);
+    }
+
+    private void sendRequestTrackerUpdate(String requestTrackerLink, TaskState taskInfo,
+            int progress) {
+        TaskStatusState taskStatus = new TaskStatusState();
+        taskStatus.documentSelfLink = requestId + "-component";
+        taskStatus.phase = "phase";
+        taskStatus.taskInfo = taskInfo;
+        taskStatus.subStage = taskInfo.stage.name();
+        taskStatus.progress = progress;
+
+        RequestTrackerUpdate update = new RequestTrackerUpdate();
+        update.requestTrackerLink = requestTrackerLink;
+        update.taskStatus = taskStatus;
+        host.sendAndWaitExpectSuccess(Operation
+                .createPatch(host, RequestStatusAggregatorService.SELF_LINK)
+                .setBody(update));
+    }
+
+    private double getStatValue(URI serviceUri, String statName) {
+        ServiceStat stat = host.getServiceStats(serviceUri).get(statName);
+        return stat == null ? 0 : stat.latestValue;
+    }
+
     @After
     public void logRequestHistory() throws Throwable {
         try {
@@ -11,26 +11,21 @@
 
 package com.vmware.admiral.upgrade.transformation;
 
-import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.vmware.admiral.common.ManagementUriParts;
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.CompositeComponentService.CompositeComponent;
+import com.vmware.admiral.upgrade.transformation.util.TransformationRunner;
 import com.vmware.photon.controller.model.resources.ResourceState;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.OperationJoin;
 import com.vmware.xenon.common.ServiceHost.ServiceNotFoundException;
 import com.vmware.xenon.common.StatelessService;
-import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
-import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * The service is executed during the upgrade from VIC 1.1 to 1.2 and vRA 7.3 to 7.4. The service
@@ -40,63 +35,40 @@ public class CompositeComponentsTransformationService extends StatelessService {
 
     public static final String SELF_LINK = ManagementUriParts.COMPOSITE_COMPONENTS_UPGRADE_TRANSFORM_PATH;
 
-    AtomicInteger compositeComponentsCount;
-
     @Override
     public void handlePost(Operation post) {
-        QueryTask queryTask = QueryUtil.buildQuery(CompositeComponent.class, true);
-        QueryUtil.addExpandOption(queryTask);
-        List<CompositeComponent> compositeComponents = new ArrayList<CompositeComponent>();
-        new ServiceDocumentQuery<CompositeComponent>(getHost(), CompositeComponent.class)
-                .query(queryTask, (r) -> {
-                    if (r.hasException()) {
-                        post.fail(r.getException());
-                        logSevere("Failed to get composite components");
-                    } else if (r.hasResult()) {
-                        compositeComponents.add(r.getResult());
-                    } else {
-                        if (compositeComponents.isEmpty()) {
-                            post.complete();
-                        }
-                        logInfo("Number of applications: %d", compositeComponents.size());
-                        processApplications(compositeComponents, post);
+        new TransformationRunner<>(getHost(), "composite-components", CompositeComponent.class)
+                .setAsyncTransformation(this::transform)
+                .run()
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logSevere("Failed to update tenantLinks of composite components: %s",
+                                Utils.toString(ex));
+                        post.fail(ex);
+                        return;
                     }
+                    logInfo("Composite components tranformation completed successfully");
+                    post.complete();
                 });
     }
 
-    private void processApplications(List<CompositeComponent> compositeComponents, Operation post) {
-        if (compositeComponents.isEmpty()) {
-            logInfo("No applications found. Composite components transformation completed successfully");
-            post.complete();
-            return;
-        }
-        compositeComponentsCount = new AtomicInteger(compositeComponents.size());
-        for (CompositeComponent state : compositeComponents) {
-            processApplication(state, post);
-        }
-    }
-
-    private void processApplication(CompositeComponent state, Operation post) {
-        Set<String> tenantLinks = ConcurrentHashMap.newKeySet();
+    private DeferredResult<CompositeComponent> transform(CompositeComponent state) {
         if (state.componentLinks == null || state.componentLinks.isEmpty()) {
             logInfo("Composite component %s has no componentLinks. Tenant links will not be updated",
                     state.documentSelfLink);
-            if (compositeComponentsCount.decrementAndGet() == 0) {
-                logInfo("Composite components tranformation completed successfully");
-                post.complete();
-            }
-            return;
+            return DeferredResult.completed(null);
         }
         List<Operation> getOperations = state.componentLinks.stream()
                 .map(link -> Operation.createGet(getHost(), link)
                         .setReferer(getUri()))
                 .collect(Collectors.toList());
 
+        DeferredResult<CompositeComponent> result = new DeferredResult<>();
         OperationJoin.create(getOperations).setCompletion((ops, ex) -> {
             if (ex != null) {
                 for (Throwable t : ex.values()) {
                     if (!(t instanceof ServiceNotFoundException)) {
-                        post.fail(new Throwable(
+                        result.fail(new Throwable(
                                 "Error retrieving composite components: " + Utils.toString(ex),
                                 ex.values().iterator().next()));
                         return;
@@ -104,41 +76,25 @@ public class CompositeComponentsTransformationService extends StatelessService {
                 }
             }
 
+            Set<String> tenantLinks = new LinkedHashSet<>();
             for (Operation op : ops.values()) {
+                if (ex != null && ex.containsKey(op.getId())) {
+                    continue;
+                }
                 ResourceState document = op.getBody(ResourceState.class);
                 if (document.tenantLinks != null) {
-                    tenantLinks.addAll(new LinkedHashSet<String>(document.tenantLinks));
+                    tenantLinks.addAll(document.tenantLinks);
                 }
             }
-            updateApplicationTenantLinks(state, tenantLinks, post);
+            List<String> mergedTenantLinks = TransformationRunner.mergeTenantLinks(
+                    state.tenantLinks, tenantLinks);
+            if (mergedTenantLinks == null) {
+                result.complete(null);
+                return;
+            }
+            state.tenantLinks = mergedTenantLinks;
+            result.complete(state);
         }).sendWith(getHost());
-    }
-
-    private void updateApplicationTenantLinks(CompositeComponent state, Set<String> tenantLinks,
-            Operation post) {
-
-        if (state.tenantLinks == null) {
-            state.tenantLinks = new ArrayList<>();
-        }
-        state.tenantLinks.addAll(tenantLinks);
-        state.tenantLinks = new ArrayList<>(new LinkedHashSet<String>(state.tenantLinks));
-
-        Operation.createPatch(this, state.documentSelfLink)
-                .setBody(state)
-                .setReferer(UriUtils.buildUri(getHost(), SELF_LINK))
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        logSevere("Failed to update tenantLinks for composite component %s",
-                                state.documentSelfLink);
-                        post.fail(ex);
-                    } else {
-                        logInfo("Composite component %s updated with tenantLinks",
-                                state.documentSelfLink);
-                        if (compositeComponentsCount.decrementAndGet() == 0) {
-                            logInfo("Composite components tranformation completed successfully");
-                            post.complete();
-                        }
-                    }
-                }).sendWith(getHost());
+        return result;
     }
 }
@@ -11,23 +11,18 @@
 
 package com.vmware.admiral.upgrade.transformation;
 
-import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Set;
 
 import com.vmware.admiral.common.ManagementUriParts;
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.network.ContainerNetworkService.ContainerNetworkState;
-import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.admiral.upgrade.transformation.util.TransformationRunner;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.StatelessService;
-import com.vmware.xenon.common.UriUtils;
-import com.vmware.xenon.services.common.QueryTask;
-import com.vmware.xenon.services.common.QueryTask.Query;
-import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
-import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+import com.vmware.xenon.common.Utils;
 
 /**
  * The service is executed during the upgrade from VIC 1.1 to 1.2 and vRA 7.3 to 7.4. The service
@@ -37,104 +32,49 @@ public class ContainerNetworksTransformationService extends StatelessService {
 
     public static final String SELF_LINK = ManagementUriParts.CONTAINER_NETWORKS_UPGRADE_TRANSFORM_PATH;
 
-    AtomicInteger hostsCount;
-
     @Override
     public void handlePost(Operation post) {
-        QueryTask queryTask = QueryUtil.buildQuery(ComputeState.class, true);
-        QueryUtil.addExpandOption(queryTask);
-        List<ComputeState> hosts = new ArrayList<ComputeState>();
-        new ServiceDocumentQuery<ComputeState>(getHost(), ComputeState.class)
-                .query(queryTask, (r) -> {
-                    if (r.hasException()) {
-                        post.fail(r.getException());
-                        logSevere("Failed to get compute states");
-                    } else if (r.hasResult()) {
-                        hosts.add(r.getResult());
-                    } else {
-                        if (hosts.isEmpty()) {
-                            post.complete();
-                        }
-                        logInfo("Number of hosts found: %d", hosts.size());
-                        processHosts(hosts, post);
+        ContainersTransformationService.getHostsTenantLinks(getHost())
+                .thenCompose(hostsTenantLinks -> {
+                    logInfo("Number of hosts found: %d", hostsTenantLinks.size());
+                    if (hostsTenantLinks.isEmpty()) {
+                        return DeferredResult.completed(null);
+                    }
+                    return new TransformationRunner<>(getHost(), "container-networks",
+                            ContainerNetworkState.class)
+                            .setTransformation(n -> transform(n, hostsTenantLinks))
+                            .run();
+                })
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logSevere("Failed to update tenantLinks of networks: %s",
+                                Utils.toString(ex));
+                        post.fail(ex);
+                        return;
                     }
+                    logInfo("Networks tranformation completed successfully");
+                    post.complete();
                 });
     }
 
-    private void processHosts(List<ComputeState> hosts, Operation post) {
-        hostsCount = new AtomicInteger(hosts.size());
-        for (ComputeState state : hosts) {
-            QueryTask queryTask = QueryUtil.buildQuery(ContainerNetworkState.class, true);
-
-            String parentLinksItemField = QueryTask.QuerySpecification
-                    .buildCollectionItemName(ContainerNetworkState.FIELD_NAME_PARENT_LINKS);
-            Query parentsClause = new Query()
-                    .setTermPropertyName(parentLinksItemField)
-                    .setTermMatchValue(state.documentSelfLink)
-                    .setTermMatchType(MatchType.TERM)
-                    .setOccurance(Occurance.MUST_OCCUR);
-
-            queryTask.querySpec.query.addBooleanClause(parentsClause);
-            QueryUtil.addExpandOption(queryTask);
-
-            List<ContainerNetworkState> networks = new ArrayList<ContainerNetworkState>();
-            new ServiceDocumentQuery<ContainerNetworkState>(getHost(),
-                    ContainerNetworkState.class)
-                            .query(queryTask, (r) -> {
-                                if (r.hasException()) {
-                                    post.fail(r.getException());
-                                    logSevere("Failed to get networks containing parentLink %s",
-                                            state.documentSelfLink);
-                                } else if (r.hasResult()) {
-                                    networks.add(r.getResult());
-                                } else {
-                                    processNetworks(state, networks, post);
-                                    logInfo("Number of networks found with containing parent link %s %d",
-                                            state.documentSelfLink, networks.size());
-                                }
-                            });
+    private static ContainerNetworkState transform(ContainerNetworkState network,
+            Map<String, List<String>> hostsTenantLinks) {
+        if (network.parentLinks == null) {
+            return null;
         }
-    }
-
-    private void processNetworks(ComputeState state, List<ContainerNetworkState> networks,
-            Operation post) {
-        if (networks.size() == 0) {
-            logInfo("No networks found for host %s",
-                    state.documentSelfLink);
-            if (hostsCount.decrementAndGet() == 0) {
-                logInfo("Networks tranformation completed successfully");
-                post.complete();
-                return;
+        Set<String> hostTenantLinks = new LinkedHashSet<>();
+        for (String parentLink : network.parentLinks) {
+            List<String> parentTenantLinks = hostsTenantLinks.get(parentLink);
+            if (parentTenantLinks != null) {
+                hostTenantLinks.addAll(parentTenantLinks);
             }
         }
-        AtomicInteger networksCount = new AtomicInteger(networks.size());
-        for (ContainerNetworkState network : networks) {
-            if (network.tenantLinks == null) {
-                network.tenantLinks = state.tenantLinks;
-            } else {
-                network.tenantLinks.addAll(state.tenantLinks);
-                network.tenantLinks = new ArrayList<String>(
-                        new LinkedHashSet<String>(network.tenantLinks));
-            }
-            Operation.createPatch(this, network.documentSelfLink)
-                    .setBody(network)
-                    .setReferer(UriUtils.buildUri(getHost(), SELF_LINK))
-                    .setCompletion((o, ex) -> {
-                        if (ex != null) {
-                            logSevere("Failed to update tenantLinks for network %s",
-                                    network.documentSelfLink);
-                            post.fail(ex);
-                        } else {
-                            logInfo("Network state %s updated with tenantLinks",
-                                    network.documentSelfLink);
-                            if (networksCount.decrementAndGet() == 0) {
-                                if (hostsCount.decrementAndGet() == 0) {
-                                    logInfo("Networks tranformation completed successfully");
-                                    post.complete();
-                                }
-                            }
-                        }
-                    }).sendWith(getHost());
+        List<String> tenantLinks = TransformationRunner.mergeTenantLinks(network.tenantLinks,
+                hostTenantLinks);
+        if (tenantLinks == null) {
+            return null;
         }
+        network.tenantLinks = tenantLinks;
+        return network;
     }
 }
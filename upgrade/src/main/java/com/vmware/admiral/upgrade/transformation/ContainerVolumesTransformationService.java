@@ -11,23 +11,18 @@
 
 package com.vmware.admiral.upgrade.transformation;
 
-import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Set;
 
 import com.vmware.admiral.common.ManagementUriParts;
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.volume.ContainerVolumeService.ContainerVolumeState;
-import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.admiral.upgrade.transformation.util.TransformationRunner;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.StatelessService;
-import com.vmware.xenon.common.UriUtils;
-import com.vmware.xenon.services.common.QueryTask;
-import com.vmware.xenon.services.common.QueryTask.Query;
-import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
-import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+import com.vmware.xenon.common.Utils;
 
 /**
  * The service is executed during the upgrade from VIC 1.1 to 1.2 and vRA 7.3 to 7.4. The service
@@ -37,104 +32,49 @@ public class ContainerVolumesTransformationService extends StatelessService {
 
     public static final String SELF_LINK = ManagementUriParts.CONTAINER_VOLUMES_UPGRADE_TRANSFORM_PATH;
 
-    AtomicInteger hostsCount;
-
     @Override
     public void handlePost(Operation post) {
-        QueryTask queryTask = QueryUtil.buildQuery(ComputeState.class, true);
-        QueryUtil.addExpandOption(queryTask);
-        List<ComputeState> hosts = new ArrayList<ComputeState>();
-        new ServiceDocumentQuery<ComputeState>(getHost(), ComputeState.class)
-                .query(queryTask, (r) -> {
-                    if (r.hasException()) {
-                        post.fail(r.getException());
-                        logSevere("Failed to get compute states");
-                    } else if (r.hasResult()) {
-                        hosts.add(r.getResult());
-                    } else {
-                        if (hosts.isEmpty()) {
-                            post.complete();
-                        }
-                        logInfo("Number of hosts found: %d", hosts.size());
-                        processHosts(hosts, post);
+        ContainersTransformationService.getHostsTenantLinks(getHost())
+                .thenCompose(hostsTenantLinks -> {
+                    logInfo("Number of hosts found: %d", hostsTenantLinks.size());
+                    if (hostsTenantLinks.isEmpty()) {
+                        return DeferredResult.completed(null);
+                    }
+                    return new TransformationRunner<>(getHost(), "container-volumes",
+                            ContainerVolumeState.class)
+                            .setTransformation(v -> transform(v, hostsTenantLinks))
+                            .run();
+                })
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logSevere("Failed to update tenantLinks of volumes: %s",
+                                Utils.toString(ex));
+                        post.fail(ex);
+                        return;
                     }
+                    logInfo("Volumes tranformation completed successfully");
+                    post.complete();
                 });
     }
 
-    private void processHosts(List<ComputeState> hosts, Operation post) {
-        hostsCount = new AtomicInteger(hosts.size());
-        for (ComputeState state : hosts) {
-            QueryTask queryTask = QueryUtil.buildQuery(ContainerVolumeState.class, true);
-
-            String parentLinksItemField = QueryTask.QuerySpecification
-                    .buildCollectionItemName(ContainerVolumeState.FIELD_NAME_PARENT_LINKS);
-            Query parentsClause = new Query()
-                    .setTermPropertyName(parentLinksItemField)
-                    .setTermMatchValue(state.documentSelfLink)
-                    .setTermMatchType(MatchType.TERM)
-                    .setOccurance(Occurance.MUST_OCCUR);
-
-            queryTask.querySpec.query.addBooleanClause(parentsClause);
-            QueryUtil.addExpandOption(queryTask);
-
-            List<ContainerVolumeState> volumes = new ArrayList<ContainerVolumeState>();
-            new ServiceDocumentQuery<ContainerVolumeState>(getHost(),
-                    ContainerVolumeState.class)
-                            .query(queryTask, (r) -> {
-                                if (r.hasException()) {
-                                    post.fail(r.getException());
-                                    logSevere("Failed to get volumes containing parentLink %s",
-                                            state.documentSelfLink);
-                                } else if (r.hasResult()) {
-                                    volumes.add(r.getResult());
-                                } else {
-                                    processVolumes(state, volumes, post);
-                                    logInfo("Number of volumes found with containing parent link %s %d",
-                                            state.documentSelfLink, volumes.size());
-                                }
-                            });
+    private static ContainerVolumeState transform(ContainerVolumeState volume,
+            Map<String, List<String>> hostsTenantLinks) {
+        if (volume.parentLinks == null) {
+            return null;
         }
-    }
-
-    private void processVolumes(ComputeState state, List<ContainerVolumeState> volumes,
-            Operation post) {
-        if (volumes.size() == 0) {
-            logInfo("No volumes found for host %s",
-                    state.documentSelfLink);
-            if (hostsCount.decrementAndGet() == 0) {
-                logInfo("Volumes tranformation completed successfully");
-                post.complete();
-                return;
+        Set<String> hostTenantLinks = new LinkedHashSet<>();
+        for (String parentLink : volume.parentLinks) {
+            List<String> parentTenantLinks = hostsTenantLinks.get(parentLink);
+            if (parentTenantLinks != null) {
+                hostTenantLinks.addAll(parentTenantLinks);
             }
         }
-        AtomicInteger volumesCount = new AtomicInteger(volumes.size());
-        for (ContainerVolumeState volume : volumes) {
-            if (volume.tenantLinks == null) {
-                volume.tenantLinks = state.tenantLinks;
-            } else {
-                volume.tenantLinks.addAll(state.tenantLinks);
-                volume.tenantLinks = new ArrayList<String>(
-                        new LinkedHashSet<String>(volume.tenantLinks));
-            }
-            Operation.createPatch(this, volume.documentSelfLink)
-                    .setBody(volume)
-                    .setReferer(UriUtils.buildUri(getHost(), SELF_LINK))
-                    .setCompletion((o, ex) -> {
-                        if (ex != null) {
-                            logSevere("Failed to update tenantLinks for volume %s",
-                                    volume.documentSelfLink);
-                            post.fail(ex);
-                        } else {
-                            logInfo("Volume state %s updated with tenantLinks",
-                                    volume.documentSelfLink);
-                            if (volumesCount.decrementAndGet() == 0) {
-                                if (hostsCount.decrementAndGet() == 0) {
-                                    logInfo("Volumes tranformation completed successfully");
-                                    post.complete();
-                                }
-                            }
-                        }
-                    }).sendWith(getHost());
+        List<String> tenantLinks = TransformationRunner.mergeTenantLinks(volume.tenantLinks,
+                hostTenantLinks);
+        if (tenantLinks == null) {
+            return null;
         }
+        volume.tenantLinks = tenantLinks;
+        return volume;
     }
 }
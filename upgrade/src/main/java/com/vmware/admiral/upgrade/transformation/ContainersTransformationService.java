@@ -11,19 +11,21 @@
 
 package com.vmware.admiral.upgrade.transformation;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.upgrade.transformation.util.TransformationRunner;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.StatelessService;
-import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
 
 /**
@@ -34,95 +36,61 @@ public class ContainersTransformationService extends StatelessService {
 
     public static final String SELF_LINK = ManagementUriParts.CONTAINERS_UPGRADE_TRANSFORM_PATH;
 
-    AtomicInteger hostsCount;
-
     @Override
     public void handlePost(Operation post) {
+        getHostsTenantLinks(getHost())
+                .thenCompose(hostsTenantLinks -> {
+                    logInfo("Number of hosts found: %d", hostsTenantLinks.size());
+                    if (hostsTenantLinks.isEmpty()) {
+                        return DeferredResult.completed(null);
+                    }
+                    return new TransformationRunner<>(getHost(), "containers",
+                            ContainerState.class)
+                            .setTransformation(c -> transform(c, hostsTenantLinks))
+                            .run();
+                })
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logSevere("Failed to update tenantLinks of containers: %s",
+                                Utils.toString(ex));
+                        post.fail(ex);
+                        return;
+                    }
+                    logInfo("Containers tranformation completed successfully");
+                    post.complete();
+                });
+    }
+
+    private static ContainerState transform(ContainerState container,
+            Map<String, List<String>> hostsTenantLinks) {
+        List<String> tenantLinks = TransformationRunner.mergeTenantLinks(container.tenantLinks,
+                hostsTenantLinks.get(container.parentLink));
+        if (tenantLinks == null) {
+            return null;
+        }
+        container.tenantLinks = tenantLinks;
+        return container;
+    }
+
+    /**
+     * Returns the tenant links of all hosts by the self link of the host.
+     */
+    static DeferredResult<Map<String, List<String>>> getHostsTenantLinks(ServiceHost host) {
+        DeferredResult<Map<String, List<String>>> result = new DeferredResult<>();
         QueryTask queryTask = QueryUtil.buildQuery(ComputeState.class, true);
         QueryUtil.addExpandOption(queryTask);
-        List<ComputeState> hosts = new ArrayList<ComputeState>();
-        new ServiceDocumentQuery<ComputeState>(getHost(), ComputeState.class)
+        Map<String, List<String>> hostsTenantLinks = new HashMap<>();
+        new ServiceDocumentQuery<ComputeState>(host, ComputeState.class)
                 .query(queryTask, (r) -> {
                     if (r.hasException()) {
-                        post.fail(r.getException());
-                        logSevere("Failed to get compute states");
+                        result.fail(r.getException());
                     } else if (r.hasResult()) {
-                        hosts.add(r.getResult());
+                        hostsTenantLinks.put(r.getResult().documentSelfLink,
+                                r.getResult().tenantLinks);
                     } else {
-                        if (hosts.isEmpty()) {
-                            post.complete();
-                        }
-                        logInfo("Number of hosts found: %d", hosts.size());
-                        processHosts(hosts, post);
+                        result.complete(hostsTenantLinks);
                     }
                 });
-    }
-
-    private void processHosts(List<ComputeState> hosts, Operation post) {
-        hostsCount = new AtomicInteger(hosts.size());
-        for (ComputeState state : hosts) {
-            QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
-                    ContainerState.FIELD_NAME_PARENT_LINK,
-                    state.documentSelfLink);
-            QueryUtil.addExpandOption(queryTask);
-            List<ContainerState> containers = new ArrayList<ContainerState>();
-            new ServiceDocumentQuery<ContainerState>(getHost(),
-                    ContainerState.class)
-                            .query(queryTask, (r) -> {
-                                if (r.hasException()) {
-                                    post.fail(r.getException());
-                                    logSevere("Failed to get container states with parentLink %s",
-                                            state.documentSelfLink);
-                                } else if (r.hasResult()) {
-                                    containers.add(r.getResult());
-                                } else {
-                                    processContainers(state, containers, post);
-                                    logInfo("Number of containers found with parentLink %s %d",
-                                            state.documentSelfLink, containers.size());
-                                }
-                            });
-        }
-    }
-
-    private void processContainers(ComputeState state, List<ContainerState> containers,
-            Operation post) {
-        if (containers.size() == 0) {
-            logInfo("No containers found for host %s",
-                    state.documentSelfLink);
-            if (hostsCount.decrementAndGet() == 0) {
-                logInfo("Containers tranformation completed successfully");
-                post.complete();
-                return;
-            }
-        }
-        AtomicInteger containersCount = new AtomicInteger(containers.size());
-        for (ContainerState container : containers) {
-            if (container.tenantLinks == null) {
-                container.tenantLinks = state.tenantLinks;
-            } else {
-                container.tenantLinks.addAll(state.tenantLinks);
-                container.tenantLinks = new ArrayList<String>(
-                        new LinkedHashSet<String>(container.tenantLinks));
-            }
-            Operation.createPatch(this, container.documentSelfLink)
-                    .setBody(container)
-                    .setReferer(UriUtils.buildUri(getHost(), SELF_LINK))
-                    .setCompletion((o, ex) -> {
-                        if (ex != null) {
-                            logSevere("Failed to update tenantLinks for container %s",
-                                    container.documentSelfLink);
-                            post.fail(ex);
-                        } else {
-                            logInfo("Container state %s updated with tenantLinks",
-                                    container.documentSelfLink);
-                            if (containersCount.decrementAndGet() == 0) {
-                                if (hostsCount.decrementAndGet() == 0) {
-                                    logInfo("Containers tranformation completed successfully");
-                                    post.complete();
-                                }
-                            }
-                        }
-                    }).sendWith(getHost());
-        }
+        return result;
     }
 }
@@ -11,24 +11,18 @@
 
 package com.vmware.admiral.upgrade.transformation;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import com.vmware.admiral.auth.project.ProjectService.ProjectState;
 import com.vmware.admiral.common.ManagementUriParts;
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.upgrade.transformation.util.TransformationRunner;
 import com.vmware.xenon.common.FactoryService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Operation.CompletionHandler;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.StatefulService;
-import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
-import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * One-time node group setup (bootstrap) for removing the self link of the project form the tenant
@@ -84,55 +78,25 @@ public class ProjectsTransformationBootstrapService extends StatefulService {
 
     @Override
     public void handleStart(Operation post) {
-        QueryTask queryTask = QueryUtil.buildQuery(ProjectState.class, true);
-        QueryUtil.addExpandOption(queryTask);
-        List<ProjectState> projects = new ArrayList<ProjectState>();
-        new ServiceDocumentQuery<ProjectState>(getHost(), ProjectState.class)
-                .query(queryTask, (r) -> {
-                    if (r.hasException()) {
-                        post.fail(r.getException());
-                    } else if (r.hasResult()) {
-                        projects.add(r.getResult());
-                    } else {
-                        getHost().log(Level.INFO, "projects found: %d", projects.size());
-                        processProjects(projects, post);
+        new TransformationRunner<>(getHost(), "projects", ProjectState.class)
+                .setTransformation(project -> {
+                    if (project.tenantLinks == null
+                            || !project.tenantLinks.contains(project.documentSelfLink)) {
+                        return null;
                     }
-                });
-    }
-
-    private void processProjects(List<ProjectState> projects, Operation post) {
-        if (projects.size() == 0) {
-            post.complete();
-            return;
-
-        }
-        AtomicInteger projectsCount = new AtomicInteger(projects.size());
-        for (ProjectState project : projects) {
-            if (project.tenantLinks == null || project.tenantLinks.isEmpty()
-                    || !project.tenantLinks.contains(project.documentSelfLink)) {
-                if (projectsCount.decrementAndGet() == 0) {
+                    project.tenantLinks.remove(project.documentSelfLink);
+                    return project;
+                })
+                .run()
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        post.fail(ex);
+                        return;
+                    }
+                    logInfo("Projects tranformation completed successfully, %d projects updated",
+                            result.updated);
                     post.complete();
-                }
-            } else {
-                project.tenantLinks.remove(project.documentSelfLink);
-
-                Operation.createPatch(this, project.documentSelfLink)
-                        .setBody(project)
-                        .setReferer(UriUtils.buildUri(getHost(), FACTORY_LINK))
-                        .setCompletion((o, ex) -> {
-                            if (ex != null) {
-                                post.fail(ex);
-                            } else {
-                                logInfo("Project state %s updated with tenantLinks",
-                                        project.documentSelfLink);
-                                if (projectsCount.decrementAndGet() == 0) {
-                                    logInfo("Projects tranformation completed successfully");
-                                    post.complete();
-                                }
-                            }
-                        }).sendWith(getHost());
-            }
-        }
+                });
     }
 
     @Override
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.upgrade.transformation.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription.TypeName;
+import com.vmware.xenon.common.ServiceDocumentQueryResult;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * Applies a transformation to all documents of a given kind during upgrade.
+ *
+ * The documents are read page by page in the order of their self links. The transformation of a
+ * document returns the document to PATCH or {@code null} if the document is already up to date,
+ * so running a transformation twice does not change anything. The documents of a page are
+ * transformed and written with at most {@code concurrency} pending operations while the next page
+ * is fetched. An interrupted transformation is resumed by running it again, the documents it
+ * already transformed are read but not written again.
+ */
+public class TransformationRunner<T extends ServiceDocument> {
+
+    public static final String PAGE_SIZE_PROPERTY = "upgrade.transformation.page.size";
+    public static final String CONCURRENCY_PROPERTY = "upgrade.transformation.concurrency";
+
+    private static final int DEFAULT_PAGE_SIZE = Integer.getInteger(PAGE_SIZE_PROPERTY, 1000);
+    private static final int DEFAULT_CONCURRENCY = Integer.getInteger(CONCURRENCY_PROPERTY, 32);
+
+    /**
+     * Counters of a completed transformation.
+     */
+    public static class TransformationResult {
+        /** Documents read and transformed. */
+        public long processed;
+
+        /** Documents which were changed by the transformation and written back. */
+        public long updated;
+
+        /** Duration of the transformation. */
+        public long durationMillis;
+    }
+
+    private final ServiceHost host;
+    private final String name;
+    private final Class<T> type;
+    private final List<Query> clauses = new ArrayList<>();
+    private Function<T, DeferredResult<T>> transformation;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+
+    /**
+     * @param host the host to send the requests with
+     * @param name name of the transformation, used in the logs
+     * @param type the type of the documents to transform
+     */
+    public TransformationRunner(ServiceHost host, String name, Class<T> type) {
+        this.host = host;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Restricts the documents to transform to the ones matching the given clause.
+     */
+    public TransformationRunner<T> addClause(Query clause) {
+        clauses.add(clause);
+        return this;
+    }
+
+    /**
+     * Sets a transformation which returns the document to write back or {@code null} if the
+     * document is not changed.
+     */
+    public TransformationRunner<T> setTransformation(Function<T, T> transformation) {
+        this.transformation = document -> DeferredResult.completed(
+                transformation.apply(document));
+        return this;
+    }
+
+    /**
+     * Sets a transformation which needs to retrieve other documents to compute the result.
+     */
+    public TransformationRunner<T> setAsyncTransformation(
+            Function<T, DeferredResult<T>> transformation) {
+        this.transformation = transformation;
+        return this;
+    }
+
+    public TransformationRunner<T> setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public TransformationRunner<T> setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public DeferredResult<TransformationResult> run() {
+        long startTime = System.nanoTime();
+        return host.sendWithDeferredResult(Operation
+                .createPost(UriUtils.buildUri(host, ServiceUriPaths.CORE_QUERY_TASKS))
+                .setBody(buildQueryTask())
+                .setReferer(host.getUri()), QueryTask.class)
+                .thenCompose(task -> processPage(task.results))
+                .thenApply(ignore -> {
+                    TransformationResult result = new TransformationResult();
+                    result.processed = processed.get();
+                    result.updated = updated.get();
+                    result.durationMillis = TimeUnit.NANOSECONDS.toMillis(
+                            System.nanoTime() - startTime);
+                    host.log(Level.INFO, "Transformation %s completed: %d documents processed,"
+                            + " %d updated in %d ms", name, result.processed, result.updated,
+                            result.durationMillis);
+                    return result;
+                });
+    }
+
+    /**
+     * Returns the given tenant links merged into the current ones or {@code null} if all of them
+     * are already present.
+     */
+    public static List<String> mergeTenantLinks(List<String> current,
+            Collection<String> tenantLinks) {
+        if (tenantLinks == null || tenantLinks.isEmpty()
+                || (current != null && current.containsAll(tenantLinks))) {
+            return null;
+        }
+        LinkedHashSet<String> merged = new LinkedHashSet<>();
+        if (current != null) {
+            merged.addAll(current);
+        }
+        merged.addAll(tenantLinks);
+        return new ArrayList<>(merged);
+    }
+
+    private QueryTask buildQueryTask() {
+        QueryTask queryTask = QueryUtil.buildQuery(type, true,
+                clauses.toArray(new Query[clauses.size()]));
+        QueryUtil.addExpandOption(queryTask);
+        queryTask.querySpec.options.add(QueryOption.SORT);
+        queryTask.querySpec.sortTerm = new QueryTask.QueryTerm();
+        queryTask.querySpec.sortTerm.propertyName = ServiceDocument.FIELD_NAME_SELF_LINK;
+        queryTask.querySpec.sortTerm.propertyType = TypeName.STRING;
+        queryTask.querySpec.sortOrder = QueryTask.QuerySpecification.SortOrder.ASC;
+        queryTask.querySpec.resultLimit = pageSize;
+        queryTask.documentExpirationTimeMicros = ServiceDocumentQuery.getDefaultQueryExpiration();
+        return queryTask;
+    }
+
+    private DeferredResult<Void> processPage(ServiceDocumentQueryResult page) {
+        // fetch the next page while the current one is written
+        DeferredResult<ServiceDocumentQueryResult> nextPage = page.nextPageLink == null
+                ? DeferredResult.completed(null)
+                : host.sendWithDeferredResult(Operation
+                        .createGet(UriUtils.buildUri(host, page.nextPageLink))
+                        .setReferer(host.getUri()), QueryTask.class)
+                        .thenApply(task -> task.results);
+
+        List<T> documents = new ArrayList<>();
+        if (page.documentLinks != null) {
+            for (String link : page.documentLinks) {
+                documents.add(Utils.fromJson(page.documents.get(link), type));
+            }
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        List<DeferredResult<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(concurrency, documents.size()); i++) {
+            workers.add(processNext(documents, next));
+        }
+
+        return DeferredResult.allOf(workers)
+                .thenAccept(ignore -> host.log(Level.FINE,
+                        "Transformation %s: %d documents processed", name, processed.get()))
+                .thenCompose(ignore -> nextPage)
+                .thenCompose(result -> result == null
+                        ? DeferredResult.completed(null)
+                        : processPage(result));
+    }
+
+    private DeferredResult<Void> processNext(List<T> documents, AtomicInteger next) {
+        int index;
+        while ((index = next.getAndIncrement()) < documents.size()) {
+            T document = documents.get(index);
+            processed.incrementAndGet();
+            DeferredResult<T> transformed;
+            try {
+                transformed = transformation.apply(document);
+            } catch (Throwable e) {
+                return DeferredResult.failed(e);
+            }
+            if (transformed.isDone()) {
+                T result;
+                try {
+                    result = transformed.getNow((T) null);
+                } catch (Throwable e) {
+                    return DeferredResult.failed(e);
+                }
+                if (result == null) {
+                    // skip the unchanged documents without going through the completion chain
+                    continue;
+                }
+            }
+            return transformed
+                    .thenCompose(this::write)
+                    .thenCompose(ignore -> processNext(documents, next));
+        }
+        return DeferredResult.completed(null);
+    }
+
+    private DeferredResult<Void> write(T document) {
+        if (document == null) {
+            return DeferredResult.completed(null);
+        }
+        return host.sendWithDeferredResult(Operation
+                .createPatch(UriUtils.buildUri(host, document.documentSelfLink))
+                .setBody(document)
+                .setReferer(host.getUri()))
+                .thenAccept(ignore -> updated.incrementAndGet());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.upgrade.transformation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.service.common.MultiTenantDocument;
+import com.vmware.admiral.upgrade.UpgradeBaseTest;
+import com.vmware.admiral.upgrade.transformation.util.TransformationRunner.TransformationResult;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+public class TransformationRunnerTest extends UpgradeBaseTest {
+
+    // raise to a few hundred thousands to measure the throughput of large upgrades
+    private static final int DOCUMENTS = Integer.getInteger(
+            "test.upgrade.transformation.documents", 10000);
+    private static final int PAGE_SIZE = 500;
+    private static final String TENANT_LINK = "/tenants/upgraded";
+
+    private TestRequestSender sender;
+
+    @Before
+    public void setUp() throws Throwable {
+        waitForServiceAvailability(ContainerFactoryService.SELF_LINK);
+        sender = host.getTestRequestSender();
+    }
+
+    @Test
+    public void testTransformation() throws Throwable {
+        createContainers(DOCUMENTS);
+
+        TransformationResult result = run(runner("test-transformation"));
+        host.log(Level.INFO, "Transformed %d documents in %d ms (%d documents/s)",
+                result.updated, result.durationMillis,
+                result.updated * 1000 / Math.max(1, result.durationMillis));
+        assertEquals(DOCUMENTS, result.processed);
+        assertEquals(DOCUMENTS, result.updated);
+        assertTransformed(DOCUMENTS);
+
+        // the transformed documents are not written again
+        result = run(runner("test-transformation"));
+        assertEquals(DOCUMENTS, result.processed);
+        assertEquals(0, result.updated);
+    }
+
+    @Test
+    public void testRunAgainAfterFailure() throws Throwable {
+        int count = PAGE_SIZE * 10;
+        createContainers(count);
+
+        // fail in the middle of the fourth page
+        AtomicInteger transformed = new AtomicInteger();
+        TransformationRunner<ContainerState> failing = runner("test-resume")
+                .setConcurrency(1)
+                .setAsyncTransformation(container -> {
+                    if (transformed.incrementAndGet() > PAGE_SIZE * 3 + PAGE_SIZE / 2) {
+                        return DeferredResult.failed(new IllegalStateException("interrupted"));
+                    }
+                    return DeferredResult.completed(transform(container));
+                });
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        TestContext ctx = testCreate(1);
+        failing.run().whenComplete((r, e) -> {
+            failure.set(e);
+            ctx.complete();
+        });
+        ctx.await();
+        assertNotNull(failure.get());
+
+        // all documents are read again, only the ones not transformed yet are written
+        TransformationResult result = run(runner("test-resume"));
+        assertEquals(count, result.processed);
+        assertEquals(count - PAGE_SIZE * 3 - PAGE_SIZE / 2, result.updated);
+        assertTransformed(count);
+    }
+
+    private TransformationRunner<ContainerState> runner(String name) {
+        return new TransformationRunner<>(host, name, ContainerState.class)
+                .setPageSize(PAGE_SIZE)
+                .setTransformation(TransformationRunnerTest::transform);
+    }
+
+    private static ContainerState transform(ContainerState container) {
+        List<String> tenantLinks = TransformationRunner.mergeTenantLinks(container.tenantLinks,
+                Collections.singletonList(TENANT_LINK));
+        if (tenantLinks == null) {
+            return null;
+        }
+        container.tenantLinks = tenantLinks;
+        return container;
+    }
+
+    private TransformationResult run(TransformationRunner<?> runner) {
+        AtomicReference<TransformationResult> result = new AtomicReference<>();
+        TestContext ctx = new TestContext(1, Duration.ofSeconds(Math.max(60, DOCUMENTS / 500)));
+        runner.run().whenComplete((r, e) -> {
+            if (e != null) {
+                ctx.fail(e);
+                return;
+            }
+            result.set(r);
+            ctx.complete();
+        });
+        ctx.await();
+        return result.get();
+    }
+
+    private void createContainers(int count) {
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < count; i += PAGE_SIZE) {
+            List<Operation> posts = new ArrayList<>();
+            for (int j = i; j < Math.min(count, i + PAGE_SIZE); j++) {
+                ContainerState container = new ContainerState();
+                container.id = "container-" + j;
+                container.names = Collections.singletonList(container.id);
+                container.parentLink = "/resources/compute/host-" + (j % 100);
+                container.powerState = PowerState.RUNNING;
+                container.tenantLinks = new ArrayList<>(
+                        Collections.singletonList("/tenants/tenant-" + (j % 10)));
+                posts.add(Operation.createPost(host, ContainerFactoryService.SELF_LINK)
+                        .setBody(container));
+            }
+            sender.sendAndWait(posts);
+        }
+        host.log(Level.INFO, "Created %d documents in %d ms", count,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void assertTransformed(int count) {
+        QueryTask queryTask = QueryUtil.buildQuery(ContainerState.class, true, new Query()
+                .setTermPropertyName(QuerySpecification.buildCollectionItemName(
+                        MultiTenantDocument.FIELD_NAME_TENANT_LINKS))
+                .setTermMatchValue(TENANT_LINK));
+        QueryUtil.addCountOption(queryTask);
+        QueryTask result = sender.sendPostAndWait(
+                UriUtils.buildUri(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS), queryTask,
+                QueryTask.class);
+        assertEquals(count, result.results.documentCount.longValue());
+    }
+}